@@ -27,6 +27,51 @@ public class TWConnectorConsts {
    */
   public static final String HTTP_TIMEOUT_SECONDS_STRING = "2";
 
+  /**
+   * The connect and read timeout (in milliseconds) of HTTP requests which are made by the
+   * connector directly, such as compressed payload requests. This matches {@link
+   * #HTTP_TIMEOUT_SECONDS_STRING}.
+   */
+  public static final int HTTP_TIMEOUT_MILLIS = 2000;
+
+  /**
+   * The time (in milliseconds) after which an idle persistent HTTP connection is closed by the
+   * connector, instead of being reused. This is shorter than the default keep-alive timeout of
+   * common web servers, so that connections are not reused after the server has closed them.
+   */
+  public static final int HTTP_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS = 15000;
+
+  /** The name of the Thingworx service which ingests uncompressed payloads. */
+  public static final String THINGWORX_TAKE_INFO_SERVICE_NAME = "TakeInfo";
+
+  /**
+   * The name of the Thingworx service which ingests gzip-compressed payloads. The service inflates
+   * each payload and passes it to the {@link #THINGWORX_TAKE_INFO_SERVICE_NAME} service.
+   */
+  public static final String THINGWORX_TAKE_COMPRESSED_INFO_SERVICE_NAME = "TakeCompressedInfo";
+
+  /**
+   * The name of the {@link #THINGWORX_TAKE_COMPRESSED_INFO_SERVICE_NAME} service parameter which
+   * contains the base64-encoded, gzip-compressed payload.
+   */
+  public static final String THINGWORX_TAKE_COMPRESSED_INFO_PARAMETER_NAME = "CompressedTags";
+
+  // MQTT Configuration
+  /**
+   * The keep alive interval (in seconds) of the MQTT connection to the broker. A ping is sent if no
+   * other packet has been sent within this interval.
+   */
+  public static final int MQTT_KEEP_ALIVE_SECONDS = 60;
+
+  /**
+   * The time (in milliseconds) to wait for the broker to acknowledge a connection, published
+   * payload or ping before the connection is considered lost.
+   */
+  public static final int MQTT_ACK_TIMEOUT_MILLIS = 10000;
+
+  /** The maximum number of payloads in flight (unacknowledged) on the MQTT connection at once. */
+  public static final int MQTT_MAX_IN_FLIGHT_PAYLOADS_MAX = 16;
+
   // Historical Data Queue Configuration
   /**
    * The default size (in mins) of each data queue poll. Changing this will modify the amount of
@@ -43,6 +88,35 @@ public class TWConnectorConsts {
   /** The time (in milliseconds) that the data queue must be behind by before warning the user. */
   public static final long QUEUE_DATA_POLL_BEHIND_MILLIS_WARN = 300000;
 
+  /**
+   * The time (in milliseconds) that the data queue must be behind by before the size of each data
+   * queue poll is increased to catch up.
+   */
+  public static final long QUEUE_CATCH_UP_ENTER_BEHIND_MILLIS = QUEUE_DATA_POLL_BEHIND_MILLIS_WARN;
+
+  /**
+   * The time (in milliseconds) that the data queue must be behind by or less before the size of
+   * each data queue poll is restored to the configured size. This is lower than {@link
+   * #QUEUE_CATCH_UP_ENTER_BEHIND_MILLIS} so that the poll size does not toggle on every poll.
+   */
+  public static final long QUEUE_CATCH_UP_EXIT_BEHIND_MILLIS = 60000;
+
+  /** The number of data queue polls in which the catch-up controller aims to clear the backlog. */
+  public static final int QUEUE_CATCH_UP_TARGET_POLLS = 10;
+
+  /** The factor by which the size of each data queue poll may grow from one poll to the next. */
+  public static final int QUEUE_CATCH_UP_MAX_GROWTH_FACTOR = 2;
+
+  /**
+   * The number of poll intervals of data which may be read ahead of the measured send throughput,
+   * including data which is already pending. This allows the send throughput to grow while
+   * catching up.
+   */
+  public static final int QUEUE_CATCH_UP_SEND_HEADROOM_INTERVALS = 2;
+
+  /** The estimated heap usage (in bytes) of each data point read from the data queue. */
+  public static final int QUEUE_CATCH_UP_BYTES_PER_DATA_POINT = 256;
+
   /**
    * Default value of boolean flag indicating if string history data should be retrieved from the
    * queue. String history requires an additional EBD call in the underlying queue library, and will
@@ -121,17 +195,265 @@ public class TWConnectorConsts {
    */
   public static final int QUEUE_DIAGNOSTIC_TAG_POLL_COUNT_TYPE = 2;
 
+  /**
+   * The name of the diagnostic tag containing the state of the circuit breaker for sending payloads
+   * to Thingworx.
+   */
+  public static final String QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_NAME =
+      "ConnectorSendCircuitState";
+
+  /**
+   * The description of the diagnostic tag containing the state of the circuit breaker for sending
+   * payloads to Thingworx.
+   */
+  public static final String QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_DESC =
+      "Diagnostic tag containing the state of sending payloads to Thingworx (0 = closed/sending, 1"
+          + " = open/paused, 2 = half-open/probing).";
+
+  /**
+   * The type of the diagnostic tag containing the state of the circuit breaker for sending payloads
+   * to Thingworx.
+   */
+  public static final int QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_TYPE = 2;
+
+  /**
+   * The name of the tag containing the current maximum number of data points per payload, when
+   * payload size auto-tuning is enabled.
+   */
+  public static final String PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_NAME =
+      "ConnectorPayloadMaxDataPoints";
+
+  /**
+   * The description of the tag containing the current maximum number of data points per payload,
+   * when payload size auto-tuning is enabled.
+   */
+  public static final String PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_DESC =
+      "Tag containing the current maximum number of data points per payload, as auto-tuned from"
+          + " the measured send latency.";
+
+  /**
+   * The type of the tag containing the current maximum number of data points per payload, when
+   * payload size auto-tuning is enabled.
+   */
+  public static final int PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_TYPE = 2;
+
   /** The IO server used for queue diagnostic tag(s). */
   public static final String QUEUE_DIAGNOSTIC_TAG_IO_SERVER = "MEM";
 
+  // Payload Configuration
+  /**
+   * The maximum number of pending payloads which can be stored in memory while waiting to be sent
+   * to Thingworx.
+   */
+  public static final int PAYLOAD_PENDING_RING_CAPACITY = 4096;
+
+  /**
+   * The number of pending payloads at which reading from the historical data queue is paused, to
+   * prevent the pending payload ring from filling.
+   */
+  public static final int PAYLOAD_PENDING_BACKPRESSURE_HIGH_WATERMARK = 3072;
+
+  /**
+   * The number of pending payloads at or below which reading from the historical data queue is
+   * resumed, once paused.
+   */
+  public static final int PAYLOAD_PENDING_BACKPRESSURE_LOW_WATERMARK = 1024;
+
+  /**
+   * The maximum number of data points in pending payloads which can be stored in memory while
+   * waiting to be sent to Thingworx. Storage for these data points is allocated at startup.
+   */
+  public static final int DATA_POINT_STORE_CAPACITY = 16384;
+
+  /**
+   * The number of pending data points at which reading from the historical data queue is paused,
+   * to prevent the data point store from filling.
+   */
+  public static final int DATA_POINT_STORE_BACKPRESSURE_HIGH_WATERMARK = 12288;
+
+  /**
+   * The number of pending data points at or below which reading from the historical data queue is
+   * resumed, once paused.
+   */
+  public static final int DATA_POINT_STORE_BACKPRESSURE_LOW_WATERMARK = 4096;
+
+  /**
+   * The free memory (in bytes) below which all pending payloads are moved to the payload outbox,
+   * if enabled, even while Thingworx is reachable.
+   */
+  public static final long PAYLOAD_OUTBOX_SPILL_MIN_MEMORY_BYTES = 7000000;
+
+  /**
+   * The number of consecutive failed requests to Thingworx after which sending payloads is paused
+   * by the send circuit breaker.
+   */
+  public static final int SEND_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 3;
+
+  /**
+   * The delay (in milliseconds) before the first probe request after sending payloads is paused by
+   * the send circuit breaker. This is doubled after each failed probe request.
+   */
+  public static final long SEND_CIRCUIT_BREAKER_INITIAL_BACKOFF_MILLIS = 5000;
+
+  /** The maximum delay (in milliseconds) between probe requests of the send circuit breaker. */
+  public static final long SEND_CIRCUIT_BREAKER_MAX_BACKOFF_MILLIS = 60000;
+
+  /** The maximum number of data send worker threads which send payloads to Thingworx. */
+  public static final int PAYLOAD_SEND_WORKER_COUNT_MAX = 8;
+
+  /**
+   * The number of data points by which the maximum number of data points per payload is increased
+   * by payload size auto-tuning, after each full payload which was sent within the target latency.
+   */
+  public static final int PAYLOAD_AUTO_TUNE_INCREASE_DATA_POINTS = 10;
+
+  /**
+   * The factor by which the maximum number of data points per payload is multiplied by payload size
+   * auto-tuning after a payload times out.
+   */
+  public static final double PAYLOAD_AUTO_TUNE_DECREASE_FACTOR = 0.5;
+
+  /**
+   * The weight of each new measurement in the smoothed send latency and failure rate of payload
+   * size auto-tuning.
+   */
+  public static final double PAYLOAD_AUTO_TUNE_SMOOTHING_WEIGHT = 0.125;
+
   // Main Loop Configuration
   /**
-   * The interval (in milliseconds) at which the main loop checks available memory and polls the
-   * historical data queue if necessary. This value should be lesser than {@link
-   * #QUEUE_DATA_POLL_INTERVAL_MILLIS_DEFAULT}.
+   * The interval (in milliseconds) at which the main loop checks available memory, supervises the
+   * historical reader, batching and tag update threads, and checks the connector control tag.
    */
   public static final long MAIN_LOOP_CYCLE_TIME_MILLIS = 1000;
 
+  /**
+   * The time (in milliseconds) without a heartbeat, in addition to its expected cycle time, after
+   * which a supervised thread is considered stalled and is restarted by the main loop.
+   */
+  public static final long STAGE_STALL_TIMEOUT_MILLIS = 300000;
+
+  /**
+   * The number of batches of data points read from the historical log which may be waiting to be
+   * added to the pending payloads before reading from the historical log is skipped.
+   */
+  public static final int QUEUE_READ_HANDOFF_CAPACITY_BATCHES = 2;
+
+  /**
+   * The maximum time (in milliseconds) that the batching thread waits for data points read from the
+   * historical log before recording a heartbeat.
+   */
+  public static final long DATA_POINT_BATCHING_WAIT_MILLIS = 1000;
+
+  // Live Mode Configuration
+  /**
+   * The maximum time (in milliseconds) that the historical data queue may be behind for changes of
+   * live mode tags to be sent to Thingworx as they occur.
+   */
+  public static final long LIVE_MODE_MAX_QUEUE_BEHIND_MILLIS = 60000;
+
+  /**
+   * The maximum time (in milliseconds) that a payload containing a live data point waits for more
+   * data points before it is sent to Thingworx.
+   */
+  public static final long LIVE_MODE_PAYLOAD_LINGER_MILLIS = 250;
+
+  /**
+   * The maximum difference (in seconds) between the timestamps of a live data point and a data
+   * point read from the historical log for them to be considered the same value change.
+   */
+  public static final long LIVE_MODE_DUPLICATE_TOLERANCE_SECONDS = 1;
+
+  /**
+   * The maximum number of sent live data points per tag which are remembered to remove duplicates
+   * read from the historical log.
+   */
+  public static final int LIVE_MODE_DUPLICATE_MAX_RECORDS_PER_TAG = 100;
+
+  /**
+   * The maximum number of changes of live mode tags which wait to be sent by the live mode thread.
+   * Further changes are sent from the historical log.
+   */
+  public static final int LIVE_MODE_CHANGE_QUEUE_CAPACITY = 1000;
+
+  /** The maximum time (in milliseconds) that the live mode thread waits for a tag change. */
+  public static final long LIVE_MODE_CHANGE_WAIT_MILLIS = 1000;
+
+  /** The export block descriptor for the instant values, which contain the quality of each tag. */
+  public static final String LIVE_MODE_INSTANT_VALUES_EBD = "$dtIV$ftT";
+
+  /** The name of the tag name column of the instant values. */
+  public static final String LIVE_MODE_INSTANT_VALUES_TAG_NAME_COLUMN = "TagName";
+
+  /** The name of the quality column of the instant values. */
+  public static final String LIVE_MODE_INSTANT_VALUES_QUALITY_COLUMN = "Quality";
+
+  /** The shift of the quality bits in the OPC quality of an instant value. */
+  public static final int LIVE_MODE_OPC_QUALITY_BITS_SHIFT = 6;
+
+  /** The mask of the quality bits in the OPC quality of an instant value, once shifted. */
+  public static final int LIVE_MODE_OPC_QUALITY_BITS_MASK = 0x3;
+
+  // Tag Update Configuration
+  /**
+   * The maximum time (in milliseconds) that the tag update thread waits for a tag update trigger
+   * before recording a heartbeat.
+   */
+  public static final long TAG_UPDATE_TRIGGER_WAIT_MILLIS = 1000;
+
+  /**
+   * The maximum number of tags whose tag control objects and tag IDs are cached for reading and
+   * writing tag values in tag updates.
+   */
+  public static final int TAG_UPDATE_TAG_CONTROL_CACHE_CAPACITY = 500;
+
+  /**
+   * The maximum number of tags in a tag update request response. Responses with more tags are not
+   * applied, which limits the memory used to read a response.
+   */
+  public static final int TAG_UPDATE_MAX_RESPONSE_TAGS = 10000;
+
+  /**
+   * The minimum interval (in milliseconds) between refreshes of the tag information list when a
+   * tag is not found in the tag information index.
+   */
+  public static final long TAG_INFO_INDEX_MIN_REFRESH_INTERVAL_MILLIS = 60000;
+
+  // Queue Checkpoint Configuration
+  /**
+   * The minimum interval (in milliseconds) between writes of the historical data queue checkpoint
+   * file, which limits writes to flash.
+   */
+  public static final long QUEUE_CHECKPOINT_WRITE_INTERVAL_MILLIS = 60000;
+
+  /**
+   * The export block descriptor for the historical table in text format with times in UTC, which
+   * is used to read the data which was not delivered before the connector last stopped again. The
+   * start and end times are appended using {@link #QUEUE_CHECKPOINT_REPLAY_EBD_START_TIME} and
+   * {@link #QUEUE_CHECKPOINT_REPLAY_EBD_END_TIME}.
+   */
+  public static final String QUEUE_CHECKPOINT_REPLAY_EBD = "$dtHT$ftT$ut";
+
+  /** The export block descriptor field for the start time of a historical table export. */
+  public static final String QUEUE_CHECKPOINT_REPLAY_EBD_START_TIME = "$st";
+
+  /** The export block descriptor field for the end time of a historical table export. */
+  public static final String QUEUE_CHECKPOINT_REPLAY_EBD_END_TIME = "$et";
+
+  /** The format of the start and end times of a historical table export. */
+  public static final String QUEUE_CHECKPOINT_REPLAY_EBD_TIME_FORMAT = "ddMMyyyy_HHmmss";
+
+  /** The name of the tag ID column of a historical table export. */
+  public static final String QUEUE_CHECKPOINT_REPLAY_TAG_ID_COLUMN = "TagId";
+
+  /** The name of the time (in seconds since the epoch) column of a historical table export. */
+  public static final String QUEUE_CHECKPOINT_REPLAY_TIME_COLUMN = "TimeInt";
+
+  /** The name of the value column of a historical table export. */
+  public static final String QUEUE_CHECKPOINT_REPLAY_VALUE_COLUMN = "Value";
+
+  /** The name of the OPC quality column of a historical table export. */
+  public static final String QUEUE_CHECKPOINT_REPLAY_QUALITY_COLUMN = "IQuality";
+
   // Connector Control Tag
   /** The name of the tag that is used to control the connector execution. */
   public static final String CONNECTOR_CONTROL_TAG_NAME = "ThingworxControl";
@@ -156,6 +478,15 @@ public class TWConnectorConsts {
   /** The name of the connector configuration file. */
   public static final String CONNECTOR_CONFIG_FILE_NAME = "ThingworxConnectorConfig.json";
 
+  /** The name of the payload outbox data file. */
+  public static final String PAYLOAD_OUTBOX_DATA_FILE_NAME = "ThingworxConnectorOutbox.dat";
+
+  /** The name of the payload outbox index file. */
+  public static final String PAYLOAD_OUTBOX_INDEX_FILE_NAME = "ThingworxConnectorOutbox.idx";
+
+  /** The name of the historical data queue checkpoint file. */
+  public static final String QUEUE_CHECKPOINT_FILE_NAME = "ThingworxConnectorQueueCheckpoint.dat";
+
   /** The indent factor used in the JSON configuration file. */
   public static final int CONNECTOR_CONFIG_JSON_INDENT_FACTOR = 3;
 
@@ -180,6 +511,13 @@ public class TWConnectorConsts {
   public static final String CONNECTOR_CONFIG_QUEUE_DATA_POLL_SIZE_MINS_KEY =
       "QueueDataPollSizeMins";
 
+  /**
+   * The configuration file JSON key for the maximum queue data poll size in minutes while the data
+   * queue is catching up.
+   */
+  public static final String CONNECTOR_CONFIG_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS_KEY =
+      "QueueCatchUpMaxPollSizeMins";
+
   /** The configuration file JSON key for the queue data poll interval in milliseconds. */
   public static final String CONNECTOR_CONFIG_QUEUE_DATA_POLL_INTERVAL_MILLIS_KEY =
       "QueueDataPollIntervalMillis";
@@ -187,13 +525,133 @@ public class TWConnectorConsts {
   /** The configuration file JSON key for the maximum number of data points in a data payload. */
   public static final String CONNECTOR_CONFIG_PAYLOAD_MAX_DATA_POINTS_KEY = "PayloadMaxDataPoints";
 
+  /**
+   * The configuration file JSON key for the total size (in bytes) of pending payloads at which
+   * reading from the historical data queue is paused.
+   */
+  public static final String CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES_KEY =
+      "QueueBackpressureHighWatermarkBytes";
+
+  /**
+   * The configuration file JSON key for the total size (in bytes) of pending payloads at or below
+   * which reading from the historical data queue is resumed.
+   */
+  public static final String CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES_KEY =
+      "QueueBackpressureLowWatermarkBytes";
+
+  /** The configuration file JSON key for the maximum serialized size (in bytes) of a payload. */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_MAX_BYTES_KEY = "PayloadMaxBytes";
+
   /** The configuration file JSON key for the send interval (in milliseconds) of data payloads. */
   public static final String CONNECTOR_CONFIG_PAYLOAD_SEND_INTERVAL_MILLIS_KEY =
       "PayloadSendIntervalMillis";
 
+  /**
+   * The configuration file JSON key for the number of data send worker threads, which is the
+   * maximum number of payloads in flight to Thingworx at once.
+   */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_SEND_WORKER_COUNT_KEY =
+      "PayloadSendWorkerCount";
+
+  /** The configuration file JSON key for the enable columnar payload format setting. */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_COLUMNAR_FORMAT_KEY =
+      "PayloadEnableColumnarFormat";
+
+  /** The configuration file JSON key for the payload outbox enabled setting. */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_OUTBOX_ENABLED_KEY = "PayloadOutboxEnabled";
+
+  /** The configuration file JSON key for the historical data queue checkpoint enabled setting. */
+  public static final String CONNECTOR_CONFIG_QUEUE_CHECKPOINT_ENABLED_KEY =
+      "QueueCheckpointEnabled";
+
+  /** The configuration file JSON key for the maximum size (in bytes) of the payload outbox. */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_OUTBOX_MAX_BYTES_KEY =
+      "PayloadOutboxMaxBytes";
+
+  /**
+   * The configuration file JSON key for the number of pending payloads above which payloads are
+   * moved to the payload outbox while Thingworx is unreachable.
+   */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_OUTBOX_SPILL_THRESHOLD_KEY =
+      "PayloadOutboxSpillThreshold";
+
+  /** The configuration file JSON key for the gzip payload compression enabled setting. */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_GZIP_COMPRESSION_KEY =
+      "PayloadEnableGzipCompression";
+
+  /**
+   * The configuration file JSON key for the persistent (keep-alive) HTTP connection enabled
+   * setting.
+   */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_PERSISTENT_CONNECTION_KEY =
+      "PayloadEnablePersistentConnection";
+
+  /**
+   * The configuration file JSON key for the transport used to send payloads to Thingworx, one of
+   * {@link #PAYLOAD_TRANSPORT_HTTP} or {@link #PAYLOAD_TRANSPORT_MQTT}.
+   */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_TRANSPORT_KEY = "PayloadTransport";
+
+  /** The configuration file JSON key for the URL of the MQTT broker. */
+  public static final String CONNECTOR_CONFIG_MQTT_BROKER_URL_KEY = "MqttBrokerUrl";
+
+  /** The configuration file JSON key for the MQTT topic which payloads are published to. */
+  public static final String CONNECTOR_CONFIG_MQTT_TOPIC_KEY = "MqttTopic";
+
+  /** The configuration file JSON key for the MQTT user name. */
+  public static final String CONNECTOR_CONFIG_MQTT_USERNAME_KEY = "MqttUsername";
+
+  /** The configuration file JSON key for the MQTT password. */
+  public static final String CONNECTOR_CONFIG_MQTT_PASSWORD_KEY = "MqttPassword";
+
+  /**
+   * The configuration file JSON key for the maximum number of payloads in flight (unacknowledged)
+   * on the MQTT connection at once.
+   */
+  public static final String CONNECTOR_CONFIG_MQTT_MAX_IN_FLIGHT_PAYLOADS_KEY =
+      "MqttMaxInFlightPayloads";
+
+  /** The configuration file JSON key for the payload size auto-tuning enabled setting. */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_ENABLED_KEY =
+      "PayloadAutoTuneEnabled";
+
+  /**
+   * The configuration file JSON key for the minimum number of data points per payload when payload
+   * size auto-tuning is enabled.
+   */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS_KEY =
+      "PayloadAutoTuneMinDataPoints";
+
+  /**
+   * The configuration file JSON key for the maximum number of data points per payload when payload
+   * size auto-tuning is enabled.
+   */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS_KEY =
+      "PayloadAutoTuneMaxDataPoints";
+
+  /**
+   * The configuration file JSON key for the target send latency (in milliseconds) of payload size
+   * auto-tuning.
+   */
+  public static final String CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS_KEY =
+      "PayloadAutoTuneTargetLatencyMillis";
+
+  /** The configuration file JSON key for the live mode enabled setting. */
+  public static final String CONNECTOR_CONFIG_LIVE_MODE_ENABLED_KEY = "LiveModeEnabled";
+
+  /** The configuration file JSON key for the names of the tags sent in live mode. */
+  public static final String CONNECTOR_CONFIG_LIVE_MODE_TAG_NAMES_KEY = "LiveModeTagNames";
+
   /** The configuration file JSON key for the Thingworx tag update URL. */
   public static final String CONNECTOR_CONFIG_TW_TAG_UPDATE_URL_KEY = "ThingworxTagUpdateUrl";
 
+  /**
+   * The configuration file JSON key for the time (in milliseconds) that tag update triggers are
+   * coalesced before a tag update request is sent.
+   */
+  public static final String CONNECTOR_CONFIG_TAG_UPDATE_COALESCE_MILLIS_KEY =
+      "TagUpdateCoalesceMillis";
+
   /** The configuration file JSON key for the historical data buffer max fall behind duration. */
   public static final String CONNECTOR_CONFIG_MAX_HIST_BUF_FALL_BEHIND_KEY =
       "MaxHistoricalBufferFallBehindMins";
@@ -215,9 +673,93 @@ public class TWConnectorConsts {
   /** The default value for the maximum number of data points in a payload. */
   public static final int CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_DATA_POINTS = 50;
 
+  /** The default value for the maximum queue data poll size (in minutes) while catching up. */
+  public static final long CONNECTOR_CONFIG_DEFAULT_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS = 60;
+
+  /**
+   * The default value for the total size (in bytes) of pending payloads at which reading from the
+   * historical data queue is paused. A value of 0 disables the pending payload size watermarks.
+   */
+  public static final long CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES =
+      1000000;
+
+  /**
+   * The default value for the total size (in bytes) of pending payloads at or below which reading
+   * from the historical data queue is resumed.
+   */
+  public static final long CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES =
+      250000;
+
+  /**
+   * The default value for the maximum serialized size (in bytes) of a payload. A value of 0
+   * disables the maximum payload size, and payloads are only limited by their number of data
+   * points.
+   */
+  public static final int CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_BYTES = 0;
+
   /** The default value for the send interval (in milliseconds) of data payloads. */
   public static final long CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_INTERVAL_MILLIS = 5000;
 
+  /** The default value for the number of data send worker threads. */
+  public static final int CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_WORKER_COUNT = 1;
+
+  /** The default value for the columnar payload format enabled setting. */
+  public static final boolean CONNECTOR_CONFIG_DEFAULT_PAYLOAD_COLUMNAR_FORMAT = false;
+
+  /** The default value for the payload outbox enabled setting. */
+  public static final boolean CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_ENABLED = false;
+
+  /** The default value for the historical data queue checkpoint enabled setting. */
+  public static final boolean CONNECTOR_CONFIG_DEFAULT_QUEUE_CHECKPOINT_ENABLED = false;
+
+  /** The default value for the maximum size (in bytes) of the payload outbox. */
+  public static final long CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_MAX_BYTES = 4000000;
+
+  /**
+   * The default value for the number of pending payloads above which payloads are moved to the
+   * payload outbox while Thingworx is unreachable.
+   */
+  public static final int CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_SPILL_THRESHOLD = 32;
+
+  /** The default value for the gzip payload compression enabled setting. */
+  public static final boolean CONNECTOR_CONFIG_DEFAULT_PAYLOAD_GZIP_COMPRESSION = false;
+
+  /** The default value for the persistent (keep-alive) HTTP connection enabled setting. */
+  public static final boolean CONNECTOR_CONFIG_DEFAULT_PAYLOAD_PERSISTENT_CONNECTION = false;
+
+  /** The default value for the payload size auto-tuning enabled setting. */
+  public static final boolean CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_ENABLED = false;
+
+  /** The default value for the minimum number of data points per auto-tuned payload. */
+  public static final int CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS = 10;
+
+  /** The default value for the maximum number of data points per auto-tuned payload. */
+  public static final int CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS = 500;
+
+  /** The default value for the target send latency (in milliseconds) of payload auto-tuning. */
+  public static final long CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS = 1000;
+
+  /** The default value for the live mode enabled setting. */
+  public static final boolean CONNECTOR_CONFIG_DEFAULT_LIVE_MODE_ENABLED = false;
+
+  /** The default value for the time (in milliseconds) that tag update triggers are coalesced. */
+  public static final long CONNECTOR_CONFIG_DEFAULT_TAG_UPDATE_COALESCE_MILLIS = 100;
+
+  /** The payload transport setting value for sending payloads using HTTP POST requests. */
+  public static final String PAYLOAD_TRANSPORT_HTTP = "HTTP";
+
+  /** The payload transport setting value for publishing payloads to an MQTT broker. */
+  public static final String PAYLOAD_TRANSPORT_MQTT = "MQTT";
+
+  /** The default value for the payload transport setting. */
+  public static final String CONNECTOR_CONFIG_DEFAULT_PAYLOAD_TRANSPORT = PAYLOAD_TRANSPORT_HTTP;
+
+  /** The default value for the MQTT topic which payloads are published to. */
+  public static final String CONNECTOR_CONFIG_DEFAULT_MQTT_TOPIC = "thingworx/connector/telemetry";
+
+  /** The default value for the maximum number of payloads in flight on the MQTT connection. */
+  public static final int CONNECTOR_CONFIG_DEFAULT_MQTT_MAX_IN_FLIGHT_PAYLOADS = 4;
+
   /** The default value for the historical data buffer max fall behind duration in minutes. */
   public static final long CONNECTOR_CONFIG_DEFAULT_MAX_HIST_BUF_FALL_BEHIND_MINS = 5;
 
@@ -18,12 +18,19 @@ import com.hms_networks.americas.sc.extensions.system.time.SCTimeUnit;
 import com.hms_networks.americas.sc.extensions.system.time.SCTimeUtils;
 import com.hms_networks.americas.sc.extensions.taginfo.TagInfoManager;
 import com.hms_networks.americas.sc.thingworx.config.TWConnectorConfig;
+import com.hms_networks.americas.sc.thingworx.config.TWConnectorRuntimeConfig;
 import com.hms_networks.americas.sc.thingworx.data.TWApiManager;
 import com.hms_networks.americas.sc.thingworx.data.TWDataManager;
+import com.hms_networks.americas.sc.thingworx.data.TWDataPointBatchHandoff;
+import com.hms_networks.americas.sc.thingworx.data.TWLiveModeManager;
+import com.hms_networks.americas.sc.thingworx.data.TWQueueCheckpoint;
+import com.hms_networks.americas.sc.thingworx.data.TWQueueCheckpointReplay;
+import com.hms_networks.americas.sc.thingworx.data.TWQueuePollSizeController;
 import com.hms_networks.americas.sc.thingworx.data.TWTagUpdateManager;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Ewon Flexy Thingworx Connector main class.
@@ -36,12 +43,68 @@ public class TWConnectorMain {
   /** Connector configuration object */
   private static TWConnectorConfig connectorConfig;
 
+  /**
+   * Connector runtime configuration snapshot, built once from {@link #connectorConfig} at startup
+   */
+  private static TWConnectorRuntimeConfig connectorRuntimeConfig;
+
   /** Current available memory in bytes */
-  private static long availableMemoryBytes;
+  private static volatile long availableMemoryBytes;
 
   /** Boolean flag indicating if the application is running out of memory */
   private static boolean isMemoryCurrentlyLow;
 
+  /**
+   * Maximum time (in milliseconds) that the historical data queue may fall behind before the
+   * historical log skips ahead, discarding older data. This is set by {@link
+   * #configHistoricalDataQueueMaxFallBehind()}.
+   */
+  private static long queueMaxFallBehindMillis;
+
+  /**
+   * Boolean flag indicating if skipped historical log reads have left the historical data queue
+   * further behind than {@link #queueMaxFallBehindMillis}, and this has been logged. This is only
+   * accessed by the historical reader thread while holding {@link #HISTORICAL_READ_LOCK}.
+   */
+  private static boolean isSkippedReadFallBehindLogged = false;
+
+  /**
+   * Lock held by the historical reader thread while reading from the historical log, so that a
+   * replaced reader thread cannot read concurrently with its replacement.
+   */
+  private static final Object HISTORICAL_READ_LOCK = new Object();
+
+  /**
+   * Lock held by the data point batching thread while adding data points to the pending payloads,
+   * so that a replaced batching thread cannot add the same batch concurrently with its replacement.
+   */
+  private static final Object DATA_POINT_BATCHING_LOCK = new Object();
+
+  /** Bounded hand-off of data points read from the historical log to the batching thread. */
+  private static final TWDataPointBatchHandoff dataPointBatchHandoff =
+      new TWDataPointBatchHandoff(TWConnectorConsts.QUEUE_READ_HANDOFF_CAPACITY_BATCHES);
+
+  /**
+   * Time (in milliseconds since the epoch) at which the historical log is next read. This is only
+   * accessed by the historical reader thread while holding {@link #HISTORICAL_READ_LOCK}, after it
+   * has been initialized.
+   */
+  private static long nextQueuePollTimeMillis;
+
+  /** Stage which reads data from the historical log on each poll interval. */
+  private static TWSupervisedStage historicalReaderStage = null;
+
+  /**
+   * Replay of the data which was read from the historical log, but not delivered, before the
+   * connector last stopped, or null if there is no data to replay. This is only accessed by the
+   * historical reader thread while holding {@link #HISTORICAL_READ_LOCK}, after it has been
+   * initialized.
+   */
+  private static TWQueueCheckpointReplay queueCheckpointReplay = null;
+
+  /** Stage which adds data points read from the historical log to the pending payloads. */
+  private static TWSupervisedStage dataPointBatchingStage = null;
+
   /** Count of the number of times the application has polled the queue for data. */
   private static long connectorQueuePollCount = 0;
 
@@ -63,8 +126,23 @@ public class TWConnectorMain {
    */
   private static TagControl queueDiagnosticPollCountTag = null;
 
-  /** Boolean used to track if the queue data rate has been doubled. */
-  private static boolean queueDoubleDataRateEnabled = false;
+  /**
+   * Tag control object used for updating the value of the diagnostic tag for the state of the
+   * circuit breaker for sending payloads to Thingworx.
+   */
+  private static TagControl queueDiagnosticSendCircuitStateTag = null;
+
+  /**
+   * Tag control object used for updating the value of the tag for the current maximum number of
+   * data points per payload, when payload size auto-tuning is enabled.
+   */
+  private static TagControl payloadAutoTuneMaxDataPointsTag = null;
+
+  /**
+   * Controller which sizes the time span of each historical data queue poll, so that the queue
+   * catches up after it has fallen behind.
+   */
+  private static TWQueuePollSizeController queuePollSizeController = null;
 
   /**
    * Gets the connector configuration object.
@@ -76,12 +154,59 @@ public class TWConnectorMain {
   }
 
   /**
-   * Read data from the historical log queue and sends to payload manager. If memory is low, show a
-   * warning and skip reading data.
+   * Gets the connector runtime configuration snapshot. This should be used instead of {@link
+   * #getConnectorConfig()} on the data poll, payload batching and payload send paths.
+   *
+   * @return connector runtime configuration snapshot
+   */
+  public static TWConnectorRuntimeConfig getConnectorRuntimeConfig() {
+    return connectorRuntimeConfig;
+  }
+
+  /**
+   * Read data from the historical log queue and hands it off to the batching thread. If memory is
+   * low, show a warning and skip reading data. If backpressure from the pending payloads is active,
+   * or previously read data is still waiting to be batched, skip reading data and leave it buffered
+   * in the historical log.
    */
   private static void runGrabData() {
+    // Update send circuit breaker state diagnostic tag
+    if (queueDiagnosticSendCircuitStateTag != null) {
+      try {
+        queueDiagnosticSendCircuitStateTag.setTagValueAsLong(
+            TWApiManager.getSendCircuitBreakerState());
+      } catch (EWException e) {
+        Logger.LOG_CRITICAL("Unable to set send circuit state diagnostic tag value!");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+
+    // Update auto-tuned payload max data points tag
+    if (payloadAutoTuneMaxDataPointsTag != null) {
+      try {
+        payloadAutoTuneMaxDataPointsTag.setTagValueAsLong(TWApiManager.getPayloadMaxDataPoints());
+      } catch (EWException e) {
+        Logger.LOG_CRITICAL("Unable to set payload max data points tag value!");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+
+    // Check if pending payloads are being sent quickly enough to poll data queue
+    if (TWDataManager.isBackpressureActive()) {
+      Logger.LOG_DEBUG(
+          "Skipped reading from the historical log while waiting for pending payloads to be sent"
+              + " to Thingworx.");
+      checkSkippedReadFallBehind();
+    }
+    // Check if previously read data has been batched into payloads
+    else if (dataPointBatchHandoff.isFull()) {
+      Logger.LOG_DEBUG(
+          "Skipped reading from the historical log while waiting for previously read data points"
+              + " to be added to payloads.");
+      checkSkippedReadFallBehind();
+    }
     // Check if memory is within permissible range to poll data queue
-    if (availableMemoryBytes < TWConnectorConsts.QUEUE_DATA_POLL_MIN_MEMORY_BYTES) {
+    else if (availableMemoryBytes < TWConnectorConsts.QUEUE_DATA_POLL_MIN_MEMORY_BYTES) {
       // Show low memory warning
       Logger.LOG_WARN("Low memory on device, " + (availableMemoryBytes / 1000) + " MB left!");
 
@@ -93,12 +218,16 @@ public class TWConnectorMain {
         // Tell the JVM that it should garbage collect soon
         System.gc();
       }
+      checkSkippedReadFallBehind();
     } else {
       // There is enough memory to run, reset memory state variable.
       if (isMemoryCurrentlyLow) {
         isMemoryCurrentlyLow = false;
       }
 
+      // Reading has resumed, log again if later skipped reads fall behind
+      isSkippedReadFallBehindLogged = false;
+
       // Increment poll count, and reset to 0 if too large
       connectorQueuePollCount++;
       if (connectorQueuePollCount == Long.MAX_VALUE) {
@@ -176,12 +305,31 @@ public class TWConnectorMain {
                         + datapointsReadFromQueue.size()
                         + " data points from the historical log.");
 
-                // Send data to Thingworx
-                TWDataManager.addDataPointsToPending(datapointsReadFromQueue);
+                // Get end of time span read, to checkpoint once its data has been delivered
+                long spanEndTimeMillis = -1;
+                if (TWDataManager.getQueueCheckpoint() != null) {
+                  try {
+                    spanEndTimeMillis =
+                        System.currentTimeMillis()
+                            - HistoricalDataQueueManager.getQueueTimeBehindMillis();
+                  } catch (IOException e) {
+                    Logger.LOG_SERIOUS(
+                        "Unable to get the end time of the data read from the historical log for"
+                            + " the queue checkpoint.");
+                    Logger.LOG_EXCEPTION(e);
+                  }
+                }
+
+                // Hand off data to batching thread to send to Thingworx
+                long pendingPayloadsByteSizeBeforeRead = TWDataManager.getPendingPayloadsByteSize();
+                dataPointBatchHandoff.put(
+                    TWLiveModeManager.removeLiveDuplicates(datapointsReadFromQueue),
+                    spanEndTimeMillis);
 
                 // Check if queue is behind
                 try {
                   long queueBehindMillis = HistoricalDataQueueManager.getQueueTimeBehindMillis();
+                  long actualQueueBehindMillis = queueBehindMillis;
                   if (queueBehindMillis >= TWConnectorConsts.QUEUE_DATA_POLL_BEHIND_MILLIS_WARN) {
                     String timeBehindString =
                         SCTimeUtils.getDayHourMinSecsForMillis(queueBehindMillis);
@@ -195,32 +343,25 @@ public class TWConnectorMain {
                   // Update available memory variable
                   availableMemoryBytes = Runtime.getRuntime().freeMemory();
 
-                  // Enable queue double data rate if running behind and memory is available
-                  if (!queueDoubleDataRateEnabled
-                      && queueBehindMillis > 0
-                      && availableMemoryBytes
-                          > TWConnectorConsts.QUEUE_DATA_POLL_MIN_MEMORY_BYTES) {
-                    long doubleQueueDataPollSizeMins =
-                        connectorConfig.getQueueDataPollSizeMinutes() * 2;
-                    HistoricalDataQueueManager.setQueueFifoTimeSpanMins(
-                        doubleQueueDataPollSizeMins);
-                    Logger.LOG_SERIOUS(
-                        "The size of data polled on each interval has been doubled to "
-                            + doubleQueueDataPollSizeMins
-                            + " minutes while the queue is running behind!");
-                    queueDoubleDataRateEnabled = true;
-                  }
-                  // Disable queue double data rate if no longer running behind
-                  else if (queueDoubleDataRateEnabled && queueBehindMillis == 0) {
-                    long queueDataPollSizeMins = connectorConfig.getQueueDataPollSizeMinutes();
-                    HistoricalDataQueueManager.setQueueFifoTimeSpanMins(queueDataPollSizeMins);
-                    Logger.LOG_SERIOUS(
-                        "The size of data polled on each interval has been restored to "
-                            + queueDataPollSizeMins
-                            + " minutes.");
-                    queueDoubleDataRateEnabled = false;
+                  // Resize data polled on each interval to catch up if running behind
+                  long previousQueuePollSizeMins = queuePollSizeController.getPollSizeMins();
+                  long queuePollSizeMins =
+                      queuePollSizeController.update(
+                          actualQueueBehindMillis,
+                          availableMemoryBytes,
+                          pendingPayloadsByteSizeBeforeRead,
+                          datapointsReadFromQueue.size(),
+                          TWDataManager.getAcknowledgedDataPointCount(),
+                          TWDataManager.getAcknowledgedByteSize(),
+                          System.currentTimeMillis());
+                  if (queuePollSizeMins != previousQueuePollSizeMins) {
+                    HistoricalDataQueueManager.setQueueFifoTimeSpanMins(queuePollSizeMins);
                   }
 
+                  // Send live mode tag changes as they occur only if queue is not behind
+                  TWLiveModeManager.updateQueueState(
+                      actualQueueBehindMillis, queuePollSizeController.isCatchingUp());
+
                   // Update queue debug tag
                   if (queueDiagnosticRunningBehindSecondsTag != null) {
                     queueDiagnosticRunningBehindSecondsTag.setTagValueAsLong(
@@ -241,6 +382,10 @@ public class TWConnectorMain {
                   Logger.LOG_SERIOUS(
                       "Unable to detect if historical data queue is running behind.");
                   Logger.LOG_EXCEPTION(e);
+
+                  // Pause live mode while it is unknown if the queue is behind
+                  TWLiveModeManager.updateQueueState(
+                      Long.MAX_VALUE, queuePollSizeController.isCatchingUp());
                 }
 
               } catch (Exception e) {
@@ -283,6 +428,7 @@ public class TWConnectorMain {
       } else if (queuePollRetryTaskResult == null) {
         Logger.LOG_CRITICAL(
             "Reading data from the historical log failed to run for an unknown reason!");
+        updateLiveModeQueueState();
       }
       if (doQueueAdvanceTracker) {
         Logger.LOG_CRITICAL(
@@ -296,8 +442,258 @@ public class TWConnectorMain {
           Logger.LOG_CRITICAL("An error occurred while attempting to advance the historical log.");
           Logger.LOG_EXCEPTION(e);
         }
+        updateLiveModeQueueState();
+      }
+    }
+  }
+
+  /**
+   * Updates whether live mode is active from the time that the historical data queue is behind,
+   * after a read from the historical log was skipped or failed. Live mode is paused if the time
+   * that the historical data queue is behind cannot be determined.
+   *
+   * @return time (in milliseconds) that the historical data queue is behind, or -1 if unknown
+   * @since 3.4.0
+   */
+  private static long updateLiveModeQueueState() {
+    long queueBehindMillis = -1;
+    if (HistoricalDataQueueManager.doesTimeTrackerExist()) {
+      try {
+        queueBehindMillis = HistoricalDataQueueManager.getQueueTimeBehindMillis();
+      } catch (IOException e) {
+        Logger.LOG_SERIOUS("Unable to detect if historical data queue is running behind.");
+        Logger.LOG_EXCEPTION(e);
       }
     }
+
+    // Pause live mode while it is unknown if the queue is behind
+    long liveModeQueueBehindMillis = queueBehindMillis;
+    if (liveModeQueueBehindMillis == -1) {
+      liveModeQueueBehindMillis = Long.MAX_VALUE;
+    }
+    TWLiveModeManager.updateQueueState(
+        liveModeQueueBehindMillis, queuePollSizeController.isCatchingUp());
+    return queueBehindMillis;
+  }
+
+  /**
+   * Checks if skipping a read from the historical log has left the historical data queue further
+   * behind than the configured maximum fall behind time. If so, the historical log will skip ahead
+   * when reading resumes and the data older than the maximum fall behind time is not sent to
+   * Thingworx, so this is logged once until reading resumes. Live mode is also paused if the
+   * historical data queue has fallen behind while reading is skipped.
+   *
+   * @since 3.4.0
+   */
+  private static void checkSkippedReadFallBehind() {
+    long queueBehindMillis = updateLiveModeQueueState();
+    if (!isSkippedReadFallBehindLogged && queueBehindMillis > queueMaxFallBehindMillis) {
+      isSkippedReadFallBehindLogged = true;
+      Logger.LOG_CRITICAL(
+          "Reading from the historical log has been paused while the historical data queue"
+              + " fell behind by "
+              + SCTimeUtils.getDayHourMinSecsForMillis(queueBehindMillis)
+              + ", which is more than the maximum of "
+              + SCTimeUtils.getDayHourMinSecsForMillis(queueMaxFallBehindMillis)
+              + ". The historical log will skip ahead when reading resumes - data loss may"
+              + " result!");
+    }
+  }
+
+  /**
+   * Starts the historical reader and batching threads. The historical reader thread reads data from
+   * the historical log at a fixed rate of one poll per poll interval, and hands it off to the
+   * batching thread, which adds it to the pending payloads. If a read overruns the poll interval,
+   * the next read starts immediately, and missed polls are skipped. If the pending payloads are
+   * full, the batching thread keeps the data points it could not add and waits for pending
+   * payloads to be sent, and the historical reader thread stops reading once the hand-off is full.
+   *
+   * @since 3.4.0
+   */
+  private static void startHistoricalReaderStages() {
+    final long queueDataPollIntervalMillis =
+        connectorRuntimeConfig.getQueueDataPollIntervalMillis();
+    nextQueuePollTimeMillis = System.currentTimeMillis();
+
+    historicalReaderStage =
+        new TWSupervisedStage(
+            "historical reader",
+            queueDataPollIntervalMillis + TWConnectorConsts.STAGE_STALL_TIMEOUT_MILLIS) {
+          protected void runCycle() throws Exception {
+            // Wait for next poll time
+            long sleepMillis;
+            synchronized (HISTORICAL_READ_LOCK) {
+              sleepMillis = nextQueuePollTimeMillis - System.currentTimeMillis();
+            }
+            if (sleepMillis > 0) {
+              Thread.sleep(sleepMillis);
+            }
+
+            synchronized (HISTORICAL_READ_LOCK) {
+              if (isCurrentThread()) {
+                heartbeat();
+                if (queueCheckpointReplay != null) {
+                  runQueueCheckpointReplay();
+                } else {
+                  runGrabData();
+                }
+
+                // Schedule next poll, skipping missed polls if the read overran the poll interval
+                nextQueuePollTimeMillis += queueDataPollIntervalMillis;
+                long currentTimeMillis = System.currentTimeMillis();
+                if (nextQueuePollTimeMillis < currentTimeMillis) {
+                  nextQueuePollTimeMillis = currentTimeMillis;
+                }
+              }
+            }
+          }
+        };
+
+    dataPointBatchingStage =
+        new TWSupervisedStage("data point batching", TWConnectorConsts.STAGE_STALL_TIMEOUT_MILLIS) {
+          protected void runCycle() throws Exception {
+            TWDataPointBatchHandoff.Batch batch =
+                dataPointBatchHandoff.peek(TWConnectorConsts.DATA_POINT_BATCHING_WAIT_MILLIS);
+            boolean batchPending = false;
+            if (batch != null) {
+              synchronized (DATA_POINT_BATCHING_LOCK) {
+                if (isCurrentThread()) {
+                  heartbeat();
+
+                  // Add data points of batch which have not been added yet, in order, skipping
+                  // data points which are not valid
+                  int addedDataPointCount =
+                      batch.getAddedDataPointCount()
+                          + TWDataManager.addDataPointsToPending(
+                              batch.getDataPoints(), batch.getAddedDataPointCount());
+                  batch.setAddedDataPointCount(addedDataPointCount);
+
+                  // Remove batch once all added
+                  if (addedDataPointCount == batch.getDataPoints().size()) {
+                    dataPointBatchHandoff.remove(batch);
+                    TWDataManager.addQueueCheckpointSpan(batch.getSpanEndTimeMillis());
+                  } else {
+                    batchPending = true;
+                  }
+                }
+              }
+            }
+
+            // Wait for pending payloads to be sent if batch could not be added, without the lock
+            if (batchPending) {
+              TWDataManager.awaitPendingPayloadRemoved(
+                  TWConnectorConsts.DATA_POINT_BATCHING_WAIT_MILLIS);
+            }
+          }
+        };
+
+    dataPointBatchingStage.start();
+    historicalReaderStage.start();
+  }
+
+  /**
+   * Compares the historical data queue checkpoint from the previous run with the historical data
+   * queue time tracker. If the time tracker is ahead of the checkpoint, data between the two was
+   * read from the historical log but not delivered to Thingworx before the previous run stopped,
+   * and a replay of this time span is created. The historical reader replays the time span before
+   * it resumes reading the historical data queue.
+   *
+   * @since 3.4.0
+   */
+  private static void checkQueueCheckpoint() {
+    TWQueueCheckpoint queueCheckpoint = TWDataManager.getQueueCheckpoint();
+    if (queueCheckpoint != null && queueCheckpoint.getCommittedTimeMillis() >= 0) {
+      try {
+        if (HistoricalDataQueueManager.doesTimeTrackerExist()) {
+          long committedTimeMillis = queueCheckpoint.getCommittedTimeMillis();
+          long queueTrackerTimeMillis =
+              System.currentTimeMillis() - HistoricalDataQueueManager.getQueueTimeBehindMillis();
+          if (queueTrackerTimeMillis > committedTimeMillis) {
+            queueCheckpointReplay =
+                new TWQueueCheckpointReplay(
+                    committedTimeMillis,
+                    queueTrackerTimeMillis,
+                    SCTimeUnit.MINUTES.toMillis(
+                        connectorRuntimeConfig.getQueueCatchUpMaxPollSizeMins()),
+                    connectorConfig.getQueueDataStringEnabled());
+            Logger.LOG_WARN(
+                "Data from the historical log between "
+                    + formatQueueCheckpointTime(committedTimeMillis)
+                    + " and "
+                    + formatQueueCheckpointTime(queueTrackerTimeMillis)
+                    + " was read, but was not delivered to Thingworx before the connector last"
+                    + " stopped. This data will be read from the historical log again before new"
+                    + " data.");
+          } else {
+            Logger.LOG_INFO(
+                "All data read from the historical log before the connector last stopped was"
+                    + " delivered to Thingworx.");
+          }
+        }
+      } catch (Exception e) {
+        Logger.LOG_SERIOUS(
+            "Unable to compare the historical data queue checkpoint with the queue time tracker.");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+  }
+
+  /**
+   * Reads the next window of the queue checkpoint replay from the historical log and hands it off
+   * to the batching thread, with the end time of the window so that the queue checkpoint advances
+   * once its data has been delivered. As for reads of the historical data queue, the window is not
+   * read while backpressure from the pending payloads is active, previously read data is waiting
+   * to be batched, or memory is low. If a window cannot be read, the remaining time span is not
+   * replayed, and reading of the historical data queue resumes.
+   *
+   * @since 3.4.0
+   */
+  private static void runQueueCheckpointReplay() {
+    if (TWDataManager.isBackpressureActive()
+        || dataPointBatchHandoff.isFull()
+        || availableMemoryBytes < TWConnectorConsts.QUEUE_DATA_POLL_MIN_MEMORY_BYTES) {
+      Logger.LOG_DEBUG(
+          "Skipped reading undelivered data from the historical log while waiting for pending"
+              + " payloads to be sent to Thingworx, or for memory to be available.");
+    } else {
+      try {
+        List dataPoints = queueCheckpointReplay.readNextWindow();
+        dataPointBatchHandoff.put(dataPoints, queueCheckpointReplay.getNextStartTimeMillis());
+        Logger.LOG_DEBUG(
+            "Read "
+                + dataPoints.size()
+                + " undelivered data points from the historical log up to "
+                + formatQueueCheckpointTime(queueCheckpointReplay.getNextStartTimeMillis())
+                + ".");
+
+        if (queueCheckpointReplay.isFinished()) {
+          Logger.LOG_INFO(
+              "Finished reading undelivered data from the historical log. Reading new data from"
+                  + " the historical data queue.");
+          queueCheckpointReplay = null;
+        }
+      } catch (Exception e) {
+        Logger.LOG_CRITICAL(
+            "Unable to read undelivered data from the historical log between "
+                + formatQueueCheckpointTime(queueCheckpointReplay.getNextStartTimeMillis())
+                + " and "
+                + formatQueueCheckpointTime(queueCheckpointReplay.getEndTimeMillis())
+                + ". This data will not be sent - data loss may result!");
+        Logger.LOG_EXCEPTION(e);
+        queueCheckpointReplay = null;
+      }
+    }
+  }
+
+  /**
+   * Formats the specified time of the queue checkpoint for logging.
+   *
+   * @param timeMillis time (in milliseconds since the epoch)
+   * @return ISO 8601 time in UTC
+   * @since 3.4.0
+   */
+  private static String formatQueueCheckpointTime(long timeMillis) {
+    return SCTimeUtils.getIso8601UtcTimeFormat().format(new Date(timeMillis));
   }
 
   /** Detects the provisioning mode and reads the configuration appropriately from file. */
@@ -326,6 +722,13 @@ public class TWConnectorMain {
     }
   }
 
+  /**
+   * Builds the connector runtime configuration snapshot from the loaded connector configuration.
+   */
+  private static void loadRuntimeConfiguration() {
+    connectorRuntimeConfig = new TWConnectorRuntimeConfig(connectorConfig);
+  }
+
   /** Configures the logger to the logging level specified in the configuration. */
   private static void configLogger() {
     // Configure logger to desired log level
@@ -347,9 +750,9 @@ public class TWConnectorMain {
    * Configures the maximum duration in the historical buffer that the connector will try to sync.
    */
   private static void configHistoricalDataQueueMaxFallBehind() {
+    long queueMaxFallBehindMins;
     try {
-      HistoricalDataQueueManager.setQueueMaxBehindMins(
-          connectorConfig.getConnectorHistoBuffFallBehindMins());
+      queueMaxFallBehindMins = connectorConfig.getConnectorHistoBuffFallBehindMins();
     } catch (JSONException e) {
       Logger.LOG_SERIOUS(
           "Unable to read max historical buffer fall back mins from connector configuration. Using"
@@ -358,9 +761,11 @@ public class TWConnectorMain {
               + ") minutes.");
       Logger.LOG_EXCEPTION(e);
 
-      HistoricalDataQueueManager.setQueueMaxBehindMins(
-          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_MAX_HIST_BUF_FALL_BEHIND_MINS);
+      queueMaxFallBehindMins =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_MAX_HIST_BUF_FALL_BEHIND_MINS;
     }
+    HistoricalDataQueueManager.setQueueMaxBehindMins(queueMaxFallBehindMins);
+    queueMaxFallBehindMillis = SCTimeUnit.MINUTES.toMillis(queueMaxFallBehindMins);
   }
 
   /**
@@ -461,6 +866,77 @@ public class TWConnectorMain {
           Logger.LOG_EXCEPTION(e2);
         }
       }
+
+      // Configure send circuit state tag
+      try {
+        queueDiagnosticSendCircuitStateTag =
+            new TagControl(TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_NAME);
+      } catch (Exception e1) {
+        Logger.LOG_INFO(
+            "Unable to create tag object to update diagnostic tag for the send circuit state!"
+                + " Attempting to create `"
+                + TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_NAME
+                + "` tag.");
+        Logger.LOG_EXCEPTION(e1);
+        try {
+          SCTagUtils.createTag(
+              TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_NAME,
+              TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_DESC,
+              TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_IO_SERVER,
+              TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_TYPE);
+          queueDiagnosticSendCircuitStateTag =
+              new TagControl(TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_NAME);
+        } catch (Exception e2) {
+          Logger.LOG_WARN(
+              "Unable to create tag `"
+                  + TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_NAME
+                  + "`! To see the send circuit state, please create a tag with"
+                  + " the name `"
+                  + TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_SEND_CIRCUIT_STATE_NAME
+                  + "`.");
+          Logger.LOG_EXCEPTION(e2);
+        }
+      }
+    }
+  }
+
+  /**
+   * Configures the tag for the current maximum number of data points per payload if the {@link
+   * TWConnectorRuntimeConfig#isPayloadAutoTuneEnabled()} setting is enabled.
+   *
+   * @since 3.4.0
+   */
+  private static void configurePayloadAutoTuneTag() {
+    if (connectorRuntimeConfig.isPayloadAutoTuneEnabled()) {
+      try {
+        payloadAutoTuneMaxDataPointsTag =
+            new TagControl(TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_NAME);
+      } catch (Exception e1) {
+        Logger.LOG_INFO(
+            "Unable to create tag object to update the payload max data points tag! Attempting to"
+                + " create `"
+                + TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_NAME
+                + "` tag.");
+        Logger.LOG_EXCEPTION(e1);
+        try {
+          SCTagUtils.createTag(
+              TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_NAME,
+              TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_DESC,
+              TWConnectorConsts.QUEUE_DIAGNOSTIC_TAG_IO_SERVER,
+              TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_TYPE);
+          payloadAutoTuneMaxDataPointsTag =
+              new TagControl(TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_NAME);
+        } catch (Exception e2) {
+          Logger.LOG_WARN(
+              "Unable to create tag `"
+                  + TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_NAME
+                  + "`! To see the auto-tuned payload max data points, please create a tag with"
+                  + " the name `"
+                  + TWConnectorConsts.PAYLOAD_AUTO_TUNE_TAG_MAX_DATA_POINTS_NAME
+                  + "`.");
+          Logger.LOG_EXCEPTION(e2);
+        }
+      }
     }
   }
 
@@ -493,6 +969,9 @@ public class TWConnectorMain {
     // Configure logger to desired log level
     configLogger();
 
+    // Build runtime configuration snapshot
+    loadRuntimeConfiguration();
+
     // Configure Ewon HTTP timeouts
     setHttpTimeouts();
 
@@ -536,13 +1015,13 @@ public class TWConnectorMain {
     }
 
     // Set historical log poll size
-    try {
-      HistoricalDataQueueManager.setQueueFifoTimeSpanMins(
-          connectorConfig.getQueueDataPollSizeMinutes());
-    } catch (JSONException e) {
-      Logger.LOG_CRITICAL("Unable to get the queue poll size from the configuration file!");
-      Logger.LOG_EXCEPTION(e);
-    }
+    queuePollSizeController =
+        new TWQueuePollSizeController(
+            connectorRuntimeConfig.getQueueDataPollSizeMins(),
+            connectorRuntimeConfig.getQueueCatchUpMaxPollSizeMins(),
+            connectorRuntimeConfig.getQueueDataPollIntervalMillis());
+    HistoricalDataQueueManager.setQueueFifoTimeSpanMins(
+        queuePollSizeController.getPollSizeMins());
 
     // Set string history enabled status
     try {
@@ -561,12 +1040,25 @@ public class TWConnectorMain {
     // Configure queue diagnostic tags (if enabled)
     configureQueueDiagnosticTags();
 
+    // Configure auto-tuned payload max data points tag (if enabled)
+    configurePayloadAutoTuneTag();
+
+    // Open payload outbox (if enabled)
+    TWDataManager.openPayloadOutbox();
+
+    // Open historical data queue checkpoint (if enabled)
+    TWDataManager.openQueueCheckpoint();
+    checkQueueCheckpoint();
+
     // Start data send thread
     TWApiManager.startDataSendThread();
 
     // Set up tag update request trigger tag
     TWTagUpdateManager.setupTagUpdateTriggerTag();
 
+    // Set up live mode tag listeners (if enabled)
+    TWLiveModeManager.setupLiveModeTags();
+
     // Create tag control object for monitoring application control tag
     TagControl connectorControlTag = null;
     try {
@@ -595,32 +1087,20 @@ public class TWConnectorMain {
       }
     }
 
+    // Start historical reader and batching threads
+    startHistoricalReaderStages();
+
     // Run the application until stopped via application control tag
     boolean isRunning = true;
-    long lastUpdateTimestampMillis = 0;
-    long currentTimestampMillis;
     while (isRunning) {
-      // Store current timestamp
-      currentTimestampMillis = System.currentTimeMillis();
-
       // Update available memory variable
       availableMemoryBytes = Runtime.getRuntime().freeMemory();
 
-      // Refresh data if within time window
-      try {
-        if ((currentTimestampMillis - lastUpdateTimestampMillis)
-            >= connectorConfig.getQueueDataPollIntervalMillis()) {
-          runGrabData();
-
-          // Update last update time stamp
-          lastUpdateTimestampMillis = currentTimestampMillis;
-        }
-      } catch (JSONException e) {
-        Logger.LOG_WARN(
-            "An error occured retrieving the queue data poll interval from the configuration"
-                + " file.");
-        Logger.LOG_EXCEPTION(e);
-      }
+      // Restart historical reader, batching, tag update and live mode threads if stopped or stalled
+      historicalReaderStage.supervise();
+      dataPointBatchingStage.supervise();
+      TWTagUpdateManager.superviseTagUpdateThread();
+      TWLiveModeManager.superviseLiveModeThread();
 
       // Sleep for main loop cycle time
       try {
@@ -638,8 +1118,13 @@ public class TWConnectorMain {
       }
     }
 
-    // Cleanup data send thread
+    // Cleanup historical reader, batching, tag update, live mode and data send threads
+    historicalReaderStage.stop();
+    dataPointBatchingStage.stop();
+    TWTagUpdateManager.stopTagUpdateThread();
+    TWLiveModeManager.stopLiveModeThread();
     TWApiManager.setDataThreadStopFlag();
+    TWDataManager.closeQueueCheckpoint();
 
     // Disable automatic application restart
     SCAppManagement.disableAppAutoRestart();
@@ -0,0 +1,158 @@
+package com.hms_networks.americas.sc.thingworx;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+
+/**
+ * Stage of the connector pipeline which runs on its own thread, and is supervised by the main
+ * loop.
+ *
+ * <p>The stage thread repeatedly runs {@link #runCycle()}, and records a heartbeat before each
+ * cycle. The main loop calls {@link #supervise()} on each cycle, which restarts the stage on a new
+ * thread if its thread has died, or if no heartbeat has been recorded within the stall timeout. A
+ * replaced thread is interrupted, and exits once its current cycle completes, as only the current
+ * thread of the stage continues to run cycles. A stalled stage is not replaced again until its
+ * previously replaced thread has exited, so that threads which remain blocked do not accumulate.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public abstract class TWSupervisedStage {
+
+  /** Name of the stage, used for the thread name and log messages. */
+  private final String name;
+
+  /** Time (in milliseconds) without a heartbeat after which the stage is considered stalled. */
+  private final long stallTimeoutMillis;
+
+  /** Current thread of the stage, or null if the stage has not been started. */
+  private Thread thread = null;
+
+  /** Last thread of the stage which was replaced because it stalled, or null if none. */
+  private Thread stalledThread = null;
+
+  /**
+   * Boolean indicating if it has been logged that the stage cannot be replaced until its previously
+   * replaced thread exits.
+   */
+  private boolean stalledReplacementDeferredLogged = false;
+
+  /** Boolean indicating if the stage has been stopped. */
+  private boolean stopped = false;
+
+  /** Time (in milliseconds since the epoch) of the last heartbeat of the stage. */
+  private volatile long heartbeatTimeMillis = 0;
+
+  /**
+   * Creates a new supervised stage.
+   *
+   * @param name name of the stage
+   * @param stallTimeoutMillis time (in milliseconds) without a heartbeat after which the stage is
+   *     considered stalled and is restarted
+   */
+  protected TWSupervisedStage(String name, long stallTimeoutMillis) {
+    this.name = name;
+    this.stallTimeoutMillis = stallTimeoutMillis;
+  }
+
+  /**
+   * Runs a single cycle of the stage. Cycles are run repeatedly until the stage is stopped or
+   * replaced. An exception thrown by a cycle is logged, and the next cycle is run.
+   *
+   * @throws Exception if an error occurs during the cycle
+   */
+  protected abstract void runCycle() throws Exception;
+
+  /** Starts the stage on a new thread. */
+  public synchronized void start() {
+    stopped = false;
+    heartbeatTimeMillis = System.currentTimeMillis();
+    thread =
+        new Thread(name) {
+          public void run() {
+            runStage();
+          }
+        };
+    thread.start();
+  }
+
+  /** Stops the stage. The stage thread exits once its current cycle completes. */
+  public synchronized void stop() {
+    stopped = true;
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  /**
+   * Checks that the stage is running, and restarts it on a new thread if its thread has died or
+   * has stalled. A stalled thread is only replaced if the previously replaced thread has exited,
+   * otherwise the stalled thread is left to continue.
+   */
+  public synchronized void supervise() {
+    if (!stopped && thread != null) {
+      long heartbeatAgeMillis = System.currentTimeMillis() - heartbeatTimeMillis;
+      if (!thread.isAlive()) {
+        Logger.LOG_CRITICAL("The " + name + " thread has stopped unexpectedly! Restarting it.");
+        start();
+      } else if (heartbeatAgeMillis > stallTimeoutMillis) {
+        if (stalledThread != null && stalledThread.isAlive()) {
+          // Previously replaced thread is still blocked, do not replace again
+          if (!stalledReplacementDeferredLogged) {
+            Logger.LOG_CRITICAL(
+                "The "
+                    + name
+                    + " thread has not responded for "
+                    + heartbeatAgeMillis
+                    + " ms, but cannot be restarted until its previously restarted thread exits!");
+            stalledReplacementDeferredLogged = true;
+          }
+        } else {
+          Logger.LOG_CRITICAL(
+              "The "
+                  + name
+                  + " thread has not responded for "
+                  + heartbeatAgeMillis
+                  + " ms! Restarting it.");
+          thread.interrupt();
+          stalledThread = thread;
+          stalledReplacementDeferredLogged = false;
+          start();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a boolean indicating if the calling thread is the current thread of the stage, and the
+   * stage has not been stopped. Stages which must not run concurrently with a replaced thread
+   * should check this while holding a lock around their work.
+   *
+   * @return true if the calling thread is the current, running stage thread
+   */
+  protected synchronized boolean isCurrentThread() {
+    return !stopped && thread == Thread.currentThread();
+  }
+
+  /** Records a heartbeat of the stage. */
+  protected void heartbeat() {
+    heartbeatTimeMillis = System.currentTimeMillis();
+  }
+
+  /** Runs cycles of the stage until the stage is stopped or replaced. */
+  private void runStage() {
+    while (isCurrentThread()) {
+      heartbeat();
+      try {
+        runCycle();
+      } catch (InterruptedException e) {
+        if (isCurrentThread()) {
+          Logger.LOG_WARN("The " + name + " thread was interrupted unexpectedly.");
+          Logger.LOG_EXCEPTION(e);
+        }
+      } catch (Exception e) {
+        Logger.LOG_WARN("An error occurred in the " + name + " thread!");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+  }
+}
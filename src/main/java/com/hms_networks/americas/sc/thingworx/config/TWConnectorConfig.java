@@ -1,6 +1,7 @@
 package com.hms_networks.americas.sc.thingworx.config;
 
 import com.hms_networks.americas.sc.extensions.config.ConfigFile;
+import com.hms_networks.americas.sc.extensions.json.JSONArray;
 import com.hms_networks.americas.sc.extensions.json.JSONException;
 import com.hms_networks.americas.sc.extensions.json.JSONObject;
 import com.hms_networks.americas.sc.extensions.logging.Logger;
@@ -125,6 +126,28 @@ public class TWConnectorConfig extends ConfigFile {
     return queueDataStringEnabled;
   }
 
+  /**
+   * Get the maximum queue data poll size in minutes while the data queue is catching up from the
+   * configuration.
+   *
+   * @return maximum queue data poll size in minutes while catching up
+   * @throws JSONException if unable to parse the field from the configuration file
+   */
+  public long getQueueCatchUpMaxPollSizeMins() throws JSONException {
+    long queueCatchUpMaxPollSizeMins;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS_KEY)) {
+      queueCatchUpMaxPollSizeMins =
+          configurationObject.getLong(
+              TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS_KEY);
+    } else {
+      queueCatchUpMaxPollSizeMins =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS;
+    }
+
+    return queueCatchUpMaxPollSizeMins;
+  }
+
   /**
    * Get the queue data poll interval in milliseconds from the configuration.
    *
@@ -195,6 +218,71 @@ public class TWConnectorConfig extends ConfigFile {
     return payloadMaxDataPoints;
   }
 
+  /**
+   * Get the total size (in bytes) of pending payloads at which reading from the historical data
+   * queue is paused from the configuration.
+   *
+   * @return backpressure high watermark (in bytes), or 0 if disabled
+   * @throws JSONException if unable to parse backpressure high watermark field from the
+   *     configuration file
+   */
+  public long getQueueBackpressureHighWatermarkBytes() throws JSONException {
+    long queueBackpressureHighWatermarkBytes;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES_KEY)) {
+      queueBackpressureHighWatermarkBytes =
+          configurationObject.getLong(
+              TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES_KEY);
+    } else {
+      queueBackpressureHighWatermarkBytes =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES;
+    }
+
+    return queueBackpressureHighWatermarkBytes;
+  }
+
+  /**
+   * Get the total size (in bytes) of pending payloads at or below which reading from the
+   * historical data queue is resumed from the configuration.
+   *
+   * @return backpressure low watermark (in bytes)
+   * @throws JSONException if unable to parse backpressure low watermark field from the
+   *     configuration file
+   */
+  public long getQueueBackpressureLowWatermarkBytes() throws JSONException {
+    long queueBackpressureLowWatermarkBytes;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES_KEY)) {
+      queueBackpressureLowWatermarkBytes =
+          configurationObject.getLong(
+              TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES_KEY);
+    } else {
+      queueBackpressureLowWatermarkBytes =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES;
+    }
+
+    return queueBackpressureLowWatermarkBytes;
+  }
+
+  /**
+   * Get the maximum serialized size (in bytes) of a payload from the configuration.
+   *
+   * @return maximum payload size (in bytes), or 0 if no maximum
+   * @throws JSONException if unable to parse maximum payload size field from the configuration
+   *     file
+   */
+  public int getPayloadMaxBytes() throws JSONException {
+    int payloadMaxBytes;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_BYTES_KEY)) {
+      payloadMaxBytes =
+          configurationObject.getInt(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_BYTES_KEY);
+    } else {
+      payloadMaxBytes = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_BYTES;
+    }
+
+    return payloadMaxBytes;
+  }
+
   /**
    * Get the interval at which completed data payloads are sent to Thingworx (in milliseconds).
    *
@@ -204,7 +292,8 @@ public class TWConnectorConfig extends ConfigFile {
    */
   public long getDataPayloadSendIntervalMillis() throws JSONException {
     long dataPayloadSendIntervalMillis;
-    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_DATA_POINTS_KEY)) {
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_INTERVAL_MILLIS_KEY)) {
       dataPayloadSendIntervalMillis =
           configurationObject.getLong(
               TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_INTERVAL_MILLIS_KEY);
@@ -221,6 +310,499 @@ public class TWConnectorConfig extends ConfigFile {
     return dataPayloadSendIntervalMillis;
   }
 
+  /**
+   * Get the number of data send worker threads, which is the maximum number of payloads in flight
+   * to Thingworx at once, from the configuration.
+   *
+   * @return number of data send worker threads
+   * @throws JSONException if unable to parse data send worker count field from the configuration
+   *     file
+   */
+  public int getPayloadSendWorkerCount() throws JSONException {
+    int payloadSendWorkerCount;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_WORKER_COUNT_KEY)) {
+      payloadSendWorkerCount =
+          configurationObject.getInt(
+              TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_WORKER_COUNT_KEY);
+    } else {
+      payloadSendWorkerCount =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_WORKER_COUNT;
+    }
+
+    return payloadSendWorkerCount;
+  }
+
+  /**
+   * Get the columnar payload format enabled setting from the configuration.
+   *
+   * @return columnar payload format enabled setting
+   */
+  public boolean getPayloadColumnarFormatEnabled() {
+    boolean payloadColumnarFormatEnabled;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_COLUMNAR_FORMAT_KEY)) {
+      try {
+        payloadColumnarFormatEnabled =
+            configurationObject.getBoolean(
+                TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_COLUMNAR_FORMAT_KEY);
+      } catch (JSONException e) {
+        payloadColumnarFormatEnabled =
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_COLUMNAR_FORMAT;
+        Logger.LOG_WARN(
+            "The columnar payload format enabled setting could not be read from the configuration"
+                + " file. Using default value of "
+                + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_COLUMNAR_FORMAT
+                + ".");
+        Logger.LOG_EXCEPTION(e);
+      }
+    } else {
+      payloadColumnarFormatEnabled =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_COLUMNAR_FORMAT;
+    }
+
+    return payloadColumnarFormatEnabled;
+  }
+
+  /**
+   * Get the payload outbox enabled setting from the configuration.
+   *
+   * @return payload outbox enabled setting
+   */
+  public boolean getPayloadOutboxEnabled() {
+    boolean payloadOutboxEnabled;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_ENABLED_KEY)) {
+      try {
+        payloadOutboxEnabled =
+            configurationObject.getBoolean(
+                TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_ENABLED_KEY);
+      } catch (JSONException e) {
+        payloadOutboxEnabled = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_ENABLED;
+        Logger.LOG_WARN(
+            "The payload outbox enabled setting could not be read from the configuration file."
+                + " Using default value of "
+                + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_ENABLED
+                + ".");
+        Logger.LOG_EXCEPTION(e);
+      }
+    } else {
+      payloadOutboxEnabled = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_ENABLED;
+    }
+
+    return payloadOutboxEnabled;
+  }
+
+  /**
+   * Get the historical data queue checkpoint enabled setting from the configuration.
+   *
+   * @return historical data queue checkpoint enabled setting
+   */
+  public boolean getQueueCheckpointEnabled() {
+    boolean queueCheckpointEnabled;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_CHECKPOINT_ENABLED_KEY)) {
+      try {
+        queueCheckpointEnabled =
+            configurationObject.getBoolean(
+                TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_CHECKPOINT_ENABLED_KEY);
+      } catch (JSONException e) {
+        queueCheckpointEnabled =
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_CHECKPOINT_ENABLED;
+        Logger.LOG_WARN(
+            "The queue checkpoint enabled setting could not be read from the configuration file."
+                + " Using default value of "
+                + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_CHECKPOINT_ENABLED
+                + ".");
+        Logger.LOG_EXCEPTION(e);
+      }
+    } else {
+      queueCheckpointEnabled = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_CHECKPOINT_ENABLED;
+    }
+
+    return queueCheckpointEnabled;
+  }
+
+  /**
+   * Get the maximum size (in bytes) of the payload outbox from the configuration.
+   *
+   * @return maximum payload outbox size (in bytes)
+   * @throws JSONException if unable to parse maximum payload outbox size field from the
+   *     configuration file
+   */
+  public long getPayloadOutboxMaxBytes() throws JSONException {
+    long payloadOutboxMaxBytes;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_MAX_BYTES_KEY)) {
+      payloadOutboxMaxBytes =
+          configurationObject.getLong(
+              TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_MAX_BYTES_KEY);
+    } else {
+      payloadOutboxMaxBytes = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_MAX_BYTES;
+    }
+
+    return payloadOutboxMaxBytes;
+  }
+
+  /**
+   * Get the number of pending payloads above which payloads are moved to the payload outbox from
+   * the configuration.
+   *
+   * @return payload outbox spill threshold
+   * @throws JSONException if unable to parse payload outbox spill threshold field from the
+   *     configuration file
+   */
+  public int getPayloadOutboxSpillThreshold() throws JSONException {
+    int payloadOutboxSpillThreshold;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_SPILL_THRESHOLD_KEY)) {
+      payloadOutboxSpillThreshold =
+          configurationObject.getInt(
+              TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_SPILL_THRESHOLD_KEY);
+    } else {
+      payloadOutboxSpillThreshold =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_SPILL_THRESHOLD;
+    }
+
+    return payloadOutboxSpillThreshold;
+  }
+
+  /**
+   * Get the gzip payload compression enabled setting from the configuration.
+   *
+   * @return gzip payload compression enabled setting
+   */
+  public boolean getPayloadGzipCompressionEnabled() {
+    boolean payloadGzipCompressionEnabled;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_GZIP_COMPRESSION_KEY)) {
+      try {
+        payloadGzipCompressionEnabled =
+            configurationObject.getBoolean(
+                TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_GZIP_COMPRESSION_KEY);
+      } catch (JSONException e) {
+        payloadGzipCompressionEnabled =
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_GZIP_COMPRESSION;
+        Logger.LOG_WARN(
+            "The gzip payload compression enabled setting could not be read from the"
+                + " configuration file. Using default value of "
+                + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_GZIP_COMPRESSION
+                + ".");
+        Logger.LOG_EXCEPTION(e);
+      }
+    } else {
+      payloadGzipCompressionEnabled =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_GZIP_COMPRESSION;
+    }
+
+    return payloadGzipCompressionEnabled;
+  }
+
+  /**
+   * Get the persistent (keep-alive) HTTP connection enabled setting from the configuration.
+   *
+   * @return persistent HTTP connection enabled setting
+   */
+  public boolean getPayloadPersistentConnectionEnabled() {
+    boolean payloadPersistentConnectionEnabled;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_PERSISTENT_CONNECTION_KEY)) {
+      try {
+        payloadPersistentConnectionEnabled =
+            configurationObject.getBoolean(
+                TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_PERSISTENT_CONNECTION_KEY);
+      } catch (JSONException e) {
+        payloadPersistentConnectionEnabled =
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_PERSISTENT_CONNECTION;
+        Logger.LOG_WARN(
+            "The persistent HTTP connection enabled setting could not be read from the"
+                + " configuration file. Using default value of "
+                + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_PERSISTENT_CONNECTION
+                + ".");
+        Logger.LOG_EXCEPTION(e);
+      }
+    } else {
+      payloadPersistentConnectionEnabled =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_PERSISTENT_CONNECTION;
+    }
+
+    return payloadPersistentConnectionEnabled;
+  }
+
+  /**
+   * Get the payload size auto-tuning enabled setting from the configuration.
+   *
+   * @return payload size auto-tuning enabled setting
+   */
+  public boolean getPayloadAutoTuneEnabled() {
+    boolean payloadAutoTuneEnabled;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_ENABLED_KEY)) {
+      try {
+        payloadAutoTuneEnabled =
+            configurationObject.getBoolean(
+                TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_ENABLED_KEY);
+      } catch (JSONException e) {
+        payloadAutoTuneEnabled =
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_ENABLED;
+        Logger.LOG_WARN(
+            "The payload size auto-tuning enabled setting could not be read from the"
+                + " configuration file. Using default value of "
+                + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_ENABLED
+                + ".");
+        Logger.LOG_EXCEPTION(e);
+      }
+    } else {
+      payloadAutoTuneEnabled = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_ENABLED;
+    }
+
+    return payloadAutoTuneEnabled;
+  }
+
+  /**
+   * Get the minimum number of data points per payload when payload size auto-tuning is enabled
+   * from the configuration.
+   *
+   * @return minimum number of data points per auto-tuned payload
+   * @throws JSONException if unable to parse the field from the configuration file
+   */
+  public int getPayloadAutoTuneMinDataPoints() throws JSONException {
+    int payloadAutoTuneMinDataPoints;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS_KEY)) {
+      payloadAutoTuneMinDataPoints =
+          configurationObject.getInt(
+              TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS_KEY);
+    } else {
+      payloadAutoTuneMinDataPoints =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS;
+    }
+
+    return payloadAutoTuneMinDataPoints;
+  }
+
+  /**
+   * Get the maximum number of data points per payload when payload size auto-tuning is enabled
+   * from the configuration.
+   *
+   * @return maximum number of data points per auto-tuned payload
+   * @throws JSONException if unable to parse the field from the configuration file
+   */
+  public int getPayloadAutoTuneMaxDataPoints() throws JSONException {
+    int payloadAutoTuneMaxDataPoints;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS_KEY)) {
+      payloadAutoTuneMaxDataPoints =
+          configurationObject.getInt(
+              TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS_KEY);
+    } else {
+      payloadAutoTuneMaxDataPoints =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS;
+    }
+
+    return payloadAutoTuneMaxDataPoints;
+  }
+
+  /**
+   * Get the target send latency (in milliseconds) of payload size auto-tuning from the
+   * configuration.
+   *
+   * @return target send latency (in milliseconds)
+   * @throws JSONException if unable to parse the field from the configuration file
+   */
+  public long getPayloadAutoTuneTargetLatencyMillis() throws JSONException {
+    long payloadAutoTuneTargetLatencyMillis;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS_KEY)) {
+      payloadAutoTuneTargetLatencyMillis =
+          configurationObject.getLong(
+              TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS_KEY);
+    } else {
+      payloadAutoTuneTargetLatencyMillis =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS;
+    }
+
+    return payloadAutoTuneTargetLatencyMillis;
+  }
+
+  /**
+   * Get the live mode enabled setting from the configuration.
+   *
+   * @return live mode enabled setting
+   */
+  public boolean getLiveModeEnabled() {
+    boolean liveModeEnabled;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_LIVE_MODE_ENABLED_KEY)) {
+      try {
+        liveModeEnabled =
+            configurationObject.getBoolean(
+                TWConnectorConsts.CONNECTOR_CONFIG_LIVE_MODE_ENABLED_KEY);
+      } catch (JSONException e) {
+        liveModeEnabled = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_LIVE_MODE_ENABLED;
+        Logger.LOG_WARN(
+            "The live mode enabled setting could not be read from the configuration file. Using"
+                + " default value of "
+                + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_LIVE_MODE_ENABLED
+                + ".");
+        Logger.LOG_EXCEPTION(e);
+      }
+    } else {
+      liveModeEnabled = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_LIVE_MODE_ENABLED;
+    }
+
+    return liveModeEnabled;
+  }
+
+  /**
+   * Get the names of the tags sent in live mode from the configuration.
+   *
+   * @return names of the live mode tags, or an empty array if not configured
+   * @throws JSONException if unable to parse the field from the configuration file
+   */
+  public String[] getLiveModeTagNames() throws JSONException {
+    String[] liveModeTagNames;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_LIVE_MODE_TAG_NAMES_KEY)) {
+      JSONArray liveModeTagNamesArray =
+          configurationObject.getJSONArray(
+              TWConnectorConsts.CONNECTOR_CONFIG_LIVE_MODE_TAG_NAMES_KEY);
+      liveModeTagNames = new String[liveModeTagNamesArray.length()];
+      for (int i = 0; i < liveModeTagNames.length; i++) {
+        liveModeTagNames[i] = liveModeTagNamesArray.getString(i);
+      }
+    } else {
+      liveModeTagNames = new String[0];
+    }
+
+    return liveModeTagNames;
+  }
+
+  /**
+   * Get the time (in milliseconds) that tag update triggers are coalesced from the configuration.
+   *
+   * @return tag update trigger coalescing time (in milliseconds)
+   * @throws JSONException if unable to parse the field from the configuration file
+   */
+  public long getTagUpdateCoalesceMillis() throws JSONException {
+    long tagUpdateCoalesceMillis;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_TAG_UPDATE_COALESCE_MILLIS_KEY)) {
+      tagUpdateCoalesceMillis =
+          configurationObject.getLong(
+              TWConnectorConsts.CONNECTOR_CONFIG_TAG_UPDATE_COALESCE_MILLIS_KEY);
+    } else {
+      tagUpdateCoalesceMillis =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_TAG_UPDATE_COALESCE_MILLIS;
+    }
+
+    return tagUpdateCoalesceMillis;
+  }
+
+  /**
+   * Get the payload transport setting from the configuration.
+   *
+   * @return payload transport setting
+   * @throws JSONException if unable to parse payload transport field from the configuration file
+   */
+  public String getPayloadTransport() throws JSONException {
+    String payloadTransport;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_TRANSPORT_KEY)) {
+      payloadTransport =
+          configurationObject.getString(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_TRANSPORT_KEY);
+    } else {
+      payloadTransport = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_TRANSPORT;
+    }
+
+    return payloadTransport;
+  }
+
+  /**
+   * Get the URL of the MQTT broker from the configuration.
+   *
+   * @return MQTT broker URL, or an empty string if not configured
+   * @throws JSONException if unable to parse MQTT broker URL field from the configuration file
+   */
+  public String getMqttBrokerUrl() throws JSONException {
+    String mqttBrokerUrl;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_BROKER_URL_KEY)) {
+      mqttBrokerUrl =
+          configurationObject.getString(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_BROKER_URL_KEY);
+    } else {
+      mqttBrokerUrl = "";
+    }
+
+    return mqttBrokerUrl;
+  }
+
+  /**
+   * Get the MQTT topic which payloads are published to from the configuration.
+   *
+   * @return MQTT topic
+   * @throws JSONException if unable to parse MQTT topic field from the configuration file
+   */
+  public String getMqttTopic() throws JSONException {
+    String mqttTopic;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_TOPIC_KEY)) {
+      mqttTopic = configurationObject.getString(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_TOPIC_KEY);
+    } else {
+      mqttTopic = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_MQTT_TOPIC;
+    }
+
+    return mqttTopic;
+  }
+
+  /**
+   * Get the MQTT user name from the configuration.
+   *
+   * @return MQTT user name, or an empty string if not configured
+   * @throws JSONException if unable to parse MQTT user name field from the configuration file
+   */
+  public String getMqttUsername() throws JSONException {
+    String mqttUsername;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_USERNAME_KEY)) {
+      mqttUsername =
+          configurationObject.getString(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_USERNAME_KEY);
+    } else {
+      mqttUsername = "";
+    }
+
+    return mqttUsername;
+  }
+
+  /**
+   * Get the MQTT password from the configuration.
+   *
+   * @return MQTT password, or an empty string if not configured
+   * @throws JSONException if unable to parse MQTT password field from the configuration file
+   */
+  public String getMqttPassword() throws JSONException {
+    String mqttPassword;
+    if (configurationObject.has(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_PASSWORD_KEY)) {
+      mqttPassword =
+          configurationObject.getString(TWConnectorConsts.CONNECTOR_CONFIG_MQTT_PASSWORD_KEY);
+    } else {
+      mqttPassword = "";
+    }
+
+    return mqttPassword;
+  }
+
+  /**
+   * Get the maximum number of payloads in flight (unacknowledged) on the MQTT connection at once
+   * from the configuration.
+   *
+   * @return maximum number of in-flight MQTT payloads
+   * @throws JSONException if unable to parse maximum in-flight MQTT payloads field from the
+   *     configuration file
+   */
+  public int getMqttMaxInFlightPayloads() throws JSONException {
+    int mqttMaxInFlightPayloads;
+    if (configurationObject.has(
+        TWConnectorConsts.CONNECTOR_CONFIG_MQTT_MAX_IN_FLIGHT_PAYLOADS_KEY)) {
+      mqttMaxInFlightPayloads =
+          configurationObject.getInt(
+              TWConnectorConsts.CONNECTOR_CONFIG_MQTT_MAX_IN_FLIGHT_PAYLOADS_KEY);
+    } else {
+      mqttMaxInFlightPayloads =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_MQTT_MAX_IN_FLIGHT_PAYLOADS;
+    }
+
+    return mqttMaxInFlightPayloads;
+  }
+
   /**
    * Get the full URL of the Thingworx tag update endpoint from the configuration.
    *
@@ -0,0 +1,907 @@
+package com.hms_networks.americas.sc.thingworx.config;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+
+/**
+ * Immutable snapshot of the connector configuration values used on the data poll, payload batching
+ * and payload send paths.
+ *
+ * <p>The snapshot is built and validated once from a {@link TWConnectorConfig} at startup. Values
+ * are stored as primitive fields and request header strings are prebuilt, so that reading them on
+ * the hot path does not perform JSON lookups, log repeated warnings or allocate new objects.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWConnectorRuntimeConfig {
+
+  /** The maximum number of data points in a data payload. */
+  private final int payloadMaxDataPoints;
+
+  /** The maximum serialized size (in bytes) of a data payload, or 0 if no maximum. */
+  private final int payloadMaxBytes;
+
+  /**
+   * The total size (in bytes) of pending payloads at which reading from the historical data queue
+   * is paused, or 0 if disabled.
+   */
+  private final long queueBackpressureHighWatermarkBytes;
+
+  /**
+   * The total size (in bytes) of pending payloads at or below which reading from the historical
+   * data queue is resumed.
+   */
+  private final long queueBackpressureLowWatermarkBytes;
+
+  /** The interval (in milliseconds) at which data payloads are sent to Thingworx. */
+  private final long payloadSendIntervalMillis;
+
+  /** The number of data send worker threads which send payloads to Thingworx. */
+  private final int payloadSendWorkerCount;
+
+  /** The interval (in milliseconds) at which the historical data queue is polled. */
+  private final long queueDataPollIntervalMillis;
+
+  /** The size (in minutes) of each historical data queue poll. */
+  private final long queueDataPollSizeMins;
+
+  /** The maximum size (in minutes) of each historical data queue poll while catching up. */
+  private final long queueCatchUpMaxPollSizeMins;
+
+  /** Boolean indicating if the columnar (tag-grouped) payload format is enabled. */
+  private final boolean payloadColumnarFormatEnabled;
+
+  /** Boolean indicating if the payload outbox is enabled. */
+  private final boolean payloadOutboxEnabled;
+
+  /** The maximum size (in bytes) of the payload outbox. */
+  private final long payloadOutboxMaxBytes;
+
+  /** The number of pending payloads above which payloads are moved to the payload outbox. */
+  private final int payloadOutboxSpillThreshold;
+
+  /** Boolean indicating if the historical data queue checkpoint is enabled. */
+  private final boolean queueCheckpointEnabled;
+
+  /** Boolean indicating if gzip compression of data payloads is enabled. */
+  private final boolean payloadGzipCompressionEnabled;
+
+  /** Boolean indicating if payloads are sent using persistent (keep-alive) HTTP connections. */
+  private final boolean payloadPersistentConnectionEnabled;
+
+  /** Boolean indicating if the maximum number of data points per payload is auto-tuned. */
+  private final boolean payloadAutoTuneEnabled;
+
+  /** The minimum number of data points per payload when auto-tuning. */
+  private final int payloadAutoTuneMinDataPoints;
+
+  /** The maximum number of data points per payload when auto-tuning. */
+  private final int payloadAutoTuneMaxDataPoints;
+
+  /** The target send latency (in milliseconds) when auto-tuning. */
+  private final long payloadAutoTuneTargetLatencyMillis;
+
+  /** Boolean indicating if changes of the live mode tags are sent to Thingworx as they occur. */
+  private final boolean liveModeEnabled;
+
+  /** The names of the tags sent in live mode. */
+  private final String[] liveModeTagNames;
+
+  /** The time (in milliseconds) that tag update triggers are coalesced. */
+  private final long tagUpdateCoalesceMillis;
+
+  /**
+   * The transport used to send payloads to Thingworx, one of {@link
+   * TWConnectorConsts#PAYLOAD_TRANSPORT_HTTP} or {@link TWConnectorConsts#PAYLOAD_TRANSPORT_MQTT}.
+   */
+  private final String payloadTransport;
+
+  /** The URL of the MQTT broker, or an empty string if not configured. */
+  private final String mqttBrokerUrl;
+
+  /** The MQTT topic which payloads are published to. */
+  private final String mqttTopic;
+
+  /** The MQTT user name, or an empty string if not configured. */
+  private final String mqttUsername;
+
+  /** The MQTT password, or an empty string if not configured. */
+  private final String mqttPassword;
+
+  /** The maximum number of payloads in flight (unacknowledged) on the MQTT connection at once. */
+  private final int mqttMaxInFlightPayloads;
+
+  /** The full URL of the Thingworx telemetry endpoint. */
+  private final String thingworxFullUrl;
+
+  /** The Thingworx app key used to authenticate requests. */
+  private final String thingworxAppKey;
+
+  /** The prebuilt HTTP request header string for telemetry requests to Thingworx. */
+  private final String telemetryRequestHeader;
+
+  /**
+   * Creates a new runtime configuration snapshot by reading and validating the values in the
+   * specified connector configuration. Values which are missing, unreadable or invalid are replaced
+   * with their default values.
+   *
+   * @param connectorConfig connector configuration to read values from
+   */
+  public TWConnectorRuntimeConfig(TWConnectorConfig connectorConfig) {
+    // Read payload max data points
+    int configPayloadMaxDataPoints =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_DATA_POINTS;
+    try {
+      configPayloadMaxDataPoints = connectorConfig.getPayloadMaxDataPoints();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while parsing the maximum number of data points per payload from"
+              + " the configuration file! Using default value of "
+              + configPayloadMaxDataPoints
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    payloadMaxDataPoints =
+        (int)
+            validatePositive(
+                configPayloadMaxDataPoints,
+                TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_DATA_POINTS,
+                TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_DATA_POINTS_KEY);
+
+    // Read payload max bytes
+    int configPayloadMaxBytes = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_BYTES;
+    try {
+      configPayloadMaxBytes = connectorConfig.getPayloadMaxBytes();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while parsing the maximum payload size (in bytes) from the"
+              + " configuration file! Using default value of "
+              + configPayloadMaxBytes
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    if (configPayloadMaxBytes < 0) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_BYTES_KEY
+              + " ("
+              + configPayloadMaxBytes
+              + ") is invalid. Using default value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_BYTES
+              + ".");
+      configPayloadMaxBytes = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_BYTES;
+    }
+    payloadMaxBytes = configPayloadMaxBytes;
+
+    // Read queue backpressure watermarks
+    long configHighWatermarkBytes =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES;
+    long configLowWatermarkBytes =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES;
+    try {
+      configHighWatermarkBytes = connectorConfig.getQueueBackpressureHighWatermarkBytes();
+      configLowWatermarkBytes = connectorConfig.getQueueBackpressureLowWatermarkBytes();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while parsing the queue backpressure watermarks from the"
+              + " configuration file! Using default values of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES
+              + " and "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+      configHighWatermarkBytes =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES;
+      configLowWatermarkBytes =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES;
+    }
+    if (configHighWatermarkBytes < 0) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES_KEY
+              + " ("
+              + configHighWatermarkBytes
+              + ") is invalid. Using default value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES
+              + ".");
+      configHighWatermarkBytes =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES;
+    }
+    if (configLowWatermarkBytes < 0
+        || (configHighWatermarkBytes > 0 && configLowWatermarkBytes >= configHighWatermarkBytes)) {
+      final int lowWatermarkDivisor = 4;
+      long adjustedLowWatermarkBytes = configHighWatermarkBytes / lowWatermarkDivisor;
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_LOW_WATERMARK_BYTES_KEY
+              + " ("
+              + configLowWatermarkBytes
+              + ") must be less than "
+              + TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_BACKPRESSURE_HIGH_WATERMARK_BYTES_KEY
+              + ". Using value of "
+              + adjustedLowWatermarkBytes
+              + ".");
+      configLowWatermarkBytes = adjustedLowWatermarkBytes;
+    }
+    queueBackpressureHighWatermarkBytes = configHighWatermarkBytes;
+    queueBackpressureLowWatermarkBytes = configLowWatermarkBytes;
+
+    // Read payload send interval
+    long configPayloadSendIntervalMillis =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_INTERVAL_MILLIS;
+    try {
+      configPayloadSendIntervalMillis = connectorConfig.getDataPayloadSendIntervalMillis();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the data payload send interval (in milliseconds) from"
+              + " the configuration file! Using default value of "
+              + configPayloadSendIntervalMillis
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    payloadSendIntervalMillis =
+        validatePositive(
+            configPayloadSendIntervalMillis,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_INTERVAL_MILLIS,
+            TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_INTERVAL_MILLIS_KEY);
+
+    // Read payload send worker count
+    long configPayloadSendWorkerCount =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_WORKER_COUNT;
+    try {
+      configPayloadSendWorkerCount = connectorConfig.getPayloadSendWorkerCount();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the payload send worker count from the configuration"
+              + " file! Using default value of "
+              + configPayloadSendWorkerCount
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    configPayloadSendWorkerCount =
+        validatePositive(
+            configPayloadSendWorkerCount,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_WORKER_COUNT,
+            TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_WORKER_COUNT_KEY);
+    if (configPayloadSendWorkerCount > TWConnectorConsts.PAYLOAD_SEND_WORKER_COUNT_MAX) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_WORKER_COUNT_KEY
+              + " ("
+              + configPayloadSendWorkerCount
+              + ") exceeds the maximum. Using maximum value of "
+              + TWConnectorConsts.PAYLOAD_SEND_WORKER_COUNT_MAX
+              + ".");
+      configPayloadSendWorkerCount = TWConnectorConsts.PAYLOAD_SEND_WORKER_COUNT_MAX;
+    }
+    payloadSendWorkerCount = (int) configPayloadSendWorkerCount;
+
+    // Read queue data poll interval
+    long configQueueDataPollIntervalMillis =
+        TWConnectorConsts.QUEUE_DATA_POLL_INTERVAL_MILLIS_DEFAULT;
+    try {
+      configQueueDataPollIntervalMillis = connectorConfig.getQueueDataPollIntervalMillis();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the queue data poll interval from the configuration"
+              + " file! Using default value of "
+              + configQueueDataPollIntervalMillis
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    queueDataPollIntervalMillis =
+        validatePositive(
+            configQueueDataPollIntervalMillis,
+            TWConnectorConsts.QUEUE_DATA_POLL_INTERVAL_MILLIS_DEFAULT,
+            TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_DATA_POLL_INTERVAL_MILLIS_KEY);
+
+    // Read queue data poll size
+    long configQueueDataPollSizeMins = TWConnectorConsts.QUEUE_DATA_POLL_SIZE_MINS_DEFAULT;
+    try {
+      configQueueDataPollSizeMins = connectorConfig.getQueueDataPollSizeMinutes();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the queue data poll size from the configuration"
+              + " file! Using default value of "
+              + configQueueDataPollSizeMins
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    queueDataPollSizeMins =
+        validatePositive(
+            configQueueDataPollSizeMins,
+            TWConnectorConsts.QUEUE_DATA_POLL_SIZE_MINS_DEFAULT,
+            TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_DATA_POLL_SIZE_MINS_KEY);
+
+    // Read maximum queue data poll size while catching up
+    long configQueueCatchUpMaxPollSizeMins =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS;
+    try {
+      configQueueCatchUpMaxPollSizeMins = connectorConfig.getQueueCatchUpMaxPollSizeMins();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the maximum queue data poll size while catching up from"
+              + " the configuration file! Using default value of "
+              + configQueueCatchUpMaxPollSizeMins
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    configQueueCatchUpMaxPollSizeMins =
+        validatePositive(
+            configQueueCatchUpMaxPollSizeMins,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS,
+            TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS_KEY);
+    if (configQueueCatchUpMaxPollSizeMins < queueDataPollSizeMins) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_CATCH_UP_MAX_POLL_SIZE_MINS_KEY
+              + " ("
+              + configQueueCatchUpMaxPollSizeMins
+              + ") is less than "
+              + TWConnectorConsts.CONNECTOR_CONFIG_QUEUE_DATA_POLL_SIZE_MINS_KEY
+              + ". Using "
+              + queueDataPollSizeMins
+              + ".");
+      configQueueCatchUpMaxPollSizeMins = queueDataPollSizeMins;
+    }
+    queueCatchUpMaxPollSizeMins = configQueueCatchUpMaxPollSizeMins;
+
+    // Read columnar payload format enabled setting
+    payloadColumnarFormatEnabled = connectorConfig.getPayloadColumnarFormatEnabled();
+
+    // Read payload outbox settings
+    payloadOutboxEnabled = connectorConfig.getPayloadOutboxEnabled();
+    long configPayloadOutboxMaxBytes =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_MAX_BYTES;
+    long configPayloadOutboxSpillThreshold =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_SPILL_THRESHOLD;
+    try {
+      configPayloadOutboxMaxBytes = connectorConfig.getPayloadOutboxMaxBytes();
+      configPayloadOutboxSpillThreshold = connectorConfig.getPayloadOutboxSpillThreshold();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while parsing the payload outbox settings from the configuration"
+              + " file! Using default values of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_MAX_BYTES
+              + " and "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_SPILL_THRESHOLD
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+      configPayloadOutboxMaxBytes =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_MAX_BYTES;
+      configPayloadOutboxSpillThreshold =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_SPILL_THRESHOLD;
+    }
+    payloadOutboxMaxBytes =
+        validatePositive(
+            configPayloadOutboxMaxBytes,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_MAX_BYTES,
+            TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_MAX_BYTES_KEY);
+    payloadOutboxSpillThreshold =
+        (int)
+            validatePositive(
+                configPayloadOutboxSpillThreshold,
+                TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_OUTBOX_SPILL_THRESHOLD,
+                TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_OUTBOX_SPILL_THRESHOLD_KEY);
+
+    // Read queue checkpoint enabled setting
+    queueCheckpointEnabled = connectorConfig.getQueueCheckpointEnabled();
+
+    // Read gzip payload compression enabled setting
+    payloadGzipCompressionEnabled = connectorConfig.getPayloadGzipCompressionEnabled();
+
+    // Read persistent HTTP connection enabled setting
+    payloadPersistentConnectionEnabled = connectorConfig.getPayloadPersistentConnectionEnabled();
+
+    // Read payload size auto-tuning settings
+    payloadAutoTuneEnabled = connectorConfig.getPayloadAutoTuneEnabled();
+    long configPayloadAutoTuneMinDataPoints =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS;
+    long configPayloadAutoTuneMaxDataPoints =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS;
+    long configPayloadAutoTuneTargetLatencyMillis =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS;
+    try {
+      configPayloadAutoTuneMinDataPoints = connectorConfig.getPayloadAutoTuneMinDataPoints();
+      configPayloadAutoTuneMaxDataPoints = connectorConfig.getPayloadAutoTuneMaxDataPoints();
+      configPayloadAutoTuneTargetLatencyMillis =
+          connectorConfig.getPayloadAutoTuneTargetLatencyMillis();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the payload auto-tuning settings from the"
+              + " configuration file! Using default values for the remaining settings.");
+      Logger.LOG_EXCEPTION(e);
+    }
+    configPayloadAutoTuneMinDataPoints =
+        validatePositive(
+            configPayloadAutoTuneMinDataPoints,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS,
+            TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS_KEY);
+    configPayloadAutoTuneMaxDataPoints =
+        validatePositive(
+            configPayloadAutoTuneMaxDataPoints,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS,
+            TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS_KEY);
+    if (configPayloadAutoTuneMaxDataPoints < configPayloadAutoTuneMinDataPoints) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MAX_DATA_POINTS_KEY
+              + " ("
+              + configPayloadAutoTuneMaxDataPoints
+              + ") is less than "
+              + TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_MIN_DATA_POINTS_KEY
+              + ". Using "
+              + configPayloadAutoTuneMinDataPoints
+              + ".");
+      configPayloadAutoTuneMaxDataPoints = configPayloadAutoTuneMinDataPoints;
+    }
+    payloadAutoTuneMinDataPoints = (int) configPayloadAutoTuneMinDataPoints;
+    payloadAutoTuneMaxDataPoints = (int) configPayloadAutoTuneMaxDataPoints;
+    payloadAutoTuneTargetLatencyMillis =
+        validatePositive(
+            configPayloadAutoTuneTargetLatencyMillis,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS,
+            TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_AUTO_TUNE_TARGET_LATENCY_MILLIS_KEY);
+
+    // Read live mode settings
+    boolean configLiveModeEnabled = connectorConfig.getLiveModeEnabled();
+    String[] configLiveModeTagNames = new String[0];
+    try {
+      configLiveModeTagNames = connectorConfig.getLiveModeTagNames();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the live mode tag names from the configuration file!");
+      Logger.LOG_EXCEPTION(e);
+    }
+    if (configLiveModeEnabled && configLiveModeTagNames.length == 0) {
+      Logger.LOG_WARN(
+          "Live mode is enabled, but no tags are configured in "
+              + TWConnectorConsts.CONNECTOR_CONFIG_LIVE_MODE_TAG_NAMES_KEY
+              + ". Live mode has been disabled.");
+      configLiveModeEnabled = false;
+    }
+    liveModeEnabled = configLiveModeEnabled;
+    liveModeTagNames = configLiveModeTagNames;
+
+    // Read tag update trigger coalescing time
+    long configTagUpdateCoalesceMillis =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_TAG_UPDATE_COALESCE_MILLIS;
+    try {
+      configTagUpdateCoalesceMillis = connectorConfig.getTagUpdateCoalesceMillis();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the tag update coalescing time from the configuration"
+              + " file! Using default value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_TAG_UPDATE_COALESCE_MILLIS
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    if (configTagUpdateCoalesceMillis < 0) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_TAG_UPDATE_COALESCE_MILLIS_KEY
+              + " ("
+              + configTagUpdateCoalesceMillis
+              + ") is invalid. Using default value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_TAG_UPDATE_COALESCE_MILLIS
+              + ".");
+      configTagUpdateCoalesceMillis =
+          TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_TAG_UPDATE_COALESCE_MILLIS;
+    }
+    tagUpdateCoalesceMillis = configTagUpdateCoalesceMillis;
+
+    // Read MQTT settings
+    String configMqttBrokerUrl = "";
+    String configMqttTopic = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_MQTT_TOPIC;
+    String configMqttUsername = "";
+    String configMqttPassword = "";
+    long configMqttMaxInFlightPayloads =
+        TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_MQTT_MAX_IN_FLIGHT_PAYLOADS;
+    try {
+      configMqttBrokerUrl = connectorConfig.getMqttBrokerUrl();
+      configMqttTopic = connectorConfig.getMqttTopic();
+      configMqttUsername = connectorConfig.getMqttUsername();
+      configMqttPassword = connectorConfig.getMqttPassword();
+      configMqttMaxInFlightPayloads = connectorConfig.getMqttMaxInFlightPayloads();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the MQTT settings from the configuration file! Using"
+              + " default values for the remaining MQTT settings.");
+      Logger.LOG_EXCEPTION(e);
+    }
+    configMqttMaxInFlightPayloads =
+        validatePositive(
+            configMqttMaxInFlightPayloads,
+            TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_MQTT_MAX_IN_FLIGHT_PAYLOADS,
+            TWConnectorConsts.CONNECTOR_CONFIG_MQTT_MAX_IN_FLIGHT_PAYLOADS_KEY);
+    if (configMqttMaxInFlightPayloads > TWConnectorConsts.MQTT_MAX_IN_FLIGHT_PAYLOADS_MAX) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_MQTT_MAX_IN_FLIGHT_PAYLOADS_KEY
+              + " ("
+              + configMqttMaxInFlightPayloads
+              + ") exceeds the maximum. Using maximum value of "
+              + TWConnectorConsts.MQTT_MAX_IN_FLIGHT_PAYLOADS_MAX
+              + ".");
+      configMqttMaxInFlightPayloads = TWConnectorConsts.MQTT_MAX_IN_FLIGHT_PAYLOADS_MAX;
+    }
+    mqttBrokerUrl = configMqttBrokerUrl;
+    mqttTopic = configMqttTopic;
+    mqttUsername = configMqttUsername;
+    mqttPassword = configMqttPassword;
+    mqttMaxInFlightPayloads = (int) configMqttMaxInFlightPayloads;
+
+    // Read payload transport, falling back to HTTP if MQTT is selected without a broker URL
+    String configPayloadTransport = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_TRANSPORT;
+    try {
+      configPayloadTransport = connectorConfig.getPayloadTransport().toUpperCase();
+    } catch (Exception e) {
+      Logger.LOG_SERIOUS(
+          "An error occurred while reading the payload transport from the configuration file!"
+              + " Using default value of "
+              + configPayloadTransport
+              + ".");
+      Logger.LOG_EXCEPTION(e);
+    }
+    if (!configPayloadTransport.equals(TWConnectorConsts.PAYLOAD_TRANSPORT_HTTP)
+        && !configPayloadTransport.equals(TWConnectorConsts.PAYLOAD_TRANSPORT_MQTT)) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_TRANSPORT_KEY
+              + " ("
+              + configPayloadTransport
+              + ") is invalid. Using default value of "
+              + TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_TRANSPORT
+              + ".");
+      configPayloadTransport = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_TRANSPORT;
+    } else if (configPayloadTransport.equals(TWConnectorConsts.PAYLOAD_TRANSPORT_MQTT)
+        && configMqttBrokerUrl.length() == 0) {
+      Logger.LOG_SERIOUS(
+          "The MQTT payload transport is selected, but "
+              + TWConnectorConsts.CONNECTOR_CONFIG_MQTT_BROKER_URL_KEY
+              + " has not been configured. Payloads will be sent using HTTP.");
+      configPayloadTransport = TWConnectorConsts.PAYLOAD_TRANSPORT_HTTP;
+    }
+    payloadTransport = configPayloadTransport;
+
+    // Read Thingworx URL and app key, and build telemetry request header
+    String configThingworxFullUrl = "";
+    String configThingworxAppKey = "";
+    try {
+      configThingworxFullUrl = connectorConfig.getThingworxFullUrl();
+      configThingworxAppKey = connectorConfig.getThingworxAppKey();
+    } catch (Exception e) {
+      Logger.LOG_CRITICAL(
+          "Unable to get configuration information for sending data to Thingworx. Data"
+              + " may be lost!");
+      Logger.LOG_EXCEPTION(e);
+    }
+    thingworxFullUrl = configThingworxFullUrl;
+    thingworxAppKey = configThingworxAppKey;
+    telemetryRequestHeader = "Content-Type=application/json&appKey=" + configThingworxAppKey;
+  }
+
+  /**
+   * Validates that the specified configuration value is positive (greater than zero). If the value
+   * is not positive, a warning is logged and the specified default value is returned.
+   *
+   * @param value configuration value
+   * @param defaultValue default value to use if configuration value is not positive
+   * @param configKey configuration file key of the value, for logging
+   * @return validated configuration value
+   */
+  private static long validatePositive(long value, long defaultValue, String configKey) {
+    long validatedValue = value;
+    if (value <= 0) {
+      Logger.LOG_WARN(
+          "The configured value of "
+              + configKey
+              + " ("
+              + value
+              + ") is invalid. Using default value of "
+              + defaultValue
+              + ".");
+      validatedValue = defaultValue;
+    }
+    return validatedValue;
+  }
+
+  /**
+   * Gets the maximum number of data points in a data payload.
+   *
+   * @return maximum data points in a payload
+   */
+  public int getPayloadMaxDataPoints() {
+    return payloadMaxDataPoints;
+  }
+
+  /**
+   * Gets the maximum serialized size (in bytes) of a data payload.
+   *
+   * @return maximum payload size (in bytes), or 0 if no maximum
+   */
+  public int getPayloadMaxBytes() {
+    return payloadMaxBytes;
+  }
+
+  /**
+   * Gets the total size (in bytes) of pending payloads at which reading from the historical data
+   * queue is paused.
+   *
+   * @return backpressure high watermark (in bytes), or 0 if disabled
+   */
+  public long getQueueBackpressureHighWatermarkBytes() {
+    return queueBackpressureHighWatermarkBytes;
+  }
+
+  /**
+   * Gets the total size (in bytes) of pending payloads at or below which reading from the
+   * historical data queue is resumed.
+   *
+   * @return backpressure low watermark (in bytes)
+   */
+  public long getQueueBackpressureLowWatermarkBytes() {
+    return queueBackpressureLowWatermarkBytes;
+  }
+
+  /**
+   * Gets the interval (in milliseconds) at which data payloads are sent to Thingworx.
+   *
+   * @return data payload send interval (in milliseconds)
+   */
+  public long getPayloadSendIntervalMillis() {
+    return payloadSendIntervalMillis;
+  }
+
+  /**
+   * Gets the number of data send worker threads, which is the maximum number of payloads in flight
+   * to Thingworx at once.
+   *
+   * @return number of data send worker threads
+   */
+  public int getPayloadSendWorkerCount() {
+    return payloadSendWorkerCount;
+  }
+
+  /**
+   * Gets the interval (in milliseconds) at which the historical data queue is polled.
+   *
+   * @return queue data poll interval (in milliseconds)
+   */
+  public long getQueueDataPollIntervalMillis() {
+    return queueDataPollIntervalMillis;
+  }
+
+  /**
+   * Gets the size (in minutes) of each historical data queue poll.
+   *
+   * @return queue data poll size (in minutes)
+   */
+  public long getQueueDataPollSizeMins() {
+    return queueDataPollSizeMins;
+  }
+
+  /**
+   * Gets the maximum size (in minutes) of each historical data queue poll while the data queue is
+   * catching up.
+   *
+   * @return maximum queue data poll size (in minutes) while catching up
+   */
+  public long getQueueCatchUpMaxPollSizeMins() {
+    return queueCatchUpMaxPollSizeMins;
+  }
+
+  /**
+   * Gets a boolean indicating if the columnar (tag-grouped) payload format is enabled.
+   *
+   * @return true if columnar payload format is enabled
+   */
+  public boolean isPayloadColumnarFormatEnabled() {
+    return payloadColumnarFormatEnabled;
+  }
+
+  /**
+   * Gets a boolean indicating if the payload outbox is enabled.
+   *
+   * @return true if payload outbox is enabled
+   */
+  public boolean isPayloadOutboxEnabled() {
+    return payloadOutboxEnabled;
+  }
+
+  /**
+   * Gets a boolean indicating if the historical data queue checkpoint is enabled.
+   *
+   * @return true if historical data queue checkpoint is enabled
+   */
+  public boolean isQueueCheckpointEnabled() {
+    return queueCheckpointEnabled;
+  }
+
+  /**
+   * Gets the maximum size (in bytes) of the payload outbox.
+   *
+   * @return maximum payload outbox size (in bytes)
+   */
+  public long getPayloadOutboxMaxBytes() {
+    return payloadOutboxMaxBytes;
+  }
+
+  /**
+   * Gets the number of pending payloads above which payloads are moved to the payload outbox while
+   * Thingworx is unreachable.
+   *
+   * @return payload outbox spill threshold
+   */
+  public int getPayloadOutboxSpillThreshold() {
+    return payloadOutboxSpillThreshold;
+  }
+
+  /**
+   * Gets a boolean indicating if gzip compression of data payloads is enabled.
+   *
+   * @return true if gzip payload compression is enabled
+   */
+  public boolean isPayloadGzipCompressionEnabled() {
+    return payloadGzipCompressionEnabled;
+  }
+
+  /**
+   * Gets a boolean indicating if payloads are sent using persistent (keep-alive) HTTP connections.
+   *
+   * @return true if persistent HTTP connections are enabled
+   */
+  public boolean isPayloadPersistentConnectionEnabled() {
+    return payloadPersistentConnectionEnabled;
+  }
+
+  /**
+   * Gets a boolean indicating if the maximum number of data points per payload is auto-tuned from
+   * the measured send latency.
+   *
+   * @return true if payload size auto-tuning is enabled
+   */
+  public boolean isPayloadAutoTuneEnabled() {
+    return payloadAutoTuneEnabled;
+  }
+
+  /**
+   * Gets the minimum number of data points per payload when payload size auto-tuning is enabled.
+   *
+   * @return minimum number of data points per auto-tuned payload
+   */
+  public int getPayloadAutoTuneMinDataPoints() {
+    return payloadAutoTuneMinDataPoints;
+  }
+
+  /**
+   * Gets the maximum number of data points per payload when payload size auto-tuning is enabled.
+   *
+   * @return maximum number of data points per auto-tuned payload
+   */
+  public int getPayloadAutoTuneMaxDataPoints() {
+    return payloadAutoTuneMaxDataPoints;
+  }
+
+  /**
+   * Gets the target send latency (in milliseconds) of payload size auto-tuning.
+   *
+   * @return target send latency (in milliseconds)
+   */
+  public long getPayloadAutoTuneTargetLatencyMillis() {
+    return payloadAutoTuneTargetLatencyMillis;
+  }
+
+  /**
+   * Gets a boolean indicating if live mode is enabled. In live mode, changes of the live mode tags
+   * are sent to Thingworx as they occur while the historical data queue is not behind.
+   *
+   * @return true if live mode is enabled
+   */
+  public boolean isLiveModeEnabled() {
+    return liveModeEnabled;
+  }
+
+  /**
+   * Gets the names of the tags sent in live mode.
+   *
+   * @return names of the live mode tags
+   */
+  public String[] getLiveModeTagNames() {
+    return liveModeTagNames;
+  }
+
+  /**
+   * Gets the time (in milliseconds) that tag update triggers are coalesced. A tag update request
+   * is sent once its trigger has waited for this time, and repeated triggers with the same value
+   * received while it waits are sent as a single request.
+   *
+   * @return tag update trigger coalescing time (in milliseconds)
+   */
+  public long getTagUpdateCoalesceMillis() {
+    return tagUpdateCoalesceMillis;
+  }
+
+  /**
+   * Gets the transport used to send payloads to Thingworx, one of {@link
+   * TWConnectorConsts#PAYLOAD_TRANSPORT_HTTP} or {@link TWConnectorConsts#PAYLOAD_TRANSPORT_MQTT}.
+   *
+   * @return payload transport
+   */
+  public String getPayloadTransport() {
+    return payloadTransport;
+  }
+
+  /**
+   * Gets the URL of the MQTT broker.
+   *
+   * @return MQTT broker URL, or an empty string if not configured
+   */
+  public String getMqttBrokerUrl() {
+    return mqttBrokerUrl;
+  }
+
+  /**
+   * Gets the MQTT topic which payloads are published to.
+   *
+   * @return MQTT topic
+   */
+  public String getMqttTopic() {
+    return mqttTopic;
+  }
+
+  /**
+   * Gets the MQTT user name.
+   *
+   * @return MQTT user name, or an empty string if not configured
+   */
+  public String getMqttUsername() {
+    return mqttUsername;
+  }
+
+  /**
+   * Gets the MQTT password.
+   *
+   * @return MQTT password, or an empty string if not configured
+   */
+  public String getMqttPassword() {
+    return mqttPassword;
+  }
+
+  /**
+   * Gets the maximum number of payloads in flight (unacknowledged) on the MQTT connection at once.
+   *
+   * @return maximum number of in-flight MQTT payloads
+   */
+  public int getMqttMaxInFlightPayloads() {
+    return mqttMaxInFlightPayloads;
+  }
+
+  /**
+   * Gets the full URL of the Thingworx telemetry endpoint.
+   *
+   * @return Thingworx full URL
+   */
+  public String getThingworxFullUrl() {
+    return thingworxFullUrl;
+  }
+
+  /**
+   * Gets the Thingworx app key used to authenticate requests.
+   *
+   * @return Thingworx app key
+   */
+  public String getThingworxAppKey() {
+    return thingworxAppKey;
+  }
+
+  /**
+   * Gets the prebuilt HTTP request header string for telemetry requests to Thingworx.
+   *
+   * @return telemetry request header string
+   */
+  public String getTelemetryRequestHeader() {
+    return telemetryRequestHeader;
+  }
+}
@@ -4,8 +4,8 @@ import com.hms_networks.americas.sc.extensions.logging.Logger;
 import com.hms_networks.americas.sc.extensions.system.http.SCHttpUtility;
 import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
 import com.hms_networks.americas.sc.thingworx.TWConnectorMain;
-import java.util.Iterator;
-import java.util.List;
+import com.hms_networks.americas.sc.thingworx.config.TWConnectorRuntimeConfig;
+import java.io.InterruptedIOException;
 
 /**
  * Class for managing HTTP API calls to the Thingworx API.
@@ -20,6 +20,66 @@ public class TWApiManager {
   private static long dataSendThreadIntervalMillis =
       TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_SEND_INTERVAL_MILLIS;
 
+  /**
+   * Lock held by a data send worker while sending payloads from the payload outbox, so that outbox
+   * payloads are sent one at a time and in order.
+   */
+  private static final Object OUTBOX_SEND_LOCK = new Object();
+
+  /**
+   * Circuit breaker for requests to Thingworx. While open, payloads are not sent, so that data send
+   * workers do not wait out the HTTP timeout for each payload while Thingworx is unreachable.
+   */
+  private static final TWCircuitBreaker sendCircuitBreaker =
+      new TWCircuitBreaker(
+          TWConnectorConsts.SEND_CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+          TWConnectorConsts.SEND_CIRCUIT_BREAKER_INITIAL_BACKOFF_MILLIS,
+          TWConnectorConsts.SEND_CIRCUIT_BREAKER_MAX_BACKOFF_MILLIS);
+
+  /**
+   * Controller which auto-tunes the maximum number of data points per payload from the measured
+   * send latency, or null if payload size auto-tuning is not enabled.
+   */
+  private static TWPayloadSizeController payloadSizeController = null;
+
+  /**
+   * Timeout (in milliseconds) after which a payload sent by the configured payload transport is
+   * considered to have timed out, for payload size auto-tuning.
+   */
+  private static long payloadSendTimeoutMillis = TWConnectorConsts.HTTP_TIMEOUT_MILLIS;
+
+  /**
+   * Listener which is notified of the result of each payload sent by a data send worker. Payloads
+   * which were delivered are acknowledged so they are removed from the pending payloads, and
+   * payloads which failed are returned to the pending payloads to be retried.
+   */
+  private static final TWPayloadTransport.DeliveryListener PAYLOAD_DELIVERY_LISTENER =
+      new TWPayloadTransport.DeliveryListener() {
+        public void payloadDelivered(TWDataPayload payload) {
+          sendCircuitBreaker.recordSuccess();
+          if (payloadSizeController != null) {
+            payloadSizeController.recordDelivery(
+                payload.getDataPointCount(),
+                System.currentTimeMillis() - payload.getSendStartTimeMillis());
+          }
+          Logger.LOG_DEBUG(
+              "Successfully sent a payload to Thingworx with "
+                  + payload.getDataPointCount()
+                  + " data points.");
+          TWDataManager.removedPendingPayload(payload);
+        }
+
+        public void payloadFailed(TWDataPayload payload) {
+          sendCircuitBreaker.recordFailure();
+          recordPayloadSizeFailure(payload, false);
+          Logger.LOG_SERIOUS(
+              "A payload containing "
+                  + payload.getDataPointCount()
+                  + " data points failed to send to Thingworx.");
+          TWDataManager.releaseFailedPayload(payload);
+        }
+      };
+
   /** Boolean indicating if the data send thread should run. */
   private static boolean runDataThread = true;
 
@@ -30,6 +90,36 @@ public class TWApiManager {
     }
   }
 
+  /**
+   * Gets the state of the circuit breaker for requests to Thingworx, one of {@link
+   * TWCircuitBreaker#STATE_CLOSED}, {@link TWCircuitBreaker#STATE_OPEN} or {@link
+   * TWCircuitBreaker#STATE_HALF_OPEN}.
+   *
+   * @return send circuit breaker state
+   * @since 3.4.0
+   */
+  public static int getSendCircuitBreakerState() {
+    return sendCircuitBreaker.getState();
+  }
+
+  /**
+   * Gets the current maximum number of data points per payload. If payload size auto-tuning is
+   * enabled, this is the auto-tuned value, otherwise it is the configured value.
+   *
+   * @return current maximum number of data points per payload
+   * @since 3.4.0
+   */
+  public static int getPayloadMaxDataPoints() {
+    TWPayloadSizeController controller = payloadSizeController;
+    int payloadMaxDataPoints;
+    if (controller != null) {
+      payloadMaxDataPoints = controller.getMaxDataPoints();
+    } else {
+      payloadMaxDataPoints = TWConnectorMain.getConnectorRuntimeConfig().getPayloadMaxDataPoints();
+    }
+    return payloadMaxDataPoints;
+  }
+
   /**
    * Gets the name of the Ewon Flexy as it appears/should appear in Thingworx.
    *
@@ -40,120 +130,330 @@ public class TWApiManager {
     return "FLEXY-" + TWConnectorConsts.EWON_SERIAL_NUMBER;
   }
 
-  /** Starts the thread which sends pending data payloads to Thingworx. */
+  /**
+   * Starts the data send worker threads which send pending data payloads to Thingworx. Each worker
+   * waits for the next pending payload to be ready to send, as signaled by {@link TWDataManager},
+   * and sends it using the configured payload transport. With more than one worker, or with a
+   * transport which allows several unacknowledged payloads in flight, several payloads are in
+   * flight at once, but payloads are still dispatched and acknowledged in order. If a payload fails
+   * to send, it is retried after the payload send interval.
+   */
   public static synchronized void startDataSendThread() {
-    // Get data payload send interval (millis) from config file
-    try {
-      dataSendThreadIntervalMillis =
-          TWConnectorMain.getConnectorConfig().getDataPayloadSendIntervalMillis();
-    } catch (Exception e) {
-      Logger.LOG_SERIOUS(
-          "An error occurred while reading the data payload send interval (in milliseconds) from"
-              + " the configuration file! Using default value of "
-              + dataSendThreadIntervalMillis
-              + ".");
-      Logger.LOG_EXCEPTION(e);
+    // Get data payload send interval (millis) and worker count from runtime config
+    TWConnectorRuntimeConfig runtimeConfig = TWConnectorMain.getConnectorRuntimeConfig();
+    dataSendThreadIntervalMillis = runtimeConfig.getPayloadSendIntervalMillis();
+    int dataSendWorkerCount = runtimeConfig.getPayloadSendWorkerCount();
+
+    // Create MQTT transport shared by all workers, if selected
+    TWPayloadTransport sharedPayloadTransport = null;
+    if (runtimeConfig.getPayloadTransport().equals(TWConnectorConsts.PAYLOAD_TRANSPORT_MQTT)) {
+      sharedPayloadTransport = buildMqttPayloadTransport();
+    }
+    if (sharedPayloadTransport != null) {
+      payloadSendTimeoutMillis = TWConnectorConsts.MQTT_ACK_TIMEOUT_MILLIS;
+    } else {
+      payloadSendTimeoutMillis = TWConnectorConsts.HTTP_TIMEOUT_MILLIS;
     }
 
-    // Build runnable to send pending payloads to Thingworx
-    Runnable dataSendThreadRunnable =
-        new Runnable() {
-          public void run() {
-            // Loop until stopped
-            boolean stayInLoop = true;
-            while (stayInLoop) {
-              try {
-                // Copy pending payloads from data manager
-                List pendingPayloads = TWDataManager.getPayloadsToSend();
-
-                // Iterate through each pending payload and send
-                Iterator pendingPayloadsIterator = pendingPayloads.iterator();
-                while (pendingPayloadsIterator.hasNext()) {
-                  TWDataPayload dataPayload = (TWDataPayload) pendingPayloadsIterator.next();
-
-                  // Finish Payload and Send to Thingworx
-                  dataPayload.finishPayload();
-                  boolean isSuccessful = sendJsonToThingworx(dataPayload.getPayloadString());
-
-                  // If successful, remove from pending payloads
-                  if (isSuccessful) {
-                    Logger.LOG_DEBUG(
-                        "Successfully sent a payload to Thingworx with "
-                            + dataPayload.getDataPointCount()
-                            + " data points.");
-                    TWDataManager.removedPendingPayload(dataPayload);
-                  } else {
-                    Logger.LOG_SERIOUS(
-                        "A payload containing "
-                            + dataPayload.getDataPointCount()
-                            + " data points failed to send to Thingworx.");
-                  }
-                }
-
-                // Update keepRunning
-                synchronized (TWApiManager.class) {
-                  stayInLoop = runDataThread;
-                }
-              } catch (Exception e) {
-                Logger.LOG_WARN(
-                    "An error occurred while processing payloads to send to Thingworx!");
-                Logger.LOG_EXCEPTION(e);
-              }
-
-              // Delay until next interval
-              try {
-                Thread.sleep(dataSendThreadIntervalMillis);
-              } catch (Exception e) {
-                Logger.LOG_WARN(
-                    "An error occurred while sleeping the data send thread until its next run"
-                        + " interval!");
-                Logger.LOG_EXCEPTION(e);
-              }
-            }
-          }
-        };
+    // Create payload size controller, if enabled
+    if (runtimeConfig.isPayloadAutoTuneEnabled()) {
+      payloadSizeController =
+          new TWPayloadSizeController(
+              runtimeConfig.getPayloadAutoTuneMinDataPoints(),
+              runtimeConfig.getPayloadAutoTuneMaxDataPoints(),
+              runtimeConfig.getPayloadMaxDataPoints(),
+              runtimeConfig.getPayloadAutoTuneTargetLatencyMillis());
+    }
 
-    // Create new thread object and run
-    Thread dataSendThread = new Thread(dataSendThreadRunnable);
-    dataSendThread.start();
+    // Create and start data send worker threads
+    for (int i = 0; i < dataSendWorkerCount; i++) {
+      TWPayloadTransport payloadTransport = sharedPayloadTransport;
+      if (payloadTransport == null) {
+        payloadTransport = buildHttpPayloadTransport();
+      }
+      Thread dataSendThread = new Thread(buildDataSendWorkerRunnable(payloadTransport));
+      dataSendThread.start();
+    }
+    Logger.LOG_DEBUG("Started " + dataSendWorkerCount + " data send worker threads.");
   }
 
   /**
-   * Sends the specified JSON string to the configured Thingworx Full URL endpoint as an HTTP POST
-   * request
+   * Builds the MQTT payload transport which publishes payloads to the configured MQTT broker.
    *
-   * @param json JSON body
-   * @since 1.1
-   */
-  private static boolean sendJsonToThingworx(String json) {
-    // Send to Thingworx
-    // Build full POST request URL
-    String addInfoEndpointFullUrl = "";
-    String addInfoRequestHeader = "";
+   * @return MQTT payload transport, or null if the MQTT client could not be created
+   * @since 3.4.0
+   */
+  private static TWPayloadTransport buildMqttPayloadTransport() {
+    TWConnectorRuntimeConfig runtimeConfig = TWConnectorMain.getConnectorRuntimeConfig();
+    if (runtimeConfig.isPayloadGzipCompressionEnabled()) {
+      Logger.LOG_WARN(
+          "Gzip payload compression is not supported by the MQTT payload transport. Payloads will"
+              + " be published uncompressed.");
+    }
+
+    TWPayloadTransport mqttPayloadTransport = null;
     try {
-      addInfoEndpointFullUrl = TWConnectorMain.getConnectorConfig().getThingworxFullUrl();
-      addInfoRequestHeader =
-          "Content-Type=application/json&appKey="
-              + TWConnectorMain.getConnectorConfig().getThingworxAppKey();
+      TWMqttClient mqttClient =
+          new TWMqttClient(
+              runtimeConfig.getMqttBrokerUrl(),
+              getApiDeviceName(),
+              runtimeConfig.getMqttUsername(),
+              runtimeConfig.getMqttPassword(),
+              TWConnectorConsts.MQTT_KEEP_ALIVE_SECONDS,
+              TWConnectorConsts.MQTT_ACK_TIMEOUT_MILLIS,
+              runtimeConfig.getMqttMaxInFlightPayloads());
+      mqttPayloadTransport = new TWMqttPayloadTransport(mqttClient, runtimeConfig.getMqttTopic());
     } catch (Exception e) {
       Logger.LOG_CRITICAL(
-          "Unable to get configuration information for sending data to Thingworx. Data"
-              + " may be lost!");
+          "Unable to create the MQTT client for sending payloads. Check the configured MQTT"
+              + " broker URL. Payloads will be sent using HTTP.");
       Logger.LOG_EXCEPTION(e);
     }
+    return mqttPayloadTransport;
+  }
+
+  /**
+   * Builds the HTTP payload transport for a data send worker. If gzip payload compression or
+   * persistent HTTP connections are enabled, each worker has its own HTTP client (and connection),
+   * so that workers do not wait on each other's requests. Otherwise, payloads are sent using {@link
+   * SCHttpUtility}. Compressed payloads are sent to the TakeCompressedInfo service, which is on the
+   * same Thing as the configured TakeInfo service.
+   *
+   * @return HTTP payload transport
+   * @since 3.4.0
+   */
+  private static TWPayloadTransport buildHttpPayloadTransport() {
+    TWConnectorRuntimeConfig runtimeConfig = TWConnectorMain.getConnectorRuntimeConfig();
+    boolean compressPayloads = runtimeConfig.isPayloadGzipCompressionEnabled();
+    boolean usePersistentConnections = runtimeConfig.isPayloadPersistentConnectionEnabled();
+
+    // Get URL of the TakeCompressedInfo service for compressed payloads, if enabled
+    String payloadUrl = runtimeConfig.getThingworxFullUrl();
+    if (compressPayloads) {
+      String compressedPayloadUrl = TWHttpPayloadTransport.getCompressedPayloadUrl(payloadUrl);
+      if (compressedPayloadUrl != null) {
+        payloadUrl = compressedPayloadUrl;
+      } else {
+        Logger.LOG_WARN(
+            "Gzip payload compression requires the Thingworx Full URL to end with the "
+                + TWConnectorConsts.THINGWORX_TAKE_INFO_SERVICE_NAME
+                + " service. Payloads will be sent uncompressed.");
+        compressPayloads = false;
+      }
+    }
+
+    // Create HTTP client for compressed payloads or persistent connections, if enabled
+    TWHttpClient httpClient = null;
+    if (compressPayloads || usePersistentConnections) {
+      int keepAliveIdleTimeoutMillis =
+          usePersistentConnections ? TWConnectorConsts.HTTP_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS : 0;
+      try {
+        httpClient =
+            new TWHttpClient(
+                payloadUrl, TWConnectorConsts.HTTP_TIMEOUT_MILLIS, keepAliveIdleTimeoutMillis);
+      } catch (Exception e) {
+        Logger.LOG_SERIOUS(
+            "Unable to create the HTTP client for sending payloads. Payloads will be sent"
+                + " uncompressed, using a new connection for each payload.");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+    return new TWHttpPayloadTransport(
+        httpClient, compressPayloads, runtimeConfig.getThingworxAppKey());
+  }
 
-    String response = null;
+  /**
+   * Builds the runnable for a data send worker thread which sends payloads using the specified
+   * payload transport.
+   *
+   * @param payloadTransport payload transport used by the worker
+   * @return data send worker runnable
+   * @since 3.4.0
+   */
+  private static Runnable buildDataSendWorkerRunnable(final TWPayloadTransport payloadTransport) {
+    return new Runnable() {
+      public void run() {
+        // Loop until stopped
+        boolean stayInLoop = true;
+        while (stayInLoop) {
+          boolean sendFailed = false;
+          try {
+            // Skip sending while circuit breaker is open
+            if (!sendCircuitBreaker.isRequestAllowed()) {
+              sendFailed = true;
+            }
+
+            // Send payloads from outbox first, as they are older than all pending payloads
+            if (!sendFailed) {
+              sendFailed = !sendOutboxPayloads(payloadTransport);
+            }
+
+            // Wait for next pending payload to be ready, then send to Thingworx
+            TWDataPayload dataPayload = null;
+            if (!sendFailed) {
+              dataPayload = TWDataManager.awaitNextPayloadToSend(dataSendThreadIntervalMillis);
+            }
+            if (dataPayload != null) {
+              // Payload is acknowledged or returned to pending payloads by delivery listener
+              sendFailed = !sendPayloadToThingworx(dataPayload, payloadTransport);
+            }
+
+            // Move pending payloads to outbox if unable to send, or if free memory is low
+            if (sendFailed || TWDataManager.isPayloadOutboxSpillRequired()) {
+              TWDataManager.spillPendingPayloadsToOutbox();
+            }
+
+            // Update keepRunning
+            synchronized (TWApiManager.class) {
+              stayInLoop = runDataThread;
+            }
+          } catch (Exception e) {
+            Logger.LOG_WARN("An error occurred while processing payloads to send to Thingworx!");
+            Logger.LOG_EXCEPTION(e);
+            sendFailed = true;
+          }
+
+          // Delay until next interval before retrying if unable to send
+          if (sendFailed) {
+            try {
+              Thread.sleep(dataSendThreadIntervalMillis);
+            } catch (Exception e) {
+              Logger.LOG_WARN(
+                  "An error occurred while sleeping the data send thread until its next run"
+                      + " interval!");
+              Logger.LOG_EXCEPTION(e);
+            }
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Sends the payloads in the store-and-forward payload outbox, if enabled, to Thingworx in order.
+   * Each payload is acknowledged and removed from the outbox once it has been delivered, and the
+   * acknowledgements are written to the outbox once all payloads have been sent, or a payload
+   * failed to send. Only one data send worker sends outbox payloads at a time.
+   *
+   * @param payloadTransport payload transport of data send worker
+   * @return true if the outbox is empty or disabled, false if a payload failed to send
+   * @since 3.4.0
+   */
+  private static boolean sendOutboxPayloads(TWPayloadTransport payloadTransport) {
     boolean isSuccessful = true;
-    try {
-      response = SCHttpUtility.httpPost(addInfoEndpointFullUrl, addInfoRequestHeader, json);
-    } catch (Exception e) {
-      Logger.LOG_CRITICAL(
-          "An error occurred while performing an HTTP POST to Thingworx. Data may have"
-              + " been lost!");
-      Logger.LOG_EXCEPTION(e);
-      isSuccessful = false;
+    TWPayloadOutbox payloadOutbox = TWDataManager.getPayloadOutbox();
+    if (payloadOutbox != null) {
+      synchronized (OUTBOX_SEND_LOCK) {
+        try {
+          TWPayloadOutbox.Record record = payloadOutbox.peekNext();
+          while (isSuccessful && record != null) {
+            isSuccessful = sendOutboxRecordToThingworx(record, payloadTransport);
+
+            if (isSuccessful) {
+              payloadOutbox.acknowledgeNext();
+              Logger.LOG_DEBUG(
+                  "Successfully sent a payload from the payload outbox to Thingworx. "
+                      + payloadOutbox.getRecordCount()
+                      + " payloads remain in the outbox.");
+              record = payloadOutbox.peekNext();
+            } else {
+              Logger.LOG_SERIOUS("A payload from the payload outbox failed to send to Thingworx.");
+            }
+          }
+
+          // Write acknowledgements once for all payloads sent
+          payloadOutbox.flush();
+        } catch (Exception e) {
+          Logger.LOG_SERIOUS("An error occurred while sending payloads from the payload outbox!");
+          Logger.LOG_EXCEPTION(e);
+          isSuccessful = false;
+        }
+      }
+    }
+    return isSuccessful;
+  }
+
+  /**
+   * Sends the specified payload to Thingworx using the specified payload transport. The request is
+   * not attempted while the send circuit breaker is open. If the payload is sent, its result is
+   * reported to {@link #PAYLOAD_DELIVERY_LISTENER}, otherwise the payload is returned to the
+   * pending payloads to be retried.
+   *
+   * @param dataPayload payload to send
+   * @param payloadTransport payload transport of data send worker
+   * @return true if the payload was sent, false if it was not sent
+   * @since 3.4.0
+   */
+  private static boolean sendPayloadToThingworx(
+      TWDataPayload dataPayload, TWPayloadTransport payloadTransport) {
+    boolean isSuccessful = false;
+    if (sendCircuitBreaker.allowRequest()) {
+      try {
+        dataPayload.setSendStartTimeMillis(System.currentTimeMillis());
+        payloadTransport.sendPayload(dataPayload, PAYLOAD_DELIVERY_LISTENER);
+        isSuccessful = true;
+      } catch (Exception e) {
+        Logger.LOG_CRITICAL(
+            "An error occurred while sending a payload to Thingworx. Data may have been lost!");
+        Logger.LOG_EXCEPTION(e);
+        sendCircuitBreaker.recordFailure();
+        recordPayloadSizeFailure(dataPayload, e instanceof InterruptedIOException);
+      }
+    }
+
+    // Payload is returned to pending payloads and retried
+    if (!isSuccessful) {
+      Logger.LOG_SERIOUS(
+          "A payload containing "
+              + dataPayload.getDataPointCount()
+              + " data points failed to send to Thingworx.");
+      TWDataManager.releaseFailedPayload(dataPayload);
     }
-    Logger.LOG_DEBUG("Thingworx HTTP POST response (send telemetry data): " + response);
     return isSuccessful;
   }
+
+  /**
+   * Sends the specified payload outbox record to Thingworx using the specified payload transport.
+   * The request is not attempted while the send circuit breaker is open.
+   *
+   * @param record payload outbox record to send
+   * @param payloadTransport payload transport of data send worker
+   * @return true if the payload was delivered successfully
+   * @since 3.4.0
+   */
+  private static boolean sendOutboxRecordToThingworx(
+      TWPayloadOutbox.Record record, TWPayloadTransport payloadTransport) {
+    boolean isSuccessful = false;
+    if (sendCircuitBreaker.allowRequest()) {
+      try {
+        payloadTransport.sendOutboxRecord(record);
+        sendCircuitBreaker.recordSuccess();
+        isSuccessful = true;
+      } catch (Exception e) {
+        Logger.LOG_CRITICAL(
+            "An error occurred while sending a payload to Thingworx. Data may have been lost!");
+        Logger.LOG_EXCEPTION(e);
+        sendCircuitBreaker.recordFailure();
+      }
+    }
+    return isSuccessful;
+  }
+
+  /**
+   * Records a payload which failed to send with the payload size controller, if payload size
+   * auto-tuning is enabled. The payload is considered to have timed out if the specified flag is
+   * set, or if the send timeout of the payload transport elapsed before it failed.
+   *
+   * @param dataPayload payload which failed to send
+   * @param timedOut true if the payload is known to have timed out
+   * @since 3.4.0
+   */
+  private static void recordPayloadSizeFailure(TWDataPayload dataPayload, boolean timedOut) {
+    if (payloadSizeController != null) {
+      long sendStartTimeMillis = dataPayload.getSendStartTimeMillis();
+      long elapsedMillis = System.currentTimeMillis() - sendStartTimeMillis;
+      payloadSizeController.recordFailure(
+          sendStartTimeMillis, timedOut || elapsedMillis >= payloadSendTimeoutMillis);
+    }
+  }
 }
@@ -0,0 +1,158 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import java.util.Random;
+
+/**
+ * Circuit breaker for requests to Thingworx.
+ *
+ * <p>The circuit is closed while requests succeed. After a configured number of consecutive
+ * failures, the circuit opens and requests are not attempted, so that each request does not wait
+ * out the HTTP timeout while Thingworx is unreachable. Once the backoff delay has elapsed, a single
+ * probe request is allowed (half-open). If the probe succeeds, the circuit closes. If the probe
+ * fails, the circuit opens again and the backoff delay is doubled, up to a maximum. Random jitter
+ * is applied to each backoff delay so that devices which lost their connection at the same time do
+ * not all probe at once.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWCircuitBreaker {
+
+  /** Circuit state where requests are attempted. */
+  public static final int STATE_CLOSED = 0;
+
+  /** Circuit state where requests are not attempted until the backoff delay has elapsed. */
+  public static final int STATE_OPEN = 1;
+
+  /** Circuit state where a single probe request is in progress. */
+  public static final int STATE_HALF_OPEN = 2;
+
+  /** Number of consecutive failures after which the circuit opens. */
+  private final int failureThreshold;
+
+  /** Backoff delay (in milliseconds) after the circuit first opens. */
+  private final long initialBackoffMillis;
+
+  /** Maximum backoff delay (in milliseconds). */
+  private final long maxBackoffMillis;
+
+  /** Random number generator for backoff jitter. */
+  private final Random jitterRandom = new Random();
+
+  /** Current circuit state. */
+  private int state = STATE_CLOSED;
+
+  /** Number of consecutive failed requests. */
+  private int consecutiveFailures = 0;
+
+  /** Current backoff delay (in milliseconds), before jitter. */
+  private long backoffMillis;
+
+  /** Time (in milliseconds since the epoch) after which a probe request is allowed. */
+  private long nextProbeTimeMillis = 0;
+
+  /**
+   * Creates a new closed circuit breaker.
+   *
+   * @param failureThreshold number of consecutive failures after which the circuit opens
+   * @param initialBackoffMillis backoff delay (in milliseconds) after the circuit first opens
+   * @param maxBackoffMillis maximum backoff delay (in milliseconds)
+   */
+  public TWCircuitBreaker(int failureThreshold, long initialBackoffMillis, long maxBackoffMillis) {
+    this.failureThreshold = failureThreshold;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.backoffMillis = initialBackoffMillis;
+  }
+
+  /**
+   * Returns a boolean indicating if a request may be attempted now, without reserving the probe
+   * request. This can be used to skip preparing a request while the circuit is open.
+   *
+   * @return true if the circuit is closed, or if it is open and a probe request is due
+   */
+  public synchronized boolean isRequestAllowed() {
+    return state == STATE_CLOSED
+        || (state == STATE_OPEN && System.currentTimeMillis() >= nextProbeTimeMillis);
+  }
+
+  /**
+   * Returns a boolean indicating if a request may be attempted now. If the circuit is open and the
+   * backoff delay has elapsed, the circuit becomes half-open and the caller performs the probe
+   * request. The result of an allowed request must be reported using {@link #recordSuccess()} or
+   * {@link #recordFailure()}.
+   *
+   * @return true if the request may be attempted
+   */
+  public synchronized boolean allowRequest() {
+    boolean allowed = false;
+    if (state == STATE_CLOSED) {
+      allowed = true;
+    } else if (state == STATE_OPEN && System.currentTimeMillis() >= nextProbeTimeMillis) {
+      state = STATE_HALF_OPEN;
+      allowed = true;
+      Logger.LOG_DEBUG("Sending a probe request to Thingworx.");
+    }
+    return allowed;
+  }
+
+  /** Records a successful request, closing the circuit if it was open. */
+  public synchronized void recordSuccess() {
+    if (state != STATE_CLOSED) {
+      Logger.LOG_INFO(
+          "Connection to Thingworx has been restored. Resuming sending payloads to Thingworx.");
+    }
+    state = STATE_CLOSED;
+    consecutiveFailures = 0;
+    backoffMillis = initialBackoffMillis;
+  }
+
+  /**
+   * Records a failed request. The circuit opens if the number of consecutive failures reaches the
+   * failure threshold, or if the failed request was a probe request.
+   */
+  public synchronized void recordFailure() {
+    if (consecutiveFailures < Integer.MAX_VALUE) {
+      consecutiveFailures++;
+    }
+
+    if (state == STATE_HALF_OPEN) {
+      // Probe failed, increase backoff and open again
+      backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+      open();
+    } else if (state == STATE_CLOSED && consecutiveFailures >= failureThreshold) {
+      open();
+    }
+  }
+
+  /**
+   * Returns the current circuit state, one of {@link #STATE_CLOSED}, {@link #STATE_OPEN} or {@link
+   * #STATE_HALF_OPEN}.
+   *
+   * @return circuit state
+   */
+  public synchronized int getState() {
+    return state;
+  }
+
+  /**
+   * Opens the circuit, and schedules the next probe request after the current backoff delay with
+   * jitter applied. The jittered delay is between half and all of the current backoff delay.
+   */
+  private void open() {
+    long halfBackoffMillis = backoffMillis / 2;
+    long jitterMillis = (long) (jitterRandom.nextDouble() * (backoffMillis - halfBackoffMillis));
+    long delayMillis = halfBackoffMillis + jitterMillis;
+    nextProbeTimeMillis = System.currentTimeMillis() + delayMillis;
+    state = STATE_OPEN;
+    Logger.LOG_WARN(
+        "Sending payloads to Thingworx has been paused after "
+            + consecutiveFailures
+            + " consecutive failures. Retrying in "
+            + delayMillis
+            + " ms.");
+  }
+}
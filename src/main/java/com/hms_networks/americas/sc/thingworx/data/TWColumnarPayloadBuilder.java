@@ -0,0 +1,243 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Builder for the columnar (tag-grouped) payload format.
+ *
+ * <p>In the columnar format, data points are grouped by tag. The name, type and quality of each tag
+ * group are written once, followed by an array of timestamp deltas and an array of values. The
+ * first timestamp delta of each group is relative to the base time of the payload, and each
+ * following delta is relative to the previous timestamp in the group. All times are in
+ * milliseconds. A tag with data points of different qualities is split in to one group per quality.
+ *
+ * <pre>
+ * "basetime": 1619703907000,
+ * "tagcolumns": [
+ *   {"name": "Tag1", "type": 1, "quality": 3, "deltas": [0,1000,1000], "values": [1.5,2.5,3.5]}
+ * ]
+ * </pre>
+ *
+ * <p>This class is not thread-safe. Access must be synchronized externally by the owning {@link
+ * TWDataPayload}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+class TWColumnarPayloadBuilder {
+
+  /** Map of tag name to the first {@link TagGroup} for the tag. */
+  private final HashMap tagGroupsByName = new HashMap();
+
+  /** List of tag groups, in the order they were created. */
+  private final ArrayList tagGroups = new ArrayList();
+
+  /** Base time (in milliseconds since the epoch) of the payload. */
+  private long baseTimeMillis;
+
+  /** Boolean indicating if the base time has been set by the first data point. */
+  private boolean baseTimeSet = false;
+
+  /**
+   * Gets the number of bytes that adding the specified data point would add to the serialized tag
+   * columns, including the tag group fields if a new tag group would be created.
+   *
+   * @param dataPoint data point to be added
+   * @param timestampMillis timestamp of the data point (in milliseconds since the epoch)
+   * @return number of bytes the data point would add
+   */
+  int getAddedByteSize(DataPoint dataPoint, long timestampMillis) {
+    final int tagGroupOverheadByteSize = 72;
+    final int separatorsByteSize = 2;
+    TagGroup tagGroup =
+        findTagGroup(dataPoint.getTagName(), dataPoint.getQuality().getRawDataQuality());
+
+    int addedByteSize = TWDataPayload.getUtf8ByteLength(dataPoint.getValueString());
+    long previousTimestampMillis = baseTimeSet ? baseTimeMillis : timestampMillis;
+    if (tagGroup == null) {
+      addedByteSize +=
+          tagGroupOverheadByteSize + TWDataPayload.getUtf8ByteLength(dataPoint.getTagName());
+    } else {
+      previousTimestampMillis = tagGroup.lastTimestampMillis;
+      addedByteSize += separatorsByteSize;
+    }
+    addedByteSize += String.valueOf(timestampMillis - previousTimestampMillis).length();
+    return addedByteSize;
+  }
+
+  /**
+   * Adds the specified data point to its tag group, creating the tag group if necessary.
+   *
+   * @param dataPoint data point to add
+   * @param timestampMillis timestamp of the data point (in milliseconds since the epoch)
+   */
+  void addDataPoint(DataPoint dataPoint, long timestampMillis) {
+    if (!baseTimeSet) {
+      baseTimeMillis = timestampMillis;
+      baseTimeSet = true;
+    }
+
+    TagGroup tagGroup = getTagGroup(dataPoint);
+    if (tagGroup.count > 0) {
+      tagGroup.deltas.append(',');
+      tagGroup.values.append(',');
+    }
+    tagGroup.deltas.append(timestampMillis - tagGroup.lastTimestampMillis);
+    tagGroup.values.append(dataPoint.getValueString());
+    tagGroup.lastTimestampMillis = timestampMillis;
+    tagGroup.count++;
+  }
+
+  /**
+   * Gets the tag group for the tag name and quality of the specified data point. A new tag group is
+   * created if one does not already exist.
+   *
+   * @param dataPoint data point to get tag group for
+   * @return tag group for data point
+   */
+  private TagGroup getTagGroup(DataPoint dataPoint) {
+    String tagName = dataPoint.getTagName();
+    int quality = dataPoint.getQuality().getRawDataQuality();
+
+    // Find existing group for tag with same quality
+    TagGroup tagGroup = findTagGroup(tagName, quality);
+
+    // Create new group if none found
+    if (tagGroup == null) {
+      TagGroup firstTagGroup = (TagGroup) tagGroupsByName.get(tagName);
+      tagGroup = new TagGroup(tagName, dataPoint.getType().getRawDataType(), quality);
+      tagGroup.lastTimestampMillis = baseTimeMillis;
+      if (firstTagGroup == null) {
+        tagGroupsByName.put(tagName, tagGroup);
+      } else {
+        tagGroup.nextQualityGroup = firstTagGroup.nextQualityGroup;
+        firstTagGroup.nextQualityGroup = tagGroup;
+      }
+      tagGroups.add(tagGroup);
+    }
+    return tagGroup;
+  }
+
+  /**
+   * Finds the existing tag group for the specified tag name and quality.
+   *
+   * @param tagName tag name
+   * @param quality raw data quality
+   * @return tag group, or null if none exists
+   */
+  private TagGroup findTagGroup(String tagName, int quality) {
+    TagGroup tagGroup = (TagGroup) tagGroupsByName.get(tagName);
+    while (tagGroup != null && tagGroup.quality != quality) {
+      tagGroup = tagGroup.nextQualityGroup;
+    }
+    return tagGroup;
+  }
+
+  /**
+   * Writes the base time and tag columns JSON fields to the specified writer, followed by a
+   * trailing comma.
+   *
+   * @param writer writer to write to
+   * @param writeBuffer character buffer used while writing the deltas and values of tag groups
+   * @throws IOException if unable to write
+   */
+  void writePayloadTagColumns(Writer writer, char[] writeBuffer) throws IOException {
+    writer.write("\"basetime\": ");
+    writer.write(String.valueOf(baseTimeMillis));
+    writer.write(", ");
+    writer.write("\"tagcolumns\": [");
+    for (int i = 0; i < tagGroups.size(); i++) {
+      TagGroup tagGroup = (TagGroup) tagGroups.get(i);
+      if (i > 0) {
+        writer.write(",");
+      }
+      writer.write("{");
+      writer.write("\"name\": \"");
+      writer.write(tagGroup.name);
+      writer.write("\",");
+      writer.write("\"type\": ");
+      writer.write(String.valueOf(tagGroup.type));
+      writer.write(",");
+      writer.write("\"quality\": ");
+      writer.write(String.valueOf(tagGroup.quality));
+      writer.write(",");
+      writer.write("\"deltas\": [");
+      TWDataPayload.writeStringBuffer(writer, tagGroup.deltas, writeBuffer);
+      writer.write("],");
+      writer.write("\"values\": [");
+      TWDataPayload.writeStringBuffer(writer, tagGroup.values, writeBuffer);
+      writer.write("]");
+      writer.write("}");
+    }
+    writer.write("], ");
+  }
+
+  /**
+   * Gets the approximate number of characters that {@link #writePayloadTagColumns(Writer, char[])}
+   * will write.
+   *
+   * @return approximate length of tag columns JSON fields
+   */
+  int getApproximateLength() {
+    final int tagGroupOverheadLength = 72;
+    int length = 0;
+    for (int i = 0; i < tagGroups.size(); i++) {
+      TagGroup tagGroup = (TagGroup) tagGroups.get(i);
+      length +=
+          tagGroupOverheadLength
+              + tagGroup.name.length()
+              + tagGroup.deltas.length()
+              + tagGroup.values.length();
+    }
+    return length;
+  }
+
+  /**
+   * Group of data points for a single tag with the same quality.
+   *
+   * @since 3.4.0
+   */
+  private static class TagGroup {
+
+    /** Name of the tag. */
+    private final String name;
+
+    /** Raw data type of the tag. */
+    private final int type;
+
+    /** Raw data quality of the data points in the group. */
+    private final int quality;
+
+    /** Comma separated timestamp deltas (in milliseconds) of the data points in the group. */
+    private final StringBuffer deltas = new StringBuffer();
+
+    /** Comma separated values of the data points in the group. */
+    private final StringBuffer values = new StringBuffer();
+
+    /** Number of data points in the group. */
+    private int count = 0;
+
+    /** Timestamp (in milliseconds since the epoch) of the last data point in the group. */
+    private long lastTimestampMillis;
+
+    /** Next group for the same tag with a different quality, or null if none. */
+    private TagGroup nextQualityGroup = null;
+
+    /**
+     * Creates a new tag group.
+     *
+     * @param name name of the tag
+     * @param type raw data type of the tag
+     * @param quality raw data quality of the data points in the group
+     */
+    private TagGroup(String name, int type, int quality) {
+      this.name = name;
+      this.type = type;
+      this.quality = quality;
+    }
+  }
+}
@@ -2,88 +2,774 @@ package com.hms_networks.americas.sc.thingworx.data;
 
 import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
 import com.hms_networks.americas.sc.extensions.logging.Logger;
-import java.util.ArrayList;
-import java.util.Iterator;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import com.hms_networks.americas.sc.thingworx.TWConnectorMain;
+import com.hms_networks.americas.sc.thingworx.config.TWConnectorRuntimeConfig;
 import java.util.List;
 
 /**
  * Class for managing payloads of data points from the historical data queue that will be sent to
  * Thingworx using {@link TWApiManager}.
  *
+ * <p>Pending payloads are stored in a {@link TWPendingPayloadRing}. Data points are added to the
+ * open payload at the tail of the ring, and payloads are dispatched to the data send workers in
+ * order from the head of the ring. Several payloads may be in flight at once, and may be
+ * acknowledged out of order, but acknowledged payloads are only removed from the head of the ring.
+ * Pending payload cleanup therefore always advances in order.
+ *
  * @author HMS Networks, MU Americas Solution Center
  * @since 2.0
  */
 public class TWDataManager {
 
   /**
-   * List for storing payloads that are in progress
+   * Ring for storing payloads that are in progress
    *
    * @since 2.0
    */
-  private static final List pendingPayloads = new ArrayList();
+  private static final TWPendingPayloadRing pendingPayloads =
+      new TWPendingPayloadRing(TWConnectorConsts.PAYLOAD_PENDING_RING_CAPACITY);
+
+  /**
+   * Boolean flag indicating if a pending payload ring full message has been logged since the ring
+   * last had space available. This prevents logging a message for every data point not added.
+   */
+  private static boolean pendingPayloadsFullLogged = false;
+
+  /**
+   * Store for the data points in pending payloads. Payloads are removed from the head of the
+   * pending payload ring in order, so their data points are released from the store in order.
+   */
+  private static final TWDataPointStore dataPointStore =
+      new TWDataPointStore(TWConnectorConsts.DATA_POINT_STORE_CAPACITY);
+
+  /**
+   * Boolean flag indicating if a data point store full message has been logged since the store
+   * last had space available. This prevents logging a message for every data point not added.
+   */
+  private static boolean dataPointStoreFullLogged = false;
+
+  /** Total serialized size (in bytes) of all pending payloads. */
+  private static long pendingPayloadsByteSize = 0;
+
+  /**
+   * Total number of data points which were skipped instead of being added to the pending payloads,
+   * because they are not valid.
+   */
+  private static long invalidDataPointCount = 0;
+
+  /**
+   * Total number of data points in payloads which have been acknowledged and removed from the
+   * pending payloads, used to measure the send throughput.
+   */
+  private static long acknowledgedDataPointCount = 0;
+
+  /**
+   * Total serialized size (in bytes) of payloads which have been acknowledged and removed from the
+   * pending payloads, used to measure the send throughput.
+   */
+  private static long acknowledgedByteSize = 0;
+
+  /**
+   * Boolean flag indicating if backpressure is active. While active, reading from the historical
+   * data queue is paused and the historical log buffers data until pending payloads are sent.
+   */
+  private static boolean backpressureActive = false;
+
+  /** Total number of payloads which have been created and added to the pending payloads. */
+  private static long createdPayloadCount = 0;
+
+  /**
+   * Total number of payloads which have been removed from the pending payloads, because they were
+   * acknowledged or moved to the payload outbox.
+   */
+  private static long removedPayloadCount = 0;
+
+  /** Checkpoint of the historical data queue, or null if disabled. */
+  private static TWQueueCheckpoint queueCheckpoint = null;
+
+  /** Store-and-forward outbox for undeliverable payloads, or null if disabled. */
+  private static TWPayloadOutbox payloadOutbox = null;
 
   /**
-   * Removes the specified payload from the list of payloads that are ready to be sent to Thingworx.
+   * Boolean flag indicating if a payload outbox full message has been logged since the outbox last
+   * accepted a payload. This prevents logging a message for every payload which cannot be moved.
+   * This is only accessed while holding {@link #OUTBOX_SPILL_LOCK}.
+   */
+  private static boolean payloadOutboxFullLogged = false;
+
+  /**
+   * Lock held while moving pending payloads to the payload outbox, so that only one data send
+   * worker moves payloads at a time. The lock of this class is not held while writing to the
+   * outbox, so that adding data points and sending payloads are not blocked by flash writes.
+   */
+  private static final Object OUTBOX_SPILL_LOCK = new Object();
+
+  /**
+   * Acknowledges that the specified payload has been sent to Thingworx. Payloads may be
+   * acknowledged out of order, but are only removed from the pending payloads once all older
+   * payloads have also been acknowledged.
    *
    * @param payload <code>TWDataPayload</code> to remove
    * @since 2.0
    */
   public static synchronized void removedPendingPayload(TWDataPayload payload) {
-    pendingPayloads.remove(payload);
+    payload.setSendState(TWDataPayload.SEND_STATE_ACKNOWLEDGED);
+    removeAcknowledgedHeadPayloads();
+    commitQueueCheckpoint();
+  }
+
+  /**
+   * Removes the acknowledged payloads at the head of the pending payloads, in order. This must only
+   * be called while holding the lock of this class.
+   *
+   * @since 3.4.0
+   */
+  private static void removeAcknowledgedHeadPayloads() {
+    TWDataPayload headPayload = pendingPayloads.peekHead();
+    while (headPayload != null
+        && headPayload.getSendState() == TWDataPayload.SEND_STATE_ACKNOWLEDGED) {
+      pendingPayloads.removeHead();
+      pendingPayloadsByteSize -= headPayload.getPayloadByteSize();
+      acknowledgedDataPointCount += headPayload.getDataPointCount();
+      acknowledgedByteSize += headPayload.getPayloadByteSize();
+      removedPayloadCount++;
+      headPayload.releaseDataPoints();
+      headPayload = pendingPayloads.peekHead();
+
+      // Wake batching thread waiting for space in the pending payloads
+      TWDataManager.class.notifyAll();
+    }
   }
 
   /**
-   * Adds all data points in the specified list to a pending payload that will be sent to Thingworx.
+   * Returns the specified in-flight payload to the pending payloads after it failed to send to
+   * Thingworx, so that it is dispatched again by {@link #awaitNextPayloadToSend(long)}.
+   *
+   * @param payload <code>TWDataPayload</code> which failed to send
+   * @since 3.4.0
+   */
+  public static synchronized void releaseFailedPayload(TWDataPayload payload) {
+    if (payload.getSendState() == TWDataPayload.SEND_STATE_IN_FLIGHT) {
+      payload.setSendState(TWDataPayload.SEND_STATE_PENDING);
+    }
+  }
+
+  /**
+   * Adds the data points in the specified list, starting at the specified index, to pending
+   * payloads that will be sent to Thingworx. Data points are added in order, and adding stops at
+   * the first data point which cannot be added because the pending payloads are full. The data
+   * points which were not added must be added again once pending payloads have been sent (see
+   * {@link #awaitPendingPayloadRemoved(long)}), so that no data points are lost. Data points which
+   * are not valid are skipped, and are counted as added.
    *
    * @param dataPoints list of data points to add to payload
+   * @param startIndex index of the first data point in the list to add
+   * @return number of data points added or skipped
    * @since 2.0
    */
-  public static synchronized void addDataPointsToPending(List dataPoints) {
-    Iterator dataPointsIterator = dataPoints.iterator();
-    while (dataPointsIterator.hasNext()) {
-      DataPoint currentDataPoint = (DataPoint) dataPointsIterator.next();
-      addDataPointToPending(currentDataPoint);
+  public static synchronized int addDataPointsToPending(List dataPoints, int startIndex) {
+    int addedCount = 0;
+    boolean full = false;
+    for (int i = startIndex; i < dataPoints.size() && !full; i++) {
+      if (addDataPointToPayload((DataPoint) dataPoints.get(i)) == TWDataPayload.ADD_RESULT_FULL) {
+        full = true;
+      } else {
+        addedCount++;
+      }
     }
+    return addedCount;
   }
 
   /**
    * Adds the specified data point to a pending payload that will be sent to Thingworx.
    *
    * @param dataPoint data point to add to payload
+   * @return true if data point added, false if not added because it is not valid or the pending
+   *     payloads are full
+   */
+  public static synchronized boolean addDataPointToPending(DataPoint dataPoint) {
+    return addDataPointToPayload(dataPoint) == TWDataPayload.ADD_RESULT_ADDED;
+  }
+
+  /**
+   * Waits until a payload has been removed from the pending payloads, because it was acknowledged
+   * or moved to the payload outbox, or until the specified maximum wait time has elapsed. This
+   * should be called before adding data points again after {@link #addDataPointsToPending(List,
+   * int)} was unable to add all data points.
+   *
+   * @param maxWaitMillis maximum time (in milliseconds) to wait
+   * @throws InterruptedException if interrupted while waiting
+   * @since 3.4.0
+   */
+  public static synchronized void awaitPendingPayloadRemoved(long maxWaitMillis)
+      throws InterruptedException {
+    long initialRemovedPayloadCount = removedPayloadCount;
+    long currentTimeMillis = System.currentTimeMillis();
+    long waitDeadlineMillis = currentTimeMillis + maxWaitMillis;
+    while (removedPayloadCount == initialRemovedPayloadCount
+        && currentTimeMillis < waitDeadlineMillis) {
+      TWDataManager.class.wait(waitDeadlineMillis - currentTimeMillis);
+      currentTimeMillis = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Adds the specified data point to the open payload, or a new payload if required. Data points
+   * which are not valid are skipped and counted, and do not cause a new payload to be created.
+   * This must only be called while holding the lock of this class.
+   *
+   * @param dataPoint data point to add to payload
+   * @return {@link TWDataPayload#ADD_RESULT_ADDED} if data point added, {@link
+   *     TWDataPayload#ADD_RESULT_INVALID} if data point skipped because it is not valid, or {@link
+   *     TWDataPayload#ADD_RESULT_FULL} if data point not added because the data point store or
+   *     pending payloads are full
+   */
+  private static int addDataPointToPayload(DataPoint dataPoint) {
+    // Hold back data point if data point store is full
+    int addResult = TWDataPayload.ADD_RESULT_FULL;
+    if (dataPointStore.isFull()) {
+      if (!dataPointStoreFullLogged) {
+        Logger.LOG_WARN(
+            "Unable to add data point to a payload because the maximum number of pending data"
+                + " points ("
+                + dataPointStore.getCapacity()
+                + ") has been reached. Data points will be held back until pending payloads have"
+                + " been sent to Thingworx.");
+        dataPointStoreFullLogged = true;
+      }
+    } else {
+      dataPointStoreFullLogged = false;
+
+      // Add data point to open payload at tail, if it is not ready to send or full already
+      TWDataPayload openPayload = pendingPayloads.peekTail();
+      if (openPayload != null) {
+        int previousPayloadByteSize = openPayload.getPayloadByteSize();
+        addResult = openPayload.addDataPoint(dataPoint);
+        pendingPayloadsByteSize += openPayload.getPayloadByteSize() - previousPayloadByteSize;
+
+        // Wake data send thread if open payload is now full
+        if (addResult == TWDataPayload.ADD_RESULT_ADDED && openPayload.isClosed()) {
+          TWDataManager.class.notifyAll();
+        }
+      }
+
+      // If open payload is full or missing, create new payload if pending payloads not full
+      if (addResult == TWDataPayload.ADD_RESULT_FULL) {
+        if (pendingPayloads.size() < pendingPayloads.getCapacity()) {
+          TWDataPayload newPayload = new TWDataPayload();
+          addResult = newPayload.addDataPoint(dataPoint);
+          if (addResult == TWDataPayload.ADD_RESULT_FULL) {
+            Logger.LOG_SERIOUS("Unable to add data point to a new payload.");
+          } else if (addResult == TWDataPayload.ADD_RESULT_ADDED) {
+            pendingPayloads.addTail(newPayload);
+            pendingPayloadsByteSize += newPayload.getPayloadByteSize();
+            createdPayloadCount++;
+            pendingPayloadsFullLogged = false;
+
+            // Wake data send thread, previous open payload (if any) is now closed
+            TWDataManager.class.notifyAll();
+          }
+        } else if (!pendingPayloadsFullLogged) {
+          Logger.LOG_WARN(
+              "Unable to add data point to a new payload because the maximum number of pending"
+                  + " payloads ("
+                  + pendingPayloads.getCapacity()
+                  + ") has been reached. Data points will be held back until pending payloads"
+                  + " have been sent to Thingworx.");
+          pendingPayloadsFullLogged = true;
+        }
+      }
+
+      // Count data point if skipped because it is not valid
+      if (addResult == TWDataPayload.ADD_RESULT_INVALID) {
+        invalidDataPointCount++;
+      }
+    }
+    return addResult;
+  }
+
+  /**
+   * Adds the specified live data point to the open payload, or a new payload if required, and
+   * limits the time that payload waits for more data points to {@link
+   * TWConnectorConsts#LIVE_MODE_PAYLOAD_LINGER_MILLIS}, so that the live data point is sent to
+   * Thingworx with low latency.
+   *
+   * @param dataPoint live data point to add to payload
+   * @return true if data point added, false if discarded because it is not valid or the pending
+   *     payloads are full
+   * @since 3.4.0
+   */
+  public static synchronized boolean addLiveDataPointToPending(DataPoint dataPoint) {
+    boolean added = addDataPointToPayload(dataPoint) == TWDataPayload.ADD_RESULT_ADDED;
+
+    TWDataPayload openPayload = pendingPayloads.peekTail();
+    if (added && openPayload != null) {
+      openPayload.limitLingerDeadlineMillis(
+          System.currentTimeMillis() + TWConnectorConsts.LIVE_MODE_PAYLOAD_LINGER_MILLIS);
+
+      // Wake data send thread to wait for the new linger deadline
+      TWDataManager.class.notifyAll();
+    }
+    return added;
+  }
+
+  /**
+   * Returns the oldest payload that is ready to send to Thingworx, or null if there are no pending
+   * payloads. Payloads must be sent in order, and the returned payload should be removed using
+   * {@link #removedPendingPayload(TWDataPayload)} once it has been successfully sent.
+   *
+   * @return oldest payload to send to Thingworx, or null if none
+   */
+  public static synchronized TWDataPayload getNextPayloadToSend() {
+    return pendingPayloads.peekHead();
+  }
+
+  /**
+   * Waits until the oldest payload which is not in flight is ready to send to Thingworx, or until
+   * the specified maximum wait time has elapsed. A payload is ready to send once it is closed
+   * (full, finished or followed by a newer payload), or once its linger deadline has passed. The
+   * linger deadline is the configured payload send interval after the payload was created, or
+   * {@link TWConnectorConsts#LIVE_MODE_PAYLOAD_LINGER_MILLIS} after a live data point was added,
+   * which bounds the time a partially filled payload waits for more data points.
+   *
+   * <p>The returned payload is finished and marked as in flight, so it is not returned to another
+   * data send worker, and no more data points are added to it. The returned payload must be
+   * passed to {@link #removedPendingPayload(TWDataPayload)} once it has been successfully sent, or
+   * to {@link #releaseFailedPayload(TWDataPayload)} if it failed to send.
+   *
+   * <p>The waiting thread is woken when a payload is closed, so full payloads are sent immediately.
+   *
+   * @param maxWaitMillis maximum time (in milliseconds) to wait
+   * @return payload to send, or null if no payload became ready in time
+   * @throws InterruptedException if interrupted while waiting
+   * @since 3.4.0
+   */
+  public static synchronized TWDataPayload awaitNextPayloadToSend(long maxWaitMillis)
+      throws InterruptedException {
+    long currentTimeMillis = System.currentTimeMillis();
+    long waitDeadlineMillis = currentTimeMillis + maxWaitMillis;
+
+    TWDataPayload readyPayload = null;
+    while (readyPayload == null && currentTimeMillis < waitDeadlineMillis) {
+      // Find oldest payload which is not in flight or acknowledged
+      int position = 0;
+      TWDataPayload nextPayload = pendingPayloads.get(position);
+      while (nextPayload != null
+          && nextPayload.getSendState() != TWDataPayload.SEND_STATE_PENDING) {
+        position++;
+        nextPayload = pendingPayloads.get(position);
+      }
+
+      // Check if payload is ready, otherwise wait until its linger deadline at most
+      long waitMillis = waitDeadlineMillis - currentTimeMillis;
+      if (nextPayload != null) {
+        long lingerDeadlineMillis = nextPayload.getLingerDeadlineMillis();
+        if (position < pendingPayloads.size() - 1
+            || nextPayload.isClosed()
+            || currentTimeMillis >= lingerDeadlineMillis) {
+          readyPayload = nextPayload;
+        } else {
+          waitMillis = Math.min(waitMillis, lingerDeadlineMillis - currentTimeMillis);
+        }
+      }
+
+      if (readyPayload == null) {
+        TWDataManager.class.wait(waitMillis);
+        currentTimeMillis = System.currentTimeMillis();
+      }
+    }
+
+    if (readyPayload != null) {
+      readyPayload.finishPayload();
+      readyPayload.setSendState(TWDataPayload.SEND_STATE_IN_FLIGHT);
+    }
+    return readyPayload;
+  }
+
+  /**
+   * Opens the historical data queue checkpoint, if enabled in the connector configuration.
+   *
+   * @since 3.4.0
+   */
+  public static synchronized void openQueueCheckpoint() {
+    if (TWConnectorMain.getConnectorRuntimeConfig().isQueueCheckpointEnabled()) {
+      TWQueueCheckpoint checkpoint =
+          new TWQueueCheckpoint(
+              TWConnectorConsts.CONNECTOR_CONFIG_FOLDER
+                  + "/"
+                  + TWConnectorConsts.QUEUE_CHECKPOINT_FILE_NAME);
+      try {
+        checkpoint.open();
+        queueCheckpoint = checkpoint;
+      } catch (Exception e) {
+        Logger.LOG_CRITICAL(
+            "Unable to open the historical data queue checkpoint. The time up to which data has"
+                + " been delivered will not be recorded.");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the historical data queue checkpoint, or null if disabled.
+   *
+   * @return historical data queue checkpoint, or null if disabled
+   * @since 3.4.0
+   */
+  public static synchronized TWQueueCheckpoint getQueueCheckpoint() {
+    return queueCheckpoint;
+  }
+
+  /**
+   * Adds a time span read from the historical log to the checkpoint, if enabled. This must be
+   * called after the data points of the time span have been added to the pending payloads, so that
+   * the time span is committed once the payloads containing them have been delivered.
+   *
+   * @param spanEndTimeMillis end time (in milliseconds since the epoch) of the time span
+   * @since 3.4.0
+   */
+  public static synchronized void addQueueCheckpointSpan(long spanEndTimeMillis) {
+    if (queueCheckpoint != null) {
+      queueCheckpoint.addSpan(spanEndTimeMillis, createdPayloadCount);
+      commitQueueCheckpoint();
+    }
+  }
+
+  /**
+   * Writes the committed time of the historical data queue checkpoint, if enabled, and closes it.
+   *
+   * @since 3.4.0
+   */
+  public static synchronized void closeQueueCheckpoint() {
+    if (queueCheckpoint != null) {
+      try {
+        queueCheckpoint.close();
+      } catch (Exception e) {
+        Logger.LOG_SERIOUS("An error occurred while closing the historical data queue checkpoint.");
+        Logger.LOG_EXCEPTION(e);
+      }
+      queueCheckpoint = null;
+    }
+  }
+
+  /**
+   * Advances the historical data queue checkpoint, if enabled, to the newest time span whose
+   * payloads have all been removed from the pending payloads.
    */
-  public static synchronized void addDataPointToPending(DataPoint dataPoint) {
-    // Add data point to first payload that is not ready to send already
-    boolean didAddToExistingPayload = false;
-    Iterator pendingPayloadsIterator = pendingPayloads.iterator();
-    while (pendingPayloadsIterator.hasNext()) {
-      TWDataPayload currentPayload = (TWDataPayload) pendingPayloadsIterator.next();
-      didAddToExistingPayload = currentPayload.addDataPoint(dataPoint);
-      if (didAddToExistingPayload) {
-        break;
+  private static void commitQueueCheckpoint() {
+    if (queueCheckpoint != null) {
+      try {
+        queueCheckpoint.commit(removedPayloadCount);
+      } catch (Exception e) {
+        Logger.LOG_SERIOUS("An error occurred while writing the historical data queue checkpoint.");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the store for the data points in pending payloads.
+   *
+   * @return data point store
+   * @since 3.4.0
+   */
+  static TWDataPointStore getDataPointStore() {
+    return dataPointStore;
+  }
+
+  /**
+   * Opens the store-and-forward payload outbox, if enabled in the connector configuration.
+   * Undelivered payloads from a previous run are recovered from the outbox and sent to Thingworx
+   * before any pending payloads.
+   *
+   * @since 3.4.0
+   */
+  public static synchronized void openPayloadOutbox() {
+    TWConnectorRuntimeConfig runtimeConfig = TWConnectorMain.getConnectorRuntimeConfig();
+    if (runtimeConfig.isPayloadOutboxEnabled()) {
+      TWPayloadOutbox outbox =
+          new TWPayloadOutbox(
+              TWConnectorConsts.CONNECTOR_CONFIG_FOLDER
+                  + "/"
+                  + TWConnectorConsts.PAYLOAD_OUTBOX_DATA_FILE_NAME,
+              TWConnectorConsts.CONNECTOR_CONFIG_FOLDER
+                  + "/"
+                  + TWConnectorConsts.PAYLOAD_OUTBOX_INDEX_FILE_NAME,
+              runtimeConfig.getPayloadOutboxMaxBytes());
+      try {
+        outbox.open();
+        payloadOutbox = outbox;
+      } catch (Exception e) {
+        Logger.LOG_CRITICAL(
+            "Unable to open the payload outbox. Undelivered payloads will be kept in memory.");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the store-and-forward payload outbox. Payloads in the outbox are older than all pending
+   * payloads, and must be sent to Thingworx first.
+   *
+   * @return payload outbox, or null if disabled
+   * @since 3.4.0
+   */
+  public static synchronized TWPayloadOutbox getPayloadOutbox() {
+    return payloadOutbox;
+  }
+
+  /**
+   * Moves the oldest pending payloads to the store-and-forward payload outbox, if enabled, while
+   * the number of pending payloads is above the configured spill threshold. If free memory is low,
+   * all pending payloads are moved. Payloads are only moved from the head of the pending payloads,
+   * and moving stops at the first payload which is in flight, so a payload is never moved while it
+   * is being sent. This should be called by a data send worker after a payload failed to send, or
+   * when {@link #isPayloadOutboxSpillRequired()} returns true.
+   *
+   * <p>Each payload is marked as in flight while it is written to the outbox, so that it is not
+   * sent or moved by another data send worker, and the lock of this class is not held while
+   * writing. The outbox is synchronized to the file system once for all moved payloads, before
+   * they are removed from the pending payloads.
+   *
+   * @since 3.4.0
+   */
+  public static void spillPendingPayloadsToOutbox() {
+    TWPayloadOutbox outbox = getPayloadOutbox();
+    if (outbox != null) {
+      synchronized (OUTBOX_SPILL_LOCK) {
+        boolean compressed =
+            TWConnectorMain.getConnectorRuntimeConfig().isPayloadGzipCompressionEnabled();
+
+        // Write oldest payloads to outbox
+        int spilledPayloadCount = 0;
+        TWDataPayload payload = claimPayloadToSpill(spilledPayloadCount);
+        while (payload != null) {
+          boolean outboxFull;
+          try {
+            outboxFull = !outbox.append(payload.getPayloadBytes(compressed), compressed);
+            if (outboxFull && !payloadOutboxFullLogged) {
+              Logger.LOG_WARN(
+                  "The payload outbox is full. Pending payloads will be kept in memory until"
+                      + " payloads in the outbox have been sent to Thingworx.");
+              payloadOutboxFullLogged = true;
+            }
+          } catch (Exception e) {
+            Logger.LOG_SERIOUS("An error occurred while moving a payload to the payload outbox.");
+            Logger.LOG_EXCEPTION(e);
+            outboxFull = true;
+          }
+
+          if (outboxFull) {
+            releaseFailedPayload(payload);
+            payload = null;
+          } else {
+            spilledPayloadCount++;
+            payloadOutboxFullLogged = false;
+            payload = claimPayloadToSpill(spilledPayloadCount);
+          }
+        }
+
+        // Synchronize outbox once for all written payloads, then remove them from memory
+        if (spilledPayloadCount > 0) {
+          boolean synced = false;
+          try {
+            outbox.flush();
+            synced = true;
+          } catch (Exception e) {
+            Logger.LOG_SERIOUS(
+                "An error occurred while writing payloads to the payload outbox. The payloads"
+                    + " will be kept in memory.");
+            Logger.LOG_EXCEPTION(e);
+          }
+          removeSpilledPayloads(spilledPayloadCount, synced);
+
+          if (synced) {
+            Logger.LOG_INFO(
+                "Moved "
+                    + spilledPayloadCount
+                    + " pending payloads to the payload outbox. The outbox contains "
+                    + outbox.getRecordCount()
+                    + " payloads ("
+                    + outbox.getSizeBytes()
+                    + " bytes).");
+          }
+        }
       }
     }
+  }
+
+  /**
+   * Returns a boolean indicating if pending payloads should be moved to the payload outbox because
+   * free memory is low, even if payloads are being sent to Thingworx.
+   *
+   * @return true if the payload outbox is enabled, there are pending payloads, and free memory is
+   *     below {@link TWConnectorConsts#PAYLOAD_OUTBOX_SPILL_MIN_MEMORY_BYTES}
+   * @since 3.4.0
+   */
+  public static synchronized boolean isPayloadOutboxSpillRequired() {
+    return payloadOutbox != null
+        && pendingPayloads.size() > 0
+        && Runtime.getRuntime().freeMemory()
+            < TWConnectorConsts.PAYLOAD_OUTBOX_SPILL_MIN_MEMORY_BYTES;
+  }
+
+  /**
+   * Claims the next pending payload to move to the payload outbox, after the specified number of
+   * payloads already claimed at the head of the pending payloads. The payload is finished and
+   * marked as in flight, so that no more data points are added to it, and it is not sent or moved
+   * by another data send worker.
+   *
+   * @param claimedPayloadCount number of payloads already claimed at the head
+   * @return claimed payload, or null if no more payloads should be moved
+   * @since 3.4.0
+   */
+  private static synchronized TWDataPayload claimPayloadToSpill(int claimedPayloadCount) {
+    // Determine number of payloads to keep in memory
+    int pendingPayloadsToKeep =
+        TWConnectorMain.getConnectorRuntimeConfig().getPayloadOutboxSpillThreshold();
+    if (Runtime.getRuntime().freeMemory()
+        < TWConnectorConsts.PAYLOAD_OUTBOX_SPILL_MIN_MEMORY_BYTES) {
+      pendingPayloadsToKeep = 0;
+    }
+
+    TWDataPayload claimedPayload = null;
+    TWDataPayload payload = pendingPayloads.get(claimedPayloadCount);
+    if (payload != null
+        && pendingPayloads.size() - claimedPayloadCount > pendingPayloadsToKeep
+        && payload.getSendState() == TWDataPayload.SEND_STATE_PENDING) {
+      payload.finishPayload();
+      payload.setSendState(TWDataPayload.SEND_STATE_IN_FLIGHT);
+      claimedPayload = payload;
+    }
+    return claimedPayload;
+  }
 
-    // If unable to find payload to add data point to, create new
-    if (!didAddToExistingPayload) {
-      TWDataPayload newPayload = new TWDataPayload();
-      boolean added = newPayload.addDataPoint(dataPoint);
-      if (added) {
-        pendingPayloads.add(newPayload);
+  /**
+   * Removes the specified number of payloads, claimed by {@link #claimPayloadToSpill(int)}, from
+   * the head of the pending payloads once they have been written to the payload outbox, or returns
+   * them to the pending payloads if they could not be written.
+   *
+   * @param spilledPayloadCount number of claimed payloads at the head
+   * @param written true if the payloads were written to the outbox
+   * @since 3.4.0
+   */
+  private static synchronized void removeSpilledPayloads(int spilledPayloadCount, boolean written) {
+    for (int i = 0; i < spilledPayloadCount; i++) {
+      if (written) {
+        TWDataPayload payload = pendingPayloads.removeHead();
+        pendingPayloadsByteSize -= payload.getPayloadByteSize();
+        removedPayloadCount++;
+        payload.releaseDataPoints();
       } else {
-        Logger.LOG_SERIOUS("Unable to add data point to a new payload.");
+        pendingPayloads.get(i).setSendState(TWDataPayload.SEND_STATE_PENDING);
+      }
+    }
+
+    if (written) {
+      removeAcknowledgedHeadPayloads();
+      TWDataManager.class.notifyAll();
+      commitQueueCheckpoint();
+    }
+  }
+
+  /**
+   * Returns a boolean indicating if backpressure from the pending payloads is active, and reading
+   * from the historical data queue should be paused.
+   *
+   * <p>Backpressure becomes active when the number of pending payloads, the number of pending data
+   * points or the total size of pending payloads reaches its high watermark, and remains active
+   * until all have dropped to their low watermarks. This hysteresis prevents reading from being
+   * paused and resumed on every poll.
+   *
+   * @return true if backpressure is active
+   * @since 3.4.0
+   */
+  public static synchronized boolean isBackpressureActive() {
+    TWConnectorRuntimeConfig runtimeConfig = TWConnectorMain.getConnectorRuntimeConfig();
+    long highWatermarkBytes = runtimeConfig.getQueueBackpressureHighWatermarkBytes();
+    long lowWatermarkBytes = runtimeConfig.getQueueBackpressureLowWatermarkBytes();
+    boolean bytesWatermarksEnabled = highWatermarkBytes > 0;
+    int pendingPayloadCount = pendingPayloads.size();
+    int pendingDataPointCount = dataPointStore.size();
+
+    if (!backpressureActive) {
+      if (pendingPayloadCount >= TWConnectorConsts.PAYLOAD_PENDING_BACKPRESSURE_HIGH_WATERMARK
+          || pendingDataPointCount >= TWConnectorConsts.DATA_POINT_STORE_BACKPRESSURE_HIGH_WATERMARK
+          || (bytesWatermarksEnabled && pendingPayloadsByteSize >= highWatermarkBytes)) {
+        backpressureActive = true;
+        Logger.LOG_WARN(
+            "Reading from the historical log has been paused until pending payloads are sent to"
+                + " Thingworx. There are "
+                + pendingPayloadCount
+                + " pending payloads ("
+                + pendingPayloadsByteSize
+                + " bytes).");
       }
+    } else if (pendingPayloadCount <= TWConnectorConsts.PAYLOAD_PENDING_BACKPRESSURE_LOW_WATERMARK
+        && pendingDataPointCount <= TWConnectorConsts.DATA_POINT_STORE_BACKPRESSURE_LOW_WATERMARK
+        && (!bytesWatermarksEnabled || pendingPayloadsByteSize <= lowWatermarkBytes)) {
+      backpressureActive = false;
+      Logger.LOG_INFO(
+          "Reading from the historical log has been resumed. There are "
+              + pendingPayloadCount
+              + " pending payloads ("
+              + pendingPayloadsByteSize
+              + " bytes).");
     }
+
+    return backpressureActive;
+  }
+
+  /**
+   * Returns the total serialized size (in bytes) of all payloads that are pending to be sent to
+   * Thingworx.
+   *
+   * @return total size of pending payloads (in bytes)
+   */
+  public static synchronized long getPendingPayloadsByteSize() {
+    return pendingPayloadsByteSize;
+  }
+
+  /**
+   * Returns the total number of data points which were skipped instead of being added to the
+   * pending payloads, because they are not valid.
+   *
+   * @return number of skipped data points
+   * @since 3.4.0
+   */
+  public static synchronized long getInvalidDataPointCount() {
+    return invalidDataPointCount;
+  }
+
+  /**
+   * Returns the total number of data points in payloads which have been sent to Thingworx and
+   * removed from the pending payloads.
+   *
+   * @return total number of acknowledged data points
+   * @since 3.4.0
+   */
+  public static synchronized long getAcknowledgedDataPointCount() {
+    return acknowledgedDataPointCount;
+  }
+
+  /**
+   * Returns the total serialized size (in bytes) of payloads which have been sent to Thingworx and
+   * removed from the pending payloads.
+   *
+   * @return total size of acknowledged payloads (in bytes)
+   * @since 3.4.0
+   */
+  public static synchronized long getAcknowledgedByteSize() {
+    return acknowledgedByteSize;
   }
 
   /**
-   * Returns a copy of the list of payloads that are ready to send to Azure. Note: the returned list
-   * is a copy of the actual pending payloads list to prevent concurrent modification exceptions and
-   * other issues related to the underlying list being modified while simultaneousl being iterated
-   * over.
+   * Returns the number of payloads that are pending to be sent to Thingworx.
    *
-   * @return copy of the list of payloads to send to Azure
+   * @return number of pending payloads
    */
-  public static synchronized List getPayloadsToSend() {
-    return new ArrayList(pendingPayloads);
+  public static synchronized int getPendingPayloadCount() {
+    return pendingPayloads.size();
   }
 }
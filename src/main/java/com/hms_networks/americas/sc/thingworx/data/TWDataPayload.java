@@ -3,64 +3,374 @@ package com.hms_networks.americas.sc.thingworx.data;
 import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
 import com.hms_networks.americas.sc.extensions.logging.Logger;
 import com.hms_networks.americas.sc.extensions.system.time.LocalTimeOffsetCalculator;
-import com.hms_networks.americas.sc.extensions.system.time.SCTimeUtils;
 import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
 import com.hms_networks.americas.sc.thingworx.TWConnectorMain;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import com.hms_networks.americas.sc.thingworx.config.TWConnectorRuntimeConfig;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Payload class that stores data points and provides a method for converting to a string.
  *
+ * <p>Data points are stored in the shared {@link TWDataPointStore} as primitives, and the payload
+ * references the range of data points it contains. The data points remain in the store until the
+ * payload is removed from the pending payloads, and are serialized to JSON when the payload is
+ * sent. The payload can be written directly to an output stream using {@link
+ * #writePayload(OutputStream, boolean)}, so that it is never held in memory as a whole. If the
+ * payload string is required, it is built once by {@link #getPayloadString()} and cached for
+ * subsequent send attempts. Compressed payloads, which are a fraction of the uncompressed size, are
+ * serialized once and their bytes are cached until the payload is released, so that retries and
+ * moving the payload to the payload outbox do not serialize and compress it again.
+ *
+ * <p>If the columnar payload format is enabled, data points are instead grouped by tag using a
+ * {@link TWColumnarPayloadBuilder}.
+ *
  * @author HMS Networks, MU Americas Solution Center
  * @since 2.0
  */
 public class TWDataPayload {
 
-  /** List of data points in payload. */
-  private final List dataPoints = new ArrayList();
+  /**
+   * Upper bound of the serialized size (in bytes) of the payload JSON envelope (payload fields and
+   * info object), excluding the Ewon name and data points.
+   */
+  private static final int PAYLOAD_ENVELOPE_BASE_BYTE_SIZE = 128;
+
+  /** The character encoding of payloads sent to Thingworx. */
+  private static final String PAYLOAD_CHARACTER_ENCODING = "UTF-8";
+
+  /** The size (in bytes) of the buffer used when compressing payloads. */
+  private static final int PAYLOAD_COMPRESSION_BUFFER_SIZE_BYTES = 1024;
+
+  /** The size (in characters) of the buffer used when writing payloads. */
+  private static final int PAYLOAD_WRITE_BUFFER_SIZE_CHARS = 256;
+
+  /** Result of {@link #addDataPoint(DataPoint)} for a data point which was added. */
+  public static final int ADD_RESULT_ADDED = 0;
+
+  /**
+   * Result of {@link #addDataPoint(DataPoint)} for a data point which was skipped because it is not
+   * valid, such as a data point with a timestamp which cannot be parsed. The data point cannot be
+   * added to any payload.
+   */
+  public static final int ADD_RESULT_INVALID = 1;
+
+  /**
+   * Result of {@link #addDataPoint(DataPoint)} for a data point which was not added because the
+   * payload is finished or full. The data point can be added to a new payload.
+   */
+  public static final int ADD_RESULT_FULL = 2;
+
+  /** Send state of a payload which is waiting to be sent to Thingworx. */
+  static final int SEND_STATE_PENDING = 0;
+
+  /** Send state of a payload which is being sent to Thingworx by a data send worker. */
+  static final int SEND_STATE_IN_FLIGHT = 1;
+
+  /** Send state of a payload which has been acknowledged by Thingworx. */
+  static final int SEND_STATE_ACKNOWLEDGED = 2;
+
+  /**
+   * Sequence number in the data point store of the first data point in the payload, or -1 if the
+   * payload is empty. The data points in the payload have consecutive sequence numbers, and are
+   * released from the data point store once the payload has been finished.
+   */
+  private long firstDataPointSequence = -1;
+
+  /**
+   * Builder for the columnar (tag-grouped) payload format, or null if the columnar payload format
+   * is not enabled. This builder is released once the payload has been removed from the pending
+   * payloads.
+   */
+  private TWColumnarPayloadBuilder columnarPayloadBuilder = null;
+
+  /** Number of data points in payload. */
+  private int dataPointCount = 0;
+
+  /** Time (in milliseconds since the epoch) at which the payload was created. */
+  private final long createdTimeMillis = System.currentTimeMillis();
+
+  /**
+   * Time (in milliseconds since the epoch) after which the payload is sent, even if it is not
+   * full. This is the configured payload send interval after the payload was created, or earlier if
+   * the payload contains a live data point. This is only accessed by {@link TWDataManager} while
+   * holding its lock.
+   */
+  private long lingerDeadlineMillis;
+
+  /**
+   * Send state of the payload, one of {@link #SEND_STATE_PENDING}, {@link #SEND_STATE_IN_FLIGHT}
+   * or {@link #SEND_STATE_ACKNOWLEDGED}. This is only accessed by {@link TWDataManager} while
+   * holding its lock.
+   */
+  private int sendState = SEND_STATE_PENDING;
+
+  /**
+   * Time (in milliseconds since the epoch) at which the payload was last sent, used to measure its
+   * send latency. This is only accessed by {@link TWApiManager}.
+   */
+  private volatile long sendStartTimeMillis = 0;
+
+  /**
+   * Serialized size (in bytes) of the payload. This is tracked incrementally as data points are
+   * added and includes an upper bound for the size of the payload JSON envelope.
+   */
+  private int payloadByteSize;
+
+  /**
+   * Cached string representation of the payload. This is built once by {@link #getPayloadString()}
+   * and returned on every subsequent send attempt.
+   */
+  private String payloadString = null;
+
+  /**
+   * Cached UTF-8 representation of the payload, or null if not cached. This is built once by
+   * {@link #getPayloadBytes(boolean)}, or by {@link #writePayload(OutputStream, boolean)} for
+   * compressed payloads, and released with the data points of the payload.
+   */
+  private byte[] payloadBytes = null;
+
+  /** Boolean indicating if the cached payload bytes are gzip-compressed. */
+  private boolean payloadBytesCompressed = false;
+
+  /**
+   * Boolean to indicate the data points of the payload have been released from the data point
+   * store.
+   */
+  private boolean dataPointsReleased = false;
 
   /**
    * Boolean to indicate the payload has been finished. This allows for the payload string to be
    * safely returned by {@link #getPayloadString()} without new data points being added to the
-   * underlying payload array during request processing (prior to being marked successful).
+   * underlying payload buffer during request processing (prior to being marked successful).
    */
   private boolean payloadFinished = false;
 
   /**
-   * Adds the specified data point to the list of data points in the payload.
+   * Creates a new empty payload. The payload uses the columnar (tag-grouped) format if enabled in
+   * the connector configuration.
+   */
+  public TWDataPayload() {
+    lingerDeadlineMillis =
+        createdTimeMillis
+            + TWConnectorMain.getConnectorRuntimeConfig().getPayloadSendIntervalMillis();
+    payloadByteSize =
+        PAYLOAD_ENVELOPE_BASE_BYTE_SIZE + getUtf8ByteLength(TWApiManager.getApiDeviceName());
+    if (TWConnectorMain.getConnectorRuntimeConfig().isPayloadColumnarFormatEnabled()) {
+      columnarPayloadBuilder = new TWColumnarPayloadBuilder();
+    }
+  }
+
+  /**
+   * Adds the specified data point to the payload and stores it in the data point store. The data
+   * point is not added if the payload has been finished, has reached the configured maximum number
+   * of data points, or if adding the data point would exceed the configured maximum payload size
+   * (in bytes). A data point is always added to an empty payload, even if it exceeds the maximum
+   * payload size on its own. Data points with a timestamp which cannot be parsed are skipped.
    *
    * @param datapoint data point to add
-   * @return true if data point added
+   * @return {@link #ADD_RESULT_ADDED} if data point added, {@link #ADD_RESULT_INVALID} if data
+   *     point skipped because it is not valid, or {@link #ADD_RESULT_FULL} if data point not added
+   *     because the payload is finished or full
    */
-  public synchronized boolean addDataPoint(DataPoint datapoint) {
+  public synchronized int addDataPoint(DataPoint datapoint) {
     // Only add data point if payload is not finished
-    boolean canAddDataPoint = false;
+    int addResult = ADD_RESULT_FULL;
     if (!payloadFinished) {
-      // Get configured max number of data points per payload
-      int maxPayloadDataPoints = TWConnectorConsts.CONNECTOR_CONFIG_DEFAULT_PAYLOAD_MAX_DATA_POINTS;
-      try {
-        maxPayloadDataPoints = TWConnectorMain.getConnectorConfig().getPayloadMaxDataPoints();
-      } catch (Exception e) {
-        Logger.LOG_SERIOUS(
-            "An error occurred while parsing the maximum number of data points per payload from"
-                + " the configuration file! Using default value of "
-                + maxPayloadDataPoints
-                + ".");
-        Logger.LOG_EXCEPTION(e);
+      // Get configured max number of data points and bytes per payload
+      TWConnectorRuntimeConfig runtimeConfig = TWConnectorMain.getConnectorRuntimeConfig();
+      int maxPayloadDataPoints = TWApiManager.getPayloadMaxDataPoints();
+      int maxPayloadBytes = runtimeConfig.getPayloadMaxBytes();
+
+      // Add to payload if it has not reached max size and data point is within size
+      if (dataPointCount < maxPayloadDataPoints) {
+        try {
+          long timestampSeconds = Long.parseLong(datapoint.getTimeStamp());
+          boolean added;
+          if (columnarPayloadBuilder != null) {
+            added =
+                addColumnarDataPoint(
+                    datapoint,
+                    timestampSeconds * TWConnectorConsts.NUM_MILLISECONDS_PER_SECOND,
+                    maxPayloadBytes);
+          } else {
+            added = addStoredDataPoint(datapoint, timestampSeconds, maxPayloadBytes);
+          }
+          if (added) {
+            addResult = ADD_RESULT_ADDED;
+          }
+        } catch (NumberFormatException e) {
+          Logger.LOG_SERIOUS(
+              "An error occurred while parsing a data point timestamp to send to Thingworx! The"
+                  + " data point has been skipped.");
+          Logger.LOG_EXCEPTION(e);
+          addResult = ADD_RESULT_INVALID;
+        }
       }
+    }
 
-      // Check if payload reached max size
-      canAddDataPoint = dataPoints.size() < maxPayloadDataPoints;
+    return addResult;
+  }
 
-      // Add to payload is within size
-      if (canAddDataPoint) {
-        dataPoints.add(datapoint);
+  /**
+   * Adds the specified data point to the columnar payload builder, if it is within the specified
+   * maximum payload size.
+   *
+   * @param datapoint data point to add
+   * @param timestampMillis timestamp of the data point (in milliseconds since the epoch)
+   * @param maxPayloadBytes maximum payload size (in bytes), or 0 for no maximum
+   * @return true if data point added
+   */
+  private boolean addColumnarDataPoint(
+      DataPoint datapoint, long timestampMillis, int maxPayloadBytes) {
+    int addedByteSize = columnarPayloadBuilder.getAddedByteSize(datapoint, timestampMillis);
+    boolean added = isWithinMaxPayloadBytes(addedByteSize, maxPayloadBytes);
+    if (added) {
+      columnarPayloadBuilder.addDataPoint(datapoint, timestampMillis);
+      payloadByteSize += addedByteSize;
+      dataPointCount++;
+    }
+    return added;
+  }
+
+  /**
+   * Adds the specified data point to the data point store, if it is within the specified maximum
+   * payload size and the data point store is not full.
+   *
+   * @param datapoint data point to add
+   * @param timestampSeconds timestamp of the data point (in seconds since the epoch)
+   * @param maxPayloadBytes maximum payload size (in bytes), or 0 for no maximum
+   * @return true if data point added
+   */
+  private boolean addStoredDataPoint(
+      DataPoint datapoint, long timestampSeconds, int maxPayloadBytes) {
+    TWDataPointStore dataPointStore = TWDataManager.getDataPointStore();
+    long sequence = dataPointStore.add(datapoint, timestampSeconds);
+    boolean added = sequence != -1;
+    if (added) {
+      // Check size of serialized data point and separator, and remove from store if over maximum
+      int addedByteSize =
+          dataPointStore.getSerializedByteLength(sequence) + (dataPointCount > 0 ? 1 : 0);
+      added = isWithinMaxPayloadBytes(addedByteSize, maxPayloadBytes);
+      if (added) {
+        if (dataPointCount == 0) {
+          firstDataPointSequence = sequence;
+        }
+        payloadByteSize += addedByteSize;
+        dataPointCount++;
+      } else {
+        dataPointStore.removeLast(sequence);
       }
     }
+    return added;
+  }
+
+  /**
+   * Checks if adding the specified number of bytes to the payload keeps it within the specified
+   * maximum payload size. Empty payloads are always within the maximum size.
+   *
+   * @param addedByteSize number of bytes to be added to the payload
+   * @param maxPayloadBytes maximum payload size (in bytes), or 0 for no maximum
+   * @return true if within maximum payload size
+   */
+  private boolean isWithinMaxPayloadBytes(int addedByteSize, int maxPayloadBytes) {
+    return maxPayloadBytes <= 0
+        || dataPointCount == 0
+        || (payloadByteSize + addedByteSize) <= maxPayloadBytes;
+  }
 
-    return canAddDataPoint;
+  /**
+   * Returns a boolean indicating if the payload is closed, and no more data points can be added.
+   * A payload is closed once it has been finished or has reached the configured maximum number of
+   * data points.
+   *
+   * @return true if payload is closed
+   */
+  public synchronized boolean isClosed() {
+    return payloadFinished || dataPointCount >= TWApiManager.getPayloadMaxDataPoints();
+  }
+
+  /**
+   * Returns the time (in milliseconds since the epoch) at which the payload was created.
+   *
+   * @return payload creation time (in milliseconds since the epoch)
+   */
+  public long getCreatedTimeMillis() {
+    return createdTimeMillis;
+  }
+
+  /**
+   * Returns the time (in milliseconds since the epoch) after which the payload is sent, even if it
+   * is not full. This must only be called by {@link TWDataManager} while holding its lock.
+   *
+   * @return payload linger deadline (in milliseconds since the epoch)
+   */
+  long getLingerDeadlineMillis() {
+    return lingerDeadlineMillis;
+  }
+
+  /**
+   * Moves the time after which the payload is sent, even if it is not full, forward to the
+   * specified time if it is earlier than the current deadline. This must only be called by {@link
+   * TWDataManager} while holding its lock.
+   *
+   * @param deadlineMillis new payload linger deadline (in milliseconds since the epoch)
+   */
+  void limitLingerDeadlineMillis(long deadlineMillis) {
+    lingerDeadlineMillis = Math.min(lingerDeadlineMillis, deadlineMillis);
+  }
+
+  /**
+   * Returns the send state of the payload. This must only be called by {@link TWDataManager} while
+   * holding its lock.
+   *
+   * @return payload send state
+   */
+  int getSendState() {
+    return sendState;
+  }
+
+  /**
+   * Sets the send state of the payload. This must only be called by {@link TWDataManager} while
+   * holding its lock.
+   *
+   * @param sendState payload send state
+   */
+  void setSendState(int sendState) {
+    this.sendState = sendState;
+  }
+
+  /**
+   * Returns the time (in milliseconds since the epoch) at which the payload was last sent.
+   *
+   * @return payload send start time (in milliseconds since the epoch)
+   */
+  long getSendStartTimeMillis() {
+    return sendStartTimeMillis;
+  }
+
+  /**
+   * Sets the time (in milliseconds since the epoch) at which the payload was last sent.
+   *
+   * @param sendStartTimeMillis payload send start time (in milliseconds since the epoch)
+   */
+  void setSendStartTimeMillis(long sendStartTimeMillis) {
+    this.sendStartTimeMillis = sendStartTimeMillis;
+  }
+
+  /**
+   * Returns the serialized size (in bytes) of the payload. This is tracked incrementally as data
+   * points are added and includes an upper bound for the size of the payload JSON envelope.
+   *
+   * @return serialized size of payload (in bytes)
+   */
+  public synchronized int getPayloadByteSize() {
+    return payloadByteSize;
   }
 
   /**
@@ -69,109 +379,285 @@ public class TWDataPayload {
    * @return number of data points
    */
   public synchronized int getDataPointCount() {
-    return dataPoints.size();
+    return dataPointCount;
   }
 
   /**
-   * Marks the payload as finished. This allows the payload string to be safely returned by {@link
-   * #getPayloadString()} without new data points being added to the underlying payload array during
-   * request processing (prior to being marked successful).
+   * Marks the payload as finished. This allows the payload to be safely written by {@link
+   * #writePayload(OutputStream, boolean)} or returned by {@link #getPayloadString()} without new
+   * data points being added to the payload during request processing (prior to being marked
+   * successful). Subsequent calls (i.e. when retrying a failed send) have no effect.
    */
   public synchronized void finishPayload() {
     payloadFinished = true;
   }
 
   /**
-   * Appends the data points JSON string to the specified string buffer.
+   * Releases the data points of the payload from the data point store. This is called by {@link
+   * TWDataManager} once the payload has been removed from the pending payloads, and must be called
+   * for payloads in order, as releasing also releases the data points of all older payloads.
    *
-   * @param stringBuffer string buffer to append to
+   * @since 3.4.0
    */
-  private synchronized void appendPayloadDataPointsString(StringBuffer stringBuffer) {
-    // Add opening for data points object
-    stringBuffer.append("\"datapoints\": [");
+  synchronized void releaseDataPoints() {
+    if (!dataPointsReleased) {
+      dataPointsReleased = true;
+      payloadFinished = true;
+      if (firstDataPointSequence != -1) {
+        TWDataManager.getDataPointStore().releaseThrough(firstDataPointSequence + dataPointCount);
+      }
+      columnarPayloadBuilder = null;
+      payloadBytes = null;
+    }
+  }
 
-    // Append each pending data point
-    Iterator pendingDataPointsIterator = dataPoints.iterator();
-    while (pendingDataPointsIterator.hasNext()) {
-      // Get current data point
-      DataPoint currentDataPoint = (DataPoint) pendingDataPointsIterator.next();
+  /**
+   * Writes the UTF-8 representation of the payload to the specified output stream, compressed
+   * using gzip if specified. The payload is finished by this method if it has not already been
+   * finished.
+   *
+   * <p>Compressed payloads are written from the cached payload bytes, which are built the first
+   * time. Uncompressed payloads are written from the cached payload bytes if they have already been
+   * built by {@link #getPayloadBytes(boolean)}, otherwise they are serialized directly from their
+   * data points using a small fixed-size buffer, so the payload is never held in memory as a whole.
+   *
+   * <p>The output stream is closed once the payload has been written.
+   *
+   * @param outputStream output stream to write payload to
+   * @param compress true to compress the payload using gzip
+   * @throws IOException if unable to write the payload
+   * @since 3.4.0
+   */
+  public void writePayload(OutputStream outputStream, boolean compress) throws IOException {
+    // Get cached payload bytes, building them if compressed
+    byte[] cachedPayloadBytes;
+    if (compress) {
+      cachedPayloadBytes = getPayloadBytes(true);
+    } else {
+      cachedPayloadBytes = getCachedPayloadBytes(false);
+    }
 
-      // Get time stamp in proper format
-      String currentDataPointFormattedTimestamp;
+    // Write cached payload bytes, or serialize payload directly if not cached
+    if (cachedPayloadBytes != null) {
       try {
-        currentDataPointFormattedTimestamp =
-            SCTimeUtils.getIso8601FormattedTimestampForDataPoint(currentDataPoint);
-      } catch (Exception e) {
-        Logger.LOG_SERIOUS(
-            "An error occurred while formatting a data point timestamp to send to Thingworx!");
-        Logger.LOG_EXCEPTION(e);
-        long timestampLong =
-            Long.valueOf(currentDataPoint.getTimeStamp()).longValue()
-                * TWConnectorConsts.NUM_MILLISECONDS_PER_SECOND;
-        currentDataPointFormattedTimestamp = String.valueOf(timestampLong);
+        outputStream.write(cachedPayloadBytes);
+      } finally {
+        outputStream.close();
       }
+    } else {
+      serializePayload(outputStream, false);
+    }
+  }
 
-      // Append data point to data points list
-      stringBuffer.append("{");
-      stringBuffer.append("\"name\": \"").append(currentDataPoint.getTagName()).append("\",");
-      stringBuffer.append("\"value\": ").append(currentDataPoint.getValueString()).append(",");
-      stringBuffer
-          .append("\"type\": ")
-          .append(currentDataPoint.getType().getRawDataType())
-          .append(",");
-      stringBuffer
-          .append("\"quality\": ")
-          .append(currentDataPoint.getQuality().getRawDataQuality())
-          .append(",");
-      stringBuffer
-          .append("\"timestamp\": \"")
-          .append(currentDataPointFormattedTimestamp)
-          .append("\"");
-      stringBuffer.append("}");
-
-      // Append comma if there are more data points to be added
-      if (pendingDataPointsIterator.hasNext()) {
-        stringBuffer.append(",");
-      }
+  /**
+   * Serializes the payload from its data points and writes its UTF-8 representation to the
+   * specified output stream, compressed using gzip if specified. The payload is finished by this
+   * method if it has not already been finished. The output stream is closed once the payload has
+   * been written.
+   *
+   * @param outputStream output stream to write payload to
+   * @param compress true to compress the payload using gzip
+   * @throws IOException if unable to write the payload
+   */
+  private void serializePayload(OutputStream outputStream, boolean compress) throws IOException {
+    // Finish payload, the payload is not modified while it is written after this
+    finishPayload();
+
+    OutputStream payloadStream = outputStream;
+    if (compress) {
+      payloadStream = new GZIPOutputStream(outputStream, PAYLOAD_COMPRESSION_BUFFER_SIZE_BYTES);
+    }
+    Writer payloadWriter = new OutputStreamWriter(payloadStream, PAYLOAD_CHARACTER_ENCODING);
+    try {
+      writePayloadJson(payloadWriter);
+    } finally {
+      payloadWriter.close();
     }
+  }
 
-    // Add closing for data points object
-    stringBuffer.append("], ");
+  /**
+   * Writes the contents of the specified string buffer to the specified writer, using the
+   * specified character buffer to avoid creating a string from the string buffer.
+   *
+   * @param writer writer to write to
+   * @param stringBuffer string buffer to write
+   * @param writeBuffer character buffer used while writing
+   * @throws IOException if unable to write
+   */
+  static void writeStringBuffer(Writer writer, StringBuffer stringBuffer, char[] writeBuffer)
+      throws IOException {
+    int offset = 0;
+    int length = stringBuffer.length();
+    while (offset < length) {
+      int count = Math.min(writeBuffer.length, length - offset);
+      stringBuffer.getChars(offset, offset + count, writeBuffer, 0);
+      writer.write(writeBuffer, 0, count);
+      offset += count;
+    }
+  }
+
+  /**
+   * Gets the number of bytes required to encode the specified string as UTF-8.
+   *
+   * @param string string to get UTF-8 length of
+   * @return UTF-8 encoded length (in bytes)
+   */
+  static int getUtf8ByteLength(String string) {
+    int byteLength = 0;
+    for (int i = 0; i < string.length(); i++) {
+      byteLength += getUtf8ByteLength(string.charAt(i));
+    }
+    return byteLength;
   }
 
   /**
-   * Gets the string representation of the payload.
+   * Gets the number of bytes required to encode the specified character as UTF-8. Each character
+   * of a surrogate pair is counted as 2 bytes, for a total of 4 bytes per pair.
+   *
+   * @param character character to get UTF-8 length of
+   * @return UTF-8 encoded length (in bytes)
+   */
+  private static int getUtf8ByteLength(char character) {
+    int byteLength;
+    if (character < 0x80) {
+      byteLength = 1;
+    } else if (character < 0x800 || (character >= 0xD800 && character <= 0xDFFF)) {
+      byteLength = 2;
+    } else {
+      byteLength = 3;
+    }
+    return byteLength;
+  }
+
+  /**
+   * Builds the string representation of the payload by serializing the data points in the payload.
    *
    * @return payload string
    */
-  public synchronized String getPayloadString() {
-    // Create string buffer for building payload
-    StringBuffer payloadBuffer = new StringBuffer();
+  private String buildPayloadString() {
+    // Create string writer for building payload, sized to avoid resizing
+    final int payloadOverheadLength = 128;
+    int dataPointsLength =
+        columnarPayloadBuilder != null
+            ? columnarPayloadBuilder.getApproximateLength()
+            : payloadByteSize;
+    StringWriter payloadWriter = new StringWriter(dataPointsLength + payloadOverheadLength);
+    try {
+      writePayloadJson(payloadWriter);
+    } catch (IOException e) {
+      // String writer does not throw IOException
+      Logger.LOG_EXCEPTION(e);
+    }
+    return payloadWriter.toString();
+  }
+
+  /**
+   * Writes the JSON representation of the payload to the specified writer, serializing the data
+   * points in the payload one at a time.
+   *
+   * @param payloadWriter writer to write payload to
+   * @throws IOException if unable to write the payload
+   */
+  private void writePayloadJson(Writer payloadWriter) throws IOException {
+    char[] writeBuffer = new char[PAYLOAD_WRITE_BUFFER_SIZE_CHARS];
 
     // Add opening JSON bracket
-    payloadBuffer.append("{\"Tags\":{");
+    payloadWriter.write("{\"Tags\":{");
 
-    // Add data points array
-    appendPayloadDataPointsString(payloadBuffer);
+    // Add data points array, or tag columns if using columnar format
+    if (columnarPayloadBuilder != null) {
+      columnarPayloadBuilder.writePayloadTagColumns(payloadWriter, writeBuffer);
+    } else {
+      payloadWriter.write("\"datapoints\": [");
+      TWDataPointStore dataPointStore = TWDataManager.getDataPointStore();
+      StringBuffer dataPointBuffer = new StringBuffer(PAYLOAD_WRITE_BUFFER_SIZE_CHARS);
+      for (int i = 0; i < dataPointCount; i++) {
+        if (i > 0) {
+          payloadWriter.write(',');
+        }
+        dataPointBuffer.setLength(0);
+        dataPointStore.appendDataPointString(dataPointBuffer, firstDataPointSequence + i);
+        writeStringBuffer(payloadWriter, dataPointBuffer, writeBuffer);
+      }
+      payloadWriter.write("], ");
+    }
 
     // Add opening for info object
-    payloadBuffer.append("\"info\": {");
+    payloadWriter.write("\"info\": {");
 
     // Append Ewon name in info object
-    payloadBuffer.append("\"ewon-name\": \"").append(TWApiManager.getApiDeviceName()).append("\",");
+    payloadWriter.write("\"ewon-name\": \"");
+    payloadWriter.write(TWApiManager.getApiDeviceName());
+    payloadWriter.write("\",");
 
     // Append Ewon time offset from UTC in milliseconds
-    payloadBuffer
-        .append("\"ewon-utc-offset-millis\": \"")
-        .append(LocalTimeOffsetCalculator.getLocalTimeOffsetMilliseconds())
-        .append("\"");
+    payloadWriter.write("\"ewon-utc-offset-millis\": \"");
+    payloadWriter.write(String.valueOf(LocalTimeOffsetCalculator.getLocalTimeOffsetMilliseconds()));
+    payloadWriter.write("\"");
 
     // Add closing for info object
-    payloadBuffer.append("}");
+    payloadWriter.write("}");
 
     // Add closing JSON bracket
-    payloadBuffer.append("}}");
+    payloadWriter.write("}}");
+  }
+
+  /**
+   * Gets the string representation of the payload. The payload is finished by this method if it
+   * has not already been finished. The payload string is only built the first time this method is
+   * called, and the cached payload string is returned by subsequent calls (i.e. when retrying a
+   * failed send).
+   *
+   * @return payload string
+   */
+  public synchronized String getPayloadString() {
+    finishPayload();
+    if (payloadString == null) {
+      payloadString = buildPayloadString();
+    }
+    return payloadString;
+  }
+
+  /**
+   * Gets the UTF-8 representation of the payload, optionally gzip-compressed. The payload is
+   * finished by this method if it has not already been finished. The payload bytes are only built
+   * the first time this method is called, and are cached until the data points of the payload are
+   * released. If called with a different compression, the cached payload bytes are replaced.
+   *
+   * @param compress true to gzip-compress the payload
+   * @return payload bytes
+   * @throws IOException if unable to write the payload
+   */
+  public synchronized byte[] getPayloadBytes(boolean compress) throws IOException {
+    byte[] bytes = getCachedPayloadBytes(compress);
+    if (bytes == null) {
+      // JSON payloads typically compress to less than a quarter of their size
+      int initialSize = compress ? payloadByteSize / 4 : payloadByteSize;
+      ByteArrayOutputStream payloadStream = new ByteArrayOutputStream(Math.max(initialSize, 64));
+      serializePayload(payloadStream, compress);
+      bytes = payloadStream.toByteArray();
 
-    return payloadBuffer.toString();
+      // Cache payload bytes until the data points of the payload are released
+      if (!dataPointsReleased) {
+        payloadBytes = bytes;
+        payloadBytesCompressed = compress;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Gets the cached UTF-8 representation of the payload, if it has been built with the specified
+   * compression.
+   *
+   * @param compress true to get gzip-compressed payload bytes
+   * @return cached payload bytes, or null if not cached
+   */
+  private synchronized byte[] getCachedPayloadBytes(boolean compress) {
+    byte[] bytes = null;
+    if (payloadBytes != null && payloadBytesCompressed == compress) {
+      bytes = payloadBytes;
+    }
+    return bytes;
   }
 }
@@ -0,0 +1,162 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Bounded hand-off of batches of data points from the historical reader to the batching stage,
+ * which adds them to the pending payloads.
+ *
+ * <p>The reader checks {@link #isFull()} before each read of the historical log, and skips the read
+ * while the hand-off is full, leaving the data buffered in the historical log. Batches which have
+ * already been read are always accepted by {@link #put(List, long)}, so that they are never
+ * dropped. Each batch is handed off with the end time of the time span it was read from.
+ *
+ * <p>A batch remains in the hand-off until all of its data points have been added to the pending
+ * payloads and it is removed using {@link #remove(Batch)}. While the pending payloads are full, the
+ * batching stage keeps the partially added batch, the hand-off fills up, and reading from the
+ * historical log is paused, so that backpressure from the pending payloads reaches the reader
+ * without data points being dropped.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWDataPointBatchHandoff {
+
+  /** Batches of data points waiting to be taken by the batching stage, oldest first. */
+  private final Vector batches = new Vector();
+
+  /** Number of batches at which the hand-off is full. */
+  private final int capacity;
+
+  /**
+   * Creates a new hand-off with the specified capacity.
+   *
+   * @param capacity number of batches at which the hand-off is full
+   */
+  public TWDataPointBatchHandoff(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns a boolean indicating if the hand-off is full, and no more data should be read until
+   * batches have been taken.
+   *
+   * @return true if hand-off is full
+   */
+  public synchronized boolean isFull() {
+    return batches.size() >= capacity;
+  }
+
+  /**
+   * Adds the specified batch of data points to the hand-off, and wakes the batching stage.
+   *
+   * @param dataPoints batch of data points
+   * @param spanEndTimeMillis end time (in milliseconds since the epoch) of the time span the batch
+   *     was read from, or -1 if unknown
+   */
+  public synchronized void put(List dataPoints, long spanEndTimeMillis) {
+    batches.addElement(new Batch(dataPoints, spanEndTimeMillis));
+    notifyAll();
+  }
+
+  /**
+   * Gets the oldest batch of data points in the hand-off, without removing it, waiting up to the
+   * specified time for a batch to be added if the hand-off is empty.
+   *
+   * @param maxWaitMillis maximum time (in milliseconds) to wait for a batch
+   * @return oldest batch of data points, or null if no batch was added within the wait time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized Batch peek(long maxWaitMillis) throws InterruptedException {
+    if (batches.size() == 0) {
+      wait(maxWaitMillis);
+    }
+
+    Batch batch = null;
+    if (batches.size() > 0) {
+      batch = (Batch) batches.elementAt(0);
+    }
+    return batch;
+  }
+
+  /**
+   * Removes the specified batch of data points from the hand-off, once all of its data points have
+   * been added to the pending payloads.
+   *
+   * @param batch batch of data points to remove
+   */
+  public synchronized void remove(Batch batch) {
+    batches.removeElement(batch);
+  }
+
+  /**
+   * A batch of data points read from the historical log.
+   *
+   * @since 3.4.0
+   */
+  public static final class Batch {
+
+    /** Data points of the batch. */
+    private final List dataPoints;
+
+    /** End time (in milliseconds since the epoch) of the time span, or -1 if unknown. */
+    private final long spanEndTimeMillis;
+
+    /**
+     * Number of data points of the batch which have been added to the pending payloads, or skipped
+     * because they are not valid.
+     */
+    private int addedDataPointCount = 0;
+
+    /**
+     * Creates a new batch of data points.
+     *
+     * @param dataPoints data points of the batch
+     * @param spanEndTimeMillis end time (in milliseconds since the epoch) of the time span the
+     *     batch was read from, or -1 if unknown
+     */
+    private Batch(List dataPoints, long spanEndTimeMillis) {
+      this.dataPoints = dataPoints;
+      this.spanEndTimeMillis = spanEndTimeMillis;
+    }
+
+    /**
+     * Gets the data points of the batch.
+     *
+     * @return data points of the batch
+     */
+    public List getDataPoints() {
+      return dataPoints;
+    }
+
+    /**
+     * Gets the end time of the time span the batch was read from.
+     *
+     * @return end time (in milliseconds since the epoch) of the time span, or -1 if unknown
+     */
+    public long getSpanEndTimeMillis() {
+      return spanEndTimeMillis;
+    }
+
+    /**
+     * Gets the number of data points of the batch which have been added to the pending payloads.
+     *
+     * @return number of added data points
+     */
+    public synchronized int getAddedDataPointCount() {
+      return addedDataPointCount;
+    }
+
+    /**
+     * Sets the number of data points of the batch which have been added to the pending payloads.
+     *
+     * @param addedDataPointCount number of added data points
+     */
+    public synchronized void setAddedDataPointCount(int addedDataPointCount) {
+      this.addedDataPointCount = addedDataPointCount;
+    }
+  }
+}
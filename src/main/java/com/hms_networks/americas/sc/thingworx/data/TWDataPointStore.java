@@ -0,0 +1,373 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Preallocated store of data points which are pending to be sent to Thingworx. Data points are
+ * stored in a ring of parallel primitive arrays, instead of as individual objects, to reduce heap
+ * usage and garbage collection while payloads are pending.
+ *
+ * <p>Each stored data point is identified by a sequence number, which increases by one for each
+ * data point added. Payloads reference a range of consecutive sequence numbers, and serialize the
+ * data points in the range when they are finished. Data points are released in order, once the
+ * payload referencing them has been finished.
+ *
+ * <p>Tag names are stored once in a name table and referenced by index. Integer values are stored
+ * as longs, float values as their float bits, and all other values (such as strings) as text.
+ * Values are only stored as primitives if they are formatted identically when serialized, so
+ * serialized data points match the original value strings exactly.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 3.4.0
+ * @author HMS Networks, MU Americas Solution Center
+ */
+class TWDataPointStore {
+
+  /** Value kind for values stored as a long. */
+  private static final byte VALUE_KIND_LONG = 0;
+
+  /** Value kind for values stored as float bits. */
+  private static final byte VALUE_KIND_FLOAT = 1;
+
+  /** Value kind for values stored as text. */
+  private static final byte VALUE_KIND_TEXT = 2;
+
+  /** Mask for reading unsigned values stored in byte arrays. */
+  private static final int BYTE_MASK = 0xFF;
+
+  /** Maximum number of digits of integer values which are stored as a long. */
+  private static final int LONG_VALUE_MAX_DIGITS = 18;
+
+  /** JSON preceding the tag name of a serialized data point. */
+  private static final String JSON_NAME_PREFIX = "{\"name\": \"";
+
+  /** JSON preceding the value of a serialized data point. */
+  private static final String JSON_VALUE_PREFIX = "\",\"value\": ";
+
+  /** JSON preceding the type of a serialized data point. */
+  private static final String JSON_TYPE_PREFIX = ",\"type\": ";
+
+  /** JSON preceding the quality of a serialized data point. */
+  private static final String JSON_QUALITY_PREFIX = ",\"quality\": ";
+
+  /** JSON preceding the timestamp of a serialized data point. */
+  private static final String JSON_TIMESTAMP_PREFIX = ",\"timestamp\": \"";
+
+  /** JSON following the timestamp of a serialized data point. */
+  private static final String JSON_SUFFIX = "\"}";
+
+  /**
+   * Length (in bytes) of the fixed JSON fields and the longest timestamp of a serialized data
+   * point.
+   */
+  private static final int JSON_FIXED_BYTE_LENGTH =
+      JSON_NAME_PREFIX.length()
+          + JSON_VALUE_PREFIX.length()
+          + JSON_TYPE_PREFIX.length()
+          + JSON_QUALITY_PREFIX.length()
+          + JSON_TIMESTAMP_PREFIX.length()
+          + TWTimestampFormatter.FORMATTED_TIMESTAMP_LENGTH
+          + JSON_SUFFIX.length();
+
+  /** Formatter used to format the timestamps of serialized data points. */
+  private static final TWTimestampFormatter TIMESTAMP_FORMATTER = new TWTimestampFormatter();
+
+  /** Maximum number of data points in the store. */
+  private final int capacity;
+
+  /** Tag name table index of each data point. */
+  private final int[] tagIndexes;
+
+  /** Timestamp (in seconds since the epoch) of each data point. */
+  private final long[] timestampSeconds;
+
+  /** Long value or float bits of each data point, depending on its value kind. */
+  private final long[] values;
+
+  /** Text value of each data point with a text value kind, otherwise null. */
+  private final String[] textValues;
+
+  /** Value kind of each data point. */
+  private final byte[] valueKinds;
+
+  /** Raw data type (0-255) of each data point. */
+  private final byte[] types;
+
+  /** Raw data quality (0-255) of each data point. */
+  private final byte[] qualities;
+
+  /** Serialized size (in bytes) of each data point. */
+  private final int[] serializedByteLengths;
+
+  /** Map of tag names to their index in the tag name table. */
+  private final HashMap tagIndexesByName = new HashMap();
+
+  /** Tag name table. */
+  private final ArrayList tagNames = new ArrayList();
+
+  /** UTF-8 encoded length (in bytes) of each tag name in the tag name table. */
+  private int[] tagNameByteLengths = new int[64];
+
+  /** Sequence number of the oldest data point in the store. */
+  private long headSequence = 0;
+
+  /** Sequence number of the next data point to be added to the store. */
+  private long tailSequence = 0;
+
+  /**
+   * Creates a new data point store with the specified capacity. All storage is allocated up front.
+   *
+   * @param capacity maximum number of data points in the store
+   */
+  TWDataPointStore(int capacity) {
+    this.capacity = capacity;
+    this.tagIndexes = new int[capacity];
+    this.timestampSeconds = new long[capacity];
+    this.values = new long[capacity];
+    this.textValues = new String[capacity];
+    this.valueKinds = new byte[capacity];
+    this.types = new byte[capacity];
+    this.qualities = new byte[capacity];
+    this.serializedByteLengths = new int[capacity];
+  }
+
+  /**
+   * Adds the specified data point to the store.
+   *
+   * @param dataPoint data point to add
+   * @param dataPointTimestampSeconds timestamp of the data point (in seconds since the epoch)
+   * @return sequence number of the added data point, or -1 if the store is full
+   */
+  synchronized long add(DataPoint dataPoint, long dataPointTimestampSeconds) {
+    long sequence = -1;
+    if (tailSequence - headSequence < capacity) {
+      sequence = tailSequence++;
+      int slot = getSlot(sequence);
+      int tagIndex = getTagIndex(dataPoint.getTagName());
+      String valueString = dataPoint.getValueString();
+      int rawDataType = dataPoint.getType().getRawDataType();
+      int rawDataQuality = dataPoint.getQuality().getRawDataQuality();
+
+      tagIndexes[slot] = tagIndex;
+      timestampSeconds[slot] = dataPointTimestampSeconds;
+      types[slot] = (byte) rawDataType;
+      qualities[slot] = (byte) rawDataQuality;
+      storeValue(slot, valueString);
+      serializedByteLengths[slot] =
+          JSON_FIXED_BYTE_LENGTH
+              + tagNameByteLengths[tagIndex]
+              + TWDataPayload.getUtf8ByteLength(valueString)
+              + getDigitCount(rawDataType)
+              + getDigitCount(rawDataQuality);
+    }
+    return sequence;
+  }
+
+  /**
+   * Removes the most recently added data point from the store, if it has the specified sequence
+   * number. This is used to undo adding a data point which does not fit in its payload.
+   *
+   * @param sequence sequence number of the most recently added data point
+   */
+  synchronized void removeLast(long sequence) {
+    if (sequence == tailSequence - 1 && sequence >= headSequence) {
+      textValues[getSlot(sequence)] = null;
+      tailSequence--;
+    }
+  }
+
+  /**
+   * Releases all data points with a sequence number less than the specified sequence number, making
+   * their storage available for new data points.
+   *
+   * @param endSequence sequence number following the last data point to release
+   */
+  synchronized void releaseThrough(long endSequence) {
+    long releaseEndSequence = Math.min(endSequence, tailSequence);
+    while (headSequence < releaseEndSequence) {
+      textValues[getSlot(headSequence)] = null;
+      headSequence++;
+    }
+  }
+
+  /**
+   * Gets the serialized size (in bytes) of the specified data point.
+   *
+   * @param sequence sequence number of the data point
+   * @return serialized size of data point (in bytes)
+   */
+  synchronized int getSerializedByteLength(long sequence) {
+    checkSequence(sequence);
+    return serializedByteLengths[getSlot(sequence)];
+  }
+
+  /**
+   * Appends the JSON string of the specified data point to the specified string buffer.
+   *
+   * @param stringBuffer string buffer to append to
+   * @param sequence sequence number of the data point
+   */
+  synchronized void appendDataPointString(StringBuffer stringBuffer, long sequence) {
+    checkSequence(sequence);
+    int slot = getSlot(sequence);
+    stringBuffer.append(JSON_NAME_PREFIX).append((String) tagNames.get(tagIndexes[slot]));
+    stringBuffer.append(JSON_VALUE_PREFIX);
+    if (valueKinds[slot] == VALUE_KIND_LONG) {
+      stringBuffer.append(values[slot]);
+    } else if (valueKinds[slot] == VALUE_KIND_FLOAT) {
+      stringBuffer.append(Float.intBitsToFloat((int) values[slot]));
+    } else {
+      stringBuffer.append(textValues[slot]);
+    }
+    stringBuffer.append(JSON_TYPE_PREFIX).append(types[slot] & BYTE_MASK);
+    stringBuffer.append(JSON_QUALITY_PREFIX).append(qualities[slot] & BYTE_MASK);
+    stringBuffer.append(JSON_TIMESTAMP_PREFIX);
+    TIMESTAMP_FORMATTER.appendIso8601Timestamp(stringBuffer, timestampSeconds[slot]);
+    stringBuffer.append(JSON_SUFFIX);
+  }
+
+  /**
+   * Gets the number of data points in the store.
+   *
+   * @return number of data points
+   */
+  synchronized int size() {
+    return (int) (tailSequence - headSequence);
+  }
+
+  /**
+   * Gets the maximum number of data points in the store.
+   *
+   * @return store capacity
+   */
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets a boolean indicating if the store is full.
+   *
+   * @return true if full
+   */
+  synchronized boolean isFull() {
+    return tailSequence - headSequence >= capacity;
+  }
+
+  /**
+   * Gets the array slot of the specified sequence number.
+   *
+   * @param sequence sequence number
+   * @return array slot
+   */
+  private int getSlot(long sequence) {
+    return (int) (sequence % capacity);
+  }
+
+  /**
+   * Checks that the specified sequence number refers to a data point in the store.
+   *
+   * @param sequence sequence number
+   * @throws IllegalStateException if the data point has been released or not yet added
+   */
+  private void checkSequence(long sequence) {
+    if (sequence < headSequence || sequence >= tailSequence) {
+      throw new IllegalStateException(
+          "The data point with sequence number " + sequence + " is not in the data point store.");
+    }
+  }
+
+  /**
+   * Gets the index of the specified tag name in the tag name table, adding it if necessary.
+   *
+   * @param tagName tag name
+   * @return tag name table index
+   */
+  private int getTagIndex(String tagName) {
+    Integer tagIndex = (Integer) tagIndexesByName.get(tagName);
+    if (tagIndex == null) {
+      int newTagIndex = tagNames.size();
+      tagIndex = new Integer(newTagIndex);
+      tagIndexesByName.put(tagName, tagIndex);
+      tagNames.add(tagName);
+      if (newTagIndex == tagNameByteLengths.length) {
+        int[] grownTagNameByteLengths = new int[tagNameByteLengths.length * 2];
+        System.arraycopy(
+            tagNameByteLengths, 0, grownTagNameByteLengths, 0, tagNameByteLengths.length);
+        tagNameByteLengths = grownTagNameByteLengths;
+      }
+      tagNameByteLengths[newTagIndex] = TWDataPayload.getUtf8ByteLength(tagName);
+    }
+    return tagIndex.intValue();
+  }
+
+  /**
+   * Stores the specified value string in the specified slot, as a primitive if it is formatted
+   * identically when serialized, otherwise as text.
+   *
+   * @param slot array slot
+   * @param valueString value string
+   */
+  private void storeValue(int slot, String valueString) {
+    valueKinds[slot] = VALUE_KIND_TEXT;
+    textValues[slot] = null;
+    if (isCanonicalLong(valueString)) {
+      valueKinds[slot] = VALUE_KIND_LONG;
+      values[slot] = Long.parseLong(valueString);
+    } else if (valueString.length() > 0
+        && (Character.isDigit(valueString.charAt(0)) || valueString.charAt(0) == '-')) {
+      try {
+        float floatValue = Float.parseFloat(valueString);
+        if (Float.toString(floatValue).equals(valueString)) {
+          valueKinds[slot] = VALUE_KIND_FLOAT;
+          values[slot] = Float.floatToIntBits(floatValue);
+        }
+      } catch (NumberFormatException e) {
+        // Not a float value, store as text
+      }
+    }
+    if (valueKinds[slot] == VALUE_KIND_TEXT) {
+      textValues[slot] = valueString;
+    }
+  }
+
+  /**
+   * Checks if the specified value string is an integer which is formatted identically when stored
+   * as a long and serialized, with no leading zeros, plus sign or negative zero.
+   *
+   * @param valueString value string
+   * @return true if canonical long value
+   */
+  private static boolean isCanonicalLong(String valueString) {
+    int length = valueString.length();
+    int digitsStart = length > 0 && valueString.charAt(0) == '-' ? 1 : 0;
+    int digitCount = length - digitsStart;
+    boolean canonical = digitCount > 0 && digitCount <= LONG_VALUE_MAX_DIGITS;
+    if (canonical && valueString.charAt(digitsStart) == '0') {
+      canonical = length == 1;
+    }
+    for (int i = digitsStart; canonical && i < length; i++) {
+      char character = valueString.charAt(i);
+      canonical = character >= '0' && character <= '9';
+    }
+    return canonical;
+  }
+
+  /**
+   * Gets the number of characters in the decimal representation of the specified integer.
+   *
+   * @param value integer
+   * @return number of characters
+   */
+  private static int getDigitCount(int value) {
+    int digitCount = value < 0 ? 2 : 1;
+    int remaining = Math.abs(value);
+    while (remaining >= 10) {
+      remaining /= 10;
+      digitCount++;
+    }
+    return digitCount;
+  }
+}
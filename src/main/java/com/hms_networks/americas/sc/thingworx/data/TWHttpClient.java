@@ -0,0 +1,589 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Minimal HTTP/1.1 client for sending binary request bodies, such as compressed payloads, to
+ * Thingworx. The Ewon HTTP functions used by {@link
+ * com.hms_networks.americas.sc.extensions.system.http.SCHttpUtility} only support string request
+ * bodies, and open a new connection (including a new TLS handshake) for every request.
+ *
+ * <p>If a keep-alive idle timeout is specified, the connection is kept open and reused for
+ * subsequent requests. An idle connection is closed once the idle timeout has elapsed, and the
+ * connection is closed on any error or if the server closes it. If a reused connection turns out to
+ * have been closed by the server before the response was started, the request is retried once on a
+ * new connection. Idle connections may be closed by the server at any time.
+ *
+ * <p>This class is thread-safe. Requests made using the same instance are performed one at a time.
+ *
+ * @since 3.4.0
+ * @version 1.0
+ * @author HMS Networks, MU Americas Solution Center
+ */
+public class TWHttpClient {
+
+  /** The URL protocol for secure (HTTPS) connections. */
+  private static final String HTTPS_PROTOCOL = "https";
+
+  /** The default port for HTTP connections. */
+  private static final int HTTP_DEFAULT_PORT = 80;
+
+  /** The default port for HTTPS connections. */
+  private static final int HTTPS_DEFAULT_PORT = 443;
+
+  /** The line terminator used in HTTP requests and responses. */
+  private static final String HTTP_LINE_TERMINATOR = "\r\n";
+
+  /** The maximum length of a line in an HTTP response status line or header. */
+  private static final int HTTP_RESPONSE_LINE_MAX_LENGTH = 8192;
+
+  /** The character encoding of HTTP request and response headers. */
+  private static final String HTTP_HEADER_ENCODING = "ISO-8859-1";
+
+  /** The character encoding used to read HTTP response bodies. */
+  private static final String HTTP_BODY_ENCODING = "UTF-8";
+
+  /**
+   * The size (in bytes) of the buffer for data written to the connection. Each request is written
+   * to the connection in pieces of up to this size, and flushed once when complete.
+   */
+  private static final int SOCKET_OUTPUT_BUFFER_SIZE_BYTES = 4096;
+
+  /** The host name of the server. */
+  private final String host;
+
+  /** The port of the server. */
+  private final int port;
+
+  /** Boolean indicating if connections to the server use HTTPS. */
+  private final boolean secure;
+
+  /** The request path (including query string) of the request URL. */
+  private final String requestPath;
+
+  /** The connect and read timeout (in milliseconds) for requests. */
+  private final int timeoutMillis;
+
+  /**
+   * The time (in milliseconds) after which an idle connection is closed instead of being reused, or
+   * 0 if connections are not reused.
+   */
+  private final int keepAliveIdleTimeoutMillis;
+
+  /** The open connection to the server, or null if not connected. */
+  private Socket socket = null;
+
+  /** The buffered input stream of the open connection, or null if not connected. */
+  private InputStream socketInputStream = null;
+
+  /** The buffered output stream of the open connection, or null if not connected. */
+  private OutputStream socketOutputStream = null;
+
+  /** Time (in milliseconds since the epoch) at which the open connection was last used. */
+  private long socketLastUsedMillis = 0;
+
+  /**
+   * Boolean indicating if the connection can be reused after the last response was read. This is
+   * false if the server requested that the connection be closed, or if the response body was
+   * delimited by the end of the connection.
+   */
+  private boolean responseKeepAlive = false;
+
+  /**
+   * Boolean indicating if any part of the last response was read. This is used to determine if a
+   * failed request on a reused connection can be safely retried.
+   */
+  private boolean responseStarted = false;
+
+  /**
+   * Creates a new HTTP client for sending requests to the specified URL. A new connection is opened
+   * for each request.
+   *
+   * @param url request URL
+   * @param timeoutMillis connect and read timeout (in milliseconds) for requests
+   * @throws MalformedURLException if the specified URL is invalid
+   */
+  public TWHttpClient(String url, int timeoutMillis) throws MalformedURLException {
+    this(url, timeoutMillis, 0);
+  }
+
+  /**
+   * Creates a new HTTP client for sending requests to the specified URL. If the specified
+   * keep-alive idle timeout is greater than zero, connections are kept open and reused for
+   * subsequent requests.
+   *
+   * @param url request URL
+   * @param timeoutMillis connect and read timeout (in milliseconds) for requests
+   * @param keepAliveIdleTimeoutMillis time (in milliseconds) after which an idle connection is
+   *     closed, or 0 to open a new connection for each request
+   * @throws MalformedURLException if the specified URL is invalid
+   */
+  public TWHttpClient(String url, int timeoutMillis, int keepAliveIdleTimeoutMillis)
+      throws MalformedURLException {
+    URL parsedUrl = new URL(url);
+    this.secure = parsedUrl.getProtocol().equalsIgnoreCase(HTTPS_PROTOCOL);
+    this.host = parsedUrl.getHost();
+    if (parsedUrl.getPort() != -1) {
+      this.port = parsedUrl.getPort();
+    } else if (secure) {
+      this.port = HTTPS_DEFAULT_PORT;
+    } else {
+      this.port = HTTP_DEFAULT_PORT;
+    }
+    this.requestPath = parsedUrl.getFile().length() > 0 ? parsedUrl.getFile() : "/";
+    this.timeoutMillis = timeoutMillis;
+    this.keepAliveIdleTimeoutMillis = keepAliveIdleTimeoutMillis;
+  }
+
+  /**
+   * Builds an HTTP header line with the specified name and value, for use with {@link
+   * #httpPost(String, byte[])}.
+   *
+   * @param name header name
+   * @param value header value
+   * @return HTTP header line, including line terminator
+   */
+  public static String buildHeaderLine(String name, String value) {
+    return name + ": " + value + HTTP_LINE_TERMINATOR;
+  }
+
+  /**
+   * Performs an HTTP POST request with the specified headers and body. The Host, Content-Length
+   * and Connection headers are added automatically.
+   *
+   * @param headerLines request header lines, each built using {@link #buildHeaderLine(String,
+   *     String)}
+   * @param body request body
+   * @return response body
+   * @throws IOException if unable to perform the request, or if the response status is not 2xx
+   */
+  public synchronized String httpPost(String headerLines, byte[] body) throws IOException {
+    return post(headerLines, body, null);
+  }
+
+  /**
+   * Performs an HTTP POST request with the specified headers, streaming the body from the
+   * specified request body using chunked transfer encoding. The body is written to the connection
+   * through a small fixed-size buffer as it is produced, so it is never held in memory as a whole.
+   * The Host, Transfer-Encoding and Connection headers are added automatically.
+   *
+   * <p>The request body may be written more than once, if the request is retried on a new
+   * connection.
+   *
+   * @param headerLines request header lines, each built using {@link #buildHeaderLine(String,
+   *     String)}
+   * @param body request body
+   * @return response body
+   * @throws IOException if unable to perform the request, or if the response status is not 2xx
+   * @since 3.4.0
+   */
+  public synchronized String httpPost(String headerLines, RequestBody body) throws IOException {
+    return post(headerLines, null, body);
+  }
+
+  /**
+   * Performs an HTTP POST request with the specified headers and either a fixed body or a
+   * streamed body.
+   *
+   * @param headerLines request header lines
+   * @param fixedBody request body, or null if streamed
+   * @param streamedBody streamed request body, or null if fixed
+   * @return response body
+   * @throws IOException if unable to perform the request, or if the response status is not 2xx
+   */
+  private String post(String headerLines, byte[] fixedBody, RequestBody streamedBody)
+      throws IOException {
+    // Build request line and headers
+    boolean keepAlive = keepAliveIdleTimeoutMillis > 0;
+    StringBuffer requestHead = new StringBuffer(headerLines.length() + requestPath.length() + 128);
+    requestHead.append("POST ").append(requestPath).append(" HTTP/1.1");
+    requestHead.append(HTTP_LINE_TERMINATOR);
+    requestHead.append(buildHeaderLine("Host", host));
+    if (fixedBody != null) {
+      requestHead.append(buildHeaderLine("Content-Length", String.valueOf(fixedBody.length)));
+    } else {
+      requestHead.append(buildHeaderLine("Transfer-Encoding", "chunked"));
+    }
+    requestHead.append(buildHeaderLine("Connection", keepAlive ? "keep-alive" : "close"));
+    requestHead.append(headerLines);
+    requestHead.append(HTTP_LINE_TERMINATOR);
+    byte[] requestHeadBytes = requestHead.toString().getBytes(HTTP_HEADER_ENCODING);
+
+    // Close open connection if idle for too long
+    if (socket != null
+        && System.currentTimeMillis() - socketLastUsedMillis >= keepAliveIdleTimeoutMillis) {
+      closeSocket();
+    }
+
+    // Perform request, retrying once on a new connection if reused connection was closed. A
+    // request which timed out is not retried, as the server may have received it.
+    boolean reusedConnection = socket != null;
+    String response;
+    try {
+      response = performRequest(requestHeadBytes, fixedBody, streamedBody);
+    } catch (IOException e) {
+      closeSocket();
+      if (reusedConnection && !responseStarted && !(e instanceof SocketTimeoutException)) {
+        response = performRequest(requestHeadBytes, fixedBody, streamedBody);
+      } else {
+        throw e;
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Closes the open connection to the server, if any. A new connection is opened by the next
+   * request.
+   */
+  public synchronized void close() {
+    closeSocket();
+  }
+
+  /**
+   * Performs a request on the open connection, opening a new connection if not connected. The
+   * connection is kept open afterwards if keep-alive is enabled and the server allows it.
+   *
+   * @param requestHeadBytes request line and headers
+   * @param fixedBody request body, or null if streamed
+   * @param streamedBody streamed request body, or null if fixed
+   * @return response body
+   * @throws IOException if unable to perform the request, or if the response status is not 2xx
+   */
+  private String performRequest(
+      byte[] requestHeadBytes, byte[] fixedBody, RequestBody streamedBody) throws IOException {
+    responseStarted = false;
+    responseKeepAlive = false;
+    try {
+      // Open connection if not connected
+      if (socket == null) {
+        socket = openSocket();
+        socketInputStream = new BufferedInputStream(socket.getInputStream());
+        socketOutputStream =
+            new BufferedOutputStream(socket.getOutputStream(), SOCKET_OUTPUT_BUFFER_SIZE_BYTES);
+      }
+
+      // Write request line, headers and body, then flush the complete request once
+      socketOutputStream.write(requestHeadBytes);
+      if (fixedBody != null) {
+        socketOutputStream.write(fixedBody);
+      } else {
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(socketOutputStream);
+        streamedBody.writeTo(chunkedOutputStream);
+        chunkedOutputStream.close();
+      }
+      socketOutputStream.flush();
+
+      // Read response
+      return readResponse(socketInputStream);
+    } finally {
+      // Keep connection open for reuse if allowed, otherwise close
+      if (keepAliveIdleTimeoutMillis > 0 && responseKeepAlive) {
+        socketLastUsedMillis = System.currentTimeMillis();
+      } else {
+        closeSocket();
+      }
+    }
+  }
+
+  /** Closes the open connection to the server, if any. */
+  private void closeSocket() {
+    if (socket != null) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Socket is discarded regardless
+      }
+      socket = null;
+      socketInputStream = null;
+      socketOutputStream = null;
+    }
+  }
+
+  /**
+   * Opens a socket to the server, wrapping it with TLS if the request URL uses HTTPS. The
+   * certificate of an HTTPS server must be trusted and must have been issued for the host of the
+   * request URL.
+   *
+   * @return connected socket
+   * @throws IOException if unable to connect to the server
+   */
+  private Socket openSocket() throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+      socket.setSoTimeout(timeoutMillis);
+
+      // Disable Nagle's algorithm, so the last partial segment of each request is sent as soon as
+      // the request is flushed, instead of waiting for the acknowledgement of the previous segment
+      socket.setTcpNoDelay(true);
+      if (secure) {
+        SSLSocketFactory sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        socket = sslSocketFactory.createSocket(socket, host, port, true);
+        TWTlsHostnameVerifier.verify((SSLSocket) socket, host);
+      }
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    return socket;
+  }
+
+  /**
+   * Reads an HTTP response from the specified input stream and returns its body. Whether the
+   * connection can be reused afterwards is stored in {@link #responseKeepAlive}.
+   *
+   * @param inputStream input stream to read response from
+   * @return response body
+   * @throws IOException if unable to read the response, or if the response status is not 2xx
+   */
+  private String readResponse(InputStream inputStream) throws IOException {
+    // Read status line (HTTP/1.1 200 OK)
+    int firstByte = inputStream.read();
+    if (firstByte == -1) {
+      throw new IOException("Connection closed by server before response.");
+    }
+    responseStarted = true;
+    String statusLine = (char) firstByte + readLine(inputStream);
+    int statusCodeStart = statusLine.indexOf(' ');
+    int statusCode;
+    try {
+      statusCode = Integer.parseInt(statusLine.substring(statusCodeStart + 1, statusCodeStart + 4));
+    } catch (Exception e) {
+      throw new IOException("Invalid HTTP response status line: " + statusLine);
+    }
+
+    // Read headers until blank line, HTTP/1.1 connections are persistent unless closed
+    int contentLength = -1;
+    boolean chunked = false;
+    boolean keepAlive = statusLine.startsWith("HTTP/1.1");
+    String headerLine = readLine(inputStream);
+    while (headerLine.length() > 0) {
+      int separatorIndex = headerLine.indexOf(':');
+      if (separatorIndex > 0) {
+        String headerName = headerLine.substring(0, separatorIndex).trim();
+        String headerValue = headerLine.substring(separatorIndex + 1).trim();
+        if (headerName.equalsIgnoreCase("Content-Length")) {
+          contentLength = Integer.parseInt(headerValue);
+        } else if (headerName.equalsIgnoreCase("Transfer-Encoding")) {
+          chunked = headerValue.equalsIgnoreCase("chunked");
+        } else if (headerName.equalsIgnoreCase("Connection")) {
+          keepAlive = !headerValue.equalsIgnoreCase("close");
+        }
+      }
+      headerLine = readLine(inputStream);
+    }
+
+    // Read body
+    ByteArrayOutputStream bodyStream =
+        new ByteArrayOutputStream(contentLength > 0 ? contentLength : 256);
+    if (chunked) {
+      int chunkLength = readChunkLength(inputStream);
+      while (chunkLength > 0) {
+        readBytes(inputStream, bodyStream, chunkLength);
+        readLine(inputStream);
+        chunkLength = readChunkLength(inputStream);
+      }
+    } else if (contentLength >= 0) {
+      readBytes(inputStream, bodyStream, contentLength);
+    } else {
+      // Body is delimited by end of connection, which cannot be reused
+      readBytes(inputStream, bodyStream, Integer.MAX_VALUE);
+      keepAlive = false;
+    }
+    String body = bodyStream.toString(HTTP_BODY_ENCODING);
+    responseKeepAlive = keepAlive;
+
+    if (statusCode < 200 || statusCode > 299) {
+      throw new IOException("HTTP request failed with status " + statusCode + ": " + body);
+    }
+    return body;
+  }
+
+  /**
+   * Reads a chunk length line of a chunked HTTP response body.
+   *
+   * @param inputStream input stream to read from
+   * @return chunk length
+   * @throws IOException if unable to read or parse the chunk length
+   */
+  private static int readChunkLength(InputStream inputStream) throws IOException {
+    String chunkLengthLine = readLine(inputStream);
+    int extensionIndex = chunkLengthLine.indexOf(';');
+    if (extensionIndex != -1) {
+      chunkLengthLine = chunkLengthLine.substring(0, extensionIndex);
+    }
+    try {
+      return Integer.parseInt(chunkLengthLine.trim(), 16);
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid HTTP response chunk length: " + chunkLengthLine);
+    }
+  }
+
+  /**
+   * Reads up to the specified number of bytes from the input stream into the output stream,
+   * stopping early if the end of the input stream is reached.
+   *
+   * @param inputStream input stream to read from
+   * @param outputStream output stream to write to
+   * @param length maximum number of bytes to read
+   * @throws IOException if unable to read from the input stream
+   */
+  private static void readBytes(InputStream inputStream, OutputStream outputStream, int length)
+      throws IOException {
+    byte[] buffer = new byte[512];
+    int remaining = length;
+    int read = 0;
+    while (remaining > 0 && read != -1) {
+      read = inputStream.read(buffer, 0, Math.min(buffer.length, remaining));
+      if (read > 0) {
+        outputStream.write(buffer, 0, read);
+        remaining -= read;
+      }
+    }
+  }
+
+  /**
+   * Reads a line, terminated by CRLF or LF, from the input stream.
+   *
+   * @param inputStream input stream to read from
+   * @return line, without line terminator
+   * @throws IOException if unable to read from the input stream, the end of the stream is reached,
+   *     or the line is too long
+   */
+  private static String readLine(InputStream inputStream) throws IOException {
+    StringBuffer line = new StringBuffer();
+    int read = inputStream.read();
+    while (read != '\n') {
+      if (read == -1) {
+        throw new IOException("Unexpected end of HTTP response.");
+      } else if (line.length() >= HTTP_RESPONSE_LINE_MAX_LENGTH) {
+        throw new IOException("HTTP response line exceeds maximum length.");
+      } else if (read != '\r') {
+        line.append((char) read);
+      }
+      read = inputStream.read();
+    }
+    return line.toString();
+  }
+
+  /**
+   * Request body which is streamed to the connection by {@link #httpPost(String, RequestBody)}.
+   *
+   * @since 3.4.0
+   */
+  public interface RequestBody {
+
+    /**
+     * Writes the request body to the specified output stream. The output stream may be closed
+     * once the body has been written, which does not close the connection.
+     *
+     * @param outputStream output stream to write request body to
+     * @throws IOException if unable to write the request body
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+  }
+
+  /**
+   * Output stream which writes data to the underlying connection output stream using HTTP chunked
+   * transfer encoding. Data is buffered in a fixed-size buffer and written as one chunk each time
+   * the buffer is full. Closing the stream writes the final chunk, but does not close the
+   * underlying output stream. Flushing the stream does not flush the underlying output stream, as
+   * the request is flushed once it is complete.
+   *
+   * @since 3.4.0
+   */
+  private static class ChunkedOutputStream extends OutputStream {
+
+    /** The size (in bytes) of each chunk written to the connection. */
+    private static final int CHUNK_SIZE_BYTES = 2048;
+
+    /** The final (zero-length) chunk which terminates the body, including the trailer CRLF. */
+    private static final byte[] LAST_CHUNK_BYTES = {'0', '\r', '\n', '\r', '\n'};
+
+    /** The line terminator following each chunk length and chunk. */
+    private static final byte[] CHUNK_LINE_TERMINATOR_BYTES = {'\r', '\n'};
+
+    /** The underlying connection output stream. */
+    private final OutputStream outputStream;
+
+    /** Buffer for the data of the current chunk. */
+    private final byte[] chunkBuffer = new byte[CHUNK_SIZE_BYTES];
+
+    /** Number of bytes in the chunk buffer. */
+    private int chunkLength = 0;
+
+    /** Boolean indicating if the final chunk has been written. */
+    private boolean closed = false;
+
+    /**
+     * Creates a new chunked output stream which writes to the specified output stream.
+     *
+     * @param outputStream underlying connection output stream
+     */
+    private ChunkedOutputStream(OutputStream outputStream) {
+      this.outputStream = outputStream;
+    }
+
+    public void write(int b) throws IOException {
+      if (chunkLength == chunkBuffer.length) {
+        writeChunk();
+      }
+      chunkBuffer[chunkLength++] = (byte) b;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      int offset = off;
+      int remaining = len;
+      while (remaining > 0) {
+        if (chunkLength == chunkBuffer.length) {
+          writeChunk();
+        }
+        int count = Math.min(remaining, chunkBuffer.length - chunkLength);
+        System.arraycopy(b, offset, chunkBuffer, chunkLength, count);
+        chunkLength += count;
+        offset += count;
+        remaining -= count;
+      }
+    }
+
+    public void flush() throws IOException {
+      writeChunk();
+    }
+
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        writeChunk();
+        outputStream.write(LAST_CHUNK_BYTES);
+      }
+    }
+
+    /**
+     * Writes the data in the chunk buffer as one chunk, if not empty.
+     *
+     * @throws IOException if unable to write to the underlying output stream
+     */
+    private void writeChunk() throws IOException {
+      if (chunkLength > 0) {
+        outputStream.write(Integer.toHexString(chunkLength).getBytes(HTTP_HEADER_ENCODING));
+        outputStream.write(CHUNK_LINE_TERMINATOR_BYTES);
+        outputStream.write(chunkBuffer, 0, chunkLength);
+        outputStream.write(CHUNK_LINE_TERMINATOR_BYTES);
+        chunkLength = 0;
+      }
+    }
+  }
+}
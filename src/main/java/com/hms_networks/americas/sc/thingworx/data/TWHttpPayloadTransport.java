@@ -0,0 +1,260 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import com.hms_networks.americas.sc.extensions.system.http.SCHttpUtility;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import com.hms_networks.americas.sc.thingworx.TWConnectorMain;
+import com.hms_networks.americas.sc.thingworx.config.TWConnectorRuntimeConfig;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Payload transport which sends each payload to the configured Thingworx Full URL endpoint as an
+ * HTTP POST request, and waits for the response.
+ *
+ * <p>If the transport has an HTTP client, payloads are written directly to the connection using
+ * chunked transfer encoding. Otherwise, payloads are sent as strings using {@link SCHttpUtility}.
+ *
+ * <p>If compression is enabled, the HTTP client must send requests to the Thingworx
+ * TakeCompressedInfo service (see {@link #getCompressedPayloadUrl(String)}). Each payload is
+ * compressed using gzip, base64-encoded and sent as the CompressedTags parameter of the service,
+ * which inflates the payload and passes it to the TakeInfo service. Compressed payloads are not
+ * sent with a Content-Encoding header, as Thingworx does not decode compressed request bodies.
+ *
+ * @since 3.4.0
+ * @author HMS Networks, MU Americas Solution Center
+ */
+public class TWHttpPayloadTransport implements TWPayloadTransport {
+
+  /** The characters of the base64 alphabet, indexed by their 6-bit value. */
+  private static final byte[] BASE64_ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+
+  /** The base64 padding character. */
+  private static final byte BASE64_PADDING = '=';
+
+  /** The size (in bytes) of the buffer used to write base64-encoded data. */
+  private static final int BASE64_WRITE_BUFFER_SIZE_BYTES = 256;
+
+  /** The JSON written before the base64-encoded payload in compressed payload request bodies. */
+  private static final byte[] COMPRESSED_REQUEST_BODY_PREFIX =
+      ("{\"" + TWConnectorConsts.THINGWORX_TAKE_COMPRESSED_INFO_PARAMETER_NAME + "\":\"")
+          .getBytes();
+
+  /** The JSON written after the base64-encoded payload in compressed payload request bodies. */
+  private static final byte[] COMPRESSED_REQUEST_BODY_SUFFIX = "\"}".getBytes();
+
+  /** The size (in bytes) of the buffer used when compressing outbox records. */
+  private static final int COMPRESSION_BUFFER_SIZE_BYTES = 1024;
+
+  /** The HTTP client used to send payloads, or null to use {@link SCHttpUtility}. */
+  private final TWHttpClient httpClient;
+
+  /** Boolean indicating if payloads are compressed using gzip. */
+  private final boolean compressPayloads;
+
+  /** The prebuilt HTTP request header lines for payload requests. */
+  private final String payloadRequestHeaderLines;
+
+  /**
+   * Creates a new HTTP payload transport.
+   *
+   * @param httpClient HTTP client used to send payloads, or null to use {@link SCHttpUtility}
+   * @param compressPayloads true to compress payloads using gzip. This requires an HTTP client
+   *     which sends requests to the URL returned by {@link #getCompressedPayloadUrl(String)}.
+   * @param appKey Thingworx app key used to authenticate requests
+   */
+  public TWHttpPayloadTransport(TWHttpClient httpClient, boolean compressPayloads, String appKey) {
+    this.httpClient = httpClient;
+    this.compressPayloads = compressPayloads && httpClient != null;
+    this.payloadRequestHeaderLines =
+        TWHttpClient.buildHeaderLine("Content-Type", "application/json")
+            + TWHttpClient.buildHeaderLine("appKey", appKey);
+  }
+
+  /**
+   * Gets the URL of the Thingworx TakeCompressedInfo service which corresponds to the specified
+   * Thingworx Full URL of the TakeInfo service. The TakeCompressedInfo service is on the same
+   * Thing as the TakeInfo service.
+   *
+   * @param thingworxFullUrl Thingworx Full URL of the TakeInfo service
+   * @return URL of the TakeCompressedInfo service, or null if the specified URL does not end with
+   *     the TakeInfo service name
+   */
+  public static String getCompressedPayloadUrl(String thingworxFullUrl) {
+    String compressedPayloadUrl = null;
+    String takeInfoPath = "/" + TWConnectorConsts.THINGWORX_TAKE_INFO_SERVICE_NAME;
+    if (thingworxFullUrl != null && thingworxFullUrl.endsWith(takeInfoPath)) {
+      compressedPayloadUrl =
+          thingworxFullUrl.substring(0, thingworxFullUrl.length() - takeInfoPath.length())
+              + "/"
+              + TWConnectorConsts.THINGWORX_TAKE_COMPRESSED_INFO_SERVICE_NAME;
+    }
+    return compressedPayloadUrl;
+  }
+
+  /**
+   * Sends the specified payload to Thingworx and waits for the response. The specified listener is
+   * notified before this method returns if the payload was delivered.
+   *
+   * @param payload payload to send
+   * @param listener listener to notify of the result of the payload
+   * @throws Exception if unable to send the payload
+   */
+  public void sendPayload(final TWDataPayload payload, DeliveryListener listener)
+      throws Exception {
+    String response;
+    if (httpClient != null) {
+      TWHttpClient.RequestBody requestBody =
+          new TWHttpClient.RequestBody() {
+            public void writeTo(OutputStream outputStream) throws IOException {
+              if (compressPayloads) {
+                writeCompressedRequestBody(outputStream, payload.getPayloadBytes(true));
+              } else {
+                payload.writePayload(outputStream, false);
+              }
+            }
+          };
+      response = httpClient.httpPost(payloadRequestHeaderLines, requestBody);
+    } else {
+      response = httpPostString(payload.getPayloadString());
+    }
+    Logger.LOG_DEBUG("Thingworx HTTP POST response (send telemetry data): " + response);
+    listener.payloadDelivered(payload);
+  }
+
+  /**
+   * Sends the specified payload outbox record to Thingworx and waits for the response. Records are
+   * compressed or decompressed as necessary to match the compression of the transport, as the
+   * compression setting may have changed since the record was stored.
+   *
+   * @param record payload outbox record to send
+   * @throws Exception if unable to deliver the payload
+   */
+  public void sendOutboxRecord(TWPayloadOutbox.Record record) throws Exception {
+    String response;
+    if (httpClient != null) {
+      byte[] body;
+      if (compressPayloads) {
+        byte[] compressedData = record.getData();
+        if (!record.isCompressed()) {
+          compressedData = compress(record.getData());
+        }
+        ByteArrayOutputStream bodyStream =
+            new ByteArrayOutputStream(compressedData.length * 4 / 3 + 64);
+        writeCompressedRequestBody(bodyStream, compressedData);
+        body = bodyStream.toByteArray();
+      } else if (record.isCompressed()) {
+        body = record.getPayloadString().getBytes("UTF-8");
+      } else {
+        body = record.getData();
+      }
+      response = httpClient.httpPost(payloadRequestHeaderLines, body);
+    } else {
+      response = httpPostString(record.getPayloadString());
+    }
+    Logger.LOG_DEBUG("Thingworx HTTP POST response (send telemetry data): " + response);
+  }
+
+  /** Closes the open connection of the HTTP client, if any. */
+  public void close() {
+    if (httpClient != null) {
+      httpClient.close();
+    }
+  }
+
+  /**
+   * Writes the JSON request body of the TakeCompressedInfo service for the specified
+   * gzip-compressed payload to the specified output stream. The output stream is closed once the
+   * request body has been written.
+   *
+   * @param outputStream output stream to write request body to
+   * @param compressedPayload gzip-compressed payload
+   * @throws IOException if unable to write the request body
+   */
+  static void writeCompressedRequestBody(OutputStream outputStream, byte[] compressedPayload)
+      throws IOException {
+    try {
+      outputStream.write(COMPRESSED_REQUEST_BODY_PREFIX);
+      writeBase64(outputStream, compressedPayload);
+      outputStream.write(COMPRESSED_REQUEST_BODY_SUFFIX);
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Writes the base64 encoding (RFC 4648, with padding) of the specified data to the specified
+   * output stream, using a small fixed-size buffer.
+   *
+   * @param outputStream output stream to write base64-encoded data to
+   * @param data data to encode
+   * @throws IOException if unable to write the encoded data
+   */
+  static void writeBase64(OutputStream outputStream, byte[] data) throws IOException {
+    byte[] writeBuffer = new byte[BASE64_WRITE_BUFFER_SIZE_BYTES];
+    int writeBufferLength = 0;
+    for (int i = 0; i < data.length; i += 3) {
+      // Combine up to 3 bytes in to a 24-bit group
+      int remaining = data.length - i;
+      int group = (data[i] & 0xFF) << 16;
+      if (remaining > 1) {
+        group |= (data[i + 1] & 0xFF) << 8;
+      }
+      if (remaining > 2) {
+        group |= data[i + 2] & 0xFF;
+      }
+
+      // Write 4 characters for the group, padding if less than 3 bytes
+      if (writeBufferLength + 4 > writeBuffer.length) {
+        outputStream.write(writeBuffer, 0, writeBufferLength);
+        writeBufferLength = 0;
+      }
+      writeBuffer[writeBufferLength++] = BASE64_ALPHABET[(group >> 18) & 0x3F];
+      writeBuffer[writeBufferLength++] = BASE64_ALPHABET[(group >> 12) & 0x3F];
+      writeBuffer[writeBufferLength++] =
+          remaining > 1 ? BASE64_ALPHABET[(group >> 6) & 0x3F] : BASE64_PADDING;
+      writeBuffer[writeBufferLength++] =
+          remaining > 2 ? BASE64_ALPHABET[group & 0x3F] : BASE64_PADDING;
+    }
+    outputStream.write(writeBuffer, 0, writeBufferLength);
+  }
+
+  /**
+   * Compresses the specified data using gzip.
+   *
+   * @param data data to compress
+   * @return gzip-compressed data
+   * @throws IOException if unable to compress the data
+   */
+  private static byte[] compress(byte[] data) throws IOException {
+    ByteArrayOutputStream compressedStream =
+        new ByteArrayOutputStream(Math.max(data.length / 4, 64));
+    GZIPOutputStream gzipStream =
+        new GZIPOutputStream(compressedStream, COMPRESSION_BUFFER_SIZE_BYTES);
+    try {
+      gzipStream.write(data);
+    } finally {
+      gzipStream.close();
+    }
+    return compressedStream.toByteArray();
+  }
+
+  /**
+   * Sends the specified JSON string to the configured Thingworx Full URL endpoint using {@link
+   * SCHttpUtility}.
+   *
+   * @param json JSON body
+   * @return response body
+   * @throws Exception if unable to perform the request
+   */
+  private static String httpPostString(String json) throws Exception {
+    // Get full POST request URL and prebuilt header
+    TWConnectorRuntimeConfig runtimeConfig = TWConnectorMain.getConnectorRuntimeConfig();
+    String addInfoEndpointFullUrl = runtimeConfig.getThingworxFullUrl();
+    String addInfoRequestHeader = runtimeConfig.getTelemetryRequestHeader();
+    return SCHttpUtility.httpPost(addInfoEndpointFullUrl, addInfoRequestHeader, json);
+  }
+}
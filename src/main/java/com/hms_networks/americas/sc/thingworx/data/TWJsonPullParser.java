@@ -0,0 +1,437 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.json.JSONException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull parser which reads a JSON document as a sequence of tokens, without building a tree of
+ * {@link com.hms_networks.americas.sc.extensions.json.JSONObject} and {@link
+ * com.hms_networks.americas.sc.extensions.json.JSONArray} objects.
+ *
+ * <p>Each call to {@link #next()} reads the next token of the document. The text of member names,
+ * strings and numbers is available from {@link #getText()} after they are read. Values which are
+ * not needed can be skipped using {@link #skipValue()}, which does not create strings for the
+ * skipped content, so that the memory used by the parser does not depend on the size of the
+ * document. The nesting depth of the document is limited to {@link #MAX_DEPTH}.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWJsonPullParser {
+
+  /** Token indicating the end of the document. */
+  public static final int TOKEN_END_DOCUMENT = 0;
+
+  /** Token indicating the start of an object. */
+  public static final int TOKEN_BEGIN_OBJECT = 1;
+
+  /** Token indicating the end of an object. */
+  public static final int TOKEN_END_OBJECT = 2;
+
+  /** Token indicating the start of an array. */
+  public static final int TOKEN_BEGIN_ARRAY = 3;
+
+  /** Token indicating the end of an array. */
+  public static final int TOKEN_END_ARRAY = 4;
+
+  /** Token indicating the name of an object member. The value of the member is read next. */
+  public static final int TOKEN_NAME = 5;
+
+  /** Token indicating a string value. */
+  public static final int TOKEN_STRING = 6;
+
+  /** Token indicating a number value. */
+  public static final int TOKEN_NUMBER = 7;
+
+  /** Token indicating a true value. */
+  public static final int TOKEN_TRUE = 8;
+
+  /** Token indicating a false value. */
+  public static final int TOKEN_FALSE = 9;
+
+  /** Token indicating a null value. */
+  public static final int TOKEN_NULL = 10;
+
+  /** Maximum nesting depth of objects and arrays in a document. */
+  public static final int MAX_DEPTH = 32;
+
+  /** Size (in characters) of the buffer used to read from the reader. */
+  private static final int READ_BUFFER_SIZE = 256;
+
+  /** Container state of an object whose next member name, or end, is read next. */
+  private static final int STATE_OBJECT_NAME = 1;
+
+  /** Container state of an object whose next member value is read next. */
+  private static final int STATE_OBJECT_VALUE = 2;
+
+  /** Container state of an array whose next element, or end, is read next. */
+  private static final int STATE_ARRAY = 3;
+
+  /** Reader of the JSON document. */
+  private final Reader reader;
+
+  /** Buffer of characters read from the reader. */
+  private final char[] readBuffer = new char[READ_BUFFER_SIZE];
+
+  /** Number of characters in {@link #readBuffer}. */
+  private int readBufferLength = 0;
+
+  /** Position of the next character in {@link #readBuffer}. */
+  private int readBufferPosition = 0;
+
+  /** States of the open objects and arrays, outermost first. */
+  private final int[] containerStates = new int[MAX_DEPTH];
+
+  /**
+   * Booleans indicating if the open objects and arrays are empty so far, in the same order as
+   * {@link #containerStates}.
+   */
+  private final boolean[] containerEmpty = new boolean[MAX_DEPTH];
+
+  /** Number of open objects and arrays. */
+  private int depth = 0;
+
+  /** Boolean indicating if the top-level value of the document has been read. */
+  private boolean documentValueRead = false;
+
+  /** Boolean indicating if the text of strings is discarded while skipping a value. */
+  private boolean skipping = false;
+
+  /** Buffer for the text of the current name, string or number. */
+  private final StringBuffer textBuffer = new StringBuffer();
+
+  /** Text of the current name, string or number, or null for other tokens. */
+  private String text = null;
+
+  /**
+   * Creates a new pull parser which reads a JSON document from the specified reader.
+   *
+   * @param reader reader of the JSON document
+   */
+  public TWJsonPullParser(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Reads the next token of the document.
+   *
+   * @return next token, one of the <code>TOKEN_</code> constants
+   * @throws JSONException if the document is not valid JSON, or unable to read from the reader
+   */
+  public int next() throws JSONException {
+    text = null;
+    int token;
+    if (depth == 0) {
+      if (documentValueRead) {
+        token = TOKEN_END_DOCUMENT;
+      } else {
+        documentValueRead = true;
+        token = readValue(nextNonWhitespace());
+      }
+    } else if (containerStates[depth - 1] == STATE_OBJECT_NAME) {
+      token = readNameOrEndObject();
+    } else if (containerStates[depth - 1] == STATE_OBJECT_VALUE) {
+      containerStates[depth - 1] = STATE_OBJECT_NAME;
+      token = readValue(nextNonWhitespace());
+    } else {
+      token = readElementOrEndArray();
+    }
+    return token;
+  }
+
+  /**
+   * Gets the text of the current token, if it is a name, string or number.
+   *
+   * @return text of the current name, string or number, or null for other tokens
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Skips the next value of the document, including all of its content if it is an object or
+   * array. This should be called after a {@link #TOKEN_NAME} token to skip the value of the member,
+   * or within an array to skip the next element.
+   *
+   * @throws JSONException if the document is not valid JSON, or unable to read from the reader
+   */
+  public void skipValue() throws JSONException {
+    skipping = true;
+    try {
+      int skipDepth = 0;
+      do {
+        int token = next();
+        if (token == TOKEN_BEGIN_OBJECT || token == TOKEN_BEGIN_ARRAY) {
+          skipDepth++;
+        } else if (token == TOKEN_END_OBJECT || token == TOKEN_END_ARRAY) {
+          skipDepth--;
+        } else if (token == TOKEN_END_DOCUMENT) {
+          throw new JSONException("Unexpected end of JSON document.");
+        }
+      } while (skipDepth > 0);
+    } finally {
+      skipping = false;
+      text = null;
+    }
+  }
+
+  /**
+   * Reads the next member name of the current object, or the end of the object.
+   *
+   * @return {@link #TOKEN_NAME} or {@link #TOKEN_END_OBJECT}
+   * @throws JSONException if the document is not valid JSON, or unable to read from the reader
+   */
+  private int readNameOrEndObject() throws JSONException {
+    int token;
+    int c = nextNonWhitespace();
+    if (c == '}') {
+      depth--;
+      token = TOKEN_END_OBJECT;
+    } else {
+      if (!containerEmpty[depth - 1]) {
+        if (c != ',') {
+          throw syntaxError("Expected ',' or '}'");
+        }
+        c = nextNonWhitespace();
+      }
+      if (c != '"') {
+        throw syntaxError("Expected member name");
+      }
+      readString();
+      if (nextNonWhitespace() != ':') {
+        throw syntaxError("Expected ':'");
+      }
+      containerEmpty[depth - 1] = false;
+      containerStates[depth - 1] = STATE_OBJECT_VALUE;
+      token = TOKEN_NAME;
+    }
+    return token;
+  }
+
+  /**
+   * Reads the next element of the current array, or the end of the array.
+   *
+   * @return token of the next element, or {@link #TOKEN_END_ARRAY}
+   * @throws JSONException if the document is not valid JSON, or unable to read from the reader
+   */
+  private int readElementOrEndArray() throws JSONException {
+    int token;
+    int c = nextNonWhitespace();
+    if (c == ']') {
+      depth--;
+      token = TOKEN_END_ARRAY;
+    } else {
+      if (!containerEmpty[depth - 1]) {
+        if (c != ',') {
+          throw syntaxError("Expected ',' or ']'");
+        }
+        c = nextNonWhitespace();
+      }
+      containerEmpty[depth - 1] = false;
+      token = readValue(c);
+    }
+    return token;
+  }
+
+  /**
+   * Reads the value starting with the specified character.
+   *
+   * @param c first character of the value
+   * @return token of the value
+   * @throws JSONException if the document is not valid JSON, or unable to read from the reader
+   */
+  private int readValue(int c) throws JSONException {
+    int token;
+    if (c == '{') {
+      pushContainer(STATE_OBJECT_NAME);
+      token = TOKEN_BEGIN_OBJECT;
+    } else if (c == '[') {
+      pushContainer(STATE_ARRAY);
+      token = TOKEN_BEGIN_ARRAY;
+    } else if (c == '"') {
+      readString();
+      token = TOKEN_STRING;
+    } else if (c == 't') {
+      readLiteral("rue");
+      token = TOKEN_TRUE;
+    } else if (c == 'f') {
+      readLiteral("alse");
+      token = TOKEN_FALSE;
+    } else if (c == 'n') {
+      readLiteral("ull");
+      token = TOKEN_NULL;
+    } else if (c == '-' || (c >= '0' && c <= '9')) {
+      readNumber(c);
+      token = TOKEN_NUMBER;
+    } else if (c == -1) {
+      throw new JSONException("Unexpected end of JSON document.");
+    } else {
+      throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+    return token;
+  }
+
+  /**
+   * Opens a new object or array with the specified state.
+   *
+   * @param state initial state of the object or array
+   * @throws JSONException if the maximum nesting depth is exceeded
+   */
+  private void pushContainer(int state) throws JSONException {
+    if (depth >= MAX_DEPTH) {
+      throw new JSONException(
+          "The JSON document exceeds the maximum nesting depth of " + MAX_DEPTH + ".");
+    }
+    containerStates[depth] = state;
+    containerEmpty[depth] = true;
+    depth++;
+  }
+
+  /**
+   * Reads a string, after its opening quote, into {@link #text}. The text is discarded while
+   * skipping a value.
+   *
+   * @throws JSONException if the string is not valid, or unable to read from the reader
+   */
+  private void readString() throws JSONException {
+    textBuffer.setLength(0);
+    int c = read();
+    while (c != '"') {
+      if (c == -1 || c == '\n' || c == '\r') {
+        throw syntaxError("Unterminated string");
+      }
+      if (c == '\\') {
+        c = read();
+        if (c == 'b') {
+          c = '\b';
+        } else if (c == 't') {
+          c = '\t';
+        } else if (c == 'n') {
+          c = '\n';
+        } else if (c == 'f') {
+          c = '\f';
+        } else if (c == 'r') {
+          c = '\r';
+        } else if (c == 'u') {
+          c = readUnicodeEscape();
+        } else if (c != '"' && c != '\\' && c != '/') {
+          throw syntaxError("Illegal escape");
+        }
+      }
+      if (!skipping) {
+        textBuffer.append((char) c);
+      }
+      c = read();
+    }
+    text = skipping ? null : textBuffer.toString();
+  }
+
+  /**
+   * Reads the four hexadecimal digits of a unicode escape in a string.
+   *
+   * @return character of the unicode escape
+   * @throws JSONException if the escape is not valid, or unable to read from the reader
+   */
+  private int readUnicodeEscape() throws JSONException {
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      int digit = Character.digit((char) read(), 16);
+      if (digit < 0) {
+        throw syntaxError("Illegal unicode escape");
+      }
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+
+  /**
+   * Reads a number starting with the specified character into {@link #text}.
+   *
+   * @param firstChar first character of the number
+   * @throws JSONException if unable to read from the reader
+   */
+  private void readNumber(int firstChar) throws JSONException {
+    textBuffer.setLength(0);
+    int c = firstChar;
+    while ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+      textBuffer.append((char) c);
+      c = read();
+    }
+    unread();
+    text = textBuffer.toString();
+  }
+
+  /**
+   * Reads the remaining characters of a literal value.
+   *
+   * @param remainingChars expected remaining characters of the literal
+   * @throws JSONException if the literal does not match, or unable to read from the reader
+   */
+  private void readLiteral(String remainingChars) throws JSONException {
+    for (int i = 0; i < remainingChars.length(); i++) {
+      if (read() != remainingChars.charAt(i)) {
+        throw syntaxError("Illegal literal");
+      }
+    }
+  }
+
+  /**
+   * Reads the next character which is not whitespace.
+   *
+   * @return next character which is not whitespace, or -1 at the end of the document
+   * @throws JSONException if unable to read from the reader
+   */
+  private int nextNonWhitespace() throws JSONException {
+    int c = read();
+    while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+      c = read();
+    }
+    return c;
+  }
+
+  /**
+   * Reads the next character from the reader.
+   *
+   * @return next character, or -1 at the end of the document
+   * @throws JSONException if unable to read from the reader
+   */
+  private int read() throws JSONException {
+    if (readBufferPosition >= readBufferLength) {
+      try {
+        readBufferLength = reader.read(readBuffer, 0, readBuffer.length);
+      } catch (IOException e) {
+        throw new JSONException("Unable to read JSON document: " + e.getMessage());
+      }
+      readBufferPosition = 0;
+    }
+
+    int c = -1;
+    if (readBufferLength > 0) {
+      c = readBuffer[readBufferPosition++];
+    }
+    return c;
+  }
+
+  /**
+   * Moves back by one character, so that the last character read is read again. This must only be
+   * called once after each read of a character.
+   */
+  private void unread() {
+    if (readBufferLength > 0) {
+      readBufferPosition--;
+    }
+  }
+
+  /**
+   * Creates an exception for a syntax error in the document.
+   *
+   * @param message description of the syntax error
+   * @return exception for the syntax error
+   */
+  private JSONException syntaxError(String message) {
+    return new JSONException(message + " in JSON document.");
+  }
+}
@@ -0,0 +1,597 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.ewon.ewonitf.DefaultEventHandler;
+import com.ewon.ewonitf.EvtTagValueListener;
+import com.ewon.ewonitf.Exporter;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointBoolean;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointDword;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointFloat;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointInteger;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointString;
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import com.hms_networks.americas.sc.extensions.taginfo.TagType;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import com.hms_networks.americas.sc.thingworx.TWConnectorMain;
+import com.hms_networks.americas.sc.thingworx.TWSupervisedStage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Class for managing live mode, in which changes of the configured live mode tags are sent to
+ * Thingworx as they occur, instead of on the next poll of the historical log.
+ *
+ * <p>A tag value listener is configured for each live mode tag. While live mode is active, each
+ * value change is handed off to the live mode thread, so that the event manager thread is not
+ * blocked while payloads are built or sent. The live mode thread reads the quality of the changed
+ * tags from the instant values of the device, adds each change to the pending payloads as a live
+ * data point, and the payload is sent within {@link
+ * TWConnectorConsts#LIVE_MODE_PAYLOAD_LINGER_MILLIS}. Live mode is only active while the
+ * historical data queue is not catching up and is behind by no more than {@link
+ * TWConnectorConsts#LIVE_MODE_MAX_QUEUE_BEHIND_MILLIS}. Otherwise, value changes are only sent once
+ * they are read from the historical log.
+ *
+ * <p>The same value changes are later read from the historical log. Each sent live data point is
+ * remembered, and a data point read from the historical log is removed as a duplicate if it has the
+ * same tag name, value and quality as a remembered live data point, and a timestamp within {@link
+ * TWConnectorConsts#LIVE_MODE_DUPLICATE_TOLERANCE_SECONDS}. Remembered live data points are
+ * forgotten once they have been matched, once the historical log has been read past their
+ * timestamp, or once more than {@link TWConnectorConsts#LIVE_MODE_DUPLICATE_MAX_RECORDS_PER_TAG}
+ * newer live data points have been sent for the tag. The live data points of each tag are
+ * remembered by a {@link TWLiveSentRecords}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWLiveModeManager {
+
+  /** Live mode tags, by tag name. Tags are only added during setup, before data is read. */
+  private static final Hashtable liveTagsByName = new Hashtable();
+
+  /** Boolean indicating if live mode is active, and changes of live mode tags are sent. */
+  private static volatile boolean liveModeActive = false;
+
+  /**
+   * Changes of live mode tags which have not yet been sent by the live mode thread, oldest first,
+   * as {@link LiveChange} objects. Access is synchronized on the vector.
+   */
+  private static final Vector liveChanges = new Vector();
+
+  /**
+   * Boolean indicating if it has been logged that changes were discarded because {@link
+   * #liveChanges} is full. Access is synchronized on {@link #liveChanges}.
+   */
+  private static boolean liveChangesFullLogged = false;
+
+  /** Stage which sends the changes of live mode tags, or null if live mode is not set up. */
+  private static TWSupervisedStage liveModeStage = null;
+
+  /**
+   * Configures a tag value listener for each of the configured live mode tags, if live mode is
+   * enabled. Tags which do not exist, or have an unsupported type, are skipped. The tag
+   * information list must have been populated before this method is called.
+   */
+  public static void setupLiveModeTags() {
+    if (TWConnectorMain.getConnectorRuntimeConfig().isLiveModeEnabled()) {
+      String[] liveModeTagNames = TWConnectorMain.getConnectorRuntimeConfig().getLiveModeTagNames();
+      for (int i = 0; i < liveModeTagNames.length; i++) {
+        TWTagInfoIndex.IndexedTag tag = TWTagInfoIndex.getTag(liveModeTagNames[i]);
+        if (tag == null) {
+          Logger.LOG_WARN(
+              "Unable to send changes of tag `"
+                  + liveModeTagNames[i]
+                  + "` in live mode because the tag does not exist!");
+        } else if (tag.getType() != TagType.INTEGER
+            && tag.getType() != TagType.FLOAT
+            && tag.getType() != TagType.BOOLEAN
+            && tag.getType() != TagType.DWORD
+            && tag.getType() != TagType.STRING) {
+          Logger.LOG_WARN(
+              "Unable to send changes of tag `"
+                  + liveModeTagNames[i]
+                  + "` in live mode because the tag type is not supported!");
+        } else {
+          LiveTag liveTag = new LiveTag(tag);
+          try {
+            liveTagsByName.put(tag.getName(), liveTag);
+            DefaultEventHandler.addTagValueListener(liveTag);
+          } catch (Exception e) {
+            liveTagsByName.remove(tag.getName());
+            Logger.LOG_WARN(
+                "Unable to send changes of tag `"
+                    + liveModeTagNames[i]
+                    + "` in live mode because the tag value listener could not be created!");
+            Logger.LOG_EXCEPTION(e);
+          }
+        }
+      }
+
+      if (liveTagsByName.size() > 0) {
+        try {
+          // Start live mode thread before tag changes can be handed off to it
+          liveModeStage =
+              new TWSupervisedStage("live mode", TWConnectorConsts.STAGE_STALL_TIMEOUT_MILLIS) {
+                protected void runCycle() throws Exception {
+                  sendLiveChanges(takeLiveChanges(TWConnectorConsts.LIVE_MODE_CHANGE_WAIT_MILLIS));
+                }
+              };
+          liveModeStage.start();
+
+          TWTagUpdateManager.startEventHandlerThread();
+          Logger.LOG_INFO("Live mode has been set up for " + liveTagsByName.size() + " tags.");
+        } catch (Exception e) {
+          Logger.LOG_WARN(
+              "Unable to set up live mode because the event manager thread could not be started!");
+          Logger.LOG_EXCEPTION(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Restarts the live mode thread if it has stopped or stalled. This should be called on each cycle
+   * of the main loop.
+   */
+  public static void superviseLiveModeThread() {
+    if (liveModeStage != null) {
+      liveModeStage.supervise();
+    }
+  }
+
+  /** Stops the live mode thread. The thread exits once its current changes have been sent. */
+  public static void stopLiveModeThread() {
+    if (liveModeStage != null) {
+      liveModeStage.stop();
+    }
+  }
+
+  /**
+   * Updates whether live mode is active from the state of the historical data queue. This should be
+   * called after each read of the historical log, and after each read which is skipped or fails.
+   *
+   * @param queueBehindMillis time (in milliseconds) that the historical data queue is behind
+   * @param queueCatchingUp true if the historical data queue is catching up
+   */
+  public static void updateQueueState(long queueBehindMillis, boolean queueCatchingUp) {
+    if (liveTagsByName.size() > 0) {
+      boolean newLiveModeActive =
+          !queueCatchingUp
+              && queueBehindMillis <= TWConnectorConsts.LIVE_MODE_MAX_QUEUE_BEHIND_MILLIS;
+      if (newLiveModeActive && !liveModeActive) {
+        Logger.LOG_INFO("Live mode is active. Tag changes will be sent as they occur.");
+      } else if (!newLiveModeActive && liveModeActive) {
+        Logger.LOG_INFO(
+            "Live mode is paused while the historical data queue is behind. Tag changes will be"
+                + " sent from the historical log.");
+      }
+      liveModeActive = newLiveModeActive;
+    }
+  }
+
+  /**
+   * Removes the data points which have already been sent as live data points from the specified
+   * list of data points read from the historical log, and forgets remembered live data points which
+   * the historical log has been read past.
+   *
+   * @param dataPoints data points read from the historical log
+   * @return data points which have not already been sent as live data points
+   */
+  public static List removeLiveDuplicates(List dataPoints) {
+    List filteredDataPoints = dataPoints;
+    if (liveTagsByName.size() > 0) {
+      filteredDataPoints = new ArrayList(dataPoints.size());
+      long latestTimestampSeconds = -1;
+      int duplicateCount = 0;
+      Iterator dataPointsIterator = dataPoints.iterator();
+      while (dataPointsIterator.hasNext()) {
+        DataPoint dataPoint = (DataPoint) dataPointsIterator.next();
+        boolean duplicate = false;
+        try {
+          long timestampSeconds = Long.parseLong(dataPoint.getTimeStamp());
+          latestTimestampSeconds = Math.max(latestTimestampSeconds, timestampSeconds);
+          LiveTag liveTag = (LiveTag) liveTagsByName.get(dataPoint.getTagName());
+          if (liveTag != null) {
+            duplicate =
+                liveTag.sentRecords.remove(
+                    timestampSeconds,
+                    dataPoint.getValueString(),
+                    dataPoint.getQuality().getRawDataQuality());
+          }
+        } catch (NumberFormatException e) {
+          // Leave data point to be handled when added to a payload
+        }
+
+        if (duplicate) {
+          duplicateCount++;
+        } else {
+          filteredDataPoints.add(dataPoint);
+        }
+      }
+
+      // Forget live data points which the historical log has been read past
+      if (latestTimestampSeconds >= 0) {
+        Iterator liveTagsIterator = liveTagsByName.values().iterator();
+        while (liveTagsIterator.hasNext()) {
+          ((LiveTag) liveTagsIterator.next())
+              .sentRecords.removeBefore(
+                  latestTimestampSeconds - TWConnectorConsts.LIVE_MODE_DUPLICATE_TOLERANCE_SECONDS);
+        }
+      }
+
+      if (duplicateCount > 0) {
+        Logger.LOG_DEBUG(
+            "Removed "
+                + duplicateCount
+                + " data points read from the historical log which were already sent in live"
+                + " mode.");
+      }
+    }
+    return filteredDataPoints;
+  }
+
+  /**
+   * Hands off the specified change of a live mode tag to the live mode thread. If the maximum
+   * number of changes waiting to be sent has been reached, the change is discarded, and is sent
+   * once it is read from the historical log.
+   *
+   * @param liveChange change of a live mode tag
+   */
+  private static void addLiveChange(LiveChange liveChange) {
+    synchronized (liveChanges) {
+      if (liveChanges.size() < TWConnectorConsts.LIVE_MODE_CHANGE_QUEUE_CAPACITY) {
+        liveChanges.addElement(liveChange);
+        liveChangesFullLogged = false;
+        liveChanges.notifyAll();
+      } else if (!liveChangesFullLogged) {
+        Logger.LOG_WARN(
+            "Unable to send changes of live mode tags as they occur because the maximum number of"
+                + " changes waiting to be sent ("
+                + TWConnectorConsts.LIVE_MODE_CHANGE_QUEUE_CAPACITY
+                + ") has been reached. Changes will be sent from the historical log.");
+        liveChangesFullLogged = true;
+      }
+    }
+  }
+
+  /**
+   * Takes all changes of live mode tags which are waiting to be sent, waiting up to the specified
+   * time for a change if there are none.
+   *
+   * @param waitMillis maximum time (in milliseconds) to wait for a change
+   * @return changes of live mode tags, oldest first, which may be empty
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private static Vector takeLiveChanges(long waitMillis) throws InterruptedException {
+    Vector takenLiveChanges = new Vector();
+    synchronized (liveChanges) {
+      if (liveChanges.size() == 0) {
+        liveChanges.wait(waitMillis);
+      }
+      for (int i = 0; i < liveChanges.size(); i++) {
+        takenLiveChanges.addElement(liveChanges.elementAt(i));
+      }
+      liveChanges.removeAllElements();
+    }
+    return takenLiveChanges;
+  }
+
+  /**
+   * Adds the specified changes of live mode tags to the pending payloads as live data points, with
+   * the current quality of their tags. Changes of tags whose quality cannot be read are not sent,
+   * and are sent once they are read from the historical log.
+   *
+   * @param changes changes of live mode tags, oldest first
+   */
+  private static void sendLiveChanges(Vector changes) {
+    if (changes.size() > 0) {
+      Hashtable qualitiesByTagName = readTagQualities();
+      int unknownQualityCount = 0;
+      for (int i = 0; i < changes.size(); i++) {
+        LiveChange change = (LiveChange) changes.elementAt(i);
+        DataQuality quality = (DataQuality) qualitiesByTagName.get(change.liveTag.getTagName());
+        if (quality == null) {
+          unknownQualityCount++;
+        } else {
+          change.liveTag.send(change, quality);
+        }
+      }
+
+      if (unknownQualityCount > 0) {
+        Logger.LOG_DEBUG(
+            "Unable to send "
+                + unknownQualityCount
+                + " changes of live mode tags as they occur because the tag quality is unknown."
+                + " Changes will be sent from the historical log.");
+      }
+    }
+  }
+
+  /**
+   * Reads the current quality of each tag from the instant values of the device.
+   *
+   * @return data quality of each tag, by tag name, which is empty if the instant values could not
+   *     be read
+   */
+  private static Hashtable readTagQualities() {
+    Hashtable qualitiesByTagName = new Hashtable();
+    BufferedReader reader = null;
+    try {
+      reader =
+          new BufferedReader(
+              new InputStreamReader(new Exporter(TWConnectorConsts.LIVE_MODE_INSTANT_VALUES_EBD)));
+
+      // Find tag name and quality columns from header
+      String line = reader.readLine();
+      int tagNameColumn = -1;
+      int qualityColumn = -1;
+      if (line != null) {
+        Vector columns = splitExportLine(line);
+        tagNameColumn = columns.indexOf(TWConnectorConsts.LIVE_MODE_INSTANT_VALUES_TAG_NAME_COLUMN);
+        qualityColumn = columns.indexOf(TWConnectorConsts.LIVE_MODE_INSTANT_VALUES_QUALITY_COLUMN);
+      }
+
+      // Read quality of each tag
+      if (tagNameColumn != -1 && qualityColumn != -1) {
+        line = reader.readLine();
+        while (line != null) {
+          Vector fields = splitExportLine(line);
+          if (fields.size() > Math.max(tagNameColumn, qualityColumn)) {
+            try {
+              int opcQuality = Integer.parseInt((String) fields.elementAt(qualityColumn));
+              qualitiesByTagName.put(fields.elementAt(tagNameColumn), getDataQuality(opcQuality));
+            } catch (NumberFormatException e) {
+              // Quality of tag is unknown, and its changes are sent from the historical log
+            }
+          }
+          line = reader.readLine();
+        }
+      } else {
+        Logger.LOG_WARN(
+            "Unable to read the quality of live mode tags because the instant values do not have"
+                + " the expected columns!");
+      }
+    } catch (IOException e) {
+      Logger.LOG_WARN("Unable to read the quality of live mode tags from the instant values!");
+      Logger.LOG_EXCEPTION(e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          Logger.LOG_EXCEPTION(e);
+        }
+      }
+    }
+    return qualitiesByTagName;
+  }
+
+  /**
+   * Splits the specified line of a text export in to its fields. Fields are separated by
+   * semicolons, and quoted fields may contain semicolons. Quotes are removed from quoted fields.
+   *
+   * @param line line of a text export
+   * @return fields of the line, as {@link String} objects
+   */
+  static Vector splitExportLine(String line) {
+    Vector fields = new Vector();
+    StringBuffer field = new StringBuffer();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ';' && !quoted) {
+        fields.addElement(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.addElement(field.toString());
+    return fields;
+  }
+
+  /**
+   * Gets the data quality for the specified OPC quality of an instant value or historical log
+   * value, from its quality bits.
+   *
+   * @param opcQuality OPC quality of an instant value or historical log value
+   * @return data quality
+   */
+  static DataQuality getDataQuality(int opcQuality) {
+    DataQuality dataQuality;
+    int qualityBits =
+        (opcQuality >> TWConnectorConsts.LIVE_MODE_OPC_QUALITY_BITS_SHIFT)
+            & TWConnectorConsts.LIVE_MODE_OPC_QUALITY_BITS_MASK;
+    if (qualityBits == DataQuality.GOOD.getRawDataQuality()) {
+      dataQuality = DataQuality.GOOD;
+    } else if (qualityBits == DataQuality.UNCERTAIN.getRawDataQuality()) {
+      dataQuality = DataQuality.UNCERTAIN;
+    } else {
+      dataQuality = DataQuality.BAD;
+    }
+    return dataQuality;
+  }
+
+  /** Change of a live mode tag which has not yet been sent by the live mode thread. */
+  private static class LiveChange {
+
+    /** Live mode tag which changed. */
+    private final LiveTag liveTag;
+
+    /** Timestamp (in seconds since the epoch) of the change. */
+    private final String timestamp;
+
+    /**
+     * Changed value of the tag, as an {@link Integer} for integer and boolean tags, a {@link
+     * Double} for float tags, a {@link Long} for DWORD tags, or a {@link String} for string tags.
+     */
+    private final Object value;
+
+    /**
+     * Creates a new change of a live mode tag.
+     *
+     * @param liveTag live mode tag which changed
+     * @param timestamp timestamp (in seconds since the epoch) of the change
+     * @param value changed value of the tag
+     */
+    LiveChange(LiveTag liveTag, String timestamp, Object value) {
+      this.liveTag = liveTag;
+      this.timestamp = timestamp;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Live mode tag, which listens for value changes of the tag and remembers the live data points
+   * sent for it.
+   */
+  private static class LiveTag extends EvtTagValueListener {
+
+    /** Name, ID and type of the tag. */
+    private final TWTagInfoIndex.IndexedTag tag;
+
+    /** Records of the live data points sent for the tag. */
+    private final TWLiveSentRecords sentRecords =
+        new TWLiveSentRecords(
+            TWConnectorConsts.LIVE_MODE_DUPLICATE_TOLERANCE_SECONDS,
+            TWConnectorConsts.LIVE_MODE_DUPLICATE_MAX_RECORDS_PER_TAG);
+
+    /**
+     * Creates a new live mode tag and sets the tag name of its tag value listener.
+     *
+     * @param tag name, ID and type of the tag
+     */
+    LiveTag(TWTagInfoIndex.IndexedTag tag) {
+      this.tag = tag;
+      setTagName(tag.getName());
+    }
+
+    /**
+     * Hands off the changed value of the tag to the live mode thread, if live mode is active. This
+     * is called on the event manager thread, and does not wait for the pending payloads.
+     */
+    public void callTagChanged() {
+      try {
+        if (liveModeActive) {
+          String timestamp =
+              String.valueOf(
+                  System.currentTimeMillis() / TWConnectorConsts.NUM_MILLISECONDS_PER_SECOND);
+          addLiveChange(new LiveChange(this, timestamp, getChangedValue()));
+        }
+      } catch (Exception e) {
+        Logger.LOG_SERIOUS(
+            "An exception occurred while sending a change of tag `"
+                + tag.getName()
+                + "` in live mode!");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+
+    /**
+     * Adds the specified change of the tag to the pending payloads as a live data point with the
+     * specified quality. This is called on the live mode thread.
+     *
+     * @param change change of the tag
+     * @param quality quality of the tag
+     */
+    void send(LiveChange change, DataQuality quality) {
+      try {
+        long timestampSeconds = Long.parseLong(change.timestamp);
+        DataPoint dataPoint = createDataPoint(change.value, change.timestamp, quality);
+        int rawQuality = quality.getRawDataQuality();
+
+        // Remember live data point before it can be sent, and forget it if it was not added
+        sentRecords.add(timestampSeconds, dataPoint.getValueString(), rawQuality);
+        boolean added = false;
+        try {
+          added = TWDataManager.addLiveDataPointToPending(dataPoint);
+        } finally {
+          if (!added) {
+            sentRecords.remove(timestampSeconds, dataPoint.getValueString(), rawQuality);
+          }
+        }
+      } catch (Exception e) {
+        Logger.LOG_SERIOUS(
+            "An exception occurred while sending a change of tag `"
+                + tag.getName()
+                + "` in live mode!");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+
+    /**
+     * Gets the changed value of the tag from the tag value listener.
+     *
+     * @return changed value of the tag, as described by {@link LiveChange#value}
+     */
+    private Object getChangedValue() {
+      Object value;
+      TagType tagType = tag.getType();
+      if (tagType == TagType.INTEGER || tagType == TagType.BOOLEAN) {
+        value = new Integer(getTagValueAsInt());
+      } else if (tagType == TagType.FLOAT) {
+        value = new Double(getTagValueAsDouble());
+      } else if (tagType == TagType.DWORD) {
+        value = new Long(getTagValueAsLong());
+      } else {
+        value = getTagValueAsString();
+      }
+      return value;
+    }
+
+    /**
+     * Creates a data point with the specified changed value of the tag.
+     *
+     * @param value changed value of the tag, as described by {@link LiveChange#value}
+     * @param timestamp timestamp (in seconds since the epoch) of the data point
+     * @param quality quality of the tag
+     * @return data point with the changed value of the tag
+     */
+    private DataPoint createDataPoint(Object value, String timestamp, DataQuality quality) {
+      DataPoint dataPoint;
+      TagType tagType = tag.getType();
+      if (tagType == TagType.INTEGER) {
+        dataPoint =
+            new DataPointInteger(
+                tag.getName(),
+                tag.getId(),
+                ((Integer) value).intValue(),
+                timestamp,
+                quality);
+      } else if (tagType == TagType.FLOAT) {
+        dataPoint =
+            new DataPointFloat(
+                tag.getName(),
+                tag.getId(),
+                (float) ((Double) value).doubleValue(),
+                timestamp,
+                quality);
+      } else if (tagType == TagType.BOOLEAN) {
+        dataPoint =
+            new DataPointBoolean(
+                tag.getName(),
+                tag.getId(),
+                ((Integer) value).intValue() != 0,
+                timestamp,
+                quality);
+      } else if (tagType == TagType.DWORD) {
+        dataPoint =
+            new DataPointDword(
+                tag.getName(), tag.getId(), ((Long) value).longValue(), timestamp, quality);
+      } else {
+        dataPoint =
+            new DataPointString(
+                tag.getName(), tag.getId(), (String) value, timestamp, quality);
+      }
+      return dataPoint;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.util.Vector;
+
+/**
+ * Records of the live data points sent for a live mode tag, which are matched against the data
+ * points later read from the historical log to remove duplicates. A historical data point matches
+ * a record if it has the same value and quality, and a timestamp within the duplicate tolerance.
+ *
+ * <p>Records are forgotten once they have been matched, once the historical log has been read past
+ * their timestamp, or once the maximum number of records has been reached and a newer live data
+ * point is sent.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+class TWLiveSentRecords {
+
+  /** Maximum difference (in seconds) between the timestamps of matching data points. */
+  private final long toleranceSeconds;
+
+  /** Maximum number of records. */
+  private final int maxRecords;
+
+  /**
+   * Timestamps (in seconds since the epoch) of the records, oldest first, as {@link Long} objects.
+   */
+  private final Vector timestamps = new Vector();
+
+  /** Values of the records, in the same order as the timestamps. */
+  private final Vector values = new Vector();
+
+  /**
+   * Raw data qualities of the records, in the same order as the timestamps, as {@link Integer}
+   * objects.
+   */
+  private final Vector qualities = new Vector();
+
+  /**
+   * Creates a new, empty set of records of sent live data points.
+   *
+   * @param toleranceSeconds maximum difference (in seconds) between the timestamps of matching
+   *     data points
+   * @param maxRecords maximum number of records
+   */
+  TWLiveSentRecords(long toleranceSeconds, int maxRecords) {
+    this.toleranceSeconds = toleranceSeconds;
+    this.maxRecords = maxRecords;
+  }
+
+  /**
+   * Records a sent live data point, forgetting the oldest record if the maximum number of records
+   * has been reached.
+   *
+   * @param timestampSeconds timestamp (in seconds since the epoch) of the live data point
+   * @param value value of the live data point
+   * @param rawQuality raw data quality of the live data point
+   */
+  synchronized void add(long timestampSeconds, String value, int rawQuality) {
+    if (timestamps.size() >= maxRecords) {
+      removeAt(0);
+    }
+    timestamps.addElement(new Long(timestampSeconds));
+    values.addElement(value);
+    qualities.addElement(new Integer(rawQuality));
+  }
+
+  /**
+   * Forgets the oldest record which matches the specified data point read from the historical log,
+   * if any.
+   *
+   * @param timestampSeconds timestamp (in seconds since the epoch) of the historical data point
+   * @param value value of the historical data point
+   * @param rawQuality raw data quality of the historical data point
+   * @return true if a matching record was forgotten, and the historical data point is a duplicate
+   */
+  synchronized boolean remove(long timestampSeconds, String value, int rawQuality) {
+    boolean removed = false;
+    for (int i = 0; i < timestamps.size() && !removed; i++) {
+      long recordTimestampSeconds = ((Long) timestamps.elementAt(i)).longValue();
+      if (Math.abs(recordTimestampSeconds - timestampSeconds) <= toleranceSeconds
+          && values.elementAt(i).equals(value)
+          && ((Integer) qualities.elementAt(i)).intValue() == rawQuality) {
+        removeAt(i);
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Forgets the records with a timestamp before the specified timestamp.
+   *
+   * @param timestampSeconds timestamp (in seconds since the epoch)
+   */
+  synchronized void removeBefore(long timestampSeconds) {
+    while (timestamps.size() > 0
+        && ((Long) timestamps.elementAt(0)).longValue() < timestampSeconds) {
+      removeAt(0);
+    }
+  }
+
+  /**
+   * Gets the number of records.
+   *
+   * @return number of records
+   */
+  synchronized int size() {
+    return timestamps.size();
+  }
+
+  /**
+   * Forgets the record at the specified index. This must only be called while holding the lock of
+   * this object.
+   *
+   * @param index index of the record
+   */
+  private void removeAt(int index) {
+    timestamps.removeElementAt(index);
+    values.removeElementAt(index);
+    qualities.removeElementAt(index);
+  }
+}
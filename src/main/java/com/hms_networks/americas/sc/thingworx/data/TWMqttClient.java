@@ -0,0 +1,904 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Minimal MQTT 3.1.1 client for publishing messages to an MQTT broker with QoS 1 (at least once
+ * delivery).
+ *
+ * <p>A single connection (session) to the broker is opened on the first publish and kept open for
+ * all subsequent messages. Messages are acknowledged by the broker asynchronously, so several
+ * messages can be in flight at once, up to a maximum in-flight window. Publishing blocks while the
+ * window is full. The result of each message is reported to its {@link DeliveryListener} once the
+ * broker has acknowledged it, or once the connection has been lost before it was acknowledged.
+ *
+ * <p>The connection is kept alive with pings while idle, and is considered lost if the broker does
+ * not acknowledge a message or ping within the acknowledgement timeout. A clean session is used,
+ * as messages which were not acknowledged are reported as failed, and are published again by the
+ * caller on a new connection.
+ *
+ * <p>Message bodies are written directly to the connection. As the length of a message must be
+ * known before it is written, each message body is written twice: once to determine its length,
+ * and once to the connection.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 3.4.0
+ * @version 1.0
+ * @author HMS Networks, MU Americas Solution Center
+ */
+public class TWMqttClient {
+
+  /** The URL protocols for unsecured (TCP) connections. */
+  private static final String[] TCP_PROTOCOLS = {"tcp", "mqtt"};
+
+  /** The URL protocols for secure (TLS) connections. */
+  private static final String[] TLS_PROTOCOLS = {"ssl", "mqtts"};
+
+  /** The default port for unsecured connections. */
+  private static final int TCP_DEFAULT_PORT = 1883;
+
+  /** The default port for secure connections. */
+  private static final int TLS_DEFAULT_PORT = 8883;
+
+  /** The MQTT protocol name sent when connecting. */
+  private static final String MQTT_PROTOCOL_NAME = "MQTT";
+
+  /** The MQTT protocol level of MQTT 3.1.1. */
+  private static final int MQTT_PROTOCOL_LEVEL = 4;
+
+  /** CONNECT packet type (fixed header first byte). */
+  private static final int PACKET_CONNECT = 0x10;
+
+  /** CONNACK packet type. */
+  private static final int PACKET_CONNACK = 0x20;
+
+  /** PUBLISH packet type with QoS 1 (fixed header first byte). */
+  private static final int PACKET_PUBLISH_QOS_1 = 0x32;
+
+  /** PUBACK packet type. */
+  private static final int PACKET_PUBACK = 0x40;
+
+  /** PINGREQ packet type. */
+  private static final int PACKET_PINGREQ = 0xC0;
+
+  /** PINGRESP packet type. */
+  private static final int PACKET_PINGRESP = 0xD0;
+
+  /** DISCONNECT packet type. */
+  private static final int PACKET_DISCONNECT = 0xE0;
+
+  /** CONNECT flag for a clean session. */
+  private static final int CONNECT_FLAG_CLEAN_SESSION = 0x02;
+
+  /** CONNECT flag indicating a password is present. */
+  private static final int CONNECT_FLAG_PASSWORD = 0x40;
+
+  /** CONNECT flag indicating a user name is present. */
+  private static final int CONNECT_FLAG_USERNAME = 0x80;
+
+  /** The maximum value of the remaining length field of an MQTT packet. */
+  private static final int MAX_REMAINING_LENGTH = 268435455;
+
+  /** The maximum MQTT packet identifier. */
+  private static final int MAX_PACKET_ID = 65535;
+
+  /** The interval (in milliseconds) at which the reader thread checks keep alive and timeouts. */
+  private static final int READ_CHECK_INTERVAL_MILLIS = 1000;
+
+  /** The size (in bytes) of the buffer used when writing to the connection. */
+  private static final int WRITE_BUFFER_SIZE_BYTES = 2048;
+
+  /** The character encoding of MQTT strings. */
+  private static final String MQTT_STRING_ENCODING = "UTF-8";
+
+  /** The host name of the broker. */
+  private final String host;
+
+  /** The port of the broker. */
+  private final int port;
+
+  /** Boolean indicating if connections to the broker use TLS. */
+  private final boolean secure;
+
+  /** The client identifier sent when connecting. */
+  private final String clientId;
+
+  /** The user name sent when connecting, or an empty string for none. */
+  private final String username;
+
+  /** The password sent when connecting, or an empty string for none. */
+  private final String password;
+
+  /** The keep alive interval (in seconds) sent when connecting. */
+  private final int keepAliveSeconds;
+
+  /** The connect and acknowledgement timeout (in milliseconds). */
+  private final int timeoutMillis;
+
+  /** The maximum number of messages in flight (unacknowledged) at once. */
+  private final int maxInFlightMessages;
+
+  /** The in-flight messages, keyed by their packet identifier ({@link Integer}). */
+  private final Hashtable inFlightMessages = new Hashtable();
+
+  /** The open connection to the broker, or null if not connected. */
+  private Socket socket = null;
+
+  /** The buffered output stream of the open connection, or null if not connected. */
+  private OutputStream socketOutputStream = null;
+
+  /**
+   * The number of the current connection. This is incremented each time a connection is lost or
+   * closed, so that the reader thread and writers of an old connection can detect it.
+   */
+  private int connectionNumber = 0;
+
+  /** Boolean indicating if a packet is being written to the connection. */
+  private boolean writing = false;
+
+  /** The next MQTT packet identifier. */
+  private int nextPacketId = 1;
+
+  /** Time (in milliseconds since the epoch) at which a packet was last sent. */
+  private long lastPacketSentMillis = 0;
+
+  /** Time (in milliseconds since the epoch) at which the outstanding ping was sent, or 0. */
+  private long pingSentMillis = 0;
+
+  /**
+   * Creates a new MQTT client for publishing messages to the broker at the specified URL. The URL
+   * must use the <code>tcp://</code> or <code>mqtt://</code> protocol for unsecured connections,
+   * or the <code>ssl://</code> or <code>mqtts://</code> protocol for secure connections.
+   *
+   * @param brokerUrl broker URL, such as <code>ssl://broker.example.com:8883</code>
+   * @param clientId client identifier
+   * @param username user name, or an empty string for none
+   * @param password password, or an empty string for none. This is only sent with a user name.
+   * @param keepAliveSeconds keep alive interval (in seconds)
+   * @param timeoutMillis connect and acknowledgement timeout (in milliseconds)
+   * @param maxInFlightMessages maximum number of messages in flight (unacknowledged) at once
+   * @throws MalformedURLException if the specified broker URL is invalid
+   */
+  public TWMqttClient(
+      String brokerUrl,
+      String clientId,
+      String username,
+      String password,
+      int keepAliveSeconds,
+      int timeoutMillis,
+      int maxInFlightMessages)
+      throws MalformedURLException {
+    // Parse protocol
+    int protocolEndIndex = brokerUrl.indexOf("://");
+    if (protocolEndIndex == -1) {
+      throw new MalformedURLException("No protocol in MQTT broker URL: " + brokerUrl);
+    }
+    String protocol = brokerUrl.substring(0, protocolEndIndex).toLowerCase();
+    if (isProtocolInList(protocol, TLS_PROTOCOLS)) {
+      this.secure = true;
+    } else if (isProtocolInList(protocol, TCP_PROTOCOLS)) {
+      this.secure = false;
+    } else {
+      throw new MalformedURLException("Unsupported protocol in MQTT broker URL: " + brokerUrl);
+    }
+
+    // Parse host and port, ignoring any path
+    String authority = brokerUrl.substring(protocolEndIndex + "://".length());
+    int pathIndex = authority.indexOf('/');
+    if (pathIndex != -1) {
+      authority = authority.substring(0, pathIndex);
+    }
+    int portIndex = authority.lastIndexOf(':');
+    if (portIndex != -1) {
+      this.host = authority.substring(0, portIndex);
+      try {
+        this.port = Integer.parseInt(authority.substring(portIndex + 1));
+      } catch (NumberFormatException e) {
+        throw new MalformedURLException("Invalid port in MQTT broker URL: " + brokerUrl);
+      }
+    } else {
+      this.host = authority;
+      this.port = secure ? TLS_DEFAULT_PORT : TCP_DEFAULT_PORT;
+    }
+    if (host.length() == 0) {
+      throw new MalformedURLException("No host in MQTT broker URL: " + brokerUrl);
+    }
+
+    this.clientId = clientId;
+    this.username = username;
+    this.password = password;
+    this.keepAliveSeconds = keepAliveSeconds;
+    this.timeoutMillis = timeoutMillis;
+    this.maxInFlightMessages = maxInFlightMessages;
+  }
+
+  /**
+   * Publishes a message with the specified body to the specified topic with QoS 1. The connection
+   * to the broker is opened if not already open. This method blocks while the maximum number of
+   * messages are in flight, and returns once the message has been written to the connection.
+   *
+   * <p>If this method returns normally, the specified listener is notified once the broker has
+   * acknowledged the message, or once the connection has been lost before the message was
+   * acknowledged. The listener is notified from another thread, and may be notified before this
+   * method returns. If this method throws an exception, the listener is not notified. If writing
+   * the message fails after the connection was already lost, and the message has already been
+   * reported to its listener as failed, this method returns normally.
+   *
+   * @param topic topic to publish message to
+   * @param body message body, which must write the same bytes each time it is written
+   * @param listener listener to notify of the result of the message
+   * @throws IOException if unable to connect to the broker or write the message, or if the
+   *     in-flight window did not become available within the acknowledgement timeout
+   */
+  public void publish(String topic, MessageBody body, DeliveryListener listener)
+      throws IOException {
+    // Determine length of message body
+    LengthOutputStream bodyLengthStream = new LengthOutputStream(null, -1);
+    body.writeTo(bodyLengthStream);
+    long bodyLength = bodyLengthStream.getLength();
+
+    byte[] topicBytes = topic.getBytes(MQTT_STRING_ENCODING);
+    long remainingLength = 2 + topicBytes.length + 2 + bodyLength;
+    if (remainingLength > MAX_REMAINING_LENGTH) {
+      throw new IOException("Message of " + bodyLength + " bytes is too large to publish.");
+    }
+
+    // Wait for in-flight window and exclusive use of connection, then reserve packet identifier
+    int packetId;
+    int publishConnectionNumber;
+    OutputStream outputStream;
+    synchronized (this) {
+      long waitDeadlineMillis = System.currentTimeMillis() + timeoutMillis;
+      long waitMillis = timeoutMillis;
+      while ((writing || inFlightMessages.size() >= maxInFlightMessages) && waitMillis > 0) {
+        try {
+          wait(waitMillis);
+        } catch (InterruptedException e) {
+          throw new IOException("Interrupted while waiting to publish message.");
+        }
+        waitMillis = waitDeadlineMillis - System.currentTimeMillis();
+      }
+      if (writing || inFlightMessages.size() >= maxInFlightMessages) {
+        throw new IOException("Timed out waiting for in-flight messages to be acknowledged.");
+      }
+
+      if (socket == null) {
+        connect();
+      }
+      packetId = reservePacketId();
+      inFlightMessages.put(
+          new Integer(packetId), new InFlightMessage(listener, System.currentTimeMillis()));
+      publishConnectionNumber = connectionNumber;
+      outputStream = socketOutputStream;
+      writing = true;
+    }
+
+    // Write message, without holding lock so acknowledgements can be processed meanwhile
+    IOException writeException = null;
+    try {
+      outputStream.write(PACKET_PUBLISH_QOS_1);
+      writeRemainingLength(outputStream, (int) remainingLength);
+      writeShort(outputStream, topicBytes.length);
+      outputStream.write(topicBytes);
+      writeShort(outputStream, packetId);
+      LengthOutputStream bodyStream = new LengthOutputStream(outputStream, bodyLength);
+      body.writeTo(bodyStream);
+      if (bodyStream.getLength() != bodyLength) {
+        throw new IOException("Message body length changed while writing message.");
+      }
+      outputStream.flush();
+    } catch (IOException e) {
+      writeException = e;
+    }
+
+    // Report failed message using exception, unless already reported to listener by reader thread
+    boolean reportWriteException = false;
+    synchronized (this) {
+      writing = false;
+      lastPacketSentMillis = System.currentTimeMillis();
+      if (writeException != null) {
+        reportWriteException = inFlightMessages.remove(new Integer(packetId)) != null;
+      }
+      notifyAll();
+    }
+
+    if (writeException != null) {
+      connectionLost(publishConnectionNumber, "Unable to write message.");
+      if (reportWriteException) {
+        throw writeException;
+      }
+    }
+  }
+
+  /**
+   * Closes the connection to the broker, if open. Messages which have not been acknowledged are
+   * reported as failed. A new connection is opened by the next publish.
+   */
+  public void close() {
+    int closeConnectionNumber;
+    synchronized (this) {
+      closeConnectionNumber = connectionNumber;
+      if (socket != null && !writing) {
+        try {
+          socketOutputStream.write(PACKET_DISCONNECT);
+          socketOutputStream.write(0);
+          socketOutputStream.flush();
+        } catch (IOException e) {
+          // Connection is closed regardless
+        }
+      }
+    }
+    connectionLost(closeConnectionNumber, null);
+  }
+
+  /**
+   * Opens the connection to the broker, sends the CONNECT packet and waits for the CONNACK packet,
+   * then starts the reader thread for the connection. The certificate of a TLS broker must be
+   * trusted and must have been issued for the host of the broker URL. This must be called while
+   * holding the lock.
+   *
+   * @throws IOException if unable to connect, or if the broker refused the connection
+   */
+  private void connect() throws IOException {
+    Socket newSocket = new Socket();
+    try {
+      newSocket.connect(new InetSocketAddress(host, port), timeoutMillis);
+      newSocket.setSoTimeout(timeoutMillis);
+      newSocket.setTcpNoDelay(true);
+      if (secure) {
+        SSLSocketFactory sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        newSocket = sslSocketFactory.createSocket(newSocket, host, port, true);
+        TWTlsHostnameVerifier.verify((SSLSocket) newSocket, host);
+      }
+      OutputStream outputStream =
+          new BufferedOutputStream(newSocket.getOutputStream(), WRITE_BUFFER_SIZE_BYTES);
+      InputStream inputStream = new BufferedInputStream(newSocket.getInputStream());
+
+      // Send CONNECT packet
+      boolean hasUsername = username.length() > 0;
+      boolean hasPassword = hasUsername && password.length() > 0;
+      byte[] protocolNameBytes = MQTT_PROTOCOL_NAME.getBytes(MQTT_STRING_ENCODING);
+      byte[] clientIdBytes = clientId.getBytes(MQTT_STRING_ENCODING);
+      byte[] usernameBytes = username.getBytes(MQTT_STRING_ENCODING);
+      byte[] passwordBytes = password.getBytes(MQTT_STRING_ENCODING);
+      int connectFlags = CONNECT_FLAG_CLEAN_SESSION;
+      int remainingLength = 2 + protocolNameBytes.length + 1 + 1 + 2 + 2 + clientIdBytes.length;
+      if (hasUsername) {
+        connectFlags |= CONNECT_FLAG_USERNAME;
+        remainingLength += 2 + usernameBytes.length;
+      }
+      if (hasPassword) {
+        connectFlags |= CONNECT_FLAG_PASSWORD;
+        remainingLength += 2 + passwordBytes.length;
+      }
+      outputStream.write(PACKET_CONNECT);
+      writeRemainingLength(outputStream, remainingLength);
+      writeShort(outputStream, protocolNameBytes.length);
+      outputStream.write(protocolNameBytes);
+      outputStream.write(MQTT_PROTOCOL_LEVEL);
+      outputStream.write(connectFlags);
+      writeShort(outputStream, keepAliveSeconds);
+      writeShort(outputStream, clientIdBytes.length);
+      outputStream.write(clientIdBytes);
+      if (hasUsername) {
+        writeShort(outputStream, usernameBytes.length);
+        outputStream.write(usernameBytes);
+      }
+      if (hasPassword) {
+        writeShort(outputStream, passwordBytes.length);
+        outputStream.write(passwordBytes);
+      }
+      outputStream.flush();
+
+      // Read CONNACK packet (type, remaining length, flags, return code)
+      int packetType = readByte(inputStream);
+      int packetLength = readRemainingLength(inputStream);
+      if ((packetType & 0xF0) != PACKET_CONNACK || packetLength != 2) {
+        throw new IOException("Unexpected response from MQTT broker when connecting.");
+      }
+      readByte(inputStream);
+      int returnCode = readByte(inputStream);
+      if (returnCode != 0) {
+        throw new IOException("MQTT broker refused connection with return code " + returnCode);
+      }
+
+      // Connected, start reader thread
+      newSocket.setSoTimeout(READ_CHECK_INTERVAL_MILLIS);
+      socket = newSocket;
+      socketOutputStream = outputStream;
+      lastPacketSentMillis = System.currentTimeMillis();
+      pingSentMillis = 0;
+      Thread readerThread = new Thread(new ReaderRunnable(connectionNumber, inputStream));
+      readerThread.start();
+      Logger.LOG_DEBUG("Connected to MQTT broker at " + host + ":" + port + ".");
+    } catch (IOException e) {
+      try {
+        newSocket.close();
+      } catch (IOException closeException) {
+        // Socket is discarded regardless
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Closes the specified connection, if it is still the current connection, and reports all
+   * in-flight messages as failed.
+   *
+   * @param lostConnectionNumber number of the connection which was lost
+   * @param reason reason the connection was lost for logging, or null if closed intentionally
+   */
+  private void connectionLost(int lostConnectionNumber, String reason) {
+    Vector failedMessages = new Vector();
+    synchronized (this) {
+      if (lostConnectionNumber == connectionNumber) {
+        connectionNumber++;
+        if (socket != null) {
+          try {
+            socket.close();
+          } catch (IOException e) {
+            // Socket is discarded regardless
+          }
+          socket = null;
+          socketOutputStream = null;
+        }
+        Enumeration inFlightMessageEnumeration = inFlightMessages.elements();
+        while (inFlightMessageEnumeration.hasMoreElements()) {
+          failedMessages.addElement(inFlightMessageEnumeration.nextElement());
+        }
+        inFlightMessages.clear();
+        pingSentMillis = 0;
+        notifyAll();
+
+        if (reason != null) {
+          Logger.LOG_WARN(
+              "The connection to the MQTT broker was lost. "
+                  + reason
+                  + " "
+                  + failedMessages.size()
+                  + " unacknowledged messages will be retried.");
+        }
+      }
+    }
+
+    // Notify listeners without holding lock
+    for (int i = 0; i < failedMessages.size(); i++) {
+      ((InFlightMessage) failedMessages.elementAt(i)).listener.messageFailed();
+    }
+  }
+
+  /**
+   * Reserves the next packet identifier which is not in use by an in-flight message. This must be
+   * called while holding the lock.
+   *
+   * @return packet identifier
+   */
+  private int reservePacketId() {
+    while (inFlightMessages.containsKey(new Integer(nextPacketId))) {
+      nextPacketId = nextPacketId == MAX_PACKET_ID ? 1 : nextPacketId + 1;
+    }
+    int packetId = nextPacketId;
+    nextPacketId = nextPacketId == MAX_PACKET_ID ? 1 : nextPacketId + 1;
+    return packetId;
+  }
+
+  /**
+   * Returns a boolean indicating if the specified protocol is in the specified list of protocols.
+   *
+   * @param protocol protocol to find
+   * @param protocols list of protocols
+   * @return true if the protocol is in the list
+   */
+  private static boolean isProtocolInList(String protocol, String[] protocols) {
+    boolean found = false;
+    for (int i = 0; i < protocols.length && !found; i++) {
+      found = protocols[i].equals(protocol);
+    }
+    return found;
+  }
+
+  /**
+   * Writes the specified value as a two byte (big-endian) integer.
+   *
+   * @param outputStream output stream to write to
+   * @param value value to write
+   * @throws IOException if unable to write
+   */
+  private static void writeShort(OutputStream outputStream, int value) throws IOException {
+    outputStream.write((value >> 8) & 0xFF);
+    outputStream.write(value & 0xFF);
+  }
+
+  /**
+   * Writes the specified value as an MQTT remaining length (variable length integer).
+   *
+   * @param outputStream output stream to write to
+   * @param value value to write
+   * @throws IOException if unable to write
+   */
+  private static void writeRemainingLength(OutputStream outputStream, int value)
+      throws IOException {
+    int remaining = value;
+    do {
+      int encodedByte = remaining % 128;
+      remaining = remaining / 128;
+      if (remaining > 0) {
+        encodedByte |= 0x80;
+      }
+      outputStream.write(encodedByte);
+    } while (remaining > 0);
+  }
+
+  /**
+   * Reads an MQTT remaining length (variable length integer).
+   *
+   * @param inputStream input stream to read from
+   * @return remaining length
+   * @throws IOException if unable to read, or if the remaining length is malformed
+   */
+  private static int readRemainingLength(InputStream inputStream) throws IOException {
+    int value = 0;
+    int multiplier = 1;
+    int encodedByte;
+    do {
+      if (multiplier > 128 * 128 * 128) {
+        throw new IOException("Malformed remaining length in MQTT packet.");
+      }
+      encodedByte = readByte(inputStream);
+      value += (encodedByte & 0x7F) * multiplier;
+      multiplier *= 128;
+    } while ((encodedByte & 0x80) != 0);
+    return value;
+  }
+
+  /**
+   * Reads a single byte, throwing an exception if the end of the stream has been reached.
+   *
+   * @param inputStream input stream to read from
+   * @return byte read
+   * @throws IOException if unable to read, or if the connection was closed
+   */
+  private static int readByte(InputStream inputStream) throws IOException {
+    int value = inputStream.read();
+    if (value == -1) {
+      throw new IOException("Connection closed by MQTT broker.");
+    }
+    return value;
+  }
+
+  /**
+   * Body of an MQTT message, which is written directly to the connection by {@link
+   * #publish(String, MessageBody, DeliveryListener)}.
+   *
+   * @since 3.4.0
+   */
+  public interface MessageBody {
+
+    /**
+     * Writes the message body to the specified output stream. The output stream may be closed once
+     * the body has been written, which does not close the connection.
+     *
+     * @param outputStream output stream to write message body to
+     * @throws IOException if unable to write the message body
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+  }
+
+  /**
+   * Listener which is notified of the result of a published message.
+   *
+   * @since 3.4.0
+   */
+  public interface DeliveryListener {
+
+    /** Called once the broker has acknowledged the message. */
+    void messageDelivered();
+
+    /** Called if the connection was lost before the broker acknowledged the message. */
+    void messageFailed();
+  }
+
+  /**
+   * Message which has been published and is waiting to be acknowledged by the broker.
+   *
+   * @since 3.4.0
+   */
+  private static class InFlightMessage {
+
+    /** Listener to notify of the result of the message. */
+    private final DeliveryListener listener;
+
+    /** Time (in milliseconds since the epoch) at which the message was published. */
+    private final long publishedTimeMillis;
+
+    /**
+     * Creates a new in-flight message.
+     *
+     * @param listener listener to notify of the result of the message
+     * @param publishedTimeMillis time (in milliseconds since the epoch) the message was published
+     */
+    private InFlightMessage(DeliveryListener listener, long publishedTimeMillis) {
+      this.listener = listener;
+      this.publishedTimeMillis = publishedTimeMillis;
+    }
+  }
+
+  /**
+   * Output stream which counts the bytes written to it, and optionally writes them to an underlying
+   * output stream. Closing the stream does not close the underlying output stream.
+   *
+   * @since 3.4.0
+   */
+  private static class LengthOutputStream extends OutputStream {
+
+    /** The underlying output stream, or null to only count bytes. */
+    private final OutputStream outputStream;
+
+    /** The maximum number of bytes which may be written, or -1 for no maximum. */
+    private final long maxLength;
+
+    /** The number of bytes written. */
+    private long length = 0;
+
+    /**
+     * Creates a new length output stream.
+     *
+     * @param outputStream underlying output stream, or null to only count bytes
+     * @param maxLength maximum number of bytes which may be written, or -1 for no maximum
+     */
+    private LengthOutputStream(OutputStream outputStream, long maxLength) {
+      this.outputStream = outputStream;
+      this.maxLength = maxLength;
+    }
+
+    public void write(int b) throws IOException {
+      addLength(1);
+      if (outputStream != null) {
+        outputStream.write(b);
+      }
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+      addLength(len);
+      if (outputStream != null) {
+        outputStream.write(b, off, len);
+      }
+    }
+
+    public void close() {
+      // Underlying output stream is not closed
+    }
+
+    /**
+     * Gets the number of bytes written.
+     *
+     * @return number of bytes written
+     */
+    private long getLength() {
+      return length;
+    }
+
+    /**
+     * Adds the specified number of bytes to the length, checking the maximum length.
+     *
+     * @param count number of bytes to add
+     * @throws IOException if the maximum length would be exceeded
+     */
+    private void addLength(int count) throws IOException {
+      if (maxLength != -1 && length + count > maxLength) {
+        throw new IOException("Message body length changed while writing message.");
+      }
+      length += count;
+    }
+  }
+
+  /**
+   * Runnable of the reader thread of a connection. The reader thread processes acknowledgements
+   * from the broker, sends pings while the connection is idle, and closes the connection if the
+   * broker does not respond within the acknowledgement timeout.
+   *
+   * @since 3.4.0
+   */
+  private class ReaderRunnable implements Runnable {
+
+    /** Number of the connection read by this reader. */
+    private final int readerConnectionNumber;
+
+    /** Buffered input stream of the connection. */
+    private final InputStream inputStream;
+
+    /**
+     * Creates a new reader runnable for the specified connection.
+     *
+     * @param readerConnectionNumber number of the connection
+     * @param inputStream buffered input stream of the connection
+     */
+    private ReaderRunnable(int readerConnectionNumber, InputStream inputStream) {
+      this.readerConnectionNumber = readerConnectionNumber;
+      this.inputStream = inputStream;
+    }
+
+    public void run() {
+      String lostReason = null;
+      while (lostReason == null && isCurrentConnection()) {
+        try {
+          int packetType = -1;
+          try {
+            packetType = readByte(inputStream);
+          } catch (SocketTimeoutException e) {
+            lostReason = checkTimeouts();
+          }
+          if (packetType != -1) {
+            readPacket(packetType);
+          }
+        } catch (IOException e) {
+          lostReason = e.getMessage();
+        }
+      }
+
+      // Close connection and fail in-flight messages, unless already closed
+      connectionLost(readerConnectionNumber, lostReason);
+    }
+
+    /**
+     * Returns a boolean indicating if the connection read by this reader is still open.
+     *
+     * @return true if the connection is still open
+     */
+    private boolean isCurrentConnection() {
+      synchronized (TWMqttClient.this) {
+        return readerConnectionNumber == connectionNumber;
+      }
+    }
+
+    /**
+     * Reads the remainder of the packet with the specified type, and processes acknowledgements.
+     * Other packets are ignored.
+     *
+     * @param packetType first byte of packet
+     * @throws IOException if unable to read the packet
+     */
+    private void readPacket(int packetType) throws IOException {
+      int packetLength = readRemainingLengthWaiting();
+      int packetId = -1;
+      for (int i = 0; i < packetLength; i++) {
+        int value = readByteWaiting();
+        if (i == 0) {
+          packetId = value << 8;
+        } else if (i == 1) {
+          packetId |= value;
+        }
+      }
+
+      DeliveryListener deliveredListener = null;
+      synchronized (TWMqttClient.this) {
+        if ((packetType & 0xF0) == PACKET_PUBACK && packetLength == 2) {
+          InFlightMessage message =
+              (InFlightMessage) inFlightMessages.remove(new Integer(packetId));
+          if (message != null) {
+            deliveredListener = message.listener;
+            TWMqttClient.this.notifyAll();
+          }
+        } else if ((packetType & 0xF0) == PACKET_PINGRESP) {
+          pingSentMillis = 0;
+        }
+      }
+
+      // Notify listener without holding lock
+      if (deliveredListener != null) {
+        deliveredListener.messageDelivered();
+      }
+    }
+
+    /**
+     * Checks the acknowledgement timeout of in-flight messages and the outstanding ping, and sends
+     * a ping if the connection has been idle for half of the keep alive interval.
+     *
+     * @return reason the connection is considered lost, or null if the connection is healthy
+     * @throws IOException if unable to send a ping
+     */
+    private String checkTimeouts() throws IOException {
+      String lostReason = null;
+      boolean sendPing = false;
+      OutputStream outputStream = null;
+      synchronized (TWMqttClient.this) {
+        long currentTimeMillis = System.currentTimeMillis();
+        if (pingSentMillis != 0 && currentTimeMillis - pingSentMillis > timeoutMillis) {
+          lostReason = "The MQTT broker did not respond to a ping.";
+        }
+
+        Enumeration inFlightMessageEnumeration = inFlightMessages.elements();
+        while (lostReason == null && inFlightMessageEnumeration.hasMoreElements()) {
+          InFlightMessage message = (InFlightMessage) inFlightMessageEnumeration.nextElement();
+          if (currentTimeMillis - message.publishedTimeMillis > timeoutMillis) {
+            lostReason = "The MQTT broker did not acknowledge a message.";
+          }
+        }
+
+        if (lostReason == null
+            && !writing
+            && pingSentMillis == 0
+            && currentTimeMillis - lastPacketSentMillis >= keepAliveSeconds * 1000L / 2) {
+          sendPing = true;
+          writing = true;
+          outputStream = socketOutputStream;
+        }
+      }
+
+      if (sendPing) {
+        try {
+          outputStream.write(PACKET_PINGREQ);
+          outputStream.write(0);
+          outputStream.flush();
+        } finally {
+          synchronized (TWMqttClient.this) {
+            writing = false;
+            lastPacketSentMillis = System.currentTimeMillis();
+            pingSentMillis = lastPacketSentMillis;
+            TWMqttClient.this.notifyAll();
+          }
+        }
+      }
+      return lostReason;
+    }
+
+    /**
+     * Reads a single byte of a packet which has already started, continuing to wait if the read
+     * times out, up to the acknowledgement timeout.
+     *
+     * @return byte read
+     * @throws IOException if unable to read
+     */
+    private int readByteWaiting() throws IOException {
+      long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+      int value = -1;
+      while (value == -1) {
+        try {
+          value = readByte(inputStream);
+        } catch (SocketTimeoutException e) {
+          if (System.currentTimeMillis() >= deadlineMillis) {
+            throw e;
+          }
+        }
+      }
+      return value;
+    }
+
+    /**
+     * Reads an MQTT remaining length of a packet which has already started, continuing to wait if
+     * the read times out.
+     *
+     * @return remaining length
+     * @throws IOException if unable to read, or if the remaining length is malformed
+     */
+    private int readRemainingLengthWaiting() throws IOException {
+      int value = 0;
+      int multiplier = 1;
+      int encodedByte;
+      do {
+        if (multiplier > 128 * 128 * 128) {
+          throw new IOException("Malformed remaining length in MQTT packet.");
+        }
+        encodedByte = readByteWaiting();
+        value += (encodedByte & 0x7F) * multiplier;
+        multiplier *= 128;
+      } while ((encodedByte & 0x80) != 0);
+      return value;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Payload transport which publishes each payload to a topic on an MQTT broker with QoS 1, for
+ * ingestion by Thingworx using its MQTT extension.
+ *
+ * <p>All data send workers share a single transport, and therefore a single connection to the
+ * broker. Pending payloads are acknowledged by the broker asynchronously, so several payloads are
+ * in flight at once, up to the maximum in-flight window of the {@link TWMqttClient}. Payloads are
+ * always published uncompressed, as MQTT messages have no content encoding.
+ *
+ * @since 3.4.0
+ * @author HMS Networks, MU Americas Solution Center
+ */
+public class TWMqttPayloadTransport implements TWPayloadTransport {
+
+  /** The MQTT client used to publish payloads. */
+  private final TWMqttClient mqttClient;
+
+  /** The topic which payloads are published to. */
+  private final String topic;
+
+  /**
+   * Creates a new MQTT payload transport.
+   *
+   * @param mqttClient MQTT client used to publish payloads
+   * @param topic topic which payloads are published to
+   */
+  public TWMqttPayloadTransport(TWMqttClient mqttClient, String topic) {
+    this.mqttClient = mqttClient;
+    this.topic = topic;
+  }
+
+  /**
+   * Publishes the specified payload. This method returns once the payload has been written to the
+   * connection, and the specified listener is notified once the broker has acknowledged the
+   * payload, or once the connection has been lost before the payload was acknowledged.
+   *
+   * @param payload payload to send
+   * @param listener listener to notify of the result of the payload
+   * @throws Exception if unable to publish the payload
+   */
+  public void sendPayload(final TWDataPayload payload, final DeliveryListener listener)
+      throws Exception {
+    TWMqttClient.MessageBody messageBody =
+        new TWMqttClient.MessageBody() {
+          public void writeTo(OutputStream outputStream) throws IOException {
+            payload.writePayload(outputStream, false);
+          }
+        };
+    TWMqttClient.DeliveryListener messageListener =
+        new TWMqttClient.DeliveryListener() {
+          public void messageDelivered() {
+            listener.payloadDelivered(payload);
+          }
+
+          public void messageFailed() {
+            listener.payloadFailed(payload);
+          }
+        };
+    mqttClient.publish(topic, messageBody, messageListener);
+  }
+
+  /**
+   * Publishes the specified payload outbox record, and waits for the broker to acknowledge it.
+   * Compressed records are decompressed before publishing.
+   *
+   * @param record payload outbox record to send
+   * @throws Exception if unable to deliver the payload
+   */
+  public void sendOutboxRecord(TWPayloadOutbox.Record record) throws Exception {
+    final byte[] payloadData;
+    if (record.isCompressed()) {
+      payloadData = record.getPayloadString().getBytes("UTF-8");
+    } else {
+      payloadData = record.getData();
+    }
+    TWMqttClient.MessageBody messageBody =
+        new TWMqttClient.MessageBody() {
+          public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(payloadData);
+          }
+        };
+
+    // Publish and wait for result, which is always reported once the message has been published.
+    // The first element is set once the result is known, the second if the message was delivered.
+    final boolean[] result = new boolean[2];
+    TWMqttClient.DeliveryListener messageListener =
+        new TWMqttClient.DeliveryListener() {
+          public void messageDelivered() {
+            synchronized (result) {
+              result[0] = true;
+              result[1] = true;
+              result.notifyAll();
+            }
+          }
+
+          public void messageFailed() {
+            synchronized (result) {
+              result[0] = true;
+              result.notifyAll();
+            }
+          }
+        };
+    mqttClient.publish(topic, messageBody, messageListener);
+    synchronized (result) {
+      while (!result[0]) {
+        result.wait();
+      }
+    }
+    if (!result[1]) {
+      throw new IOException("The connection to the MQTT broker was lost before acknowledgement.");
+    }
+  }
+
+  /** Disconnects from the MQTT broker, if connected. */
+  public void close() {
+    mqttClient.close();
+  }
+}
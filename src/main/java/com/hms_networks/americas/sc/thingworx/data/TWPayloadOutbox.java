@@ -0,0 +1,547 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Store-and-forward outbox for payloads which cannot be delivered to Thingworx. Payloads are
+ * stored on the Ewon file system so that they are kept outside of the JVM heap and survive an
+ * application restart.
+ *
+ * <p>Payloads are appended to a data file as CRC-framed records, and are read and acknowledged in
+ * order. The offset and sequence number of the oldest unacknowledged record are stored in a
+ * separate index file. Each record includes a sequence number, which allows a partially written or
+ * stale record at the end of the data file to be detected and discarded when the outbox is opened.
+ * The data file is truncated once all records have been acknowledged, and compacted in place once
+ * acknowledged records make up at least half of the data file.
+ *
+ * <p>Writes are synchronized to the file system in batches, to limit flash wear. Appended records
+ * are synchronized by {@link #flush()}, which should be called once after appending a batch of
+ * records, and before the payloads in them are discarded from memory. The index is written and
+ * synchronized after every {@link #INDEX_WRITE_INTERVAL_RECORDS} acknowledged records, and by
+ * {@link #flush()}, so at most that many delivered payloads are sent again if power is lost.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 3.4.0
+ * @version 1.0
+ * @author HMS Networks, MU Americas Solution Center
+ */
+public class TWPayloadOutbox {
+
+  /** Magic number at the start of each record frame ("TWOB"). */
+  private static final int RECORD_FRAME_MAGIC = 0x54574F42;
+
+  /** Size (in bytes) of the record frame header: magic, sequence, flags and data length. */
+  private static final int RECORD_FRAME_HEADER_SIZE_BYTES = 17;
+
+  /** Size (in bytes) of the record frame trailer: CRC-32 of the header and data. */
+  private static final int RECORD_FRAME_TRAILER_SIZE_BYTES = 4;
+
+  /** Record flag indicating the record data is gzip-compressed. */
+  private static final byte RECORD_FLAG_COMPRESSED = 0x01;
+
+  /** Size (in bytes) of the index file: acknowledged offset, sequence and CRC-32. */
+  private static final int INDEX_SIZE_BYTES = 20;
+
+  /** Number of acknowledged records after which the index is written, if not written already. */
+  private static final int INDEX_WRITE_INTERVAL_RECORDS = 16;
+
+  /** Size (in bytes) of the buffer used to copy records when compacting the data file. */
+  private static final int COMPACTION_BUFFER_SIZE_BYTES = 4096;
+
+  /** The character encoding of payload strings stored in the outbox. */
+  private static final String PAYLOAD_CHARACTER_ENCODING = "UTF-8";
+
+  /** Path of the outbox data file. */
+  private final String dataFilePath;
+
+  /** Path of the outbox index file. */
+  private final String indexFilePath;
+
+  /** Maximum size (in bytes) of the outbox data file. */
+  private final long maxSizeBytes;
+
+  /** Outbox data file. */
+  private RandomAccessFile dataFile = null;
+
+  /** Outbox index file. */
+  private RandomAccessFile indexFile = null;
+
+  /** Offset in the data file of the oldest unacknowledged record. */
+  private long ackOffset = 0;
+
+  /** Sequence number of the oldest unacknowledged record. */
+  private long ackSequence = 0;
+
+  /** Offset in the data file at which the next record is appended. */
+  private long endOffset = 0;
+
+  /** Sequence number of the next record to be appended. */
+  private long appendSequence = 0;
+
+  /** Number of unacknowledged records in the outbox. */
+  private int recordCount = 0;
+
+  /** Cached oldest unacknowledged record, returned by {@link #peekNext()} until acknowledged. */
+  private Record nextRecord = null;
+
+  /** Boolean indicating if records have been appended since the data file was synchronized. */
+  private boolean dataFileUnsynced = false;
+
+  /** Number of records acknowledged since the index was written. */
+  private int unwrittenAcknowledgedCount = 0;
+
+  /**
+   * Creates a new payload outbox using the specified files. The outbox must be opened using {@link
+   * #open()} before use.
+   *
+   * @param dataFilePath path of the outbox data file
+   * @param indexFilePath path of the outbox index file
+   * @param maxSizeBytes maximum size (in bytes) of the outbox data file
+   */
+  public TWPayloadOutbox(String dataFilePath, String indexFilePath, long maxSizeBytes) {
+    this.dataFilePath = dataFilePath;
+    this.indexFilePath = indexFilePath;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Opens the outbox files, creating them if they do not exist, and recovers any unacknowledged
+   * records from a previous run. Invalid records at the end of the data file, such as a record
+   * which was partially written when power was lost, are discarded.
+   *
+   * @throws IOException if unable to open or read the outbox files
+   */
+  public synchronized void open() throws IOException {
+    dataFile = new RandomAccessFile(dataFilePath, "rw");
+    indexFile = new RandomAccessFile(indexFilePath, "rw");
+
+    // Read acknowledged offset and sequence from index, or start from beginning if invalid
+    boolean indexValid = readIndex();
+    if (!indexValid || ackOffset > dataFile.length()) {
+      ackOffset = 0;
+      ackSequence = -1;
+    }
+
+    // Scan records to find end of valid records
+    long scanOffset = ackOffset;
+    long scanSequence = ackSequence;
+    recordCount = 0;
+    long dataFileLength = dataFile.length();
+    boolean scanValid = true;
+    while (scanValid && scanOffset < dataFileLength) {
+      Record record = readRecord(scanOffset, dataFileLength);
+      if (record != null && (scanSequence == -1 || record.sequence == scanSequence)) {
+        if (scanSequence == -1) {
+          ackSequence = record.sequence;
+        }
+        scanOffset += record.frameSizeBytes;
+        scanSequence = record.sequence + 1;
+        recordCount++;
+      } else {
+        scanValid = false;
+      }
+    }
+    if (ackSequence == -1) {
+      ackSequence = 0;
+      scanSequence = 0;
+    }
+
+    // Discard invalid records at end of data file
+    if (scanOffset < dataFileLength) {
+      Logger.LOG_WARN(
+          "Discarded "
+              + (dataFileLength - scanOffset)
+              + " bytes of incomplete or invalid data at the end of the payload outbox.");
+      dataFile.setLength(scanOffset);
+    }
+    endOffset = scanOffset;
+    appendSequence = scanSequence;
+
+    // Truncate if no unacknowledged records remain
+    if (recordCount == 0) {
+      truncate();
+    } else {
+      writeIndex();
+      Logger.LOG_INFO(
+          "Recovered " + recordCount + " undelivered payloads from the payload outbox.");
+    }
+  }
+
+  /**
+   * Appends the specified payload data to the outbox as a new record. The record is not
+   * synchronized to the file system until {@link #flush()} is called.
+   *
+   * @param data payload data
+   * @param compressed true if the payload data is gzip-compressed
+   * @return true if appended, false if the outbox is full
+   * @throws IOException if unable to write to the outbox data file
+   */
+  public synchronized boolean append(byte[] data, boolean compressed) throws IOException {
+    long frameSizeBytes =
+        RECORD_FRAME_HEADER_SIZE_BYTES + data.length + RECORD_FRAME_TRAILER_SIZE_BYTES;
+
+    // Compact data file if full and acknowledged records can be removed
+    if (endOffset + frameSizeBytes > maxSizeBytes && ackOffset > 0) {
+      compact();
+    }
+
+    boolean appended = false;
+    if (endOffset + frameSizeBytes <= maxSizeBytes) {
+      byte flags = compressed ? RECORD_FLAG_COMPRESSED : 0;
+      byte[] header = buildRecordHeader(appendSequence, flags, data.length);
+      CRC32 crc = new CRC32();
+      crc.update(header);
+      crc.update(data);
+
+      dataFile.seek(endOffset);
+      dataFile.write(header);
+      dataFile.write(data);
+      dataFile.writeInt((int) crc.getValue());
+      endOffset += frameSizeBytes;
+      appendSequence++;
+      recordCount++;
+      dataFileUnsynced = true;
+      appended = true;
+    }
+    return appended;
+  }
+
+  /**
+   * Gets the oldest unacknowledged record in the outbox. The same record is returned until it is
+   * acknowledged using {@link #acknowledgeNext()}.
+   *
+   * <p>If the record cannot be read or is invalid, the remaining records in the outbox are
+   * discarded, as they cannot be delivered in order.
+   *
+   * @return oldest unacknowledged record, or null if the outbox is empty
+   * @throws IOException if unable to read from the outbox data file
+   */
+  public synchronized Record peekNext() throws IOException {
+    if (nextRecord == null && recordCount > 0) {
+      nextRecord = readRecord(ackOffset, endOffset);
+      if (nextRecord == null || nextRecord.sequence != ackSequence) {
+        Logger.LOG_CRITICAL(
+            "An invalid record was found in the payload outbox. The remaining "
+                + recordCount
+                + " undelivered payloads have been discarded. Data may have been lost!");
+        nextRecord = null;
+        truncate();
+      }
+    }
+    return nextRecord;
+  }
+
+  /**
+   * Acknowledges the oldest unacknowledged record in the outbox, as returned by {@link
+   * #peekNext()}, after it has been delivered.
+   *
+   * @throws IOException if unable to update the outbox files
+   */
+  public synchronized void acknowledgeNext() throws IOException {
+    if (nextRecord != null) {
+      ackOffset += nextRecord.frameSizeBytes;
+      ackSequence++;
+      recordCount--;
+      nextRecord = null;
+
+      unwrittenAcknowledgedCount++;
+      if (recordCount == 0) {
+        truncate();
+      } else if (ackOffset >= endOffset - ackOffset) {
+        compact();
+      } else if (unwrittenAcknowledgedCount >= INDEX_WRITE_INTERVAL_RECORDS) {
+        writeIndex();
+      }
+    }
+  }
+
+  /**
+   * Synchronizes appended records to the file system, and writes the index if records have been
+   * acknowledged since it was last written.
+   *
+   * @throws IOException if unable to update the outbox files
+   */
+  public synchronized void flush() throws IOException {
+    if (dataFileUnsynced) {
+      dataFile.getFD().sync();
+      dataFileUnsynced = false;
+    }
+    if (unwrittenAcknowledgedCount > 0) {
+      writeIndex();
+    }
+  }
+
+  /**
+   * Gets the number of unacknowledged records in the outbox.
+   *
+   * @return number of unacknowledged records
+   */
+  public synchronized int getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Gets the size (in bytes) of the outbox data file.
+   *
+   * @return outbox data file size (in bytes)
+   */
+  public synchronized long getSizeBytes() {
+    return endOffset;
+  }
+
+  /**
+   * Reads and validates the record at the specified offset in the data file.
+   *
+   * @param offset offset of record in data file
+   * @param limitOffset offset in data file which the record must not extend past
+   * @return record, or null if the record is incomplete or invalid
+   * @throws IOException if unable to read from the outbox data file
+   */
+  private Record readRecord(long offset, long limitOffset) throws IOException {
+    Record record = null;
+    if (offset + RECORD_FRAME_HEADER_SIZE_BYTES + RECORD_FRAME_TRAILER_SIZE_BYTES <= limitOffset) {
+      dataFile.seek(offset);
+      int magic = dataFile.readInt();
+      long sequence = dataFile.readLong();
+      byte flags = dataFile.readByte();
+      int dataLength = dataFile.readInt();
+      long frameSizeBytes =
+          (long) RECORD_FRAME_HEADER_SIZE_BYTES + dataLength + RECORD_FRAME_TRAILER_SIZE_BYTES;
+
+      if (magic == RECORD_FRAME_MAGIC
+          && dataLength >= 0
+          && offset + frameSizeBytes <= limitOffset) {
+        byte[] data = new byte[dataLength];
+        dataFile.readFully(data);
+        int storedCrc = dataFile.readInt();
+
+        CRC32 crc = new CRC32();
+        crc.update(buildRecordHeader(sequence, flags, dataLength));
+        crc.update(data);
+
+        if ((int) crc.getValue() == storedCrc) {
+          record =
+              new Record(sequence, data, (flags & RECORD_FLAG_COMPRESSED) != 0, frameSizeBytes);
+        }
+      }
+    }
+    return record;
+  }
+
+  /**
+   * Builds the header of a record frame with the specified values.
+   *
+   * @param sequence sequence number of the record
+   * @param flags record flags
+   * @param dataLength length (in bytes) of the record data
+   * @return record frame header
+   * @throws IOException if unable to build the header
+   */
+  private static byte[] buildRecordHeader(long sequence, byte flags, int dataLength)
+      throws IOException {
+    ByteArrayOutputStream headerStream = new ByteArrayOutputStream(RECORD_FRAME_HEADER_SIZE_BYTES);
+    DataOutputStream headerDataStream = new DataOutputStream(headerStream);
+    headerDataStream.writeInt(RECORD_FRAME_MAGIC);
+    headerDataStream.writeLong(sequence);
+    headerDataStream.writeByte(flags);
+    headerDataStream.writeInt(dataLength);
+    headerDataStream.flush();
+    return headerStream.toByteArray();
+  }
+
+  /**
+   * Compacts the data file in place by moving unacknowledged records to the start of the file.
+   * Records are only moved once acknowledged records make up at least half of the data file, so
+   * that the moved records never overwrite themselves. The index is updated before the data file
+   * is truncated, and any stale records left by an interrupted compaction are discarded by their
+   * sequence number when the outbox is next opened.
+   *
+   * @throws IOException if unable to update the outbox files
+   */
+  private void compact() throws IOException {
+    long remainingBytes = endOffset - ackOffset;
+    if (ackOffset >= remainingBytes) {
+      byte[] buffer = new byte[COMPACTION_BUFFER_SIZE_BYTES];
+      long copiedBytes = 0;
+      while (copiedBytes < remainingBytes) {
+        int chunkBytes = (int) Math.min(buffer.length, remainingBytes - copiedBytes);
+        dataFile.seek(ackOffset + copiedBytes);
+        dataFile.readFully(buffer, 0, chunkBytes);
+        dataFile.seek(copiedBytes);
+        dataFile.write(buffer, 0, chunkBytes);
+        copiedBytes += chunkBytes;
+      }
+      dataFile.getFD().sync();
+      dataFileUnsynced = false;
+      ackOffset = 0;
+      endOffset = remainingBytes;
+      writeIndex();
+      dataFile.setLength(endOffset);
+    } else {
+      writeIndex();
+    }
+  }
+
+  /**
+   * Truncates the data file, discarding all records, and updates the index.
+   *
+   * @throws IOException if unable to update the outbox files
+   */
+  private void truncate() throws IOException {
+    ackOffset = 0;
+    endOffset = 0;
+    ackSequence = appendSequence;
+    recordCount = 0;
+    writeIndex();
+    dataFile.setLength(0);
+  }
+
+  /**
+   * Reads the acknowledged offset and sequence from the index file.
+   *
+   * @return true if the index file is valid
+   * @throws IOException if unable to read from the index file
+   */
+  private boolean readIndex() throws IOException {
+    boolean indexValid = false;
+    if (indexFile.length() >= INDEX_SIZE_BYTES) {
+      indexFile.seek(0);
+      long indexAckOffset = indexFile.readLong();
+      long indexAckSequence = indexFile.readLong();
+      int storedCrc = indexFile.readInt();
+      if (getIndexCrc(indexAckOffset, indexAckSequence) == storedCrc && indexAckOffset >= 0) {
+        ackOffset = indexAckOffset;
+        ackSequence = indexAckSequence;
+        indexValid = true;
+      }
+    }
+    return indexValid;
+  }
+
+  /**
+   * Writes the acknowledged offset and sequence to the index file, and synchronizes it to the file
+   * system.
+   *
+   * @throws IOException if unable to write to the index file
+   */
+  private void writeIndex() throws IOException {
+    ByteArrayOutputStream indexStream = new ByteArrayOutputStream(INDEX_SIZE_BYTES);
+    DataOutputStream indexDataStream = new DataOutputStream(indexStream);
+    indexDataStream.writeLong(ackOffset);
+    indexDataStream.writeLong(ackSequence);
+    indexDataStream.writeInt(getIndexCrc(ackOffset, ackSequence));
+    indexDataStream.flush();
+    indexFile.seek(0);
+    indexFile.write(indexStream.toByteArray());
+    indexFile.getFD().sync();
+    unwrittenAcknowledgedCount = 0;
+  }
+
+  /**
+   * Gets the CRC-32 of the specified index values.
+   *
+   * @param indexAckOffset acknowledged offset
+   * @param indexAckSequence acknowledged sequence
+   * @return CRC-32 of index values
+   */
+  private static int getIndexCrc(long indexAckOffset, long indexAckSequence) {
+    CRC32 crc = new CRC32();
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (indexAckOffset >>> shift));
+    }
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (indexAckSequence >>> shift));
+    }
+    return (int) crc.getValue();
+  }
+
+  /**
+   * A payload record stored in the outbox.
+   *
+   * @since 3.4.0
+   */
+  public static final class Record {
+
+    /** Sequence number of the record. */
+    private final long sequence;
+
+    /** Payload data of the record. */
+    private final byte[] data;
+
+    /** Boolean indicating if the payload data is gzip-compressed. */
+    private final boolean compressed;
+
+    /** Size (in bytes) of the record frame in the data file. */
+    private final long frameSizeBytes;
+
+    /**
+     * Creates a new record.
+     *
+     * @param sequence sequence number of the record
+     * @param data payload data of the record
+     * @param compressed true if the payload data is gzip-compressed
+     * @param frameSizeBytes size (in bytes) of the record frame in the data file
+     */
+    private Record(long sequence, byte[] data, boolean compressed, long frameSizeBytes) {
+      this.sequence = sequence;
+      this.data = data;
+      this.compressed = compressed;
+      this.frameSizeBytes = frameSizeBytes;
+    }
+
+    /**
+     * Gets the payload data of the record.
+     *
+     * @return payload data
+     */
+    public byte[] getData() {
+      return data;
+    }
+
+    /**
+     * Gets a boolean indicating if the payload data is gzip-compressed.
+     *
+     * @return true if the payload data is gzip-compressed
+     */
+    public boolean isCompressed() {
+      return compressed;
+    }
+
+    /**
+     * Gets the payload string of the record, decompressing the payload data if necessary.
+     *
+     * @return payload string
+     * @throws IOException if unable to decompress or decode the payload data
+     */
+    public String getPayloadString() throws IOException {
+      String payloadString;
+      if (compressed) {
+        Reader payloadReader =
+            new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data)), PAYLOAD_CHARACTER_ENCODING);
+        StringBuffer payloadBuffer = new StringBuffer(data.length * 4);
+        char[] readBuffer = new char[1024];
+        int read = payloadReader.read(readBuffer);
+        while (read != -1) {
+          payloadBuffer.append(readBuffer, 0, read);
+          read = payloadReader.read(readBuffer);
+        }
+        payloadReader.close();
+        payloadString = payloadBuffer.toString();
+      } else {
+        payloadString = new String(data, PAYLOAD_CHARACTER_ENCODING);
+      }
+      return payloadString;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+
+/**
+ * Controller which auto-tunes the maximum number of data points per payload from the measured
+ * send latency of payloads, using additive increase and multiplicative decrease (AIMD).
+ *
+ * <p>After each full payload is delivered, the maximum number of data points is increased by a
+ * fixed step while the smoothed send latency stays below the target latency. If the smoothed send
+ * latency exceeds the target latency, the maximum number of data points is held. If a payload
+ * times out, the maximum number of data points is halved, so that payloads which are too large for
+ * the available bandwidth are quickly reduced. The maximum number of data points always remains
+ * within the configured bounds.
+ *
+ * <p>Several payloads may be in flight when a timeout occurs, and the other payloads which were
+ * sent before the decrease are likely to time out as well. Timeouts of payloads which were sent
+ * before the last decrease are therefore not counted again.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWPayloadSizeController {
+
+  /** Minimum number of data points per payload. */
+  private final int minDataPoints;
+
+  /** Maximum number of data points per payload. */
+  private final int maxDataPoints;
+
+  /** Target send latency (in milliseconds). */
+  private final long targetLatencyMillis;
+
+  /**
+   * Current maximum number of data points per payload. This is volatile so that it can be read
+   * without locking each time a data point is added to a payload.
+   */
+  private volatile int currentMaxDataPoints;
+
+  /** Smoothed send latency (in milliseconds), or -1 if no payload has been delivered yet. */
+  private double smoothedLatencyMillis = -1;
+
+  /** Smoothed fraction of payloads which failed to send, between 0 and 1. */
+  private double smoothedFailureRate = 0;
+
+  /** Time (in milliseconds since the epoch) at which the maximum was last decreased. */
+  private long lastDecreaseTimeMillis = 0;
+
+  /**
+   * Creates a new payload size controller.
+   *
+   * @param minDataPoints minimum number of data points per payload
+   * @param maxDataPoints maximum number of data points per payload
+   * @param initialDataPoints initial maximum number of data points per payload, which is limited to
+   *     the specified bounds
+   * @param targetLatencyMillis target send latency (in milliseconds)
+   */
+  public TWPayloadSizeController(
+      int minDataPoints, int maxDataPoints, int initialDataPoints, long targetLatencyMillis) {
+    this.minDataPoints = minDataPoints;
+    this.maxDataPoints = maxDataPoints;
+    this.targetLatencyMillis = targetLatencyMillis;
+    this.currentMaxDataPoints = Math.max(minDataPoints, Math.min(initialDataPoints, maxDataPoints));
+  }
+
+  /**
+   * Gets the current maximum number of data points per payload.
+   *
+   * @return current maximum number of data points per payload
+   */
+  public int getMaxDataPoints() {
+    return currentMaxDataPoints;
+  }
+
+  /**
+   * Records a payload which was delivered with the specified send latency. If the payload was full
+   * and the smoothed send latency is below the target latency, the maximum number of data points
+   * is increased.
+   *
+   * @param dataPointCount number of data points in the delivered payload
+   * @param latencyMillis send latency (in milliseconds) of the payload
+   */
+  public synchronized void recordDelivery(int dataPointCount, long latencyMillis) {
+    if (smoothedLatencyMillis < 0) {
+      smoothedLatencyMillis = latencyMillis;
+    } else {
+      smoothedLatencyMillis += smoothedWeight(latencyMillis - smoothedLatencyMillis);
+    }
+    smoothedFailureRate -= smoothedWeight(smoothedFailureRate);
+
+    // Only grow if the payload was limited by the current maximum, otherwise it is not yet known
+    // how larger payloads perform
+    if (dataPointCount >= currentMaxDataPoints
+        && smoothedLatencyMillis < targetLatencyMillis
+        && currentMaxDataPoints < maxDataPoints) {
+      setCurrentMaxDataPoints(
+          Math.min(
+              currentMaxDataPoints + TWConnectorConsts.PAYLOAD_AUTO_TUNE_INCREASE_DATA_POINTS,
+              maxDataPoints));
+    }
+  }
+
+  /**
+   * Records a payload which failed to send. If the payload timed out, and was sent after the last
+   * decrease, the maximum number of data points is decreased. Other failures, such as a refused
+   * connection, are not caused by the payload size and only count towards the failure rate.
+   *
+   * @param sendStartTimeMillis time (in milliseconds since the epoch) at which the payload was sent
+   * @param timedOut true if the payload timed out
+   */
+  public synchronized void recordFailure(long sendStartTimeMillis, boolean timedOut) {
+    smoothedFailureRate += smoothedWeight(1 - smoothedFailureRate);
+
+    if (timedOut && sendStartTimeMillis >= lastDecreaseTimeMillis) {
+      lastDecreaseTimeMillis = System.currentTimeMillis();
+      setCurrentMaxDataPoints(
+          Math.max(
+              (int) (currentMaxDataPoints * TWConnectorConsts.PAYLOAD_AUTO_TUNE_DECREASE_FACTOR),
+              minDataPoints));
+    }
+  }
+
+  /**
+   * Applies the smoothing weight to the specified difference between a new measurement and the
+   * current smoothed value.
+   *
+   * @param difference difference between new measurement and smoothed value
+   * @return change to the smoothed value
+   */
+  private static double smoothedWeight(double difference) {
+    return difference * TWConnectorConsts.PAYLOAD_AUTO_TUNE_SMOOTHING_WEIGHT;
+  }
+
+  /**
+   * Sets the current maximum number of data points per payload, and logs the change.
+   *
+   * @param newMaxDataPoints new maximum number of data points per payload
+   */
+  private void setCurrentMaxDataPoints(int newMaxDataPoints) {
+    if (newMaxDataPoints != currentMaxDataPoints) {
+      Logger.LOG_DEBUG(
+          "Changed the maximum number of data points per payload from "
+              + currentMaxDataPoints
+              + " to "
+              + newMaxDataPoints
+              + ". Smoothed send latency: "
+              + (long) smoothedLatencyMillis
+              + " ms, smoothed failure rate: "
+              + (int) (smoothedFailureRate * 100)
+              + "%.");
+      currentMaxDataPoints = newMaxDataPoints;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+/**
+ * Transport used by the data send workers to deliver payloads to Thingworx.
+ *
+ * <p>Pending payloads are sent using {@link #sendPayload(TWDataPayload, DeliveryListener)}, and the
+ * result of each payload is reported to a {@link DeliveryListener}. Transports which wait for each
+ * payload to be acknowledged report the result before returning, while transports which allow
+ * several unacknowledged payloads in flight report the result later, from another thread. Payloads
+ * from the payload outbox are always sent synchronously, as they must be acknowledged in order.
+ *
+ * @since 3.4.0
+ * @author HMS Networks, MU Americas Solution Center
+ */
+public interface TWPayloadTransport {
+
+  /**
+   * Sends the specified payload to Thingworx. If this method returns normally, the specified
+   * listener is notified once the payload has been delivered or has failed to be delivered, which
+   * may be before this method returns. If this method throws an exception, the payload was not
+   * sent and the listener is not notified.
+   *
+   * @param payload payload to send
+   * @param listener listener to notify of the result of the payload
+   * @throws Exception if unable to send the payload
+   */
+  void sendPayload(TWDataPayload payload, DeliveryListener listener) throws Exception;
+
+  /**
+   * Sends the specified payload outbox record to Thingworx, and returns once it has been
+   * delivered.
+   *
+   * @param record payload outbox record to send
+   * @throws Exception if unable to deliver the payload
+   */
+  void sendOutboxRecord(TWPayloadOutbox.Record record) throws Exception;
+
+  /** Closes any open connection of the transport. A new connection is opened when required. */
+  void close();
+
+  /**
+   * Listener which is notified of the result of a payload sent using {@link
+   * #sendPayload(TWDataPayload, DeliveryListener)}.
+   *
+   * @since 3.4.0
+   */
+  interface DeliveryListener {
+
+    /**
+     * Called once the payload has been delivered to Thingworx.
+     *
+     * @param payload delivered payload
+     */
+    void payloadDelivered(TWDataPayload payload);
+
+    /**
+     * Called if the payload could not be delivered to Thingworx after it was sent.
+     *
+     * @param payload failed payload
+     */
+    void payloadFailed(TWDataPayload payload);
+  }
+}
@@ -0,0 +1,128 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+/**
+ * Fixed-capacity ring of pending {@link TWDataPayload} objects.
+ *
+ * <p>New payloads are appended at the tail of the ring, and the payload at the tail is the open
+ * payload which data points are added to. Payloads are removed from the head of the ring once they
+ * have been acknowledged by Thingworx. Both operations are O(1) and do not require copying the
+ * underlying array.
+ *
+ * <p>This class is not thread-safe. Access must be synchronized externally by the owner, see
+ * {@link TWDataManager}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWPendingPayloadRing {
+
+  /** Array storing the payloads in the ring. */
+  private final TWDataPayload[] payloads;
+
+  /** Index of the payload at the head of the ring (oldest payload). */
+  private int headIndex = 0;
+
+  /** Number of payloads currently stored in the ring. */
+  private int size = 0;
+
+  /**
+   * Creates a new pending payload ring with the specified capacity.
+   *
+   * @param capacity maximum number of payloads that can be stored in the ring
+   */
+  public TWPendingPayloadRing(int capacity) {
+    payloads = new TWDataPayload[capacity];
+  }
+
+  /**
+   * Appends the specified payload to the tail of the ring.
+   *
+   * @param payload payload to append
+   * @return true if payload appended, false if the ring is full
+   */
+  public boolean addTail(TWDataPayload payload) {
+    boolean added = false;
+    if (size < payloads.length) {
+      payloads[(headIndex + size) % payloads.length] = payload;
+      size++;
+      added = true;
+    }
+    return added;
+  }
+
+  /**
+   * Gets the payload at the tail of the ring (newest payload), or null if the ring is empty.
+   *
+   * @return payload at tail of ring, or null if empty
+   */
+  public TWDataPayload peekTail() {
+    TWDataPayload tail = null;
+    if (size > 0) {
+      tail = payloads[(headIndex + size - 1) % payloads.length];
+    }
+    return tail;
+  }
+
+  /**
+   * Gets the payload at the head of the ring (oldest payload), or null if the ring is empty.
+   *
+   * @return payload at head of ring, or null if empty
+   */
+  public TWDataPayload peekHead() {
+    TWDataPayload head = null;
+    if (size > 0) {
+      head = payloads[headIndex];
+    }
+    return head;
+  }
+
+  /**
+   * Gets the payload at the specified position from the head of the ring, where position 0 is the
+   * head (oldest payload), or null if the position is outside the ring.
+   *
+   * @param position position from head of ring
+   * @return payload at position, or null if outside ring
+   */
+  public TWDataPayload get(int position) {
+    TWDataPayload payload = null;
+    if (position >= 0 && position < size) {
+      payload = payloads[(headIndex + position) % payloads.length];
+    }
+    return payload;
+  }
+
+  /**
+   * Removes and returns the payload at the head of the ring (oldest payload), or returns null if
+   * the ring is empty.
+   *
+   * @return removed payload, or null if empty
+   */
+  public TWDataPayload removeHead() {
+    TWDataPayload head = null;
+    if (size > 0) {
+      head = payloads[headIndex];
+      payloads[headIndex] = null;
+      headIndex = (headIndex + 1) % payloads.length;
+      size--;
+    }
+    return head;
+  }
+
+  /**
+   * Gets the number of payloads currently stored in the ring.
+   *
+   * @return number of payloads in ring
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the maximum number of payloads that can be stored in the ring.
+   *
+   * @return ring capacity
+   */
+  public int getCapacity() {
+    return payloads.length;
+  }
+}
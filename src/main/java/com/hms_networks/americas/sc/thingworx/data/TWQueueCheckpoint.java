@@ -0,0 +1,187 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint of the historical data queue, which records the time up to which all data read from
+ * the historical log has been acknowledged by Thingworx or moved to the payload outbox.
+ *
+ * <p>Each time span read from the historical log is added with the number of payloads which had
+ * been created once its data points were added to the pending payloads. Payloads are removed from
+ * the pending payloads in order, so once that number of payloads has been removed, all data points
+ * of the time span have been delivered, and the committed time is advanced to the end of the time
+ * span. Unlike the historical data queue time tracker, which is advanced as soon as a time span is
+ * read, the committed time never includes data which is only held in memory.
+ *
+ * <p>The committed time is stored in a checkpoint file with a CRC-32, so that a partially written
+ * file is detected. Each write is synced to the storage device before it is considered written, so
+ * that a committed time is not lost to a power failure after it was written. To limit writes to
+ * flash, the file is written at most once per {@link
+ * TWConnectorConsts#QUEUE_CHECKPOINT_WRITE_INTERVAL_MILLIS}, and when the checkpoint is closed.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWQueueCheckpoint {
+
+  /** Size (in bytes) of the checkpoint file: committed time and CRC-32. */
+  private static final int CHECKPOINT_SIZE_BYTES = 12;
+
+  /** Path of the checkpoint file. */
+  private final String filePath;
+
+  /** Checkpoint file. */
+  private RandomAccessFile file = null;
+
+  /**
+   * Time (in milliseconds since the epoch) up to which all data read from the historical log has
+   * been delivered, or -1 if unknown.
+   */
+  private long committedTimeMillis = -1;
+
+  /** Committed time (in milliseconds since the epoch) last written to the checkpoint file. */
+  private long writtenTimeMillis = -1;
+
+  /** Time (in milliseconds since the epoch) at which the checkpoint file was last written. */
+  private long lastWriteTimeMillis = 0;
+
+  /** End times (in milliseconds since the epoch) of time spans not yet delivered, oldest first. */
+  private final Vector spanEndTimes = new Vector();
+
+  /**
+   * Numbers of payloads which must be removed for each time span in {@link #spanEndTimes} to be
+   * delivered, in the same order.
+   */
+  private final Vector spanPayloadCounts = new Vector();
+
+  /**
+   * Creates a new checkpoint using the specified file. The checkpoint must be opened using {@link
+   * #open()} before use.
+   *
+   * @param filePath path of the checkpoint file
+   */
+  public TWQueueCheckpoint(String filePath) {
+    this.filePath = filePath;
+  }
+
+  /**
+   * Opens the checkpoint file, creating it if it does not exist, and reads the committed time from
+   * a previous run.
+   *
+   * @throws IOException if unable to open or read the checkpoint file
+   */
+  public synchronized void open() throws IOException {
+    file = new RandomAccessFile(filePath, "rw");
+    if (file.length() >= CHECKPOINT_SIZE_BYTES) {
+      file.seek(0);
+      long fileCommittedTimeMillis = file.readLong();
+      int storedCrc = file.readInt();
+      if (getCrc(fileCommittedTimeMillis) == storedCrc) {
+        committedTimeMillis = fileCommittedTimeMillis;
+        writtenTimeMillis = fileCommittedTimeMillis;
+      }
+    }
+  }
+
+  /**
+   * Gets the time up to which all data read from the historical log has been delivered.
+   *
+   * @return committed time (in milliseconds since the epoch), or -1 if unknown
+   */
+  public synchronized long getCommittedTimeMillis() {
+    return committedTimeMillis;
+  }
+
+  /**
+   * Adds a time span read from the historical log, whose data points have been added to the
+   * pending payloads.
+   *
+   * @param spanEndTimeMillis end time (in milliseconds since the epoch) of the time span
+   * @param createdPayloadCount total number of payloads created once the data points of the time
+   *     span had been added
+   */
+  public synchronized void addSpan(long spanEndTimeMillis, long createdPayloadCount) {
+    spanEndTimes.addElement(new Long(spanEndTimeMillis));
+    spanPayloadCounts.addElement(new Long(createdPayloadCount));
+  }
+
+  /**
+   * Advances the committed time to the end of the newest time span whose payloads have all been
+   * removed from the pending payloads, and writes it to the checkpoint file if the write interval
+   * has elapsed.
+   *
+   * @param removedPayloadCount total number of payloads acknowledged or moved to the outbox
+   * @throws IOException if unable to write to the checkpoint file
+   */
+  public synchronized void commit(long removedPayloadCount) throws IOException {
+    while (spanPayloadCounts.size() > 0
+        && ((Long) spanPayloadCounts.elementAt(0)).longValue() <= removedPayloadCount) {
+      committedTimeMillis =
+          Math.max(committedTimeMillis, ((Long) spanEndTimes.elementAt(0)).longValue());
+      spanEndTimes.removeElementAt(0);
+      spanPayloadCounts.removeElementAt(0);
+    }
+
+    long currentTimeMillis = System.currentTimeMillis();
+    if (currentTimeMillis - lastWriteTimeMillis
+        >= TWConnectorConsts.QUEUE_CHECKPOINT_WRITE_INTERVAL_MILLIS) {
+      write();
+      lastWriteTimeMillis = currentTimeMillis;
+    }
+  }
+
+  /**
+   * Writes the committed time to the checkpoint file, if it has changed, and closes the file.
+   *
+   * @throws IOException if unable to write to or close the checkpoint file
+   */
+  public synchronized void close() throws IOException {
+    if (file != null) {
+      write();
+      file.close();
+      file = null;
+    }
+  }
+
+  /**
+   * Writes the committed time to the checkpoint file, if it has changed since it was last written,
+   * and syncs the file to the storage device.
+   *
+   * @throws IOException if unable to write to or sync the checkpoint file
+   */
+  private void write() throws IOException {
+    if (file != null && committedTimeMillis != writtenTimeMillis) {
+      ByteArrayOutputStream checkpointStream = new ByteArrayOutputStream(CHECKPOINT_SIZE_BYTES);
+      DataOutputStream checkpointDataStream = new DataOutputStream(checkpointStream);
+      checkpointDataStream.writeLong(committedTimeMillis);
+      checkpointDataStream.writeInt(getCrc(committedTimeMillis));
+      checkpointDataStream.flush();
+      file.seek(0);
+      file.write(checkpointStream.toByteArray());
+      file.getFD().sync();
+      writtenTimeMillis = committedTimeMillis;
+    }
+  }
+
+  /**
+   * Gets the CRC-32 of the specified committed time.
+   *
+   * @param checkpointTimeMillis committed time (in milliseconds since the epoch)
+   * @return CRC-32 of committed time
+   */
+  private static int getCrc(long checkpointTimeMillis) {
+    CRC32 crc = new CRC32();
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (checkpointTimeMillis >>> shift));
+    }
+    return (int) crc.getValue();
+  }
+}
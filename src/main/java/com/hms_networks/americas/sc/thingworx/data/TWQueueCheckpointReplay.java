@@ -0,0 +1,265 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.ewon.ewonitf.Exporter;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointBoolean;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointDword;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointFloat;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointInteger;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointString;
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import com.hms_networks.americas.sc.extensions.taginfo.TagType;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.Vector;
+
+/**
+ * Replay of the data which was read from the historical log, but not delivered to Thingworx,
+ * before the connector last stopped. This is the time span from the committed time of the {@link
+ * TWQueueCheckpoint} to the historical data queue time tracker.
+ *
+ * <p>The historical data queue time tracker can only be advanced, so the time span is read again
+ * using time-bounded exports of the historical table, one window at a time. The historical reader
+ * reads each window before it resumes reading the historical data queue, and hands its data points
+ * off to the batching stage with the end time of the window, so that the checkpoint advances once
+ * they have been delivered. If the connector stops again before the replay has finished, the
+ * remaining time span is replayed on the next startup.
+ *
+ * <p>As for the historical data queue, data points of string tags are only replayed if string
+ * history is enabled. Data points of tags which are not in the {@link TWTagInfoIndex} are skipped.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWQueueCheckpointReplay {
+
+  /** End time (in milliseconds since the epoch) of the time span, exclusive. */
+  private final long endTimeMillis;
+
+  /** Maximum length (in milliseconds) of the window read by each export. */
+  private final long windowMillis;
+
+  /** Boolean indicating if data points of string tags are replayed. */
+  private final boolean stringHistoryEnabled;
+
+  /** Start time (in milliseconds since the epoch) of the next window to read. */
+  private long nextStartTimeMillis;
+
+  /**
+   * Creates a new replay of the specified time span of the historical log.
+   *
+   * @param startTimeMillis start time (in milliseconds since the epoch) of the time span, inclusive
+   * @param endTimeMillis end time (in milliseconds since the epoch) of the time span, exclusive
+   * @param windowMillis maximum length (in milliseconds) of the window read by each export
+   * @param stringHistoryEnabled true to replay data points of string tags
+   */
+  public TWQueueCheckpointReplay(
+      long startTimeMillis, long endTimeMillis, long windowMillis, boolean stringHistoryEnabled) {
+    this.nextStartTimeMillis = startTimeMillis;
+    this.endTimeMillis = endTimeMillis;
+    this.windowMillis = Math.max(windowMillis, TWConnectorConsts.NUM_MILLISECONDS_PER_SECOND);
+    this.stringHistoryEnabled = stringHistoryEnabled;
+  }
+
+  /**
+   * Returns a boolean indicating if all windows of the time span have been read.
+   *
+   * @return true if the replay has finished
+   */
+  public synchronized boolean isFinished() {
+    return nextStartTimeMillis >= endTimeMillis;
+  }
+
+  /**
+   * Gets the start time of the next window to read, which is the end time of the last window read.
+   *
+   * @return start time (in milliseconds since the epoch) of the next window
+   */
+  public synchronized long getNextStartTimeMillis() {
+    return nextStartTimeMillis;
+  }
+
+  /**
+   * Gets the end time of the time span.
+   *
+   * @return end time (in milliseconds since the epoch) of the time span, exclusive
+   */
+  public long getEndTimeMillis() {
+    return endTimeMillis;
+  }
+
+  /**
+   * Reads the data points of the next window of the time span from the historical log, and
+   * advances the replay to the end of the window. The replay is not advanced if the window could
+   * not be read.
+   *
+   * @return data points of the window, in the order of the historical table
+   * @throws IOException if unable to read the historical log
+   */
+  public synchronized List readNextWindow() throws IOException {
+    long windowStartTimeMillis = nextStartTimeMillis;
+    long windowEndTimeMillis = Math.min(windowStartTimeMillis + windowMillis, endTimeMillis);
+
+    // Export window of historical table, and parse data points of window
+    List dataPoints;
+    BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(
+                new Exporter(
+                    buildExportBlockDescriptor(windowStartTimeMillis, windowEndTimeMillis))));
+    try {
+      dataPoints =
+          parseExport(
+              reader,
+              TWTagInfoIndex.getTagsById(),
+              stringHistoryEnabled,
+              windowStartTimeMillis / TWConnectorConsts.NUM_MILLISECONDS_PER_SECOND,
+              windowEndTimeMillis / TWConnectorConsts.NUM_MILLISECONDS_PER_SECOND);
+    } finally {
+      reader.close();
+    }
+
+    nextStartTimeMillis = windowEndTimeMillis;
+    return dataPoints;
+  }
+
+  /**
+   * Builds the export block descriptor of the historical table between the specified times. The
+   * export includes both times, as they are rounded down to the second.
+   *
+   * @param startTimeMillis start time (in milliseconds since the epoch)
+   * @param endTimeMillis end time (in milliseconds since the epoch)
+   * @return export block descriptor
+   */
+  static String buildExportBlockDescriptor(long startTimeMillis, long endTimeMillis) {
+    SimpleDateFormat timeFormat =
+        new SimpleDateFormat(TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_EBD_TIME_FORMAT);
+    timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_EBD
+        + TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_EBD_START_TIME
+        + timeFormat.format(new Date(startTimeMillis))
+        + TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_EBD_END_TIME
+        + timeFormat.format(new Date(endTimeMillis));
+  }
+
+  /**
+   * Parses the data points of a text export of the historical table. Only data points with a time
+   * from the specified start time (inclusive) to the specified end time (exclusive) are returned,
+   * so that data points at the boundary of two windows are only replayed once. Lines which cannot
+   * be parsed are skipped.
+   *
+   * @param reader reader of the text export
+   * @param tagsById indexed tags, by tag ID as an {@link Integer}
+   * @param stringHistoryEnabled true to include data points of string tags
+   * @param startTimeSeconds start time (in seconds since the epoch), inclusive
+   * @param endTimeSeconds end time (in seconds since the epoch), exclusive
+   * @return data points of the export
+   * @throws IOException if unable to read the export, or if it does not have the expected columns
+   */
+  static List parseExport(
+      BufferedReader reader,
+      Hashtable tagsById,
+      boolean stringHistoryEnabled,
+      long startTimeSeconds,
+      long endTimeSeconds)
+      throws IOException {
+    List dataPoints = new ArrayList();
+
+    // Find columns from header, an empty export has no header
+    String line = reader.readLine();
+    if (line != null) {
+      Vector columns = TWLiveModeManager.splitExportLine(line);
+      int tagIdColumn = columns.indexOf(TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_TAG_ID_COLUMN);
+      int timeColumn = columns.indexOf(TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_TIME_COLUMN);
+      int valueColumn = columns.indexOf(TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_VALUE_COLUMN);
+      int qualityColumn =
+          columns.indexOf(TWConnectorConsts.QUEUE_CHECKPOINT_REPLAY_QUALITY_COLUMN);
+      if (tagIdColumn == -1 || timeColumn == -1 || valueColumn == -1 || qualityColumn == -1) {
+        throw new IOException("The historical table export does not have the expected columns.");
+      }
+      int lastColumn =
+          Math.max(Math.max(tagIdColumn, timeColumn), Math.max(valueColumn, qualityColumn));
+
+      // Read data point of each line
+      line = reader.readLine();
+      while (line != null) {
+        Vector fields = TWLiveModeManager.splitExportLine(line);
+        if (fields.size() > lastColumn) {
+          try {
+            long timeSeconds = Long.parseLong((String) fields.elementAt(timeColumn));
+            TWTagInfoIndex.IndexedTag tag =
+                (TWTagInfoIndex.IndexedTag)
+                    tagsById.get(
+                        new Integer(Integer.parseInt((String) fields.elementAt(tagIdColumn))));
+            if (timeSeconds >= startTimeSeconds
+                && timeSeconds < endTimeSeconds
+                && tag != null
+                && (stringHistoryEnabled || tag.getType() != TagType.STRING)) {
+              DataQuality quality =
+                  TWLiveModeManager.getDataQuality(
+                      Integer.parseInt((String) fields.elementAt(qualityColumn)));
+              DataPoint dataPoint =
+                  createDataPoint(
+                      tag,
+                      (String) fields.elementAt(valueColumn),
+                      String.valueOf(timeSeconds),
+                      quality);
+              if (dataPoint != null) {
+                dataPoints.add(dataPoint);
+              }
+            }
+          } catch (NumberFormatException e) {
+            // Line cannot be parsed, and is skipped
+          }
+        }
+        line = reader.readLine();
+      }
+    }
+    return dataPoints;
+  }
+
+  /**
+   * Creates a data point of the specified tag with the specified value from a historical table
+   * export.
+   *
+   * @param tag indexed tag
+   * @param value value of the data point, as exported
+   * @param timestamp timestamp (in seconds since the epoch) of the data point
+   * @param quality quality of the data point
+   * @return data point, or null if the tag type is not supported
+   * @throws NumberFormatException if the value of a numeric tag cannot be parsed
+   */
+  private static DataPoint createDataPoint(
+      TWTagInfoIndex.IndexedTag tag, String value, String timestamp, DataQuality quality) {
+    DataPoint dataPoint = null;
+    TagType tagType = tag.getType();
+    if (tagType == TagType.INTEGER) {
+      dataPoint =
+          new DataPointInteger(
+              tag.getName(), tag.getId(), (int) Double.parseDouble(value), timestamp, quality);
+    } else if (tagType == TagType.FLOAT) {
+      dataPoint =
+          new DataPointFloat(
+              tag.getName(), tag.getId(), Float.parseFloat(value), timestamp, quality);
+    } else if (tagType == TagType.BOOLEAN) {
+      dataPoint =
+          new DataPointBoolean(
+              tag.getName(), tag.getId(), Double.parseDouble(value) != 0, timestamp, quality);
+    } else if (tagType == TagType.DWORD) {
+      dataPoint =
+          new DataPointDword(
+              tag.getName(), tag.getId(), (long) Double.parseDouble(value), timestamp, quality);
+    } else if (tagType == TagType.STRING) {
+      dataPoint = new DataPointString(tag.getName(), tag.getId(), value, timestamp, quality);
+    }
+    return dataPoint;
+  }
+}
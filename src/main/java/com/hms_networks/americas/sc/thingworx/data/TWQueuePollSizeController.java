@@ -0,0 +1,278 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+
+/**
+ * Controller which sizes the time span (in minutes) of each historical data queue poll, so that the
+ * data queue catches up quickly after it has fallen behind, without reading more data than the
+ * available memory or the send throughput to Thingworx allows.
+ *
+ * <p>While the data queue is not behind, the configured poll size is used. Once the data queue is
+ * behind by {@link TWConnectorConsts#QUEUE_CATCH_UP_ENTER_BEHIND_MILLIS}, the controller starts
+ * catching up, and continues until the data queue is behind by {@link
+ * TWConnectorConsts#QUEUE_CATCH_UP_EXIT_BEHIND_MILLIS} or less. While catching up, the poll size
+ * is the smallest of:
+ *
+ * <ul>
+ *   <li>the poll size which clears the backlog in {@link
+ *       TWConnectorConsts#QUEUE_CATCH_UP_TARGET_POLLS} polls,
+ *   <li>the configured maximum poll size while catching up,
+ *   <li>the previous poll size multiplied by {@link
+ *       TWConnectorConsts#QUEUE_CATCH_UP_MAX_GROWTH_FACTOR},
+ *   <li>the poll size whose data points fit in half of the free memory above {@link
+ *       TWConnectorConsts#QUEUE_DATA_POLL_MIN_MEMORY_BYTES}, and
+ *   <li>if sending is the bottleneck, the poll size whose data points, together with the pending
+ *       payloads, can be sent to Thingworx within {@link
+ *       TWConnectorConsts#QUEUE_CATCH_UP_SEND_HEADROOM_INTERVALS} poll intervals at the measured
+ *       send throughput.
+ * </ul>
+ *
+ * <p>The memory and send throughput limits are converted to a poll size using the measured number
+ * of data points per minute of historical data. The poll size is never less than the configured
+ * poll size.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWQueuePollSizeController {
+
+  /** Number of milliseconds per minute. */
+  private static final double MILLIS_PER_MINUTE = 60000.0;
+
+  /** Configured poll size (in minutes), used while the data queue is not behind. */
+  private final long basePollSizeMins;
+
+  /** Maximum poll size (in minutes) while catching up. */
+  private final long maxPollSizeMins;
+
+  /** Interval (in milliseconds) at which the data queue is polled. */
+  private final long pollIntervalMillis;
+
+  /** Current poll size (in minutes). */
+  private long pollSizeMins;
+
+  /** Boolean indicating if the data queue is catching up. */
+  private boolean catchingUp = false;
+
+  /** Smoothed number of data points per minute of historical data, or -1 if not yet measured. */
+  private double dataPointsPerMin = -1;
+
+  /** Smoothed send throughput (in data points per millisecond), or -1 if not yet measured. */
+  private double sendDataPointsPerMilli = -1;
+
+  /** Smoothed send throughput (in bytes per millisecond), or -1 if not yet measured. */
+  private double sendBytesPerMilli = -1;
+
+  /** Total number of acknowledged data points at the last update, or -1 before the first update. */
+  private long lastAcknowledgedDataPointCount = -1;
+
+  /** Total size (in bytes) of acknowledged payloads at the last update. */
+  private long lastAcknowledgedByteSize = 0;
+
+  /** Time (in milliseconds since the epoch) of the last update. */
+  private long lastUpdateTimeMillis = 0;
+
+  /**
+   * Creates a new data queue poll size controller, starting at the configured poll size.
+   *
+   * @param basePollSizeMins configured poll size (in minutes)
+   * @param maxPollSizeMins maximum poll size (in minutes) while catching up
+   * @param pollIntervalMillis interval (in milliseconds) at which the data queue is polled
+   */
+  public TWQueuePollSizeController(
+      long basePollSizeMins, long maxPollSizeMins, long pollIntervalMillis) {
+    this.basePollSizeMins = basePollSizeMins;
+    this.maxPollSizeMins = Math.max(maxPollSizeMins, basePollSizeMins);
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.pollSizeMins = basePollSizeMins;
+  }
+
+  /**
+   * Gets the current poll size (in minutes).
+   *
+   * @return current poll size (in minutes)
+   */
+  public synchronized long getPollSizeMins() {
+    return pollSizeMins;
+  }
+
+  /**
+   * Gets a boolean indicating if the data queue is catching up.
+   *
+   * @return true if catching up
+   */
+  public synchronized boolean isCatchingUp() {
+    return catchingUp;
+  }
+
+  /**
+   * Updates the poll size after a poll of the data queue, using the current poll size as the size
+   * of the completed poll.
+   *
+   * @param queueBehindMillis time (in milliseconds) that the data queue is behind
+   * @param freeMemoryBytes free memory (in bytes)
+   * @param pendingPayloadsByteSize total size (in bytes) of pending payloads before the completed
+   *     poll
+   * @param dataPointsRead number of data points read by the completed poll
+   * @param acknowledgedDataPointCount total number of data points sent to Thingworx
+   * @param acknowledgedByteSize total size (in bytes) of payloads sent to Thingworx
+   * @param currentTimeMillis current time (in milliseconds since the epoch)
+   * @return poll size (in minutes) for the next poll
+   */
+  public synchronized long update(
+      long queueBehindMillis,
+      long freeMemoryBytes,
+      long pendingPayloadsByteSize,
+      int dataPointsRead,
+      long acknowledgedDataPointCount,
+      long acknowledgedByteSize,
+      long currentTimeMillis) {
+    // Measure data points per minute of historical data and send throughput
+    dataPointsPerMin = smooth(dataPointsPerMin, dataPointsRead / (double) pollSizeMins);
+    if (lastAcknowledgedDataPointCount >= 0 && currentTimeMillis > lastUpdateTimeMillis) {
+      long elapsedMillis = currentTimeMillis - lastUpdateTimeMillis;
+      sendDataPointsPerMilli =
+          smooth(
+              sendDataPointsPerMilli,
+              (acknowledgedDataPointCount - lastAcknowledgedDataPointCount)
+                  / (double) elapsedMillis);
+      sendBytesPerMilli =
+          smooth(
+              sendBytesPerMilli,
+              (acknowledgedByteSize - lastAcknowledgedByteSize) / (double) elapsedMillis);
+    }
+    lastAcknowledgedDataPointCount = acknowledgedDataPointCount;
+    lastAcknowledgedByteSize = acknowledgedByteSize;
+    lastUpdateTimeMillis = currentTimeMillis;
+
+    // Start or stop catching up, with hysteresis
+    if (!catchingUp && queueBehindMillis >= TWConnectorConsts.QUEUE_CATCH_UP_ENTER_BEHIND_MILLIS) {
+      catchingUp = true;
+      Logger.LOG_SERIOUS(
+          "The size of data polled on each interval will be increased while the queue is running"
+              + " behind!");
+    } else if (catchingUp
+        && queueBehindMillis <= TWConnectorConsts.QUEUE_CATCH_UP_EXIT_BEHIND_MILLIS) {
+      catchingUp = false;
+      Logger.LOG_SERIOUS(
+          "The size of data polled on each interval has been restored to "
+              + basePollSizeMins
+              + " minutes.");
+    }
+
+    long newPollSizeMins = basePollSizeMins;
+    if (catchingUp) {
+      newPollSizeMins =
+          calculateCatchUpPollSizeMins(queueBehindMillis, freeMemoryBytes, pendingPayloadsByteSize);
+    }
+    if (newPollSizeMins != pollSizeMins) {
+      Logger.LOG_DEBUG(
+          "Changed the size of data polled on each interval from "
+              + pollSizeMins
+              + " to "
+              + newPollSizeMins
+              + " minutes. Queue behind: "
+              + queueBehindMillis
+              + " ms, free memory: "
+              + freeMemoryBytes
+              + " bytes, pending payloads: "
+              + pendingPayloadsByteSize
+              + " bytes, data points per minute: "
+              + (long) dataPointsPerMin
+              + ", send throughput: "
+              + (long) (sendDataPointsPerMilli * TWConnectorConsts.NUM_MILLISECONDS_PER_SECOND)
+              + " data points per second.");
+      pollSizeMins = newPollSizeMins;
+    }
+    return pollSizeMins;
+  }
+
+  /**
+   * Calculates the poll size (in minutes) while catching up, as described in the class
+   * documentation.
+   *
+   * @param queueBehindMillis time (in milliseconds) that the data queue is behind
+   * @param freeMemoryBytes free memory (in bytes)
+   * @param pendingPayloadsByteSize total size (in bytes) of pending payloads before the completed
+   *     poll
+   * @return poll size (in minutes) while catching up
+   */
+  private long calculateCatchUpPollSizeMins(
+      long queueBehindMillis, long freeMemoryBytes, long pendingPayloadsByteSize) {
+    // Poll size to clear backlog in target number of polls, while data keeps being logged
+    double targetPollSizeMins =
+        (pollIntervalMillis + queueBehindMillis / TWConnectorConsts.QUEUE_CATCH_UP_TARGET_POLLS)
+            / MILLIS_PER_MINUTE;
+    targetPollSizeMins = Math.min(targetPollSizeMins, maxPollSizeMins);
+    targetPollSizeMins =
+        Math.min(
+            targetPollSizeMins, pollSizeMins * TWConnectorConsts.QUEUE_CATCH_UP_MAX_GROWTH_FACTOR);
+
+    if (dataPointsPerMin > 0) {
+      // Limit data points read to half of free memory above minimum
+      double availableMemoryBytes =
+          Math.max(0, freeMemoryBytes - TWConnectorConsts.QUEUE_DATA_POLL_MIN_MEMORY_BYTES) / 2.0;
+      double memoryDataPoints =
+          availableMemoryBytes / TWConnectorConsts.QUEUE_CATCH_UP_BYTES_PER_DATA_POINT;
+      targetPollSizeMins = Math.min(targetPollSizeMins, memoryDataPoints / dataPointsPerMin);
+
+      // If sending is the bottleneck, limit data points read to what can be sent, after pending
+      // payloads, within the headroom
+      if (isSendSaturated(pendingPayloadsByteSize)) {
+        double sendableDataPoints = 0;
+        if (sendBytesPerMilli > 0) {
+          double pendingSendMillis = pendingPayloadsByteSize / sendBytesPerMilli;
+          double sendableMillis =
+              Math.max(
+                  0,
+                  TWConnectorConsts.QUEUE_CATCH_UP_SEND_HEADROOM_INTERVALS * pollIntervalMillis
+                      - pendingSendMillis);
+          sendableDataPoints = sendableMillis * sendDataPointsPerMilli;
+        }
+        targetPollSizeMins = Math.min(targetPollSizeMins, sendableDataPoints / dataPointsPerMin);
+      }
+    }
+
+    return Math.max(basePollSizeMins, (long) targetPollSizeMins);
+  }
+
+  /**
+   * Returns a boolean indicating if sending payloads to Thingworx is the bottleneck. This is the
+   * case if the payloads which were pending before the completed poll would take longer than a
+   * poll interval to send at the measured send throughput, meaning that the pending payloads are
+   * growing. Otherwise, the measured send throughput is limited by the data read, and is not the
+   * maximum send throughput.
+   *
+   * @param pendingPayloadsByteSize total size (in bytes) of pending payloads before the completed
+   *     poll
+   * @return true if sending is the bottleneck
+   */
+  private boolean isSendSaturated(long pendingPayloadsByteSize) {
+    boolean sendSaturated = false;
+    if (pendingPayloadsByteSize > 0 && sendBytesPerMilli >= 0) {
+      sendSaturated = pendingPayloadsByteSize >= sendBytesPerMilli * pollIntervalMillis;
+    }
+    return sendSaturated;
+  }
+
+  /**
+   * Returns the average of the specified smoothed value and new measurement, or the new
+   * measurement if there is no smoothed value yet.
+   *
+   * @param smoothedValue smoothed value, or a negative value if not yet measured
+   * @param measurement new measurement
+   * @return new smoothed value
+   */
+  private static double smooth(double smoothedValue, double measurement) {
+    double newSmoothedValue;
+    if (smoothedValue < 0) {
+      newSmoothedValue = measurement;
+    } else {
+      newSmoothedValue = (smoothedValue + measurement) / 2;
+    }
+    return newSmoothedValue;
+  }
+}
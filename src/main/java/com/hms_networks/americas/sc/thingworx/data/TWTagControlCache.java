@@ -0,0 +1,151 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.ewon.ewonitf.EWException;
+import com.ewon.ewonitf.TagControl;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Bounded cache of {@link TagControl} objects, keyed by tag name, which avoids creating a new
+ * {@link TagControl} and looking up the tag each time a tag is read or written.
+ *
+ * <p>A cached {@link TagControl} is checked each time it is returned, by verifying that it still
+ * refers to a tag with the cached name and ID. If it does not, the tag configuration of the Ewon
+ * has changed, and the cache is cleared, as the tag IDs of other cached tags may also have changed.
+ * Callers should also remove a tag from the cache using {@link #remove(String)} if reading or
+ * writing its value fails. Once the cache is full, the oldest cached tag is removed when a new tag
+ * is added.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagControlCache {
+
+  /** Cached tags, by tag name. */
+  private final Hashtable entriesByName = new Hashtable();
+
+  /** Names of the cached tags, oldest first. */
+  private final Vector entryNames = new Vector();
+
+  /** Maximum number of cached tags. */
+  private final int capacity;
+
+  /**
+   * Creates a new tag control cache with the specified capacity.
+   *
+   * @param capacity maximum number of cached tags
+   */
+  public TWTagControlCache(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Gets the {@link TagControl} for the tag with the specified name, creating it if it is not
+   * cached.
+   *
+   * @param tagName name of the tag
+   * @return tag control for the tag
+   * @throws EWException if the tag does not exist
+   */
+  public synchronized TagControl getTagControl(String tagName) throws EWException {
+    return getEntry(tagName).tagControl;
+  }
+
+  /**
+   * Removes the tag with the specified name from the cache, if cached. This should be called when
+   * reading or writing the value of the tag fails, so that its {@link TagControl} is created again
+   * on next use.
+   *
+   * @param tagName name of the tag
+   */
+  public synchronized void remove(String tagName) {
+    if (entriesByName.remove(tagName) != null) {
+      entryNames.removeElement(tagName);
+    }
+  }
+
+  /** Removes all tags from the cache. */
+  public synchronized void clear() {
+    entriesByName.clear();
+    entryNames.removeAllElements();
+  }
+
+  /**
+   * Gets the cached entry for the tag with the specified name, after checking that it still refers
+   * to the same tag, or creates and caches a new entry if the tag is not cached.
+   *
+   * @param tagName name of the tag
+   * @return entry for the tag
+   * @throws EWException if the tag does not exist
+   */
+  private Entry getEntry(String tagName) throws EWException {
+    Entry entry = (Entry) entriesByName.get(tagName);
+    if (entry != null && !entry.isValid(tagName)) {
+      clear();
+      entry = null;
+    }
+
+    if (entry == null) {
+      TagControl tagControl = createTagControl(tagName);
+      entry = new Entry(tagControl, tagControl.getTagId());
+      if (entryNames.size() >= capacity) {
+        entriesByName.remove(entryNames.elementAt(0));
+        entryNames.removeElementAt(0);
+      }
+      entriesByName.put(tagName, entry);
+      entryNames.addElement(tagName);
+    }
+    return entry;
+  }
+
+  /**
+   * Creates a new {@link TagControl} for the tag with the specified name.
+   *
+   * @param tagName name of the tag
+   * @return tag control for the tag
+   * @throws EWException if the tag does not exist
+   */
+  TagControl createTagControl(String tagName) throws EWException {
+    return new TagControl(tagName);
+  }
+
+  /** A cached {@link TagControl} and the ID of its tag. */
+  private static final class Entry {
+
+    /** Tag control for the tag. */
+    private final TagControl tagControl;
+
+    /** ID of the tag when the tag control was created. */
+    private final int tagId;
+
+    /**
+     * Creates a new cache entry.
+     *
+     * @param tagControl tag control for the tag
+     * @param tagId ID of the tag
+     */
+    private Entry(TagControl tagControl, int tagId) {
+      this.tagControl = tagControl;
+      this.tagId = tagId;
+    }
+
+    /**
+     * Returns a boolean indicating if the tag control still refers to a tag with the specified name
+     * and the cached ID.
+     *
+     * @param tagName name of the tag
+     * @return true if the tag control is still valid
+     */
+    private boolean isValid(String tagName) {
+      boolean valid;
+      try {
+        valid = tagControl.getTagId() == tagId && tagName.equals(tagControl.getTagName());
+      } catch (Exception e) {
+        valid = false;
+      }
+      return valid;
+    }
+  }
+}
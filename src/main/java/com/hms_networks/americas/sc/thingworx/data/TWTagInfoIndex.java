@@ -0,0 +1,251 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.ewon.ewonitf.EWException;
+import com.ewon.ewonitf.TagControl;
+import com.hms_networks.americas.sc.extensions.logging.Logger;
+import com.hms_networks.americas.sc.extensions.taginfo.TagInfo;
+import com.hms_networks.americas.sc.extensions.taginfo.TagInfoManager;
+import com.hms_networks.americas.sc.extensions.taginfo.TagType;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Index of the name, ID and type of the tags of {@link TagInfoManager} by tag name, which allows
+ * the ID and type of a tag to be found without searching the tag information array or creating a
+ * {@link TagControl}.
+ *
+ * <p>The index is built from the tag information array on first use. If a tag is not found, only
+ * that tag is checked on the Ewon, so that tags which do not exist are rejected without refreshing
+ * the tag information list. If the tag exists, it has been added to the Ewon after the index was
+ * last updated, and the tag information list is refreshed, at most once per {@link
+ * TWConnectorConsts#TAG_INFO_INDEX_MIN_REFRESH_INTERVAL_MILLIS}. The index is then updated with
+ * only the tags which have been added, changed or removed since the last refresh.
+ *
+ * <p>A tag which is found in the index may have been removed from the Ewon since the index was
+ * last updated. Callers which require the tag to exist should check it, for example by getting its
+ * {@link TagControl} from a {@link TWTagControlCache}, and call {@link #refresh()} if it does not.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagInfoIndex {
+
+  /** Indexed tags, by tag name. */
+  private static final Hashtable TAGS_BY_NAME = new Hashtable();
+
+  /** Boolean indicating if the index has been built from the tag information array. */
+  private static boolean built = false;
+
+  /** Time (in milliseconds since the epoch) of the last refresh of the tag information list. */
+  private static long lastRefreshTimeMillis = 0;
+
+  /**
+   * Gets the indexed tag with the specified name. If the tag is not indexed but exists on the Ewon,
+   * the tag information list is refreshed, if permitted by the minimum refresh interval, and the
+   * tag is looked up again.
+   *
+   * @param tagName tag name
+   * @return indexed tag, or null if the tag does not exist
+   */
+  public static synchronized IndexedTag getTag(String tagName) {
+    if (!built) {
+      update(TagInfoManager.getTagInfoArray());
+      built = true;
+    }
+
+    IndexedTag tag = (IndexedTag) TAGS_BY_NAME.get(tagName);
+    if (tag == null && doesTagExist(tagName) && refresh()) {
+      tag = (IndexedTag) TAGS_BY_NAME.get(tagName);
+    }
+    return tag;
+  }
+
+  /**
+   * Gets the indexed tag with the specified name, without building or refreshing the index.
+   *
+   * @param tagName tag name
+   * @return indexed tag, or null if the tag is not indexed
+   */
+  static synchronized IndexedTag getIndexedTag(String tagName) {
+    return (IndexedTag) TAGS_BY_NAME.get(tagName);
+  }
+
+  /**
+   * Gets the indexed tags by tag ID, building the index if it has not been built. The returned
+   * table is a copy, which is not updated when the index is updated.
+   *
+   * @return indexed tags, by tag ID as an {@link Integer}
+   */
+  static synchronized Hashtable getTagsById() {
+    if (!built) {
+      update(TagInfoManager.getTagInfoArray());
+      built = true;
+    }
+
+    Hashtable tagsById = new Hashtable(TAGS_BY_NAME.size() * 2 + 1);
+    Enumeration tags = TAGS_BY_NAME.elements();
+    while (tags.hasMoreElements()) {
+      IndexedTag tag = (IndexedTag) tags.nextElement();
+      tagsById.put(new Integer(tag.getId()), tag);
+    }
+    return tagsById;
+  }
+
+  /**
+   * Checks if a tag with the specified name exists on the Ewon. This creates a {@link TagControl}
+   * for the tag, so should only be used for tags which are not indexed.
+   *
+   * @param tagName tag name
+   * @return true if the tag exists
+   */
+  private static boolean doesTagExist(String tagName) {
+    boolean tagExists;
+    try {
+      new TagControl(tagName);
+      tagExists = true;
+    } catch (EWException e) {
+      Logger.LOG_DEBUG("The tag " + tagName + " is not indexed and does not exist on the Ewon.");
+      tagExists = false;
+    }
+    return tagExists;
+  }
+
+  /**
+   * Refreshes the tag information list and updates the index, if the minimum refresh interval has
+   * elapsed since the last refresh. This should be called if an indexed tag does not match the
+   * Ewon, as the tag may have been changed or removed.
+   *
+   * @return true if the tag information list was refreshed
+   */
+  public static synchronized boolean refresh() {
+    boolean refreshed = false;
+    long currentTimeMillis = System.currentTimeMillis();
+    if (currentTimeMillis - lastRefreshTimeMillis
+        >= TWConnectorConsts.TAG_INFO_INDEX_MIN_REFRESH_INTERVAL_MILLIS) {
+      lastRefreshTimeMillis = currentTimeMillis;
+      try {
+        Logger.LOG_DEBUG("Refreshing tag information list for the tag information index...");
+        TagInfoManager.refreshTagList();
+        update(TagInfoManager.getTagInfoArray());
+        built = true;
+        refreshed = true;
+      } catch (Exception e) {
+        Logger.LOG_SERIOUS("Unable to refresh the tag information list!");
+        Logger.LOG_EXCEPTION(e);
+      }
+    }
+    return refreshed;
+  }
+
+  /**
+   * Updates the index with the tags of the specified tag information array.
+   *
+   * @param tagInfoArray tag information array
+   */
+  private static void update(TagInfo[] tagInfoArray) {
+    IndexedTag[] tags = new IndexedTag[tagInfoArray != null ? tagInfoArray.length : 0];
+    for (int i = 0; i < tags.length; i++) {
+      TagInfo tagInfo = tagInfoArray[i];
+      if (tagInfo != null) {
+        tags[i] = new IndexedTag(tagInfo.getName(), tagInfo.getId(), tagInfo.getType());
+      }
+    }
+    update(tags);
+  }
+
+  /**
+   * Updates the index with the specified tags. Tags which are new or have a different ID or type
+   * are added, and indexed tags whose name is not in the specified tags are removed. Null elements
+   * are ignored.
+   *
+   * @param tags current tags of the Ewon
+   */
+  static synchronized void update(IndexedTag[] tags) {
+    // Add new and changed tags, and record the name of each current tag
+    Hashtable currentTagNames = new Hashtable();
+    for (int i = 0; i < tags.length; i++) {
+      IndexedTag tag = tags[i];
+      if (tag != null) {
+        currentTagNames.put(tag.getName(), tag.getName());
+        IndexedTag indexedTag = (IndexedTag) TAGS_BY_NAME.get(tag.getName());
+        if (indexedTag == null
+            || indexedTag.getId() != tag.getId()
+            || indexedTag.getType() != tag.getType()) {
+          TAGS_BY_NAME.put(tag.getName(), tag);
+        }
+      }
+    }
+
+    // Remove tags which no longer exist, if any (all current tags have been indexed above)
+    if (TAGS_BY_NAME.size() > currentTagNames.size()) {
+      Vector removedTagNames = new Vector();
+      Enumeration tagNames = TAGS_BY_NAME.keys();
+      while (tagNames.hasMoreElements()) {
+        String tagName = (String) tagNames.nextElement();
+        if (!currentTagNames.containsKey(tagName)) {
+          removedTagNames.addElement(tagName);
+        }
+      }
+      for (int i = 0; i < removedTagNames.size(); i++) {
+        TAGS_BY_NAME.remove(removedTagNames.elementAt(i));
+      }
+    }
+  }
+
+  /** The name, ID and type of an indexed tag. */
+  public static final class IndexedTag {
+
+    /** Name of the tag. */
+    private final String name;
+
+    /** ID of the tag. */
+    private final int id;
+
+    /** Type of the tag. */
+    private final TagType type;
+
+    /**
+     * Creates a new indexed tag.
+     *
+     * @param name name of the tag
+     * @param id ID of the tag
+     * @param type type of the tag
+     */
+    IndexedTag(String name, int id, TagType type) {
+      this.name = name;
+      this.id = id;
+      this.type = type;
+    }
+
+    /**
+     * Gets the name of the tag.
+     *
+     * @return tag name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the ID of the tag.
+     *
+     * @return tag ID
+     */
+    public int getId() {
+      return id;
+    }
+
+    /**
+     * Gets the type of the tag.
+     *
+     * @return tag type
+     */
+    public TagType getType() {
+      return type;
+    }
+  }
+}
@@ -1,19 +1,15 @@
 package com.hms_networks.americas.sc.thingworx.data;
 
 import com.ewon.ewonitf.*;
-import com.hms_networks.americas.sc.extensions.json.JSONArray;
 import com.hms_networks.americas.sc.extensions.json.JSONException;
 import com.hms_networks.americas.sc.extensions.json.JSONObject;
-import com.hms_networks.americas.sc.extensions.json.JSONTokener;
 import com.hms_networks.americas.sc.extensions.logging.Logger;
 import com.hms_networks.americas.sc.extensions.system.http.SCHttpUtility;
-import com.hms_networks.americas.sc.extensions.taginfo.TagInfo;
-import com.hms_networks.americas.sc.extensions.taginfo.TagInfoManager;
 import com.hms_networks.americas.sc.extensions.taginfo.TagType;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
 import com.hms_networks.americas.sc.thingworx.TWConnectorMain;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import com.hms_networks.americas.sc.thingworx.TWSupervisedStage;
+import java.io.StringReader;
 
 /**
  * Class for managing triggered checks for updated tag values from the Thingworx tag update endpoint
@@ -25,10 +21,12 @@ import java.util.Map.Entry;
 public class TWTagUpdateManager {
 
   /**
-   * Constant integer value used to indicate a non-found or missing tag ID when checking if a tag is
-   * present.
+   * Ewon tag types of the tag types of tag update response tag entries, indexed by the <code>
+   * TAG_TYPE_</code> constants of {@link TWTagUpdateResponse}.
    */
-  private static final int TAG_UPDATE_MESSAGE_TAG_ID_EMPTY = -1;
+  private static final TagType[] TAG_TYPES_BY_RESPONSE_TAG_TYPE = {
+    null, TagType.INTEGER, TagType.FLOAT, TagType.STRING, TagType.BOOLEAN, TagType.DWORD
+  };
 
   /** Constant integer value used to indicate when no tag update is triggered. */
   private static final int TAG_UPDATE_TRIGGER_VALUE_NONE = 0;
@@ -91,10 +89,10 @@ public class TWTagUpdateManager {
   private static final int TAG_UPDATE_RESULT_VALUE_PAYLOAD_MISMATCHED_TAG_TYPES = 8;
 
   /** Constant string value used to access the message ID field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_ID_KEY = "id";
+  static final String TAG_UPDATE_MESSAGE_ID_KEY = "id";
 
   /** Constant string value used to access the JSON RPC field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_JSON_RPC_KEY = "jsonrpc";
+  static final String TAG_UPDATE_MESSAGE_JSON_RPC_KEY = "jsonrpc";
 
   /**
    * Constant string value used to indicate the supported and expected JSON RPC version for tag
@@ -112,41 +110,41 @@ public class TWTagUpdateManager {
   private static final String TAG_UPDATE_MESSAGE_STRING_INFO_KEY = "stringInfo";
 
   /** Constant string value used to access the error field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_ERROR_KEY = "error";
+  static final String TAG_UPDATE_MESSAGE_ERROR_KEY = "error";
 
   /** Constant string value used to access the result field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_RESULT_KEY = "result";
+  static final String TAG_UPDATE_MESSAGE_RESULT_KEY = "result";
 
   /**
    * Constant string value used to access the restore previous values on fault field in tag update
    * messages.
    */
-  private static final String TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_KEY =
+  static final String TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_KEY =
       "restorePreviousValsOnFault";
 
   /** Constant string value used to access the tags field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_TAGS_KEY = "tags";
+  static final String TAG_UPDATE_MESSAGE_TAGS_KEY = "tags";
 
   /** Constant string value used to access the error code field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_ERROR_CODE_KEY = "code";
+  static final String TAG_UPDATE_MESSAGE_ERROR_CODE_KEY = "code";
 
   /** Constant string value used to access the error message field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_ERROR_MESSAGE_KEY = "message";
+  static final String TAG_UPDATE_MESSAGE_ERROR_MESSAGE_KEY = "message";
 
   /** Constant string value used to access the tag name field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_NAME_KEY = "name";
+  static final String TAG_UPDATE_MESSAGE_TAG_NAME_KEY = "name";
 
   /** Constant string value used to access the tag type field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_TYPE_KEY = "type";
+  static final String TAG_UPDATE_MESSAGE_TAG_TYPE_KEY = "type";
 
   /** Constant string value used to access the tag value field in tag update messages. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_VALUE_KEY = "value";
+  static final String TAG_UPDATE_MESSAGE_TAG_VALUE_KEY = "value";
 
   /**
    * Default boolean value of the restore previous values on fault field in tag update messages, if
    * not present.
    */
-  private static final boolean TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_DEFAULT = false;
+  static final boolean TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_DEFAULT = false;
 
   /** The HTTP content type used for sending and receiving tag update messages. */
   private static final String TAG_UPDATE_REQUEST_CONTENT_TYPE = "application/json";
@@ -159,19 +157,19 @@ public class TWTagUpdateManager {
   private static final String TAG_UPDATE_REQUEST_FLEXY_API_VERSION = "2021-4-29";
 
   /** Constant string value used to indicate the integer tag type. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_TYPE_INTEGER_STRING = "integer";
+  static final String TAG_UPDATE_MESSAGE_TAG_TYPE_INTEGER_STRING = "integer";
 
   /** Constant string value used to indicate the float tag type. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_TYPE_FLOAT_STRING = "float";
+  static final String TAG_UPDATE_MESSAGE_TAG_TYPE_FLOAT_STRING = "float";
 
   /** Constant string value used to indicate the string tag type. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_TYPE_STRING_STRING = "string";
+  static final String TAG_UPDATE_MESSAGE_TAG_TYPE_STRING_STRING = "string";
 
   /** Constant string value used to indicate the boolean tag type. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_TYPE_BOOLEAN_STRING = "boolean";
+  static final String TAG_UPDATE_MESSAGE_TAG_TYPE_BOOLEAN_STRING = "boolean";
 
   /** Constant string value used to indicate the DWORD tag type. */
-  private static final String TAG_UPDATE_MESSAGE_TAG_TYPE_DWORD_STRING = "dword";
+  static final String TAG_UPDATE_MESSAGE_TAG_TYPE_DWORD_STRING = "dword";
 
   /** The name (expected) of the remote tag update trigger tag (integer enumeration). */
   private static final String TAG_UPDATE_TRIGGER_TAG_NAME = "RemoteTagUpdateTriggerEnum";
@@ -187,7 +185,10 @@ public class TWTagUpdateManager {
 
   /**
    * Listener for value changes on the trigger tags, {@link #TAG_UPDATE_TRIGGER_TAG_NAME} and {@link
-   * #TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME}.
+   * #TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME}. Triggers are added to {@link
+   * #tagUpdateTriggerQueue} with the value of the trigger information string tag at the time of the
+   * trigger, and the tag update request is sent by the tag update thread, so that the event handler
+   * thread is not blocked by the request.
    */
   private static final EvtTagValueListener TAG_UPDATE_TRIGGER_TAG_VALUE_LISTENER =
       new EvtTagValueListener() {
@@ -196,30 +197,18 @@ public class TWTagUpdateManager {
             // Check if trigger tag value changed
             String changedTagName = getTagName();
             if (changedTagName.equals(TAG_UPDATE_TRIGGER_TAG_NAME)) {
-              // Check if new value is a trigger value
+              // Queue trigger with current trigger info string if new value is a trigger value
               int integerTagValue = getTagValueAsInt();
-              boolean newIsTagUpdateRequested = (integerTagValue != TAG_UPDATE_TRIGGER_VALUE_NONE);
-              if (newIsTagUpdateRequested) {
-                setTagUpdateResultTagValue(TAG_UPDATE_RESULT_VALUE_INITIAL);
-              }
-
-              // Get trigger info string
-              if (newIsTagUpdateRequested) {
-                String triggerInfoString = "";
-                try {
-                  TagControl triggerInfoStringTagControl =
-                      new TagControl(TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME);
-                  triggerInfoString = triggerInfoStringTagControl.getTagValueAsString();
-                } catch (EWException e) {
-                  Logger.LOG_SERIOUS(
-                      "Unable to get the value of "
-                          + TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME
-                          + " to send with triggered tag update request.");
-                  Logger.LOG_EXCEPTION(e);
+              if (integerTagValue != TAG_UPDATE_TRIGGER_VALUE_NONE) {
+                boolean added =
+                    tagUpdateTriggerQueue.put(integerTagValue, getTagUpdateTriggerInfoString());
+                if (!added) {
+                  Logger.LOG_DEBUG(
+                      "A tag update trigger with value "
+                          + integerTagValue
+                          + " and the same information string is already waiting. The triggers"
+                          + " have been coalesced.");
                 }
-
-                // Send tag update request
-                sendTagUpdateRequest(String.valueOf(integerTagValue), triggerInfoString);
               }
             }
           } catch (Exception e) {
@@ -230,9 +219,55 @@ public class TWTagUpdateManager {
         }
       };
 
-  /** Integer counter for identifiers which are specified with each remote tag update payload. */
+  /**
+   * Integer counter for identifiers which are specified with each remote tag update payload. This
+   * must only be accessed using {@link #getNextTagUpdateMessageId()}.
+   */
   private static int tagUpdateIdCounter = 0;
 
+  /**
+   * Queue of tag update triggers waiting to be sent by the tag update thread.
+   *
+   * @since 3.4.0
+   */
+  private static TWTagUpdateTriggerQueue tagUpdateTriggerQueue = null;
+
+  /**
+   * Cache of tag control objects for the trigger and result tags, and the tags in tag update
+   * request responses.
+   *
+   * @since 3.4.0
+   */
+  private static final TWTagControlCache TAG_CONTROL_CACHE =
+      new TWTagControlCache(TWConnectorConsts.TAG_UPDATE_TAG_CONTROL_CACHE_CAPACITY);
+
+  /**
+   * Stage which sends the tag update requests for queued tag update triggers.
+   *
+   * @since 3.4.0
+   */
+  private static TWSupervisedStage tagUpdateStage = null;
+
+  /** Boolean indicating if the thread for the default event manager has been started. */
+  private static boolean eventHandlerThreadStarted = false;
+
+  /**
+   * Starts the thread for the default event manager, which calls the tag value listeners, if it has
+   * not already been started. Tag value listeners may be added before or after the thread has been
+   * started.
+   *
+   * @throws Exception if unable to start the event manager thread
+   * @since 3.4.0
+   */
+  static synchronized void startEventHandlerThread() throws Exception {
+    if (!eventHandlerThreadStarted) {
+      boolean autorun = false;
+      EventHandlerThread eventHandler = new EventHandlerThread(autorun);
+      eventHandler.runEventManagerInThread();
+      eventHandlerThreadStarted = true;
+    }
+  }
+
   /**
    * Configures a tag value listener to trigger the remote tag update functionality when the trigger
    * tag ({@link #TAG_UPDATE_TRIGGER_TAG_NAME}) has been changed to an applicable enumeration value.
@@ -242,14 +277,28 @@ public class TWTagUpdateManager {
       // Reset trigger tag values
       resetTagUpdateTriggerTags();
 
+      // Start tag update thread
+      tagUpdateTriggerQueue =
+          new TWTagUpdateTriggerQueue(
+              TWConnectorMain.getConnectorRuntimeConfig().getTagUpdateCoalesceMillis());
+      tagUpdateStage =
+          new TWSupervisedStage("tag update", TWConnectorConsts.STAGE_STALL_TIMEOUT_MILLIS) {
+            protected void runCycle() throws Exception {
+              TWTagUpdateTriggerQueue.Trigger trigger =
+                  tagUpdateTriggerQueue.take(TWConnectorConsts.TAG_UPDATE_TRIGGER_WAIT_MILLIS);
+              if (trigger != null) {
+                runTriggeredTagUpdate(trigger);
+              }
+            }
+          };
+      tagUpdateStage.start();
+
       // Configure tag value listener
       TAG_UPDATE_TRIGGER_TAG_VALUE_LISTENER.setTagName(TAG_UPDATE_TRIGGER_TAG_NAME);
       DefaultEventHandler.addTagValueListener(TAG_UPDATE_TRIGGER_TAG_VALUE_LISTENER);
 
       // Start thread for default event manager
-      boolean autorun = false;
-      EventHandlerThread eventHandler = new EventHandlerThread(autorun);
-      eventHandler.runEventManagerInThread();
+      startEventHandlerThread();
     } catch (Exception e) {
       Logger.LOG_WARN(
           "Unable to set up tag update functionality because the trigger tag listener "
@@ -258,6 +307,83 @@ public class TWTagUpdateManager {
     }
   }
 
+  /**
+   * Restarts the tag update thread if it has stopped or stalled. This should be called on each
+   * cycle of the main loop.
+   *
+   * @since 3.4.0
+   */
+  public static void superviseTagUpdateThread() {
+    if (tagUpdateStage != null) {
+      tagUpdateStage.supervise();
+    }
+  }
+
+  /**
+   * Stops the tag update thread. The thread exits once its current tag update request completes.
+   *
+   * @since 3.4.0
+   */
+  public static void stopTagUpdateThread() {
+    if (tagUpdateStage != null) {
+      tagUpdateStage.stop();
+    }
+  }
+
+  /**
+   * Gets the current value of the trigger information string tag, to be sent with a triggered tag
+   * update request. This is called by the tag update trigger tag listener when a trigger is
+   * received, before the trigger tags are reset by an earlier tag update request.
+   *
+   * @return trigger information string, or an empty string if it could not be read
+   * @since 3.4.0
+   */
+  private static String getTagUpdateTriggerInfoString() {
+    String triggerInfoString = TAG_UPDATE_TRIGGER_INFO_STRING_VALUE_NONE;
+    try {
+      TagControl triggerInfoStringTagControl =
+          TAG_CONTROL_CACHE.getTagControl(TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME);
+      String tagValue = triggerInfoStringTagControl.getTagValueAsString();
+      if (tagValue != null) {
+        triggerInfoString = tagValue;
+      }
+    } catch (EWException e) {
+      TAG_CONTROL_CACHE.remove(TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME);
+      Logger.LOG_SERIOUS(
+          "Unable to get the value of "
+              + TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME
+              + " to send with triggered tag update request.");
+      Logger.LOG_EXCEPTION(e);
+    }
+    return triggerInfoString;
+  }
+
+  /**
+   * Sends a tag update request for a tag update trigger taken from {@link
+   * #tagUpdateTriggerQueue}, with the value of the trigger information string tag when the trigger
+   * was received.
+   *
+   * @param trigger tag update trigger
+   * @since 3.4.0
+   */
+  private static void runTriggeredTagUpdate(TWTagUpdateTriggerQueue.Trigger trigger) {
+    setTagUpdateResultTagValue(TAG_UPDATE_RESULT_VALUE_INITIAL);
+
+    // Send tag update request
+    sendTagUpdateRequest(String.valueOf(trigger.getValue()), trigger.getInfoString());
+  }
+
+  /**
+   * Gets the identifier for the next remote tag update payload. Identifiers are unique for each
+   * payload, including when tag update requests are sent from more than one thread.
+   *
+   * @return next tag update message identifier
+   * @since 3.4.0
+   */
+  private static synchronized String getNextTagUpdateMessageId() {
+    return String.valueOf(tagUpdateIdCounter++);
+  }
+
   /**
    * Sets the remote tag update result enumeration tag to the specified integer enumeration value
    *
@@ -265,9 +391,10 @@ public class TWTagUpdateManager {
    */
   private static void setTagUpdateResultTagValue(int tagUpdateResultTagValue) {
     try {
-      TagControl resultTag = new TagControl(TAG_UPDATE_RESULT_TAG_NAME);
+      TagControl resultTag = TAG_CONTROL_CACHE.getTagControl(TAG_UPDATE_RESULT_TAG_NAME);
       resultTag.setTagValueAsInt(tagUpdateResultTagValue);
     } catch (EWException e) {
+      TAG_CONTROL_CACHE.remove(TAG_UPDATE_RESULT_TAG_NAME);
       Logger.LOG_SERIOUS(
           "Unable to set the value of "
               + TAG_UPDATE_RESULT_TAG_NAME
@@ -285,9 +412,10 @@ public class TWTagUpdateManager {
   private static void resetTagUpdateTriggerTags() {
     // Reset value of integer enumeration trigger tag
     try {
-      TagControl triggerTag = new TagControl(TAG_UPDATE_TRIGGER_TAG_NAME);
+      TagControl triggerTag = TAG_CONTROL_CACHE.getTagControl(TAG_UPDATE_TRIGGER_TAG_NAME);
       triggerTag.setTagValueAsInt(TAG_UPDATE_TRIGGER_VALUE_NONE);
     } catch (EWException e) {
+      TAG_CONTROL_CACHE.remove(TAG_UPDATE_TRIGGER_TAG_NAME);
       Logger.LOG_SERIOUS(
           "Unable to reset the value of "
               + TAG_UPDATE_TRIGGER_TAG_NAME
@@ -299,9 +427,11 @@ public class TWTagUpdateManager {
 
     // Reset value of information string trigger tag
     try {
-      TagControl triggerInfoStringTag = new TagControl(TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME);
+      TagControl triggerInfoStringTag =
+          TAG_CONTROL_CACHE.getTagControl(TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME);
       triggerInfoStringTag.setTagValueAsString(TAG_UPDATE_TRIGGER_INFO_STRING_VALUE_NONE);
     } catch (EWException e) {
+      TAG_CONTROL_CACHE.remove(TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME);
       Logger.LOG_SERIOUS(
           "Unable to reset the value of "
               + TAG_UPDATE_TRIGGER_INFO_STRING_TAG_NAME
@@ -313,99 +443,72 @@ public class TWTagUpdateManager {
   }
 
   /**
-   * Applies the tag values from the specified {@link JSONArray} of tag values, and restores the
+   * Applies the tag values staged in the specified {@link TWTagUpdateResponse}, and restores the
    * original tag values if a failure occurs as specified by the parameter <code>
    * restorePreviousValsOnFault</code>.
    *
-   * @param tagValuesArray array of tag values to update/apply
+   * @param response tag update response with staged tag values to update/apply
    * @param restorePreviousValsOnFault boolean indicating if original tag values should be restored
    *     on error
    * @return integer enumeration indicating result (apply failure, type mismatch, etc)
    */
-  private static int applyTagValuesFromJsonArray(
-      JSONArray tagValuesArray, boolean restorePreviousValsOnFault) {
-    // Create map to store previous values in case of restore, if enabled
-    HashMap previousValsMap = null;
+  private static int applyTagValuesFromResponse(
+      TWTagUpdateResponse response, boolean restorePreviousValsOnFault) {
+    // Create arrays to store previous values in case of restore, if enabled
+    final int tagCount = response.getTagCount();
+    long[] previousNumericVals = null;
+    String[] previousStringVals = null;
     if (restorePreviousValsOnFault) {
-      previousValsMap = new HashMap();
+      previousNumericVals = new long[tagCount];
+      previousStringVals = new String[tagCount];
     }
+    int previousValsCount = 0;
 
-    // Loop through each tag in array
+    // Loop through each staged tag
     int tagUpdateResult = TAG_UPDATE_RESULT_VALUE_SUCCESS;
-    String currTagName = "";
-    String currTagValueString = "";
-    for (int tagIndex = 0; tagIndex < tagValuesArray.length(); tagIndex++) {
+    for (int tagIndex = 0; tagIndex < tagCount; tagIndex++) {
+      final String currTagName = response.getTagName(tagIndex);
+      final int currTagType = response.getTagType(tagIndex);
       try {
-        // Get tag object
-        JSONObject tagObject = tagValuesArray.getJSONObject(tagIndex);
-        String currTagType = tagObject.getString(TAG_UPDATE_MESSAGE_TAG_TYPE_KEY);
-        currTagName = tagObject.getString(TAG_UPDATE_MESSAGE_TAG_NAME_KEY);
-
-        // Create tag control object
-        TagControl currTagControl = new TagControl();
-        currTagControl.setTagName(currTagName);
-
-        // Backup previous value (if enabled) and set new value with proper data type
-        if (currTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_INTEGER_STRING)) {
-          // Backup previous value
-          if (restorePreviousValsOnFault) {
-            previousValsMap.put(currTagName, new Integer(currTagControl.getTagValueAsInt()));
-          }
-
-          // Update tag value
-          int currTagValue = tagObject.getInt(TAG_UPDATE_MESSAGE_TAG_VALUE_KEY);
-          currTagValueString = String.valueOf(currTagValue);
-          currTagControl.setTagValueAsInt(currTagValue);
-        } else if (currTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_FLOAT_STRING)) {
-          // Backup previous value
-          if (restorePreviousValsOnFault) {
-            previousValsMap.put(currTagName, new Double(currTagControl.getTagValueAsDouble()));
-          }
-
-          // Update tag value
-          double currTagValue = tagObject.getDouble(TAG_UPDATE_MESSAGE_TAG_VALUE_KEY);
-          currTagValueString = String.valueOf(currTagValue);
-          currTagControl.setTagValueAsDouble(currTagValue);
-        } else if (currTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_STRING_STRING)) {
-          // Backup previous value
-          if (restorePreviousValsOnFault) {
-            previousValsMap.put(currTagName, currTagControl.getTagValueAsString());
-          }
+        // Get tag control object
+        TagControl currTagControl = TAG_CONTROL_CACHE.getTagControl(currTagName);
 
-          // Update tag value
-          String currTagValue = tagObject.getString(TAG_UPDATE_MESSAGE_TAG_VALUE_KEY);
-          currTagValueString = String.valueOf(currTagValue);
-          currTagControl.setTagValueAsString(currTagValue);
-        } else if (currTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_BOOLEAN_STRING)) {
-          // Backup previous value
-          if (restorePreviousValsOnFault) {
-            previousValsMap.put(currTagName, new Integer(currTagControl.getTagValueAsInt()));
-          }
-
-          // Update tag value
-          boolean currTagValue = tagObject.getBoolean(TAG_UPDATE_MESSAGE_TAG_VALUE_KEY);
-          int currTagValueBooleanInt = currTagValue ? 1 : 0;
-          currTagValueString = String.valueOf(currTagValueBooleanInt);
-          currTagControl.setTagValueAsInt(currTagValueBooleanInt);
-        } else if (currTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_DWORD_STRING)) {
-          // Backup previous value
-          if (restorePreviousValsOnFault) {
-            previousValsMap.put(currTagName, new Long(currTagControl.getTagValueAsLong()));
+        // Backup previous value (if enabled, note: float is stored as bits)
+        if (restorePreviousValsOnFault) {
+          if (currTagType == TWTagUpdateResponse.TAG_TYPE_INTEGER
+              || currTagType == TWTagUpdateResponse.TAG_TYPE_BOOLEAN) {
+            previousNumericVals[tagIndex] = currTagControl.getTagValueAsInt();
+          } else if (currTagType == TWTagUpdateResponse.TAG_TYPE_FLOAT) {
+            previousNumericVals[tagIndex] =
+                Double.doubleToLongBits(currTagControl.getTagValueAsDouble());
+          } else if (currTagType == TWTagUpdateResponse.TAG_TYPE_STRING) {
+            previousStringVals[tagIndex] = currTagControl.getTagValueAsString();
+          } else if (currTagType == TWTagUpdateResponse.TAG_TYPE_DWORD) {
+            previousNumericVals[tagIndex] = currTagControl.getTagValueAsLong();
           }
+          previousValsCount = tagIndex + 1;
+        }
 
-          // Update tag value
-          long currTagValue = tagObject.getLong(TAG_UPDATE_MESSAGE_TAG_VALUE_KEY);
-          currTagValueString = String.valueOf(currTagValue);
-          currTagControl.setTagValueAsLong(currTagValue);
+        // Set new value with proper data type (note: boolean is stored as integer 0/1)
+        if (currTagType == TWTagUpdateResponse.TAG_TYPE_INTEGER
+            || currTagType == TWTagUpdateResponse.TAG_TYPE_BOOLEAN) {
+          currTagControl.setTagValueAsInt((int) response.getTagValueAsLong(tagIndex));
+        } else if (currTagType == TWTagUpdateResponse.TAG_TYPE_FLOAT) {
+          currTagControl.setTagValueAsDouble(response.getTagValueAsDouble(tagIndex));
+        } else if (currTagType == TWTagUpdateResponse.TAG_TYPE_STRING) {
+          currTagControl.setTagValueAsString(response.getTagValueAsString(tagIndex));
+        } else if (currTagType == TWTagUpdateResponse.TAG_TYPE_DWORD) {
+          currTagControl.setTagValueAsLong(response.getTagValueAsLong(tagIndex));
         }
       } catch (Exception e) {
         Logger.LOG_SERIOUS(
             "The value of the tag ["
                 + currTagName
                 + "] could not be updated to ["
-                + currTagValueString
+                + response.getTagValueText(tagIndex)
                 + "] as specified in a tag update request response!");
         Logger.LOG_EXCEPTION(e);
+        TAG_CONTROL_CACHE.remove(currTagName);
         tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_APPLY_FAIL;
 
         // Break out of loop to prevent more values that will be restored from being set
@@ -422,48 +525,40 @@ public class TWTagUpdateManager {
           "Tag values are being restored due to previous failure while applying tag "
               + "values from a tag update request response...");
 
-      // Perform restore of each previous value from map
+      // Perform restore of each previous value, newest first so that the oldest value of a tag
+      // which appears more than once is restored last
       boolean isPartialRestore = false;
-      final Iterator previousValsEntryIterator = previousValsMap.entrySet().iterator();
-      while (previousValsEntryIterator.hasNext()) {
-        // Get previous tag name and value
-        final Entry previousValEntry = (Entry) previousValsEntryIterator.next();
-        final String previousTagName = (String) previousValEntry.getKey();
-        final Object previousTagValue = previousValEntry.getValue();
-
-        // Create tag control object
-        TagControl previousTagControl = new TagControl();
-        previousTagControl.setTagName(previousTagName);
+      for (int tagIndex = previousValsCount - 1; tagIndex >= 0; tagIndex--) {
+        // Get previous tag name and type
+        final String previousTagName = response.getTagName(tagIndex);
+        final int previousTagType = response.getTagType(tagIndex);
 
         // Restore previous tag value according to type (note: boolean is stored as integer 0/1)
+        String previousTagValueString = String.valueOf(previousNumericVals[tagIndex]);
         try {
-          if (previousTagValue instanceof Integer) {
-            Integer previousTagValueInteger = (Integer) previousTagValue;
-            previousTagControl.setTagValueAsInt(previousTagValueInteger.intValue());
-          } else if (previousTagValue instanceof Double) {
-            Double previousTagValueDouble = (Double) previousTagValue;
-            previousTagControl.setTagValueAsDouble(previousTagValueDouble.doubleValue());
-          } else if (previousTagValue instanceof String) {
-            String previousTagValueString = (String) previousTagValue;
-            previousTagControl.setTagValueAsString(previousTagValueString);
-          } else if (previousTagValue instanceof Long) {
-            Long previousTagValueLong = (Long) previousTagValue;
-            previousTagControl.setTagValueAsLong(previousTagValueLong.longValue());
-          } else {
-            Logger.LOG_SERIOUS(
-                "An unknown data type was encountered while restoring the previous value of ["
-                    + previousTagName
-                    + "] after tag update failure. Value not restored!");
-            isPartialRestore = true;
+          TagControl previousTagControl = TAG_CONTROL_CACHE.getTagControl(previousTagName);
+          if (previousTagType == TWTagUpdateResponse.TAG_TYPE_INTEGER
+              || previousTagType == TWTagUpdateResponse.TAG_TYPE_BOOLEAN) {
+            previousTagControl.setTagValueAsInt((int) previousNumericVals[tagIndex]);
+          } else if (previousTagType == TWTagUpdateResponse.TAG_TYPE_FLOAT) {
+            double previousTagValueDouble = Double.longBitsToDouble(previousNumericVals[tagIndex]);
+            previousTagValueString = String.valueOf(previousTagValueDouble);
+            previousTagControl.setTagValueAsDouble(previousTagValueDouble);
+          } else if (previousTagType == TWTagUpdateResponse.TAG_TYPE_STRING) {
+            previousTagValueString = previousStringVals[tagIndex];
+            previousTagControl.setTagValueAsString(previousStringVals[tagIndex]);
+          } else if (previousTagType == TWTagUpdateResponse.TAG_TYPE_DWORD) {
+            previousTagControl.setTagValueAsLong(previousNumericVals[tagIndex]);
           }
         } catch (Exception e) {
           Logger.LOG_SERIOUS(
               "An error occurred while restoring the previous value of ["
                   + previousTagName
                   + "] to ["
-                  + previousTagValue.toString()
+                  + previousTagValueString
                   + "] after tag update failure.");
           Logger.LOG_EXCEPTION(e);
+          TAG_CONTROL_CACHE.remove(previousTagName);
           isPartialRestore = true;
         }
       }
@@ -482,38 +577,49 @@ public class TWTagUpdateManager {
   }
 
   /**
-   * Check if the tag with the specified tag ID on the Ewon matches the specified expected tag type.
+   * Check if the specified indexed tag matches the specified expected tag type.
    *
-   * @param tagId Ewon tag ID
-   * @param expectedTagType expected tag type
+   * @param tag indexed tag on the Ewon
+   * @param expectedTagType expected tag type, one of the <code>TAG_TYPE_</code> constants of
+   *     {@link TWTagUpdateResponse}
    * @return true/false indicating if tag type matches
    */
-  private static boolean doesTagTypeMatch(int tagId, String expectedTagType) {
-    int tagInfoListIDOffset = TagInfoManager.getLowestTagIdSeen();
-    final TagInfo[] tagInfoArray = TagInfoManager.getTagInfoArray();
+  private static boolean doesTagTypeMatch(TWTagInfoIndex.IndexedTag tag, int expectedTagType) {
     boolean matches = true;
-    if (expectedTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_INTEGER_STRING)
-        && tagInfoArray[tagId - tagInfoListIDOffset].getType() != TagType.INTEGER) {
-      matches = false;
-    } else if (expectedTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_FLOAT_STRING)
-        && tagInfoArray[tagId - tagInfoListIDOffset].getType() != TagType.FLOAT) {
-      matches = false;
-    } else if (expectedTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_STRING_STRING)
-        && tagInfoArray[tagId - tagInfoListIDOffset].getType() != TagType.STRING) {
-      matches = false;
-    } else if (expectedTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_BOOLEAN_STRING)
-        && tagInfoArray[tagId - tagInfoListIDOffset].getType() != TagType.BOOLEAN) {
-      matches = false;
-    } else if (expectedTagType.equals(TAG_UPDATE_MESSAGE_TAG_TYPE_DWORD_STRING)
-        && tagInfoArray[tagId - tagInfoListIDOffset].getType() != TagType.DWORD) {
-      matches = false;
+    if (expectedTagType > TWTagUpdateResponse.TAG_TYPE_UNKNOWN
+        && expectedTagType < TAG_TYPES_BY_RESPONSE_TAG_TYPE.length) {
+      matches = tag.getType() == TAG_TYPES_BY_RESPONSE_TAG_TYPE[expectedTagType];
     }
     return matches;
   }
 
+  /**
+   * Checks that the specified indexed tag still exists on the Ewon, by getting its tag control from
+   * {@link #TAG_CONTROL_CACHE}, which reuses the cached tag control if the tag has been checked or
+   * written before. If the tag does not exist, it has been removed since the tag information index
+   * was last updated, and the index is refreshed, if permitted by its minimum refresh interval.
+   *
+   * @param tagName name of the indexed tag
+   * @return true if the tag exists
+   * @since 3.4.0
+   */
+  private static boolean doesIndexedTagExist(String tagName) {
+    boolean tagExists;
+    try {
+      TAG_CONTROL_CACHE.getTagControl(tagName);
+      tagExists = true;
+    } catch (EWException e) {
+      TAG_CONTROL_CACHE.remove(tagName);
+      TWTagInfoIndex.refresh();
+      tagExists = false;
+    }
+    return tagExists;
+  }
+
   /**
    * Processes the specified response body of a remote tag update message, and verifies that it
-   * matches the expected ID.
+   * matches the expected ID. The response is read in a single pass, and all tags are verified
+   * before any tag values are applied.
    *
    * @param responseBody remote tag update message response body
    * @param expectedId expected ID of remote tag update message response
@@ -528,92 +634,80 @@ public class TWTagUpdateManager {
     // Log tag update request response
     Logger.LOG_DEBUG("Tag Update Request Response Body: " + responseBody);
 
-    // Get JSON object from response body
-    JSONTokener jsonTokener = new JSONTokener(responseBody);
-    JSONObject responseBodyJson = new JSONObject(jsonTokener);
+    // Read response body and stage tag values
+    TWTagUpdateResponse response = new TWTagUpdateResponse(new StringReader(responseBody));
 
     // Check if message ID matches
-    boolean messageIdMatches =
-        responseBodyJson.has(TAG_UPDATE_MESSAGE_ID_KEY)
-            && responseBodyJson.getString(TAG_UPDATE_MESSAGE_ID_KEY).equals(expectedId);
+    boolean messageIdMatches = expectedId.equals(response.getId());
     if (!messageIdMatches) {
       Logger.LOG_SERIOUS(
           "A tag update request response was received with a missing or mismatched "
               + "identifier (ID) and will not be processed. Expected: "
               + expectedId
               + " Got: "
-              + responseBodyJson.getString(TAG_UPDATE_MESSAGE_ID_KEY));
+              + response.getId());
       tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_VERIFY_FAIL;
     }
 
     // Check that JSON RPC version matches expected
     boolean jsonRpcVersionMatches =
-        responseBodyJson.has(TAG_UPDATE_MESSAGE_JSON_RPC_KEY)
-            && responseBodyJson
-                .getString(TAG_UPDATE_MESSAGE_JSON_RPC_KEY)
-                .equals(TAG_UPDATE_MESSAGE_JSON_RPC_VERSION);
+        TAG_UPDATE_MESSAGE_JSON_RPC_VERSION.equals(response.getJsonRpcVersion());
     if (tagUpdateResult == TAG_UPDATE_RESULT_VALUE_SUCCESS && !jsonRpcVersionMatches) {
       Logger.LOG_SERIOUS(
           "A tag update request response was received with a missing or mismatched JSON "
               + "RPC version and will not be processed. Expected: "
               + TAG_UPDATE_MESSAGE_JSON_RPC_VERSION
               + " Got: "
-              + responseBodyJson.getString(TAG_UPDATE_MESSAGE_JSON_RPC_KEY));
+              + response.getJsonRpcVersion());
       tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_VERIFY_FAIL;
     }
 
     // Check if a result or error was returned as response
-    if (responseBodyJson.has(TAG_UPDATE_MESSAGE_RESULT_KEY)) {
-      // Get result JSON object
-      JSONObject resultJsonObject = responseBodyJson.getJSONObject(TAG_UPDATE_MESSAGE_RESULT_KEY);
-
-      // Check for presence of restore previous values behavior flag
-      boolean restorePreviousValsOnFault = TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_DEFAULT;
-      if (resultJsonObject.has(TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_KEY)) {
-        restorePreviousValsOnFault =
-            resultJsonObject.getBoolean(TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_KEY);
-      }
-
+    if (response.hasResult()) {
       // Check for presence of tags object
-      if (resultJsonObject.has(TAG_UPDATE_MESSAGE_TAGS_KEY)) {
-        // Get tags array
-        JSONArray tagsArray = resultJsonObject.getJSONArray(TAG_UPDATE_MESSAGE_TAGS_KEY);
-
-        // Check that all tags are present and correct type
-        for (int tagIndex = 0; tagIndex < tagsArray.length(); tagIndex++) {
-          // Get tag object
-          JSONObject tagObject = tagsArray.getJSONObject(tagIndex);
-
-          if (tagObject.has(TAG_UPDATE_MESSAGE_TAG_NAME_KEY)
-              && tagObject.has(TAG_UPDATE_MESSAGE_TAG_TYPE_KEY)
-              && tagObject.has(TAG_UPDATE_MESSAGE_TAG_VALUE_KEY)) {
-            String tagName = tagObject.getString(TAG_UPDATE_MESSAGE_TAG_NAME_KEY);
-            String tagType = tagObject.getString(TAG_UPDATE_MESSAGE_TAG_TYPE_KEY);
-            int tagId = TAG_UPDATE_MESSAGE_TAG_ID_EMPTY;
-
-            // Create tag control to check if tag exists and get ID for type lookup
-            try {
-              TagControl tagControl = new TagControl();
-              tagControl.setTagName(tagName);
-              tagId = tagControl.getTagId();
-            } catch (Exception e) {
+      if (response.hasTags()) {
+        // Check that all tags are present, correct type and have valid values
+        for (int tagIndex = 0; tagIndex < response.getTagCount(); tagIndex++) {
+          if (response.getTagType(tagIndex) != TWTagUpdateResponse.TAG_TYPE_INCOMPLETE) {
+            String tagName = response.getTagName(tagIndex);
+            int tagType = response.getTagType(tagIndex);
+
+            // Get indexed tag to check if tag exists and for type lookup, and refresh the index if
+            // the type does not match in case the tag has been changed
+            TWTagInfoIndex.IndexedTag tag = TWTagInfoIndex.getTag(tagName);
+            if (tag != null && !doesTagTypeMatch(tag, tagType) && TWTagInfoIndex.refresh()) {
+              tag = TWTagInfoIndex.getTag(tagName);
+            }
+
+            // Check that tag still exists on the Ewon, in case it was removed after being indexed
+            if (tag != null && !doesIndexedTagExist(tagName)) {
+              tag = null;
+            }
+
+            // Check that tag exists and tag type matches
+            if (tag == null) {
               Logger.LOG_SERIOUS(
                   "A tag update request response was received with a tag ("
                       + tagName
                       + ") that does not "
                       + "exist and will not be processed.");
               tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_MISSING_TAGS;
-            }
-
-            // If tag exists, check that tag type matches
-            if (tagId != TAG_UPDATE_MESSAGE_TAG_ID_EMPTY) {
-              if (!doesTagTypeMatch(tagId, tagType)) {
-                Logger.LOG_SERIOUS(
-                    "A tag update request response was received with a tag ("
-                        + tagName
-                        + ") that has mismatched types and will not be processed.");
-                tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_MISMATCHED_TAG_TYPES;
-              }
+            } else if (!doesTagTypeMatch(tag, tagType)) {
+              Logger.LOG_SERIOUS(
+                  "A tag update request response was received with a tag ("
+                      + tagName
+                      + ") that has mismatched types and will not be processed.");
+              tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_MISMATCHED_TAG_TYPES;
+            } else if (tagType != TWTagUpdateResponse.TAG_TYPE_UNKNOWN
+                && !response.isTagValueValid(tagIndex)) {
+              // Check that value could be converted to tag type, before any tag value is applied
+              Logger.LOG_SERIOUS(
+                  "A tag update request response was received with a tag ("
+                      + tagName
+                      + ") that has a value ["
+                      + response.getTagValueText(tagIndex)
+                      + "] which is not valid for its type and will not be processed.");
+              tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_VERIFY_FAIL;
             }
           } else {
             Logger.LOG_SERIOUS(
@@ -625,7 +719,8 @@ public class TWTagUpdateManager {
 
         // Apply tag values if no previous errors
         if (tagUpdateResult == TAG_UPDATE_RESULT_VALUE_SUCCESS) {
-          tagUpdateResult = applyTagValuesFromJsonArray(tagsArray, restorePreviousValsOnFault);
+          tagUpdateResult =
+              applyTagValuesFromResponse(response, response.isRestorePreviousValsOnFault());
         }
       } else {
         Logger.LOG_SERIOUS(
@@ -633,24 +728,18 @@ public class TWTagUpdateManager {
                 + "Format is unknown and will not be processed.");
         tagUpdateResult = TAG_UPDATE_RESULT_VALUE_PAYLOAD_VERIFY_FAIL;
       }
-    } else if (responseBodyJson.has(TAG_UPDATE_MESSAGE_ERROR_KEY)) {
-      // Get error JSON object
-      JSONObject errorJsonObject = responseBodyJson.getJSONObject(TAG_UPDATE_MESSAGE_ERROR_KEY);
-
+    } else if (response.hasError()) {
       // Check for error code
-      if (errorJsonObject.has(TAG_UPDATE_MESSAGE_ERROR_CODE_KEY)) {
-        tagUpdateResult = errorJsonObject.getInt(TAG_UPDATE_MESSAGE_ERROR_CODE_KEY);
+      if (response.hasErrorCode()) {
+        tagUpdateResult = response.getErrorCode();
       } else {
         Logger.LOG_SERIOUS(
             "A tag update request response returned an error but did not "
                 + "include an error code!");
       }
 
-      // Check for error message
-      String errorMessage = "";
-      if (errorJsonObject.has(TAG_UPDATE_MESSAGE_ERROR_MESSAGE_KEY)) {
-        errorMessage = errorJsonObject.getString(TAG_UPDATE_MESSAGE_ERROR_MESSAGE_KEY);
-      }
+      // Get error message
+      String errorMessage = response.getErrorMessage();
 
       Logger.LOG_SERIOUS(
           "A tag update request response returned the following error ("
@@ -679,7 +768,7 @@ public class TWTagUpdateManager {
     setTagUpdateResultTagValue(TAG_UPDATE_RESULT_VALUE_HTTP_STARTED);
 
     // Get message ID
-    String messageId = String.valueOf(tagUpdateIdCounter++);
+    String messageId = getNextTagUpdateMessageId();
 
     // Build JSON request body
     int tagUpdateResult = TAG_UPDATE_RESULT_VALUE_SUCCESS;
@@ -0,0 +1,622 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.json.JSONException;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.io.Reader;
+
+/**
+ * Response to a remote tag update request, read in a single pass using a {@link
+ * TWJsonPullParser}.
+ *
+ * <p>The identifier, JSON RPC version, restore previous values on fault flag and error of the
+ * response are stored as they are read, and the tag entries of the result are staged in compact
+ * arrays, without building a tree of JSON objects. Each tag value is converted to the declared tag
+ * type once its entry has been read, but no tag values are written, so that the response can be
+ * verified in full before it is applied. Members which are not part of the tag update message
+ * format are skipped, and the number of tag entries is limited to {@link
+ * TWConnectorConsts#TAG_UPDATE_MAX_RESPONSE_TAGS}, so that the memory used does not depend on the
+ * size of the response.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagUpdateResponse {
+
+  /** Tag type of a tag entry which is missing its name, type or value. */
+  public static final int TAG_TYPE_INCOMPLETE = -1;
+
+  /** Tag type of a tag entry with a type which is not supported. The entry is ignored. */
+  public static final int TAG_TYPE_UNKNOWN = 0;
+
+  /** Tag type of a tag entry with an integer value. */
+  public static final int TAG_TYPE_INTEGER = 1;
+
+  /** Tag type of a tag entry with a float value. */
+  public static final int TAG_TYPE_FLOAT = 2;
+
+  /** Tag type of a tag entry with a string value. */
+  public static final int TAG_TYPE_STRING = 3;
+
+  /** Tag type of a tag entry with a boolean value, stored as integer 0 or 1. */
+  public static final int TAG_TYPE_BOOLEAN = 4;
+
+  /** Tag type of a tag entry with a DWORD value. */
+  public static final int TAG_TYPE_DWORD = 5;
+
+  /** Initial capacity of the arrays of staged tag entries. */
+  private static final int INITIAL_TAG_CAPACITY = 16;
+
+  /** Parser of the response. */
+  private final TWJsonPullParser parser;
+
+  /** Identifier of the response, or null if not present. */
+  private String id = null;
+
+  /** JSON RPC version of the response, or null if not present. */
+  private String jsonRpcVersion = null;
+
+  /** Boolean indicating if the response contains a result. */
+  private boolean hasResult = false;
+
+  /** Boolean indicating if the result contains tag entries. */
+  private boolean hasTags = false;
+
+  /** Boolean indicating if previous tag values should be restored if applying the result fails. */
+  private boolean restorePreviousValsOnFault =
+      TWTagUpdateManager.TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_DEFAULT;
+
+  /** Boolean indicating if the response contains an error. */
+  private boolean hasError = false;
+
+  /** Boolean indicating if the error contains an error code. */
+  private boolean hasErrorCode = false;
+
+  /** Error code of the error. */
+  private int errorCode = 0;
+
+  /** Error message of the error, or an empty string if not present. */
+  private String errorMessage = "";
+
+  /** Number of staged tag entries. */
+  private int tagCount = 0;
+
+  /** Tag names of the staged tag entries. */
+  private String[] tagNames = new String[INITIAL_TAG_CAPACITY];
+
+  /** Tag types of the staged tag entries, one of the <code>TAG_TYPE_</code> constants. */
+  private int[] tagTypes = new int[INITIAL_TAG_CAPACITY];
+
+  /**
+   * Booleans indicating if the values of the staged tag entries could be converted to their tag
+   * types.
+   */
+  private boolean[] tagValueValid = new boolean[INITIAL_TAG_CAPACITY];
+
+  /**
+   * Values of the staged integer, boolean and DWORD tag entries, and bits of the values of the
+   * staged float tag entries.
+   */
+  private long[] tagNumericValues = new long[INITIAL_TAG_CAPACITY];
+
+  /**
+   * Values of the staged string tag entries, and text of the values of the staged tag entries
+   * which could not be converted to their tag types.
+   */
+  private String[] tagStringValues = new String[INITIAL_TAG_CAPACITY];
+
+  /**
+   * Reads a tag update response from the specified reader.
+   *
+   * @param reader reader of the response body
+   * @throws JSONException if the response is not valid JSON, does not match the tag update message
+   *     format, or contains too many tag entries
+   */
+  public TWTagUpdateResponse(Reader reader) throws JSONException {
+    parser = new TWJsonPullParser(reader);
+    expectToken(parser.next(), TWJsonPullParser.TOKEN_BEGIN_OBJECT);
+    int token = parser.next();
+    while (token == TWJsonPullParser.TOKEN_NAME) {
+      String name = parser.getText();
+      if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_ID_KEY)) {
+        id = readScalarText(parser.next());
+      } else if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_JSON_RPC_KEY)) {
+        jsonRpcVersion = readScalarText(parser.next());
+      } else if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_RESULT_KEY)) {
+        hasResult = true;
+        readResult();
+      } else if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_ERROR_KEY)) {
+        hasError = true;
+        readError();
+      } else {
+        parser.skipValue();
+      }
+      token = parser.next();
+    }
+    expectToken(token, TWJsonPullParser.TOKEN_END_OBJECT);
+  }
+
+  /**
+   * Gets the identifier of the response.
+   *
+   * @return identifier of the response, or null if not present
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Gets the JSON RPC version of the response.
+   *
+   * @return JSON RPC version of the response, or null if not present
+   */
+  public String getJsonRpcVersion() {
+    return jsonRpcVersion;
+  }
+
+  /**
+   * Returns a boolean indicating if the response contains a result.
+   *
+   * @return true if the response contains a result
+   */
+  public boolean hasResult() {
+    return hasResult;
+  }
+
+  /**
+   * Returns a boolean indicating if the result contains tag entries.
+   *
+   * @return true if the result contains tag entries
+   */
+  public boolean hasTags() {
+    return hasTags;
+  }
+
+  /**
+   * Returns a boolean indicating if previous tag values should be restored if applying the result
+   * fails.
+   *
+   * @return true if previous tag values should be restored on fault
+   */
+  public boolean isRestorePreviousValsOnFault() {
+    return restorePreviousValsOnFault;
+  }
+
+  /**
+   * Returns a boolean indicating if the response contains an error.
+   *
+   * @return true if the response contains an error
+   */
+  public boolean hasError() {
+    return hasError;
+  }
+
+  /**
+   * Returns a boolean indicating if the error contains an error code.
+   *
+   * @return true if the error contains an error code
+   */
+  public boolean hasErrorCode() {
+    return hasErrorCode;
+  }
+
+  /**
+   * Gets the error code of the error.
+   *
+   * @return error code
+   */
+  public int getErrorCode() {
+    return errorCode;
+  }
+
+  /**
+   * Gets the error message of the error.
+   *
+   * @return error message, or an empty string if not present
+   */
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * Gets the number of tag entries in the result.
+   *
+   * @return number of tag entries
+   */
+  public int getTagCount() {
+    return tagCount;
+  }
+
+  /**
+   * Gets the tag name of the specified tag entry.
+   *
+   * @param index index of the tag entry
+   * @return tag name, or null if the tag entry is incomplete
+   */
+  public String getTagName(int index) {
+    return tagNames[index];
+  }
+
+  /**
+   * Gets the tag type of the specified tag entry.
+   *
+   * @param index index of the tag entry
+   * @return tag type, one of the <code>TAG_TYPE_</code> constants
+   */
+  public int getTagType(int index) {
+    return tagTypes[index];
+  }
+
+  /**
+   * Returns a boolean indicating if the value of the specified tag entry could be converted to its
+   * tag type.
+   *
+   * @param index index of the tag entry
+   * @return true if the tag value is valid
+   */
+  public boolean isTagValueValid(int index) {
+    return tagValueValid[index];
+  }
+
+  /**
+   * Gets the value of the specified integer, boolean or DWORD tag entry.
+   *
+   * @param index index of the tag entry
+   * @return tag value
+   */
+  public long getTagValueAsLong(int index) {
+    return tagNumericValues[index];
+  }
+
+  /**
+   * Gets the value of the specified float tag entry.
+   *
+   * @param index index of the tag entry
+   * @return tag value
+   */
+  public double getTagValueAsDouble(int index) {
+    return Double.longBitsToDouble(tagNumericValues[index]);
+  }
+
+  /**
+   * Gets the value of the specified string tag entry.
+   *
+   * @param index index of the tag entry
+   * @return tag value
+   */
+  public String getTagValueAsString(int index) {
+    return tagStringValues[index];
+  }
+
+  /**
+   * Gets the text of the value of the specified tag entry, for logging.
+   *
+   * @param index index of the tag entry
+   * @return text of the tag value
+   */
+  public String getTagValueText(int index) {
+    String tagValueText;
+    int tagType = tagTypes[index];
+    if (tagType == TAG_TYPE_STRING || !tagValueValid[index]) {
+      tagValueText = String.valueOf(tagStringValues[index]);
+    } else if (tagType == TAG_TYPE_FLOAT) {
+      tagValueText = String.valueOf(getTagValueAsDouble(index));
+    } else {
+      tagValueText = String.valueOf(tagNumericValues[index]);
+    }
+    return tagValueText;
+  }
+
+  /**
+   * Reads the result object of the response.
+   *
+   * @throws JSONException if the result is not valid
+   */
+  private void readResult() throws JSONException {
+    expectToken(parser.next(), TWJsonPullParser.TOKEN_BEGIN_OBJECT);
+    int token = parser.next();
+    while (token == TWJsonPullParser.TOKEN_NAME) {
+      String name = parser.getText();
+      if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_KEY)) {
+        int valueToken = parser.next();
+        Boolean value = toBoolean(valueToken, readScalarText(valueToken));
+        if (value == null) {
+          throw new JSONException(
+              "The "
+                  + TWTagUpdateManager.TAG_UPDATE_MESSAGE_RESTORE_PREVIOUS_ON_FAULT_KEY
+                  + " field of a tag update response is not a boolean.");
+        }
+        restorePreviousValsOnFault = value.booleanValue();
+      } else if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAGS_KEY)) {
+        hasTags = true;
+        readTags();
+      } else {
+        parser.skipValue();
+      }
+      token = parser.next();
+    }
+    expectToken(token, TWJsonPullParser.TOKEN_END_OBJECT);
+  }
+
+  /**
+   * Reads the array of tag entries of the result, and stages each tag entry.
+   *
+   * @throws JSONException if the array or a tag entry is not valid, or there are too many tag
+   *     entries
+   */
+  private void readTags() throws JSONException {
+    tagCount = 0;
+    expectToken(parser.next(), TWJsonPullParser.TOKEN_BEGIN_ARRAY);
+    int token = parser.next();
+    while (token != TWJsonPullParser.TOKEN_END_ARRAY) {
+      expectToken(token, TWJsonPullParser.TOKEN_BEGIN_OBJECT);
+      if (tagCount >= TWConnectorConsts.TAG_UPDATE_MAX_RESPONSE_TAGS) {
+        throw new JSONException(
+            "A tag update response contains more than the maximum of "
+                + TWConnectorConsts.TAG_UPDATE_MAX_RESPONSE_TAGS
+                + " tags.");
+      }
+      readTag();
+      token = parser.next();
+    }
+  }
+
+  /**
+   * Reads a tag entry, after its opening brace, and stages it with its value converted to the
+   * declared tag type.
+   *
+   * @throws JSONException if the tag entry is not valid
+   */
+  private void readTag() throws JSONException {
+    String tagName = null;
+    String tagTypeString = null;
+    int valueToken = TWJsonPullParser.TOKEN_END_DOCUMENT;
+    String valueText = null;
+
+    int token = parser.next();
+    while (token == TWJsonPullParser.TOKEN_NAME) {
+      String name = parser.getText();
+      if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_NAME_KEY)) {
+        tagName = readScalarText(parser.next());
+      } else if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_TYPE_KEY)) {
+        tagTypeString = readScalarText(parser.next());
+      } else if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_VALUE_KEY)) {
+        valueToken = parser.next();
+        if (valueToken == TWJsonPullParser.TOKEN_BEGIN_OBJECT
+            || valueToken == TWJsonPullParser.TOKEN_BEGIN_ARRAY) {
+          skipRemainingContainer();
+        } else {
+          valueText = readScalarText(valueToken);
+        }
+      } else {
+        parser.skipValue();
+      }
+      token = parser.next();
+    }
+    expectToken(token, TWJsonPullParser.TOKEN_END_OBJECT);
+
+    ensureTagCapacity();
+    int index = tagCount++;
+    tagNames[index] = tagName;
+    tagStringValues[index] = valueText;
+    tagNumericValues[index] = 0;
+    tagValueValid[index] = false;
+    if (tagName == null
+        || tagTypeString == null
+        || valueToken == TWJsonPullParser.TOKEN_END_DOCUMENT) {
+      tagTypes[index] = TAG_TYPE_INCOMPLETE;
+    } else {
+      tagTypes[index] = getTagType(tagTypeString);
+      stageTagValue(index, valueToken, valueText);
+    }
+  }
+
+  /**
+   * Converts the value of the specified staged tag entry to its tag type, and marks the value as
+   * valid if the conversion succeeds.
+   *
+   * @param index index of the tag entry
+   * @param valueToken token of the value
+   * @param valueText text of the value, or null if the value is an object or array
+   */
+  private void stageTagValue(int index, int valueToken, String valueText) {
+    int tagType = tagTypes[index];
+    boolean isScalar = valueText != null;
+    boolean isNumberOrString =
+        valueToken == TWJsonPullParser.TOKEN_NUMBER || valueToken == TWJsonPullParser.TOKEN_STRING;
+    try {
+      if (tagType == TAG_TYPE_INTEGER && isNumberOrString) {
+        tagNumericValues[index] = (int) toLong(valueText);
+        tagValueValid[index] = true;
+      } else if (tagType == TAG_TYPE_DWORD && isNumberOrString) {
+        tagNumericValues[index] = toLong(valueText);
+        tagValueValid[index] = true;
+      } else if (tagType == TAG_TYPE_FLOAT && isNumberOrString) {
+        tagNumericValues[index] =
+            Double.doubleToLongBits(Double.parseDouble(valueText.trim()));
+        tagValueValid[index] = true;
+      } else if (tagType == TAG_TYPE_BOOLEAN) {
+        Boolean value = toBoolean(valueToken, valueText);
+        if (value != null) {
+          tagNumericValues[index] = value.booleanValue() ? 1 : 0;
+          tagValueValid[index] = true;
+        }
+      } else if (tagType == TAG_TYPE_STRING && isScalar) {
+        tagValueValid[index] = true;
+      }
+    } catch (NumberFormatException e) {
+      tagValueValid[index] = false;
+    }
+  }
+
+  /**
+   * Gets the tag type for the specified tag type string of a tag entry.
+   *
+   * @param tagTypeString tag type string
+   * @return tag type, one of the <code>TAG_TYPE_</code> constants
+   */
+  private static int getTagType(String tagTypeString) {
+    int tagType = TAG_TYPE_UNKNOWN;
+    if (tagTypeString.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_TYPE_INTEGER_STRING)) {
+      tagType = TAG_TYPE_INTEGER;
+    } else if (tagTypeString.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_TYPE_FLOAT_STRING)) {
+      tagType = TAG_TYPE_FLOAT;
+    } else if (tagTypeString.equals(
+        TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_TYPE_STRING_STRING)) {
+      tagType = TAG_TYPE_STRING;
+    } else if (tagTypeString.equals(
+        TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_TYPE_BOOLEAN_STRING)) {
+      tagType = TAG_TYPE_BOOLEAN;
+    } else if (tagTypeString.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_TAG_TYPE_DWORD_STRING)) {
+      tagType = TAG_TYPE_DWORD;
+    }
+    return tagType;
+  }
+
+  /**
+   * Reads the error object of the response.
+   *
+   * @throws JSONException if the error is not valid
+   */
+  private void readError() throws JSONException {
+    expectToken(parser.next(), TWJsonPullParser.TOKEN_BEGIN_OBJECT);
+    int token = parser.next();
+    while (token == TWJsonPullParser.TOKEN_NAME) {
+      String name = parser.getText();
+      if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_ERROR_CODE_KEY)) {
+        int valueToken = parser.next();
+        String valueText = readScalarText(valueToken);
+        try {
+          errorCode = (int) toLong(valueText);
+        } catch (NumberFormatException e) {
+          throw new JSONException("The error code of a tag update response is not a number.");
+        }
+        hasErrorCode = true;
+      } else if (name.equals(TWTagUpdateManager.TAG_UPDATE_MESSAGE_ERROR_MESSAGE_KEY)) {
+        errorMessage = readScalarText(parser.next());
+      } else {
+        parser.skipValue();
+      }
+      token = parser.next();
+    }
+    expectToken(token, TWJsonPullParser.TOKEN_END_OBJECT);
+  }
+
+  /**
+   * Gets the text of the scalar value with the specified token.
+   *
+   * @param valueToken token of the value
+   * @return text of the value
+   * @throws JSONException if the value is not a scalar value
+   */
+  private String readScalarText(int valueToken) throws JSONException {
+    String valueText;
+    if (valueToken == TWJsonPullParser.TOKEN_STRING
+        || valueToken == TWJsonPullParser.TOKEN_NUMBER) {
+      valueText = parser.getText();
+    } else if (valueToken == TWJsonPullParser.TOKEN_TRUE) {
+      valueText = "true";
+    } else if (valueToken == TWJsonPullParser.TOKEN_FALSE) {
+      valueText = "false";
+    } else if (valueToken == TWJsonPullParser.TOKEN_NULL) {
+      valueText = "null";
+    } else {
+      throw new JSONException("Expected a value in a tag update response.");
+    }
+    return valueText;
+  }
+
+  /**
+   * Skips the remaining content of the object or array which has just been opened.
+   *
+   * @throws JSONException if the content is not valid
+   */
+  private void skipRemainingContainer() throws JSONException {
+    int skipDepth = 1;
+    while (skipDepth > 0) {
+      int token = parser.next();
+      if (token == TWJsonPullParser.TOKEN_BEGIN_OBJECT
+          || token == TWJsonPullParser.TOKEN_BEGIN_ARRAY) {
+        skipDepth++;
+      } else if (token == TWJsonPullParser.TOKEN_END_OBJECT
+          || token == TWJsonPullParser.TOKEN_END_ARRAY) {
+        skipDepth--;
+      } else if (token == TWJsonPullParser.TOKEN_END_DOCUMENT) {
+        throw new JSONException("Unexpected end of tag update response.");
+      }
+    }
+  }
+
+  /** Grows the arrays of staged tag entries, if full. */
+  private void ensureTagCapacity() {
+    if (tagCount == tagNames.length) {
+      int newCapacity =
+          Math.min(tagNames.length * 2, TWConnectorConsts.TAG_UPDATE_MAX_RESPONSE_TAGS);
+      String[] newTagNames = new String[newCapacity];
+      int[] newTagTypes = new int[newCapacity];
+      boolean[] newTagValueValid = new boolean[newCapacity];
+      long[] newTagNumericValues = new long[newCapacity];
+      String[] newTagStringValues = new String[newCapacity];
+      System.arraycopy(tagNames, 0, newTagNames, 0, tagCount);
+      System.arraycopy(tagTypes, 0, newTagTypes, 0, tagCount);
+      System.arraycopy(tagValueValid, 0, newTagValueValid, 0, tagCount);
+      System.arraycopy(tagNumericValues, 0, newTagNumericValues, 0, tagCount);
+      System.arraycopy(tagStringValues, 0, newTagStringValues, 0, tagCount);
+      tagNames = newTagNames;
+      tagTypes = newTagTypes;
+      tagValueValid = newTagValueValid;
+      tagNumericValues = newTagNumericValues;
+      tagStringValues = newTagStringValues;
+    }
+  }
+
+  /**
+   * Checks that the specified token matches the expected token.
+   *
+   * @param token token which was read
+   * @param expectedToken expected token
+   * @throws JSONException if the token does not match the expected token
+   */
+  private static void expectToken(int token, int expectedToken) throws JSONException {
+    if (token != expectedToken) {
+      throw new JSONException("A tag update response does not match the expected format.");
+    }
+  }
+
+  /**
+   * Converts the specified number text to a long, truncating any fractional part.
+   *
+   * @param valueText number text
+   * @return long value
+   * @throws NumberFormatException if the text is not a number
+   */
+  private static long toLong(String valueText) throws NumberFormatException {
+    long value;
+    String trimmedValueText = valueText.trim();
+    try {
+      value = Long.parseLong(trimmedValueText);
+    } catch (NumberFormatException e) {
+      value = (long) Double.parseDouble(trimmedValueText);
+    }
+    return value;
+  }
+
+  /**
+   * Converts the specified value to a boolean. A boolean value, or a string equal to "true" or
+   * "false" ignoring case, can be converted.
+   *
+   * @param valueToken token of the value
+   * @param valueText text of the value
+   * @return boolean value, or null if the value cannot be converted
+   */
+  private static Boolean toBoolean(int valueToken, String valueText) {
+    Boolean value = null;
+    if (valueToken == TWJsonPullParser.TOKEN_TRUE
+        || (valueToken == TWJsonPullParser.TOKEN_STRING && valueText.equalsIgnoreCase("true"))) {
+      value = Boolean.TRUE;
+    } else if (valueToken == TWJsonPullParser.TOKEN_FALSE
+        || (valueToken == TWJsonPullParser.TOKEN_STRING && valueText.equalsIgnoreCase("false"))) {
+      value = Boolean.FALSE;
+    }
+    return value;
+  }
+}
@@ -0,0 +1,144 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.util.Vector;
+
+/**
+ * Queue of tag update triggers from the tag update trigger tag listener to the tag update thread,
+ * which sends the tag update requests.
+ *
+ * <p>Each trigger is the value of the trigger tag and the value of the trigger information string
+ * tag, both read by the listener when the trigger was received. Triggers are coalesced: a trigger
+ * with the same value and information string as a trigger which is already waiting is not added
+ * again, so a burst of repeated triggers results in a single tag update request. Each trigger is
+ * taken once it has waited for the coalescing time, which allows repeated triggers received shortly
+ * after it to be coalesced. Other triggers are taken in the order in which they were first
+ * received.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagUpdateTriggerQueue {
+
+  /** Waiting triggers, oldest first. */
+  private final Vector triggers = new Vector();
+
+  /** Time (in milliseconds) that each trigger waits for repeated triggers before it is taken. */
+  private final long coalesceMillis;
+
+  /**
+   * Creates a new tag update trigger queue with the specified coalescing time.
+   *
+   * @param coalesceMillis time (in milliseconds) that each trigger waits for repeated triggers
+   *     before it is taken
+   */
+  public TWTagUpdateTriggerQueue(long coalesceMillis) {
+    this.coalesceMillis = coalesceMillis;
+  }
+
+  /**
+   * Adds the specified trigger to the queue, unless a trigger with the same value and information
+   * string is already waiting, and wakes the tag update thread. This method does not block, and may
+   * be called from tag value listeners.
+   *
+   * @param triggerValue value of the tag update trigger tag
+   * @param triggerInfoString value of the tag update trigger information string tag
+   * @return true if the trigger was added, or false if it was coalesced with a waiting trigger
+   */
+  public synchronized boolean put(int triggerValue, String triggerInfoString) {
+    boolean added = true;
+    for (int i = 0; i < triggers.size() && added; i++) {
+      Trigger trigger = (Trigger) triggers.elementAt(i);
+      added =
+          trigger.getValue() != triggerValue
+              || !trigger.getInfoString().equals(triggerInfoString);
+    }
+    if (added) {
+      triggers.addElement(
+          new Trigger(triggerValue, triggerInfoString, System.currentTimeMillis()));
+      notifyAll();
+    }
+    return added;
+  }
+
+  /**
+   * Takes the oldest trigger from the queue once it has waited for the coalescing time, waiting up
+   * to the specified time for a trigger to be added and to finish waiting.
+   *
+   * @param maxWaitMillis maximum time (in milliseconds) to wait for a trigger
+   * @return oldest trigger, or null if no trigger was ready within the wait time
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized Trigger take(long maxWaitMillis) throws InterruptedException {
+    long deadlineMillis = System.currentTimeMillis() + maxWaitMillis;
+    Trigger takenTrigger = null;
+    boolean waiting = true;
+    while (waiting) {
+      long currentTimeMillis = System.currentTimeMillis();
+      long waitMillis = deadlineMillis - currentTimeMillis;
+      if (triggers.size() > 0) {
+        Trigger oldestTrigger = (Trigger) triggers.elementAt(0);
+        long readyTimeMillis = oldestTrigger.receivedTimeMillis + coalesceMillis;
+        if (readyTimeMillis <= currentTimeMillis) {
+          takenTrigger = oldestTrigger;
+          triggers.removeElementAt(0);
+        } else {
+          waitMillis = Math.min(waitMillis, readyTimeMillis - currentTimeMillis);
+        }
+      }
+
+      waiting = takenTrigger == null && waitMillis > 0;
+      if (waiting) {
+        wait(waitMillis);
+      }
+    }
+    return takenTrigger;
+  }
+
+  /** A tag update trigger, with the values of the trigger tags when it was received. */
+  public static final class Trigger {
+
+    /** Value of the tag update trigger tag. */
+    private final int value;
+
+    /** Value of the tag update trigger information string tag. */
+    private final String infoString;
+
+    /** Time (in milliseconds since the epoch) at which the trigger was received. */
+    private final long receivedTimeMillis;
+
+    /**
+     * Creates a new tag update trigger.
+     *
+     * @param value value of the tag update trigger tag
+     * @param infoString value of the tag update trigger information string tag
+     * @param receivedTimeMillis time (in milliseconds since the epoch) at which the trigger was
+     *     received
+     */
+    private Trigger(int value, String infoString, long receivedTimeMillis) {
+      this.value = value;
+      this.infoString = infoString;
+      this.receivedTimeMillis = receivedTimeMillis;
+    }
+
+    /**
+     * Gets the value of the tag update trigger tag.
+     *
+     * @return trigger tag value
+     */
+    public int getValue() {
+      return value;
+    }
+
+    /**
+     * Gets the value of the tag update trigger information string tag when the trigger was
+     * received.
+     *
+     * @return trigger information string
+     */
+    public String getInfoString() {
+      return infoString;
+    }
+  }
+}
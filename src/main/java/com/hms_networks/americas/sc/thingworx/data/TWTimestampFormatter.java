@@ -0,0 +1,239 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.util.TimeZone;
+
+/**
+ * Fast ISO 8601 timestamp formatter for data point timestamps.
+ *
+ * <p>Timestamps are formatted in the local time of the Ewon, followed by the offset of the local
+ * time from UTC (for example, <code>2021-04-29T09:45:07-04:00</code>), or by the <code>Z</code>
+ * zone designator if the local time is UTC (for example, <code>2021-04-29T13:45:07Z</code>). The
+ * local time zone is the default time zone of the JVM, which is set to the time zone of the Ewon
+ * at startup.
+ *
+ * <p>Historical data is read in long runs of adjacent timestamps, so the formatter caches the UTC
+ * offset and the date, hour and minute prefix of the last formatted timestamp in a reusable
+ * character buffer. When the next timestamp falls in the same minute, only the seconds digits are
+ * rewritten. The UTC offset and the date fields are only recalculated when the minute changes,
+ * and the date fields are calculated arithmetically, without using {@link java.util.Calendar} or
+ * {@link java.text.SimpleDateFormat}.
+ *
+ * <p>Methods of this class are synchronized, so a single instance may be shared between threads.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTimestampFormatter {
+
+  /** The number of milliseconds in one second. */
+  private static final long MILLISECONDS_PER_SECOND = 1000;
+
+  /** The number of seconds in one minute. */
+  private static final long SECONDS_PER_MINUTE = 60;
+
+  /** The number of seconds in one hour. */
+  private static final long SECONDS_PER_HOUR = 3600;
+
+  /** The number of seconds in one day. */
+  private static final long SECONDS_PER_DAY = 86400;
+
+  /**
+   * The maximum length of a formatted timestamp (<code>yyyy-MM-ddTHH:mm:ss+hh:mm</code>).
+   * Timestamps in UTC (<code>yyyy-MM-ddTHH:mm:ssZ</code>) are shorter.
+   */
+  public static final int FORMATTED_TIMESTAMP_LENGTH = 25;
+
+  /** Index of the first seconds digit in the formatted timestamp buffer. */
+  private static final int SECONDS_INDEX = 17;
+
+  /** Index of the UTC offset or zone designator in the formatted timestamp buffer. */
+  private static final int OFFSET_INDEX = 19;
+
+  /**
+   * Time zone used to determine the UTC offset of the local time, or null to use the default time
+   * zone of the JVM.
+   */
+  private final TimeZone timeZone;
+
+  /** Reusable buffer containing the last formatted timestamp. */
+  private final char[] timestampBuffer = "0000-00-00T00:00:00+00:00".toCharArray();
+
+  /** The length of the last formatted timestamp in {@link #timestampBuffer}. */
+  private int timestampLength = FORMATTED_TIMESTAMP_LENGTH;
+
+  /**
+   * The start (in seconds since the epoch) of the minute which is currently cached in {@link
+   * #timestampBuffer}.
+   */
+  private long cachedMinuteStartSeconds = Long.MIN_VALUE;
+
+  /**
+   * Creates a new timestamp formatter for the default time zone of the JVM. The default time zone
+   * is looked up each time the UTC offset is recalculated, so it may be set after the formatter has
+   * been created.
+   */
+  public TWTimestampFormatter() {
+    this(null);
+  }
+
+  /**
+   * Creates a new timestamp formatter for the specified time zone.
+   *
+   * @param timeZone time zone of the formatted timestamps, or null to use the default time zone of
+   *     the JVM
+   */
+  public TWTimestampFormatter(TimeZone timeZone) {
+    this.timeZone = timeZone;
+  }
+
+  /**
+   * Appends the ISO 8601 formatted timestamp for the specified time (in seconds since the epoch) to
+   * the specified string buffer.
+   *
+   * @param stringBuffer string buffer to append to
+   * @param epochSeconds time in seconds since the epoch
+   */
+  public synchronized void appendIso8601Timestamp(StringBuffer stringBuffer, long epochSeconds) {
+    updateTimestampBuffer(epochSeconds);
+    stringBuffer.append(timestampBuffer, 0, timestampLength);
+  }
+
+  /**
+   * Gets the ISO 8601 formatted timestamp for the specified time (in seconds since the epoch).
+   *
+   * @param epochSeconds time in seconds since the epoch
+   * @return ISO 8601 formatted timestamp
+   */
+  public synchronized String formatIso8601Timestamp(long epochSeconds) {
+    updateTimestampBuffer(epochSeconds);
+    return new String(timestampBuffer, 0, timestampLength);
+  }
+
+  /**
+   * Updates the timestamp buffer to contain the specified time. The UTC offset and the date, hour
+   * and minute fields are only recalculated if the time is not within the currently cached minute.
+   * UTC offsets are always a whole number of minutes, so the seconds digits are the same in local
+   * time and in UTC.
+   *
+   * @param epochSeconds time in seconds since the epoch
+   */
+  private void updateTimestampBuffer(long epochSeconds) {
+    long secondOfMinute = epochSeconds - cachedMinuteStartSeconds;
+    if (secondOfMinute < 0 || secondOfMinute >= SECONDS_PER_MINUTE) {
+      secondOfMinute = floorMod(epochSeconds, SECONDS_PER_MINUTE);
+      cachedMinuteStartSeconds = epochSeconds - secondOfMinute;
+      TimeZone offsetTimeZone = timeZone != null ? timeZone : TimeZone.getDefault();
+      long offsetSeconds =
+          offsetTimeZone.getOffset(cachedMinuteStartSeconds * MILLISECONDS_PER_SECOND)
+              / MILLISECONDS_PER_SECOND;
+      updateMinutePrefix(cachedMinuteStartSeconds + offsetSeconds);
+      updateOffset(offsetSeconds);
+    }
+    writeTwoDigits((int) secondOfMinute, SECONDS_INDEX);
+  }
+
+  /**
+   * Writes the UTC offset to the timestamp buffer, as <code>+hh:mm</code> or <code>-hh:mm</code>,
+   * or as the <code>Z</code> zone designator if the offset is zero.
+   *
+   * @param offsetSeconds offset (in seconds) of the local time from UTC
+   */
+  private void updateOffset(long offsetSeconds) {
+    if (offsetSeconds == 0) {
+      timestampBuffer[OFFSET_INDEX] = 'Z';
+      timestampLength = OFFSET_INDEX + 1;
+    } else {
+      long absoluteOffsetSeconds = Math.abs(offsetSeconds);
+      timestampBuffer[OFFSET_INDEX] = offsetSeconds < 0 ? '-' : '+';
+      writeTwoDigits((int) (absoluteOffsetSeconds / SECONDS_PER_HOUR), OFFSET_INDEX + 1);
+      timestampBuffer[OFFSET_INDEX + 3] = ':';
+      writeTwoDigits(
+          (int) ((absoluteOffsetSeconds % SECONDS_PER_HOUR) / SECONDS_PER_MINUTE),
+          OFFSET_INDEX + 4);
+      timestampLength = FORMATTED_TIMESTAMP_LENGTH;
+    }
+  }
+
+  /**
+   * Writes the date, hour and minute fields for the specified minute (in local time) to the
+   * timestamp buffer.
+   *
+   * <p>The conversion from days since the epoch to a civil (proleptic Gregorian) date is based on
+   * the public domain <code>civil_from_days</code> algorithm by Howard Hinnant.
+   *
+   * @param minuteStartSeconds start of the minute in seconds since the epoch, shifted by the UTC
+   *     offset of the local time
+   */
+  private void updateMinutePrefix(long minuteStartSeconds) {
+    long epochDays = floorDiv(minuteStartSeconds, SECONDS_PER_DAY);
+    long secondOfDay = minuteStartSeconds - (epochDays * SECONDS_PER_DAY);
+
+    // Calculate year, month and day from days since the epoch
+    long shiftedDays = epochDays + 719468;
+    long era = floorDiv(shiftedDays, 146097);
+    long dayOfEra = shiftedDays - (era * 146097);
+    long yearOfEra =
+        (dayOfEra - (dayOfEra / 1460) + (dayOfEra / 36524) - (dayOfEra / 146096)) / 365;
+    long dayOfYear = dayOfEra - ((365 * yearOfEra) + (yearOfEra / 4) - (yearOfEra / 100));
+    long shiftedMonth = ((5 * dayOfYear) + 2) / 153;
+    long day = dayOfYear - (((153 * shiftedMonth) + 2) / 5) + 1;
+    long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + (era * 400) + (month <= 2 ? 1 : 0);
+
+    // Write fields to buffer
+    writeFourDigits((int) year, 0);
+    writeTwoDigits((int) month, 5);
+    writeTwoDigits((int) day, 8);
+    writeTwoDigits((int) (secondOfDay / SECONDS_PER_HOUR), 11);
+    writeTwoDigits((int) ((secondOfDay % SECONDS_PER_HOUR) / SECONDS_PER_MINUTE), 14);
+  }
+
+  /**
+   * Writes the specified value as two decimal digits to the timestamp buffer.
+   *
+   * @param value value to write (0-99)
+   * @param index index in buffer of first digit
+   */
+  private void writeTwoDigits(int value, int index) {
+    timestampBuffer[index] = (char) ('0' + (value / 10));
+    timestampBuffer[index + 1] = (char) ('0' + (value % 10));
+  }
+
+  /**
+   * Writes the specified value as four decimal digits to the timestamp buffer.
+   *
+   * @param value value to write (0-9999)
+   * @param index index in buffer of first digit
+   */
+  private void writeFourDigits(int value, int index) {
+    writeTwoDigits(value / 100, index);
+    writeTwoDigits(value % 100, index + 2);
+  }
+
+  /**
+   * Returns the largest value that is less than or equal to the algebraic quotient of the
+   * specified dividend and divisor.
+   *
+   * @param dividend dividend
+   * @param divisor divisor (must be positive)
+   * @return floor of quotient
+   */
+  private static long floorDiv(long dividend, long divisor) {
+    long quotient = dividend / divisor;
+    if (dividend % divisor < 0) {
+      quotient--;
+    }
+    return quotient;
+  }
+
+  /**
+   * Returns the floor modulus of the specified dividend and divisor.
+   *
+   * @param dividend dividend
+   * @param divisor divisor (must be positive)
+   * @return floor modulus, between 0 (inclusive) and the divisor (exclusive)
+   */
+  private static long floorMod(long dividend, long divisor) {
+    return dividend - (floorDiv(dividend, divisor) * divisor);
+  }
+}
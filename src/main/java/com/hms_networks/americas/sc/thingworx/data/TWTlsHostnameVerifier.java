@@ -0,0 +1,254 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Verifies that the certificate presented by a TLS server was issued for the host name used to
+ * connect to it. Sockets created directly by {@link javax.net.ssl.SSLSocketFactory} only check that
+ * the certificate chain is trusted, so without this check any trusted certificate, issued for any
+ * host, would be accepted.
+ *
+ * <p>The host name is matched against the DNS name (or, for an IP address, the IP address) subject
+ * alternative names of the certificate. The common name of the certificate subject is only used if
+ * the certificate has no DNS name subject alternative names. A wildcard is only permitted as the
+ * complete left-most label of a DNS name, and matches exactly one label.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+class TWTlsHostnameVerifier {
+
+  /** Subject alternative name type of a DNS name. */
+  private static final int SUBJECT_ALT_NAME_TYPE_DNS = 2;
+
+  /** Subject alternative name type of an IP address. */
+  private static final int SUBJECT_ALT_NAME_TYPE_IP_ADDRESS = 7;
+
+  /** Prefix of a wildcard DNS name. */
+  private static final String WILDCARD_PREFIX = "*.";
+
+  /** Private constructor, this class only has static methods. */
+  private TWTlsHostnameVerifier() {}
+
+  /**
+   * Performs the TLS handshake on the specified socket, if not already performed, and verifies
+   * that the certificate of the server was issued for the specified host.
+   *
+   * @param socket TLS socket connected to the server
+   * @param host host name or IP address used to connect to the server
+   * @throws SSLPeerUnverifiedException if the certificate was not issued for the host
+   * @throws IOException if the TLS handshake fails
+   */
+  static void verify(SSLSocket socket, String host) throws IOException {
+    socket.startHandshake();
+    Certificate[] peerCertificates = socket.getSession().getPeerCertificates();
+    if (peerCertificates.length == 0 || !(peerCertificates[0] instanceof X509Certificate)) {
+      throw new SSLPeerUnverifiedException("The server did not present an X.509 certificate.");
+    }
+    X509Certificate certificate = (X509Certificate) peerCertificates[0];
+
+    // Get DNS name and IP address subject alternative names
+    Vector dnsNames = new Vector();
+    Vector ipAddresses = new Vector();
+    try {
+      Collection subjectAltNames = certificate.getSubjectAlternativeNames();
+      if (subjectAltNames != null) {
+        Iterator subjectAltNamesIterator = subjectAltNames.iterator();
+        while (subjectAltNamesIterator.hasNext()) {
+          List subjectAltName = (List) subjectAltNamesIterator.next();
+          int type = ((Integer) subjectAltName.get(0)).intValue();
+          if (type == SUBJECT_ALT_NAME_TYPE_DNS) {
+            dnsNames.addElement(subjectAltName.get(1));
+          } else if (type == SUBJECT_ALT_NAME_TYPE_IP_ADDRESS) {
+            ipAddresses.addElement(subjectAltName.get(1));
+          }
+        }
+      }
+    } catch (CertificateParsingException e) {
+      throw new SSLPeerUnverifiedException(
+          "Unable to read the subject alternative names of the server certificate.");
+    }
+
+    String commonName = getCommonName(certificate.getSubjectX500Principal().getName());
+    if (!matchesHost(host, dnsNames, ipAddresses, commonName)) {
+      throw new SSLPeerUnverifiedException(
+          "The server certificate was not issued for host " + host + ".");
+    }
+  }
+
+  /**
+   * Returns a boolean indicating if the specified host matches the specified certificate names.
+   *
+   * @param host host name or IP address used to connect to the server
+   * @param dnsNames DNS name subject alternative names of the certificate, as strings
+   * @param ipAddresses IP address subject alternative names of the certificate, as strings
+   * @param commonName common name of the certificate subject, or null if none
+   * @return true if the host matches the certificate
+   */
+  static boolean matchesHost(String host, List dnsNames, List ipAddresses, String commonName) {
+    boolean matches = false;
+    if (isIpAddress(host)) {
+      for (int i = 0; i < ipAddresses.size() && !matches; i++) {
+        matches = matchesIpAddress(host, (String) ipAddresses.get(i));
+      }
+    } else if (dnsNames.size() > 0) {
+      for (int i = 0; i < dnsNames.size() && !matches; i++) {
+        matches = matchesDnsName(host, (String) dnsNames.get(i));
+      }
+    } else if (commonName != null) {
+      matches = matchesDnsName(host, commonName);
+    }
+    return matches;
+  }
+
+  /**
+   * Returns a boolean indicating if the specified host name matches the specified DNS name from a
+   * certificate, which may be a wildcard name.
+   *
+   * @param hostName host name
+   * @param dnsName DNS name from certificate
+   * @return true if the host name matches the DNS name
+   */
+  static boolean matchesDnsName(String hostName, String dnsName) {
+    String normalizedHostName = stripTrailingDot(hostName.toLowerCase());
+    String normalizedDnsName = stripTrailingDot(dnsName.toLowerCase());
+    boolean matches;
+    if (normalizedDnsName.startsWith(WILDCARD_PREFIX)) {
+      // Wildcard matches a single label, and must be followed by at least two labels
+      String dnsNameSuffix = normalizedDnsName.substring(1);
+      int firstDotIndex = normalizedHostName.indexOf('.');
+      matches =
+          dnsNameSuffix.indexOf('.', 1) > 0
+              && dnsNameSuffix.indexOf('*') == -1
+              && firstDotIndex > 0
+              && normalizedHostName.substring(firstDotIndex).equals(dnsNameSuffix);
+    } else {
+      matches = normalizedHostName.equals(normalizedDnsName);
+    }
+    return matches;
+  }
+
+  /**
+   * Gets the most specific common name (CN) attribute of the specified distinguished name, in
+   * RFC 2253 format.
+   *
+   * @param distinguishedName distinguished name
+   * @return common name, or null if the distinguished name has no common name
+   */
+  static String getCommonName(String distinguishedName) {
+    String commonName = null;
+    int attributeStart = 0;
+    boolean escaped = false;
+    for (int i = 0; i <= distinguishedName.length() && commonName == null; i++) {
+      char character = i < distinguishedName.length() ? distinguishedName.charAt(i) : ',';
+      if (escaped) {
+        escaped = false;
+      } else if (character == '\\') {
+        escaped = true;
+      } else if (character == ',' || character == '+') {
+        String attribute = distinguishedName.substring(attributeStart, i).trim();
+        if (attribute.length() > 3 && attribute.substring(0, 3).equalsIgnoreCase("CN=")) {
+          commonName = unescape(attribute.substring(3));
+        }
+        attributeStart = i + 1;
+      }
+    }
+    return commonName;
+  }
+
+  /**
+   * Removes the backslash escapes from the specified RFC 2253 attribute value.
+   *
+   * @param value escaped attribute value
+   * @return unescaped attribute value
+   */
+  private static String unescape(String value) {
+    StringBuffer unescaped = new StringBuffer(value.length());
+    boolean escaped = false;
+    for (int i = 0; i < value.length(); i++) {
+      char character = value.charAt(i);
+      if (escaped || character != '\\') {
+        unescaped.append(character);
+        escaped = false;
+      } else {
+        escaped = true;
+      }
+    }
+    return unescaped.toString();
+  }
+
+  /**
+   * Returns a boolean indicating if the specified IP address matches the specified IP address from
+   * a certificate.
+   *
+   * @param hostIpAddress IP address literal used to connect to the server
+   * @param certificateIpAddress IP address from certificate
+   * @return true if the IP addresses are the same
+   */
+  private static boolean matchesIpAddress(String hostIpAddress, String certificateIpAddress) {
+    boolean matches;
+    try {
+      matches =
+          isIpAddress(certificateIpAddress)
+              && InetAddress.getByName(stripBrackets(hostIpAddress))
+                  .equals(InetAddress.getByName(stripBrackets(certificateIpAddress)));
+    } catch (UnknownHostException e) {
+      matches = false;
+    }
+    return matches;
+  }
+
+  /**
+   * Returns a boolean indicating if the specified host is an IPv4 or IPv6 address literal.
+   *
+   * @param host host
+   * @return true if the host is an IP address
+   */
+  private static boolean isIpAddress(String host) {
+    boolean ipv4 = host.length() > 0;
+    for (int i = 0; i < host.length() && ipv4; i++) {
+      char character = host.charAt(i);
+      ipv4 = (character >= '0' && character <= '9') || character == '.';
+    }
+    return ipv4 || host.indexOf(':') != -1;
+  }
+
+  /**
+   * Removes the brackets around an IPv6 address literal, if present.
+   *
+   * @param host host
+   * @return host without brackets
+   */
+  private static String stripBrackets(String host) {
+    String stripped = host;
+    if (host.startsWith("[") && host.endsWith("]")) {
+      stripped = host.substring(1, host.length() - 1);
+    }
+    return stripped;
+  }
+
+  /**
+   * Removes a trailing dot from the specified fully qualified DNS name, if present.
+   *
+   * @param name DNS name
+   * @return DNS name without trailing dot
+   */
+  private static String stripTrailingDot(String name) {
+    String stripped = name;
+    if (name.endsWith(".")) {
+      stripped = name.substring(0, name.length() - 1);
+    }
+    return stripped;
+  }
+}
@@ -0,0 +1,182 @@
+package com.hms_networks.americas.sc.thingworx;
+
+import java.util.Vector;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWSupervisedStage}, including the replacement of a stalled stage and the
+ * supervision of a fixed-rate stage which keeps sending heartbeats.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWSupervisedStageTest extends TestCase {
+
+  /** Stall timeout (in milliseconds) of the test stages. */
+  private static final long STALL_TIMEOUT_MILLIS = 100;
+
+  /** Interval (in milliseconds) at which the fixed-rate test stage runs its cycles. */
+  private static final long CYCLE_INTERVAL_MILLIS = 20;
+
+  /** Number of cycles run by the fixed-rate test stage. */
+  private static final int SUPERVISED_CYCLE_COUNT = 50;
+
+  /** Interval (in milliseconds) at which the test stages are supervised. */
+  private static final long SUPERVISE_INTERVAL_MILLIS = 5;
+
+  /** Maximum time (in milliseconds) to wait for a test stage to reach an expected state. */
+  private static final long WAIT_TIMEOUT_MILLIS = 5000;
+
+  /** Lock which blocked cycles wait on until they are released. */
+  private final Object blockLock = new Object();
+
+  /** Boolean indicating if blocked cycles have been released. */
+  private boolean blockReleased = false;
+
+  /** Threads which have run a cycle of the stage under test, in order of their first cycle. */
+  private final Vector cycleThreads = new Vector();
+
+  /** Stage under test, stopped after each test. */
+  private TWSupervisedStage stage;
+
+  protected void tearDown() {
+    if (stage != null) {
+      stage.stop();
+    }
+    releaseBlockedCycles();
+  }
+
+  /**
+   * Tests that a stalled stage is replaced once, that it is not replaced again while the replaced
+   * thread remains blocked, and that it can be replaced again once that thread has exited.
+   */
+  public void testStalledStageReplacedOnceUntilReplacedThreadExits() throws Exception {
+    stage =
+        new TWSupervisedStage("blocking test", STALL_TIMEOUT_MILLIS) {
+          protected void runCycle() {
+            recordCycleThread();
+            blockUntilReleased();
+          }
+        };
+    stage.start();
+    waitForCycleThreadCount(1);
+    Thread firstThread = (Thread) cycleThreads.elementAt(0);
+
+    // First stall is replaced, and the replacement blocks as well
+    Thread.sleep(STALL_TIMEOUT_MILLIS * 2);
+    stage.supervise();
+    waitForCycleThreadCount(2);
+
+    // Further stalls are not replaced while the first thread is still blocked
+    for (int i = 0; i < 5; i++) {
+      Thread.sleep(STALL_TIMEOUT_MILLIS);
+      stage.supervise();
+    }
+    Thread.sleep(STALL_TIMEOUT_MILLIS);
+    assertEquals(2, cycleThreads.size());
+    assertTrue(firstThread.isAlive());
+
+    // First thread exits once released, as it is no longer the current thread of the stage
+    releaseBlockedCycles();
+    firstThread.join(WAIT_TIMEOUT_MILLIS);
+    assertFalse(firstThread.isAlive());
+    synchronized (blockLock) {
+      blockReleased = false;
+    }
+
+    // Current thread blocks on its next cycle, and can now be replaced
+    Thread.sleep(STALL_TIMEOUT_MILLIS * 2);
+    stage.supervise();
+    waitForCycleThreadCount(3);
+  }
+
+  /**
+   * Tests that a fixed-rate stage which sends a heartbeat on each cycle is not replaced while it is
+   * supervised.
+   */
+  public void testHeartbeatingStageNotReplaced() throws Exception {
+    final int[] cycleCount = new int[1];
+    stage =
+        new TWSupervisedStage("fixed-rate test", STALL_TIMEOUT_MILLIS) {
+          protected void runCycle() throws Exception {
+            Thread.sleep(CYCLE_INTERVAL_MILLIS);
+            synchronized (cycleCount) {
+              if (isCurrentThread() && cycleCount[0] < SUPERVISED_CYCLE_COUNT) {
+                heartbeat();
+                recordCycleThread();
+                cycleCount[0]++;
+                cycleCount.notifyAll();
+              }
+            }
+          }
+        };
+    stage.start();
+
+    // Supervise stage until all cycles have run
+    long waitEndTimeMillis = System.currentTimeMillis() + WAIT_TIMEOUT_MILLIS;
+    boolean complete = false;
+    while (!complete && System.currentTimeMillis() < waitEndTimeMillis) {
+      stage.supervise();
+      synchronized (cycleCount) {
+        if (cycleCount[0] < SUPERVISED_CYCLE_COUNT) {
+          cycleCount.wait(SUPERVISE_INTERVAL_MILLIS);
+        }
+        complete = cycleCount[0] == SUPERVISED_CYCLE_COUNT;
+      }
+    }
+    assertTrue(complete);
+    assertEquals(1, cycleThreads.size());
+  }
+
+  /** Records the current thread as a thread which has run a cycle, if not already recorded. */
+  private void recordCycleThread() {
+    synchronized (cycleThreads) {
+      if (cycleThreads.indexOf(Thread.currentThread()) == -1) {
+        cycleThreads.addElement(Thread.currentThread());
+        cycleThreads.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Waits until the specified number of threads have run a cycle of the stage under test.
+   *
+   * @param count number of threads
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private void waitForCycleThreadCount(int count) throws InterruptedException {
+    long waitEndTimeMillis = System.currentTimeMillis() + WAIT_TIMEOUT_MILLIS;
+    synchronized (cycleThreads) {
+      long waitMillis = waitEndTimeMillis - System.currentTimeMillis();
+      while (cycleThreads.size() < count && waitMillis > 0) {
+        cycleThreads.wait(waitMillis);
+        waitMillis = waitEndTimeMillis - System.currentTimeMillis();
+      }
+      assertEquals(count, cycleThreads.size());
+    }
+  }
+
+  /**
+   * Blocks until blocked cycles are released, ignoring interrupts, as a cycle blocked on I/O
+   * would.
+   */
+  private void blockUntilReleased() {
+    synchronized (blockLock) {
+      while (!blockReleased) {
+        try {
+          blockLock.wait();
+        } catch (InterruptedException e) {
+          // Ignored, cycle remains blocked until released
+        }
+      }
+    }
+  }
+
+  /** Releases cycles which are blocked until released. */
+  private void releaseBlockedCycles() {
+    synchronized (blockLock) {
+      blockReleased = true;
+      blockLock.notifyAll();
+    }
+  }
+}
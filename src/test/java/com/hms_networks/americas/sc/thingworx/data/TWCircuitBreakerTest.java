@@ -0,0 +1,115 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the state transitions and backoff delays of {@link TWCircuitBreaker}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWCircuitBreakerTest extends TestCase {
+
+  /** Number of consecutive failures after which the circuit opens. */
+  private static final int FAILURE_THRESHOLD = 3;
+
+  /** Backoff delay (in milliseconds) after the circuit first opens. */
+  private static final long INITIAL_BACKOFF_MILLIS = 100;
+
+  /** Maximum backoff delay (in milliseconds). */
+  private static final long MAX_BACKOFF_MILLIS = 200;
+
+  /** Margin (in milliseconds) added to waits for a backoff delay to elapse. */
+  private static final long WAIT_MARGIN_MILLIS = 30;
+
+  /** Circuit breaker used by the current test. */
+  private TWCircuitBreaker circuitBreaker;
+
+  protected void setUp() {
+    circuitBreaker =
+        new TWCircuitBreaker(FAILURE_THRESHOLD, INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+  }
+
+  /** Tests that the circuit opens only once the failure threshold is reached. */
+  public void testOpensAtFailureThreshold() {
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+      assertTrue(circuitBreaker.allowRequest());
+      circuitBreaker.recordFailure();
+      assertEquals(TWCircuitBreaker.STATE_CLOSED, circuitBreaker.getState());
+    }
+
+    assertTrue(circuitBreaker.allowRequest());
+    circuitBreaker.recordFailure();
+    assertEquals(TWCircuitBreaker.STATE_OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.isRequestAllowed());
+    assertFalse(circuitBreaker.allowRequest());
+  }
+
+  /** Tests that a success resets the count of consecutive failures. */
+  public void testSuccessResetsFailureCount() {
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+      circuitBreaker.recordFailure();
+    }
+    circuitBreaker.recordSuccess();
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+      circuitBreaker.recordFailure();
+    }
+    assertEquals(TWCircuitBreaker.STATE_CLOSED, circuitBreaker.getState());
+  }
+
+  /**
+   * Tests that a single probe request is allowed once the backoff delay has elapsed, and that a
+   * successful probe closes the circuit.
+   */
+  public void testSuccessfulProbeClosesCircuit() throws Exception {
+    openCircuit();
+    Thread.sleep(INITIAL_BACKOFF_MILLIS + WAIT_MARGIN_MILLIS);
+
+    assertTrue(circuitBreaker.isRequestAllowed());
+    assertTrue(circuitBreaker.allowRequest());
+    assertEquals(TWCircuitBreaker.STATE_HALF_OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.isRequestAllowed());
+    assertFalse(circuitBreaker.allowRequest());
+
+    circuitBreaker.recordSuccess();
+    assertEquals(TWCircuitBreaker.STATE_CLOSED, circuitBreaker.getState());
+    assertTrue(circuitBreaker.allowRequest());
+  }
+
+  /**
+   * Tests that a failed probe opens the circuit again with a doubled backoff delay, limited to the
+   * maximum backoff delay, and that the jittered delay is at least half of the backoff delay.
+   */
+  public void testFailedProbeDoublesBackoffUpToMaximum() throws Exception {
+    openCircuit();
+    Thread.sleep(INITIAL_BACKOFF_MILLIS + WAIT_MARGIN_MILLIS);
+
+    // Failed probe doubles backoff to the maximum
+    assertTrue(circuitBreaker.allowRequest());
+    circuitBreaker.recordFailure();
+    assertEquals(TWCircuitBreaker.STATE_OPEN, circuitBreaker.getState());
+    Thread.sleep(MAX_BACKOFF_MILLIS / 2 - WAIT_MARGIN_MILLIS);
+    assertFalse(circuitBreaker.allowRequest());
+    Thread.sleep(MAX_BACKOFF_MILLIS / 2 + WAIT_MARGIN_MILLIS * 2);
+    assertTrue(circuitBreaker.allowRequest());
+
+    // Further failed probes do not exceed the maximum backoff
+    circuitBreaker.recordFailure();
+    Thread.sleep(MAX_BACKOFF_MILLIS + WAIT_MARGIN_MILLIS);
+    assertTrue(circuitBreaker.allowRequest());
+
+    // Success resets backoff to the initial delay
+    circuitBreaker.recordSuccess();
+    openCircuit();
+    Thread.sleep(INITIAL_BACKOFF_MILLIS + WAIT_MARGIN_MILLIS);
+    assertTrue(circuitBreaker.allowRequest());
+  }
+
+  /** Opens the circuit by recording the failure threshold of consecutive failures. */
+  private void openCircuit() {
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+      circuitBreaker.recordFailure();
+    }
+    assertEquals(TWCircuitBreaker.STATE_OPEN, circuitBreaker.getState());
+  }
+}
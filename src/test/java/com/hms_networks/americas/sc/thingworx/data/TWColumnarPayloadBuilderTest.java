@@ -0,0 +1,163 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointFloat;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointInteger;
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWColumnarPayloadBuilder}, including a comparison of the size of the columnar
+ * payload format with the size of the default payload format.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWColumnarPayloadBuilderTest extends TestCase {
+
+  /** Start time (in seconds since the epoch) of the simulated recording. */
+  private static final long RECORDING_START_SECONDS = 1619703907L;
+
+  /** Number of seconds in the simulated recording. */
+  private static final int RECORDING_DURATION_SECONDS = 600;
+
+  /** Number of float tags logged every second in the simulated recording. */
+  private static final int RECORDING_FLOAT_TAG_COUNT = 40;
+
+  /** Number of integer tags logged on change in the simulated recording. */
+  private static final int RECORDING_INTEGER_TAG_COUNT = 10;
+
+  /** Tests that data points of each tag are grouped with timestamp deltas from the base time. */
+  public void testGroupsDataPointsByTag() throws Exception {
+    TWColumnarPayloadBuilder builder = new TWColumnarPayloadBuilder();
+    addDataPoint(builder, new DataPointInteger("Tag1", 1, 5, "1619703907", DataQuality.GOOD));
+    addDataPoint(builder, new DataPointInteger("Tag2", 2, 7, "1619703908", DataQuality.GOOD));
+    addDataPoint(builder, new DataPointInteger("Tag1", 1, 6, "1619703910", DataQuality.GOOD));
+
+    String tagColumns = writeTagColumns(builder);
+    assertTrue(tagColumns, tagColumns.startsWith("\"basetime\": 1619703907000, \"tagcolumns\": ["));
+    assertTrue(tagColumns, tagColumns.indexOf("\"deltas\": [0,3000],\"values\": [5,6]") > 0);
+    assertTrue(tagColumns, tagColumns.indexOf("\"deltas\": [1000],\"values\": [7]") > 0);
+    assertTrue(tagColumns, tagColumns.indexOf("\"name\": \"Tag1\"") < tagColumns.indexOf("Tag2"));
+    assertTrue(tagColumns, tagColumns.endsWith("], "));
+  }
+
+  /**
+   * Tests that the tracked size of the added data points is not less than the size of the written
+   * tag columns, so that the configured maximum payload size is not exceeded.
+   */
+  public void testAddedByteSizeIsUpperBound() throws Exception {
+    TWColumnarPayloadBuilder builder = new TWColumnarPayloadBuilder();
+    List dataPoints = createRecording();
+    int addedByteSize = 0;
+    for (int i = 0; i < dataPoints.size(); i++) {
+      addedByteSize += addDataPoint(builder, (DataPoint) dataPoints.get(i));
+    }
+    assertTrue(writeTagColumns(builder).length() <= addedByteSize);
+  }
+
+  /**
+   * Tests that a simulated recording of historical data in the columnar payload format is less than
+   * half of its size in the default payload format.
+   */
+  public void testColumnarFormatSizeComparison() throws Exception {
+    List dataPoints = createRecording();
+
+    // Serialize data points in default format, as written by TWDataPayload
+    TWDataPointStore dataPointStore = new TWDataPointStore(dataPoints.size());
+    StringBuffer rowFormat = new StringBuffer();
+    for (int i = 0; i < dataPoints.size(); i++) {
+      DataPoint dataPoint = (DataPoint) dataPoints.get(i);
+      long sequence = dataPointStore.add(dataPoint, Long.parseLong(dataPoint.getTimeStamp()));
+      if (i > 0) {
+        rowFormat.append(',');
+      }
+      dataPointStore.appendDataPointString(rowFormat, sequence);
+    }
+
+    // Serialize data points in columnar format
+    TWColumnarPayloadBuilder builder = new TWColumnarPayloadBuilder();
+    for (int i = 0; i < dataPoints.size(); i++) {
+      addDataPoint(builder, (DataPoint) dataPoints.get(i));
+    }
+    String columnarFormat = writeTagColumns(builder);
+
+    int rowFormatBytes = TWDataPayload.getUtf8ByteLength(rowFormat.toString());
+    int columnarFormatBytes = TWDataPayload.getUtf8ByteLength(columnarFormat);
+    assertTrue(columnarFormatBytes * 2 < rowFormatBytes);
+  }
+
+  /**
+   * Creates a simulated recording of historical data: float tags logged every second with slowly
+   * changing values, and integer tags logged when their value changes.
+   *
+   * @return data points of the simulated recording, in timestamp order
+   */
+  private static List createRecording() {
+    List dataPoints = new ArrayList();
+    long random = 42;
+    int[] integerValues = new int[RECORDING_INTEGER_TAG_COUNT];
+    for (int second = 0; second < RECORDING_DURATION_SECONDS; second++) {
+      String timestamp = String.valueOf(RECORDING_START_SECONDS + second);
+      for (int tag = 0; tag < RECORDING_FLOAT_TAG_COUNT; tag++) {
+        random = nextRandom(random);
+        float value = (float) (tag * 10 + Math.sin(second / 30.0) + (random % 100) / 1000.0);
+        dataPoints.add(
+            new DataPointFloat("Line1_Sensor" + tag, tag, value, timestamp, DataQuality.GOOD));
+      }
+      for (int tag = 0; tag < RECORDING_INTEGER_TAG_COUNT; tag++) {
+        random = nextRandom(random);
+        if (random % 10 == 0) {
+          integerValues[tag]++;
+          dataPoints.add(
+              new DataPointInteger(
+                  "Line1_Counter" + tag,
+                  RECORDING_FLOAT_TAG_COUNT + tag,
+                  integerValues[tag],
+                  timestamp,
+                  DataQuality.GOOD));
+        }
+      }
+    }
+    return dataPoints;
+  }
+
+  /**
+   * Returns the next value of a deterministic pseudo-random sequence.
+   *
+   * @param random previous value
+   * @return next value (not negative)
+   */
+  private static long nextRandom(long random) {
+    return ((random * 1103515245L) + 12345L) & 0x7fffffffL;
+  }
+
+  /**
+   * Adds the specified data point to the specified builder.
+   *
+   * @param builder columnar payload builder
+   * @param dataPoint data point to add
+   * @return number of bytes the data point added
+   */
+  private static int addDataPoint(TWColumnarPayloadBuilder builder, DataPoint dataPoint) {
+    long timestampMillis = Long.parseLong(dataPoint.getTimeStamp()) * 1000;
+    int addedByteSize = builder.getAddedByteSize(dataPoint, timestampMillis);
+    builder.addDataPoint(dataPoint, timestampMillis);
+    return addedByteSize;
+  }
+
+  /**
+   * Writes the tag columns of the specified builder to a string.
+   *
+   * @param builder columnar payload builder
+   * @return tag columns JSON fields
+   */
+  private static String writeTagColumns(TWColumnarPayloadBuilder builder) throws Exception {
+    StringWriter writer = new StringWriter();
+    builder.writePayloadTagColumns(writer, new char[256]);
+    return writer.toString();
+  }
+}
@@ -0,0 +1,264 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointInteger;
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import com.hms_networks.americas.sc.extensions.json.JSONObject;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the dispatching of pending payloads by {@link TWDataManager} to data send workers,
+ * including when full and partially filled payloads are sent, and the draining of a backlog of
+ * pending payloads.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWDataManagerTest extends TestCase {
+
+  /** Maximum number of data points per payload used by the tests. */
+  private static final int PAYLOAD_MAX_DATA_POINTS = 100;
+
+  /**
+   * Payload send interval (in milliseconds) used by the tests, unless specified. This is long
+   * enough that a payload returned before it has passed must have been closed.
+   */
+  private static final long PAYLOAD_SEND_INTERVAL_MILLIS = 3600000;
+
+  /** Maximum time (in milliseconds) to wait for a payload which is expected to be ready. */
+  private static final long WAIT_TIMEOUT_MILLIS = 30000;
+
+  /** Number of full payloads in the backlog drained by {@link #testBacklogDrained()}. */
+  private static final int BACKLOG_PAYLOAD_COUNT = 100;
+
+  /** Timestamp (in seconds since the epoch) of the first test data point. */
+  private static final long TIMESTAMP_SECONDS = 1619703907L;
+
+  /** Number of the next test data point. */
+  private int nextDataPointNumber = 0;
+
+  protected void tearDown() throws Exception {
+    // Acknowledge remaining payloads, so the pending payloads are empty for the next test
+    while (TWDataManager.getPendingPayloadCount() > 0) {
+      TWDataPayload payload = TWDataManager.getNextPayloadToSend();
+      payload.finishPayload();
+      TWDataManager.removedPendingPayload(payload);
+    }
+  }
+
+  /**
+   * Tests that a data send worker waiting for a payload is woken as soon as a payload is full,
+   * instead of after the payload send interval.
+   */
+  public void testFullPayloadWakesWaitingWorker() throws Exception {
+    installRuntimeConfig(PAYLOAD_SEND_INTERVAL_MILLIS);
+    WaitingWorker worker = new WaitingWorker(PAYLOAD_SEND_INTERVAL_MILLIS);
+    worker.start();
+    Thread.sleep(200);
+
+    addDataPoints(PAYLOAD_MAX_DATA_POINTS);
+    worker.join(WAIT_TIMEOUT_MILLIS);
+
+    assertNotNull(worker.getPayload());
+    assertEquals(PAYLOAD_MAX_DATA_POINTS, worker.getPayload().getDataPointCount());
+    TWDataManager.removedPendingPayload(worker.getPayload());
+  }
+
+  /**
+   * Tests that a partially filled payload is sent once its linger deadline, the payload send
+   * interval after it was created, has passed.
+   */
+  public void testPartialPayloadSentAtLingerDeadline() throws Exception {
+    long payloadSendIntervalMillis = 300;
+    installRuntimeConfig(payloadSendIntervalMillis);
+
+    addDataPoints(1);
+    TWDataPayload payload = TWDataManager.awaitNextPayloadToSend(WAIT_TIMEOUT_MILLIS);
+    long returnTimeMillis = System.currentTimeMillis();
+
+    assertNotNull(payload);
+    assertEquals(1, payload.getDataPointCount());
+    assertEquals(
+        payload.getCreatedTimeMillis() + payloadSendIntervalMillis,
+        payload.getLingerDeadlineMillis());
+    assertTrue(returnTimeMillis >= payload.getLingerDeadlineMillis());
+    TWDataManager.removedPendingPayload(payload);
+  }
+
+  /**
+   * Tests that a backlog of full payloads is drained without waiting for the payload send interval
+   * between payloads.
+   */
+  public void testBacklogDrained() throws Exception {
+    installRuntimeConfig(PAYLOAD_SEND_INTERVAL_MILLIS);
+    addDataPoints(BACKLOG_PAYLOAD_COUNT * PAYLOAD_MAX_DATA_POINTS);
+    assertEquals(BACKLOG_PAYLOAD_COUNT, TWDataManager.getPendingPayloadCount());
+
+    // Send full payloads
+    int sentPayloadCount = 0;
+    boolean payloadReturned = true;
+    while (payloadReturned && sentPayloadCount < BACKLOG_PAYLOAD_COUNT) {
+      TWDataPayload payload = TWDataManager.awaitNextPayloadToSend(WAIT_TIMEOUT_MILLIS);
+      payloadReturned = payload != null;
+      if (payloadReturned) {
+        assertEquals(PAYLOAD_MAX_DATA_POINTS, payload.getDataPointCount());
+        sentPayloadCount++;
+        TWDataManager.removedPendingPayload(payload);
+      }
+    }
+
+    assertEquals(BACKLOG_PAYLOAD_COUNT, sentPayloadCount);
+    assertEquals(0, TWDataManager.getPendingPayloadCount());
+  }
+
+  /**
+   * Tests that data points with a timestamp which cannot be parsed are skipped and counted as added
+   * to the pending payloads, without creating a new payload or holding back the rest of the batch,
+   * including when the open payload is full.
+   */
+  public void testInvalidDataPointsSkipped() throws Exception {
+    installRuntimeConfig(PAYLOAD_SEND_INTERVAL_MILLIS);
+    long initialInvalidDataPointCount = TWDataManager.getInvalidDataPointCount();
+
+    // Invalid data point without an open payload
+    List dataPoints = new ArrayList();
+    dataPoints.add(createDataPoint("not a timestamp"));
+    assertEquals(1, TWDataManager.addDataPointsToPending(dataPoints, 0));
+    assertEquals(0, TWDataManager.getPendingPayloadCount());
+
+    // Invalid data points in an open payload, and after the open payload is full
+    dataPoints.clear();
+    for (int i = 0; i < PAYLOAD_MAX_DATA_POINTS; i++) {
+      dataPoints.add(createDataPoint(null));
+      if (i == 0) {
+        dataPoints.add(createDataPoint(""));
+      }
+    }
+    dataPoints.add(createDataPoint("1619703907.5"));
+    dataPoints.add(createDataPoint(null));
+    assertEquals(dataPoints.size(), TWDataManager.addDataPointsToPending(dataPoints, 0));
+    assertEquals(2, TWDataManager.getPendingPayloadCount());
+    assertEquals(
+        PAYLOAD_MAX_DATA_POINTS, TWDataManager.getNextPayloadToSend().getDataPointCount());
+    assertEquals(initialInvalidDataPointCount + 3, TWDataManager.getInvalidDataPointCount());
+  }
+
+  /**
+   * Tests that the size of the pending payloads includes each data point added to the open payload
+   * and each new payload, and that the size of each payload is subtracted once it is removed.
+   */
+  public void testPendingPayloadsByteSize() throws Exception {
+    installRuntimeConfig(PAYLOAD_SEND_INTERVAL_MILLIS);
+    long initialByteSize = TWDataManager.getPendingPayloadsByteSize();
+
+    addDataPoints(1);
+    TWDataPayload firstPayload = TWDataManager.getNextPayloadToSend();
+    assertEquals(
+        initialByteSize + firstPayload.getPayloadByteSize(),
+        TWDataManager.getPendingPayloadsByteSize());
+
+    // Fill first payload, and open a second payload
+    addDataPoints(PAYLOAD_MAX_DATA_POINTS);
+    assertEquals(2, TWDataManager.getPendingPayloadCount());
+    TWDataPayload sentPayload = TWDataManager.awaitNextPayloadToSend(WAIT_TIMEOUT_MILLIS);
+    assertSame(firstPayload, sentPayload);
+    int firstPayloadByteSize = firstPayload.getPayloadByteSize();
+    long twoPayloadsByteSize = TWDataManager.getPendingPayloadsByteSize();
+    assertTrue(twoPayloadsByteSize > initialByteSize + firstPayloadByteSize);
+
+    TWDataManager.removedPendingPayload(sentPayload);
+    assertEquals(
+        twoPayloadsByteSize - firstPayloadByteSize, TWDataManager.getPendingPayloadsByteSize());
+    assertEquals(
+        initialByteSize + TWDataManager.getNextPayloadToSend().getPayloadByteSize(),
+        TWDataManager.getPendingPayloadsByteSize());
+  }
+
+  /**
+   * Installs a runtime configuration with {@link #PAYLOAD_MAX_DATA_POINTS} data points per payload
+   * and the specified payload send interval.
+   *
+   * @param payloadSendIntervalMillis payload send interval (in milliseconds)
+   * @throws Exception if unable to install the runtime configuration
+   */
+  private static void installRuntimeConfig(long payloadSendIntervalMillis) throws Exception {
+    JSONObject settings = TWTestRuntimeConfig.getDefaultSettings();
+    settings.put(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_DATA_POINTS_KEY, PAYLOAD_MAX_DATA_POINTS);
+    settings.put(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_INTERVAL_MILLIS_KEY,
+        payloadSendIntervalMillis);
+    TWTestRuntimeConfig.install(settings);
+  }
+
+  /**
+   * Adds the specified number of data points to the pending payloads.
+   *
+   * @param dataPointCount number of data points to add
+   */
+  private void addDataPoints(int dataPointCount) {
+    List dataPoints = new ArrayList(dataPointCount);
+    for (int i = 0; i < dataPointCount; i++) {
+      dataPoints.add(createDataPoint(null));
+    }
+    assertEquals(dataPointCount, TWDataManager.addDataPointsToPending(dataPoints, 0));
+  }
+
+  /**
+   * Creates the next test data point, with the specified timestamp.
+   *
+   * @param timestamp timestamp of the data point, or null for a valid timestamp
+   * @return data point
+   */
+  private DataPoint createDataPoint(String timestamp) {
+    int number = nextDataPointNumber++;
+    return new DataPointInteger(
+        "Tag" + (number % 10),
+        number % 10,
+        number,
+        timestamp != null ? timestamp : String.valueOf(TIMESTAMP_SECONDS + number),
+        DataQuality.GOOD);
+  }
+
+  /** Data send worker thread which waits once for the next payload to send. */
+  private static class WaitingWorker extends Thread {
+
+    /** Maximum time (in milliseconds) to wait for a payload. */
+    private final long maxWaitMillis;
+
+    /** Payload returned to the worker, or null if none. */
+    private TWDataPayload payload;
+
+    /**
+     * Creates a new waiting worker.
+     *
+     * @param maxWaitMillis maximum time (in milliseconds) to wait for a payload
+     */
+    WaitingWorker(long maxWaitMillis) {
+      this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public void run() {
+      try {
+        TWDataPayload returnedPayload = TWDataManager.awaitNextPayloadToSend(maxWaitMillis);
+        synchronized (this) {
+          payload = returnedPayload;
+        }
+      } catch (InterruptedException e) {
+        // Test fails as no payload was returned
+      }
+    }
+
+    /**
+     * Gets the payload returned to the worker.
+     *
+     * @return payload, or null if none
+     */
+    synchronized TWDataPayload getPayload() {
+      return payload;
+    }
+  }
+}
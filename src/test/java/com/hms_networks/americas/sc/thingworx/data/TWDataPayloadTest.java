@@ -0,0 +1,217 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointInteger;
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import com.hms_networks.americas.sc.extensions.json.JSONObject;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the serialization of {@link TWDataPayload}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWDataPayloadTest extends TestCase {
+
+  /** Number of data points in the test payloads. */
+  private static final int PAYLOAD_DATA_POINT_COUNT = 1000;
+
+  /** Number of retried writes of a compressed payload. */
+  private static final int RETRY_WRITE_COUNT = 3;
+
+  /** Timestamp (in seconds since the epoch) of the first test data point. */
+  private static final long TIMESTAMP_SECONDS = 1619703907L;
+
+  /** Payload used by the current test. */
+  private TWDataPayload payload;
+
+  protected void setUp() throws Exception {
+    installPayloadMaxBytes(0);
+    payload = createPayload();
+  }
+
+  protected void tearDown() {
+    payload.releaseDataPoints();
+  }
+
+  /**
+   * Tests that compressed payload bytes are built once and reused by each retried write, and that
+   * they decompress to the uncompressed payload.
+   */
+  public void testCompressedPayloadBytesCached() throws Exception {
+    byte[] compressedBytes = payload.getPayloadBytes(true);
+    for (int i = 0; i < RETRY_WRITE_COUNT; i++) {
+      ByteArrayOutputStream writtenStream = new ByteArrayOutputStream();
+      payload.writePayload(writtenStream, true);
+      assertTrue(Arrays.equals(compressedBytes, writtenStream.toByteArray()));
+      assertSame(compressedBytes, payload.getPayloadBytes(true));
+    }
+
+    String payloadString = payload.getPayloadString();
+    assertEquals(payloadString, new String(decompress(compressedBytes), "UTF-8"));
+    assertTrue(payloadString.startsWith("{\"Tags\":{\"datapoints\": [{\"name\": \"Tag0\""));
+  }
+
+  /**
+   * Tests that uncompressed payloads are streamed until their bytes are requested, and written from
+   * the cached bytes afterwards.
+   */
+  public void testUncompressedPayloadBytesCachedOnlyWhenRequested() throws Exception {
+    ByteArrayOutputStream streamedStream = new ByteArrayOutputStream();
+    payload.writePayload(streamedStream, false);
+    byte[] uncompressedBytes = payload.getPayloadBytes(false);
+    assertSame(uncompressedBytes, payload.getPayloadBytes(false));
+    assertTrue(Arrays.equals(streamedStream.toByteArray(), uncompressedBytes));
+
+    ByteArrayOutputStream cachedStream = new ByteArrayOutputStream();
+    payload.writePayload(cachedStream, false);
+    assertTrue(Arrays.equals(uncompressedBytes, cachedStream.toByteArray()));
+  }
+
+  /** Tests that the cached payload bytes are released with the data points of the payload. */
+  public void testCachedPayloadBytesReleased() throws Exception {
+    byte[] compressedBytes = payload.getPayloadBytes(true);
+    payload.releaseDataPoints();
+    try {
+      payload.getPayloadBytes(true);
+      fail("Expected IllegalStateException for released data points.");
+    } catch (IllegalStateException e) {
+      // Expected, cached bytes were released and data points can no longer be serialized
+    }
+    assertTrue(compressedBytes.length > 0);
+  }
+
+  /**
+   * Tests that a data point with a timestamp which cannot be parsed is skipped as not valid, and
+   * that a data point is not added to a finished payload.
+   */
+  public void testAddDataPointResults() throws Exception {
+    TWDataPayload newPayload = new TWDataPayload();
+    assertEquals(
+        TWDataPayload.ADD_RESULT_INVALID,
+        newPayload.addDataPoint(new DataPointInteger("Tag", 1, 1, "abc", DataQuality.GOOD)));
+    assertEquals(0, newPayload.getDataPointCount());
+
+    newPayload.finishPayload();
+    assertEquals(
+        TWDataPayload.ADD_RESULT_FULL,
+        newPayload.addDataPoint(
+            new DataPointInteger(
+                "Tag", 1, 1, String.valueOf(TIMESTAMP_SECONDS), DataQuality.GOOD)));
+    newPayload.releaseDataPoints();
+  }
+
+  /**
+   * Tests that a data point is not added to a payload if it would exceed the configured maximum
+   * payload size, and that data points are added while the payload is within it.
+   */
+  public void testFullWhenNextDataPointExceedsMaxBytes() throws Exception {
+    // Measure size of payload with two data points, without a maximum payload size
+    installPayloadMaxBytes(0);
+    TWDataPayload unlimitedPayload = new TWDataPayload();
+    unlimitedPayload.addDataPoint(createDataPoint(0));
+    unlimitedPayload.addDataPoint(createDataPoint(1));
+    int twoDataPointByteSize = unlimitedPayload.getPayloadByteSize();
+    unlimitedPayload.releaseDataPoints();
+
+    installPayloadMaxBytes(twoDataPointByteSize);
+    TWDataPayload limitedPayload = new TWDataPayload();
+    assertEquals(TWDataPayload.ADD_RESULT_ADDED, limitedPayload.addDataPoint(createDataPoint(0)));
+    assertEquals(TWDataPayload.ADD_RESULT_ADDED, limitedPayload.addDataPoint(createDataPoint(1)));
+    assertEquals(TWDataPayload.ADD_RESULT_FULL, limitedPayload.addDataPoint(createDataPoint(2)));
+    assertEquals(2, limitedPayload.getDataPointCount());
+    assertEquals(twoDataPointByteSize, limitedPayload.getPayloadByteSize());
+    assertTrue(
+        limitedPayload.getPayloadByteSize() >= limitedPayload.getPayloadBytes(false).length);
+    limitedPayload.releaseDataPoints();
+  }
+
+  /**
+   * Tests that the first data point is added to an empty payload even if it exceeds the configured
+   * maximum payload size on its own, and that no further data points are added.
+   */
+  public void testFirstDataPointAddedOverMaxBytes() throws Exception {
+    installPayloadMaxBytes(1);
+    TWDataPayload newPayload = new TWDataPayload();
+    assertEquals(TWDataPayload.ADD_RESULT_ADDED, newPayload.addDataPoint(createDataPoint(0)));
+    assertEquals(TWDataPayload.ADD_RESULT_FULL, newPayload.addDataPoint(createDataPoint(1)));
+    assertEquals(1, newPayload.getDataPointCount());
+    newPayload.releaseDataPoints();
+  }
+
+  /** Tests that a maximum payload size of 0 does not limit the size of payloads. */
+  public void testZeroMaxBytesDisablesLimit() throws Exception {
+    installPayloadMaxBytes(0);
+    TWDataPayload newPayload = createPayload();
+    assertEquals(PAYLOAD_DATA_POINT_COUNT, newPayload.getDataPointCount());
+    assertTrue(newPayload.isClosed());
+    newPayload.releaseDataPoints();
+  }
+
+  /**
+   * Creates a payload with {@link #PAYLOAD_DATA_POINT_COUNT} data points.
+   *
+   * @return payload
+   */
+  private static TWDataPayload createPayload() {
+    TWDataPayload newPayload = new TWDataPayload();
+    for (int i = 0; i < PAYLOAD_DATA_POINT_COUNT; i++) {
+      assertEquals(TWDataPayload.ADD_RESULT_ADDED, newPayload.addDataPoint(createDataPoint(i)));
+    }
+    return newPayload;
+  }
+
+  /**
+   * Creates a test data point with the specified number.
+   *
+   * @param number data point number
+   * @return data point
+   */
+  private static DataPointInteger createDataPoint(int number) {
+    return new DataPointInteger(
+        "Tag" + (number % 10),
+        number % 10,
+        number,
+        String.valueOf(TIMESTAMP_SECONDS + number),
+        DataQuality.GOOD);
+  }
+
+  /**
+   * Installs a runtime configuration with {@link #PAYLOAD_DATA_POINT_COUNT} data points per payload
+   * and the specified maximum payload size.
+   *
+   * @param payloadMaxBytes maximum payload size (in bytes), or 0 for no maximum
+   * @throws Exception if unable to install the runtime configuration
+   */
+  private static void installPayloadMaxBytes(int payloadMaxBytes) throws Exception {
+    JSONObject settings = TWTestRuntimeConfig.getDefaultSettings();
+    settings.put(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_DATA_POINTS_KEY, PAYLOAD_DATA_POINT_COUNT);
+    settings.put(TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_BYTES_KEY, payloadMaxBytes);
+    TWTestRuntimeConfig.install(settings);
+  }
+
+  /**
+   * Decompresses the specified gzip-compressed bytes.
+   *
+   * @param compressedBytes gzip-compressed bytes
+   * @return decompressed bytes
+   * @throws Exception if unable to decompress
+   */
+  private static byte[] decompress(byte[] compressedBytes) throws Exception {
+    GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressedBytes));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read = inputStream.read(buffer);
+    while (read != -1) {
+      outputStream.write(buffer, 0, read);
+      read = inputStream.read(buffer);
+    }
+    return outputStream.toByteArray();
+  }
+}
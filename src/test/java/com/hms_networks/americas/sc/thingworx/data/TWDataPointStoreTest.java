@@ -0,0 +1,172 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointFloat;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointInteger;
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointString;
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWDataPointStore}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWDataPointStoreTest extends TestCase {
+
+  /** Timestamp (in seconds since the epoch) of the test data points. */
+  private static final long TIMESTAMP_SECONDS = 1619703907L;
+
+  /** Capacity of the store in the wrap-around test. */
+  private static final int WRAP_AROUND_CAPACITY = 64;
+
+  /** Number of times the ring of the store wraps around in the wrap-around test. */
+  private static final int WRAP_AROUND_COUNT = 10;
+
+  /** Number of distinct tags of the test data points. */
+  private static final int TAG_COUNT = 50;
+
+  /** Quality of the test data points. */
+  private static final DataQuality GOOD = DataQuality.GOOD;
+
+  /** Tests that values are serialized exactly as their original value strings. */
+  public void testSerializesOriginalValueStrings() {
+    TWDataPointStore store = new TWDataPointStore(16);
+    assertEquals("42", getSerializedValue(store, new DataPointInteger("T", 1, 42, "0", GOOD)));
+    assertEquals("-7", getSerializedValue(store, new DataPointInteger("T", 1, -7, "0", GOOD)));
+    assertEquals("1.5", getSerializedValue(store, new DataPointFloat("T", 1, 1.5f, "0", GOOD)));
+    assertEquals("0.1", getSerializedValue(store, new DataPointFloat("T", 1, 0.1f, "0", GOOD)));
+    assertEquals("007", getSerializedValue(store, new DataPointString("T", 1, "007", "0", GOOD)));
+    assertEquals("1.50", getSerializedValue(store, new DataPointString("T", 1, "1.50", "0", GOOD)));
+    assertEquals(
+        "\"a\"", getSerializedValue(store, new DataPointString("T", 1, "\"a\"", "0", GOOD)));
+  }
+
+  /**
+   * Tests that the serialized JSON string of a data point contains its tag name and timestamp, and
+   * that its precomputed size is an upper bound of its actual size.
+   */
+  public void testSerializedStringAndByteLength() {
+    TWDataPointStore dataPointStore = new TWDataPointStore(4);
+    long sequence =
+        dataPointStore.add(
+            new DataPointInteger("Tank_Level", 1, 1234, "0", GOOD), TIMESTAMP_SECONDS);
+    StringBuffer stringBuffer = new StringBuffer();
+    dataPointStore.appendDataPointString(stringBuffer, sequence);
+    String dataPointString = stringBuffer.toString();
+
+    assertTrue(
+        dataPointString, dataPointString.startsWith("{\"name\": \"Tank_Level\",\"value\": 1234,"));
+    String expectedTimestamp =
+        new TWTimestampFormatter().formatIso8601Timestamp(TIMESTAMP_SECONDS);
+    String expectedEnd = ",\"timestamp\": \"" + expectedTimestamp + "\"}";
+    assertTrue(dataPointString, dataPointString.endsWith(expectedEnd));
+    int serializedByteLength = dataPointStore.getSerializedByteLength(sequence);
+    assertTrue(dataPointString.length() <= serializedByteLength);
+    assertTrue(
+        dataPointString.length()
+            >= serializedByteLength
+                - (TWTimestampFormatter.FORMATTED_TIMESTAMP_LENGTH - expectedTimestamp.length()));
+  }
+
+  /** Tests that storage is reused once data points are released, and released data is rejected. */
+  public void testReleasesAndReusesStorage() {
+    TWDataPointStore dataPointStore = new TWDataPointStore(4);
+    for (int i = 0; i < 4; i++) {
+      assertEquals(i, dataPointStore.add(createDataPoint(i), TIMESTAMP_SECONDS + i));
+    }
+    assertTrue(dataPointStore.isFull());
+    assertEquals(-1, dataPointStore.add(createDataPoint(4), TIMESTAMP_SECONDS + 4));
+
+    dataPointStore.releaseThrough(2);
+    assertEquals(2, dataPointStore.size());
+    assertEquals(4, dataPointStore.add(createDataPoint(4), TIMESTAMP_SECONDS + 4));
+    assertEquals(5, dataPointStore.add(createDataPoint(5), TIMESTAMP_SECONDS + 5));
+
+    StringBuffer stringBuffer = new StringBuffer();
+    dataPointStore.appendDataPointString(stringBuffer, 5);
+    assertTrue(stringBuffer.toString(), stringBuffer.toString().indexOf("\"value\": 5,") > 0);
+    try {
+      dataPointStore.appendDataPointString(stringBuffer, 1);
+      fail("Expected IllegalStateException for released data point.");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+  }
+
+  /** Tests that only the most recently added data point can be removed. */
+  public void testRemoveLast() {
+    TWDataPointStore dataPointStore = new TWDataPointStore(4);
+    long firstSequence = dataPointStore.add(createDataPoint(0), TIMESTAMP_SECONDS);
+    long secondSequence = dataPointStore.add(createDataPoint(1), TIMESTAMP_SECONDS);
+
+    dataPointStore.removeLast(firstSequence);
+    assertEquals(2, dataPointStore.size());
+    dataPointStore.removeLast(secondSequence);
+    assertEquals(1, dataPointStore.size());
+    assertEquals(secondSequence, dataPointStore.add(createDataPoint(2), TIMESTAMP_SECONDS));
+  }
+
+  /**
+   * Tests that the preallocated storage of the store is reused as the ring wraps around many times,
+   * so that the store never holds more than its capacity and data points in reused slots are
+   * serialized with their own values.
+   */
+  public void testReusesPreallocatedStorageAcrossWrapArounds() {
+    TWDataPointStore dataPointStore = new TWDataPointStore(WRAP_AROUND_CAPACITY);
+    int dataPointCount = WRAP_AROUND_CAPACITY * WRAP_AROUND_COUNT;
+    for (int i = 0; i < dataPointCount; i++) {
+      if (dataPointStore.isFull()) {
+        dataPointStore.releaseThrough(i - WRAP_AROUND_CAPACITY + 1);
+      }
+      assertEquals(i, dataPointStore.add(createDataPoint(i), TIMESTAMP_SECONDS + i));
+      assertTrue(dataPointStore.size() <= WRAP_AROUND_CAPACITY);
+    }
+    assertEquals(WRAP_AROUND_CAPACITY, dataPointStore.getCapacity());
+    assertEquals(WRAP_AROUND_CAPACITY, dataPointStore.size());
+
+    for (int i = dataPointCount - WRAP_AROUND_CAPACITY; i < dataPointCount; i++) {
+      StringBuffer stringBuffer = new StringBuffer();
+      dataPointStore.appendDataPointString(stringBuffer, i);
+      String dataPointString = stringBuffer.toString();
+      assertTrue(
+          dataPointString,
+          dataPointString.startsWith(
+              "{\"name\": \"Line1_Sensor" + (i % TAG_COUNT) + "\",\"value\": " + i + ","));
+    }
+  }
+
+  /**
+   * Adds the specified data point to the specified store, serializes it, and returns its serialized
+   * value.
+   *
+   * @param dataPointStore data point store
+   * @param dataPoint data point
+   * @return serialized value of the data point
+   */
+  private static String getSerializedValue(TWDataPointStore dataPointStore, DataPoint dataPoint) {
+    long sequence = dataPointStore.add(dataPoint, TIMESTAMP_SECONDS);
+    StringBuffer stringBuffer = new StringBuffer();
+    dataPointStore.appendDataPointString(stringBuffer, sequence);
+    String dataPointString = stringBuffer.toString();
+    int valueStart = dataPointString.indexOf("\"value\": ") + "\"value\": ".length();
+    return dataPointString.substring(valueStart, dataPointString.indexOf(",\"type\": "));
+  }
+
+  /**
+   * Creates an integer data point, as read from the historical log, with the specified number.
+   *
+   * @param number data point number
+   * @return data point
+   */
+  private static DataPoint createDataPoint(int number) {
+    int tagNumber = number % TAG_COUNT;
+    return new DataPointInteger(
+        "Line1_Sensor" + tagNumber,
+        tagNumber,
+        number,
+        String.valueOf(TIMESTAMP_SECONDS + number),
+        GOOD);
+  }
+}
@@ -0,0 +1,211 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPointInteger;
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import com.hms_networks.americas.sc.extensions.json.JSONObject;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests the delivery of a backlog of pending payloads by several data send workers to a stand-in
+ * Thingworx server with injected response latency. Each worker waits for payloads from {@link
+ * TWDataManager} and sends them over its own persistent connection, as the workers started by
+ * {@link TWApiManager} do.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWDataSendWorkerTest extends TestCase {
+
+  /** Maximum number of data points per payload used by the tests. */
+  private static final int PAYLOAD_MAX_DATA_POINTS = 100;
+
+  /** Payload send interval (in milliseconds) used by the tests. */
+  private static final long PAYLOAD_SEND_INTERVAL_MILLIS = 5000;
+
+  /** Number of full payloads in the backlog. */
+  private static final int BACKLOG_PAYLOAD_COUNT = 40;
+
+  /** Injected response latency (in milliseconds) of the stand-in server. */
+  private static final long SERVER_LATENCY_MILLIS = 50;
+
+  /** Number of workers delivering the backlog. */
+  private static final int WORKER_COUNT = 4;
+
+  /** Connect and read timeout (in milliseconds) of the HTTP clients. */
+  private static final int CLIENT_TIMEOUT_MILLIS = 5000;
+
+  /** Keep-alive idle timeout (in milliseconds) of the HTTP clients. */
+  private static final int CLIENT_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS = 30000;
+
+  /** Timestamp (in seconds since the epoch) of the first test data point. */
+  private static final long TIMESTAMP_SECONDS = 1619703907L;
+
+  /** Stand-in Thingworx server used by the current test. */
+  private TWHttpClientTest.StandInServer server;
+
+  /** Number of the next test data point. */
+  private int nextDataPointNumber = 0;
+
+  protected void setUp() throws Exception {
+    JSONObject settings = TWTestRuntimeConfig.getDefaultSettings();
+    settings.put(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_MAX_DATA_POINTS_KEY, PAYLOAD_MAX_DATA_POINTS);
+    settings.put(
+        TWConnectorConsts.CONNECTOR_CONFIG_PAYLOAD_SEND_INTERVAL_MILLIS_KEY,
+        PAYLOAD_SEND_INTERVAL_MILLIS);
+    TWTestRuntimeConfig.install(settings);
+    server = new TWHttpClientTest.StandInServer();
+    server.setResponseDelayMillis(SERVER_LATENCY_MILLIS);
+    server.start();
+  }
+
+  protected void tearDown() throws Exception {
+    server.stop();
+  }
+
+  /**
+   * Tests that several workers deliver a backlog of payloads, each over at most one persistent
+   * connection, and that each payload is sent to the server once.
+   */
+  public void testMultipleWorkersDeliverBacklogOnce() throws Exception {
+    addDataPoints(BACKLOG_PAYLOAD_COUNT * PAYLOAD_MAX_DATA_POINTS);
+    assertEquals(BACKLOG_PAYLOAD_COUNT, TWDataManager.getPendingPayloadCount());
+
+    DeliveryCounter deliveryCounter = new DeliveryCounter();
+    SendWorker[] workers = new SendWorker[WORKER_COUNT];
+    for (int i = 0; i < WORKER_COUNT; i++) {
+      TWHttpClient httpClient =
+          new TWHttpClient(
+              server.getUrl(), CLIENT_TIMEOUT_MILLIS, CLIENT_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS);
+      workers[i] =
+          new SendWorker(new TWHttpPayloadTransport(httpClient, false, "test"), deliveryCounter);
+    }
+    for (int i = 0; i < WORKER_COUNT; i++) {
+      workers[i].start();
+    }
+    for (int i = 0; i < WORKER_COUNT; i++) {
+      workers[i].join();
+    }
+
+    for (int i = 0; i < WORKER_COUNT; i++) {
+      assertNull(workers[i].getException());
+    }
+    assertEquals(BACKLOG_PAYLOAD_COUNT, deliveryCounter.getDeliveredCount());
+    assertEquals(0, TWDataManager.getPendingPayloadCount());
+    assertTrue(server.getConnectionCount() <= WORKER_COUNT);
+
+    // Each request has a different payload
+    Hashtable requestBodies = new Hashtable();
+    for (int i = 0; i < BACKLOG_PAYLOAD_COUNT; i++) {
+      requestBodies.put(server.getRequestBody(i), Boolean.TRUE);
+    }
+    assertEquals(BACKLOG_PAYLOAD_COUNT, requestBodies.size());
+  }
+
+  /**
+   * Adds the specified number of data points to the pending payloads.
+   *
+   * @param dataPointCount number of data points to add
+   */
+  private void addDataPoints(int dataPointCount) {
+    List dataPoints = new ArrayList(dataPointCount);
+    for (int i = 0; i < dataPointCount; i++) {
+      int number = nextDataPointNumber++;
+      dataPoints.add(
+          new DataPointInteger(
+              "Tag" + (number % 10),
+              number % 10,
+              number,
+              String.valueOf(TIMESTAMP_SECONDS + number),
+              DataQuality.GOOD));
+    }
+    assertEquals(dataPointCount, TWDataManager.addDataPointsToPending(dataPoints, 0));
+  }
+
+  /**
+   * Delivery listener which acknowledges delivered payloads, returns failed payloads to the pending
+   * payloads, and counts delivered payloads.
+   */
+  private static class DeliveryCounter implements TWPayloadTransport.DeliveryListener {
+
+    /** Number of delivered payloads. */
+    private int deliveredCount = 0;
+
+    public void payloadDelivered(TWDataPayload payload) {
+      TWDataManager.removedPendingPayload(payload);
+      synchronized (this) {
+        deliveredCount++;
+      }
+    }
+
+    public void payloadFailed(TWDataPayload payload) {
+      TWDataManager.releaseFailedPayload(payload);
+    }
+
+    /**
+     * Gets the number of delivered payloads.
+     *
+     * @return number of delivered payloads
+     */
+    synchronized int getDeliveredCount() {
+      return deliveredCount;
+    }
+  }
+
+  /** Data send worker thread which sends payloads until the backlog has been delivered. */
+  private static class SendWorker extends Thread {
+
+    /** Maximum time (in milliseconds) to wait for a payload before checking for completion. */
+    private static final long MAX_WAIT_MILLIS = 100;
+
+    /** Payload transport of the worker. */
+    private final TWHttpPayloadTransport payloadTransport;
+
+    /** Delivery listener shared by all workers. */
+    private final DeliveryCounter deliveryCounter;
+
+    /** Exception thrown while sending, or null if none. */
+    private Exception exception;
+
+    /**
+     * Creates a new send worker.
+     *
+     * @param payloadTransport payload transport of the worker
+     * @param deliveryCounter delivery listener shared by all workers
+     */
+    SendWorker(TWHttpPayloadTransport payloadTransport, DeliveryCounter deliveryCounter) {
+      this.payloadTransport = payloadTransport;
+      this.deliveryCounter = deliveryCounter;
+    }
+
+    public void run() {
+      try {
+        while (deliveryCounter.getDeliveredCount() < BACKLOG_PAYLOAD_COUNT) {
+          TWDataPayload payload = TWDataManager.awaitNextPayloadToSend(MAX_WAIT_MILLIS);
+          if (payload != null) {
+            payloadTransport.sendPayload(payload, deliveryCounter);
+          }
+        }
+      } catch (Exception e) {
+        synchronized (this) {
+          exception = e;
+        }
+      } finally {
+        payloadTransport.close();
+      }
+    }
+
+    /**
+     * Gets the exception thrown while sending.
+     *
+     * @return exception, or null if none
+     */
+    synchronized Exception getException() {
+      return exception;
+    }
+  }
+}
@@ -0,0 +1,514 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Vector;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWHttpClient}, using a stand-in HTTP server on the loopback interface.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWHttpClientTest extends TestCase {
+
+  /** Connect and read timeout (in milliseconds) of the HTTP client. */
+  private static final int CLIENT_TIMEOUT_MILLIS = 5000;
+
+  /** Keep-alive idle timeout (in milliseconds) of the HTTP client. */
+  private static final int CLIENT_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS = 30000;
+
+  /**
+   * Maximum number of server reads for each streamed request of 9.5 KB, written by the client in
+   * pieces of up to 4 KB.
+   */
+  private static final int MAX_READS_PER_STREAMED_REQUEST = 8;
+
+  /** Stand-in HTTP server used by the current test. */
+  private StandInServer server;
+
+  protected void setUp() throws Exception {
+    server = new StandInServer();
+    server.start();
+  }
+
+  protected void tearDown() throws Exception {
+    server.stop();
+  }
+
+  /** Tests a request with a fixed body and a response with a content length. */
+  public void testPostFixedBody() throws Exception {
+    server.addResponse("HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\npong", false);
+    TWHttpClient client = new TWHttpClient(server.getUrl(), CLIENT_TIMEOUT_MILLIS);
+
+    String response =
+        client.httpPost(
+            TWHttpClient.buildHeaderLine("Content-Type", "application/json"),
+            "{\"ping\":1}".getBytes("UTF-8"));
+
+    assertEquals("pong", response);
+    assertEquals("{\"ping\":1}", server.getRequestBody(0));
+    assertTrue(server.getRequestHead(0).startsWith("POST /Thingworx/Things/Test HTTP/1.1\r\n"));
+    assertTrue(server.getRequestHead(0).indexOf("Content-Length: 10\r\n") > 0);
+    assertTrue(server.getRequestHead(0).indexOf("Connection: close\r\n") > 0);
+  }
+
+  /** Tests a streamed request body sent with chunked transfer encoding, and a chunked response. */
+  public void testPostChunkedBody() throws Exception {
+    server.addResponse(
+        "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+            + "3;ext=1\r\nabc\r\n2\r\nde\r\n0\r\n\r\n",
+        false);
+    TWHttpClient client = new TWHttpClient(server.getUrl(), CLIENT_TIMEOUT_MILLIS);
+    final StringBuffer expectedBody = new StringBuffer();
+    for (int i = 0; i < 1000; i++) {
+      expectedBody.append("data point ").append(i).append(',');
+    }
+
+    String response =
+        client.httpPost(
+            "",
+            new TWHttpClient.RequestBody() {
+              public void writeTo(OutputStream outputStream) throws IOException {
+                byte[] bodyBytes = expectedBody.toString().getBytes("UTF-8");
+                for (int i = 0; i < bodyBytes.length; i += 100) {
+                  outputStream.write(bodyBytes, i, Math.min(100, bodyBytes.length - i));
+                }
+              }
+            });
+
+    assertEquals("abcde", response);
+    assertTrue(server.getRequestHead(0).indexOf("Transfer-Encoding: chunked\r\n") > 0);
+    assertEquals(expectedBody.toString(), server.getRequestBody(0));
+  }
+
+  /** Tests that a response with an error status throws an exception containing the status. */
+  public void testErrorStatusThrowsException() throws Exception {
+    server.addResponse(
+        "HTTP/1.1 401 Unauthorized\r\nContent-Length: 12\r\n\r\nbad app key!", false);
+    TWHttpClient client = new TWHttpClient(server.getUrl(), CLIENT_TIMEOUT_MILLIS);
+
+    try {
+      client.httpPost("", new byte[0]);
+      fail("Expected IOException for error status.");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().indexOf("401") != -1);
+      assertTrue(e.getMessage(), e.getMessage().indexOf("bad app key!") != -1);
+    }
+  }
+
+  /** Tests that a keep-alive connection is reused for subsequent requests. */
+  public void testKeepAliveReusesConnection() throws Exception {
+    server.addResponse("HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\n1", false);
+    server.addResponse("HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\n2", false);
+    server.addResponse("HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\n3", false);
+    TWHttpClient client =
+        new TWHttpClient(
+            server.getUrl(), CLIENT_TIMEOUT_MILLIS, CLIENT_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS);
+
+    assertEquals("1", client.httpPost("", "a".getBytes("UTF-8")));
+    assertEquals("2", client.httpPost("", "b".getBytes("UTF-8")));
+    assertEquals("3", client.httpPost("", "c".getBytes("UTF-8")));
+    client.close();
+
+    assertEquals(1, server.getConnectionCount());
+    assertTrue(server.getRequestHead(0).indexOf("Connection: keep-alive\r\n") > 0);
+  }
+
+  /**
+   * Tests that a request on a reused connection which was closed by the server is retried once on
+   * a new connection.
+   */
+  public void testKeepAliveRetriesOnClosedConnection() throws Exception {
+    server.addResponse("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nfirst", true);
+    server.addResponse("HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\nsecond", false);
+    TWHttpClient client =
+        new TWHttpClient(
+            server.getUrl(), CLIENT_TIMEOUT_MILLIS, CLIENT_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS);
+
+    assertEquals("first", client.httpPost("", "a".getBytes("UTF-8")));
+    assertEquals("second", client.httpPost("", "b".getBytes("UTF-8")));
+    client.close();
+
+    assertEquals(2, server.getConnectionCount());
+    assertEquals("b", server.getRequestBody(1));
+  }
+
+  /** Tests that a response with Connection: close is not reused. */
+  public void testConnectionCloseResponseIsNotReused() throws Exception {
+    server.addResponse("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 1\r\n\r\n1", true);
+    server.addResponse("HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\n2", false);
+    TWHttpClient client =
+        new TWHttpClient(
+            server.getUrl(), CLIENT_TIMEOUT_MILLIS, CLIENT_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS);
+
+    assertEquals("1", client.httpPost("", "a".getBytes("UTF-8")));
+    assertEquals("2", client.httpPost("", "b".getBytes("UTF-8")));
+    client.close();
+
+    assertEquals(2, server.getConnectionCount());
+  }
+
+  /**
+   * Tests that sequential streamed requests on a persistent connection, with the body written in
+   * small pieces as payloads are serialized, are sent on one connection and in a few large writes
+   * rather than one write per piece. The number of server reads per request approximates the
+   * number of TCP segments each request is sent in.
+   */
+  public void testStreamedRequestsBufferedOnPersistentConnection() throws Exception {
+    int requestCount = 200;
+    final byte[] bodyPiece = "{\"name\": \"Tank_Level\",\"value\": 1234},".getBytes("UTF-8");
+    final int piecesPerRequest = 250;
+    TWHttpClient client =
+        new TWHttpClient(
+            server.getUrl(), CLIENT_TIMEOUT_MILLIS, CLIENT_KEEP_ALIVE_IDLE_TIMEOUT_MILLIS);
+    TWHttpClient.RequestBody requestBody =
+        new TWHttpClient.RequestBody() {
+          public void writeTo(OutputStream outputStream) throws IOException {
+            for (int i = 0; i < piecesPerRequest; i++) {
+              outputStream.write(bodyPiece);
+            }
+          }
+        };
+
+    for (int i = 0; i < requestCount; i++) {
+      client.httpPost("", requestBody);
+    }
+    client.close();
+
+    assertEquals(1, server.getConnectionCount());
+    assertEquals(
+        bodyPiece.length * piecesPerRequest, server.getRequestBody(requestCount - 1).length());
+    assertTrue(
+        String.valueOf(server.getSocketReadCount()),
+        server.getSocketReadCount() <= requestCount * MAX_READS_PER_STREAMED_REQUEST);
+  }
+
+  /**
+   * Stand-in HTTP server, which reads requests (with a fixed or chunked body) and sends scripted
+   * responses, in order. Each scripted response may close the connection after it has been sent,
+   * without notifying the client. Each connection is handled by its own thread, and responses may
+   * be delayed to simulate the latency of a remote server.
+   */
+  static class StandInServer implements Runnable {
+
+    /** Server socket of the stand-in server. */
+    private final ServerSocket serverSocket;
+
+    /** Scripted raw responses, in order. */
+    private final Vector responses = new Vector();
+
+    /** Boolean for each scripted response indicating if the connection is closed after it. */
+    private final Vector closeAfterResponses = new Vector();
+
+    /** Received request heads, in order. */
+    private final Vector requestHeads = new Vector();
+
+    /** Received request bodies, in order. */
+    private final Vector requestBodies = new Vector();
+
+    /** Number of accepted connections. */
+    private int connectionCount = 0;
+
+    /** Number of reads from connections which returned data, each one or more TCP segments. */
+    private int socketReadCount = 0;
+
+    /** Delay (in milliseconds) before each response is sent. */
+    private long responseDelayMillis = 0;
+
+    /** Thread accepting connections. */
+    private Thread thread;
+
+    /**
+     * Creates a new stand-in server on an ephemeral loopback port.
+     *
+     * @throws IOException if unable to open the server socket
+     */
+    StandInServer() throws IOException {
+      serverSocket = new ServerSocket(0);
+    }
+
+    /** Starts accepting connections. */
+    void start() {
+      thread = new Thread(this, "stand-in HTTP server");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Stops accepting connections.
+     *
+     * @throws IOException if unable to close the server socket
+     */
+    void stop() throws IOException {
+      serverSocket.close();
+    }
+
+    /**
+     * Gets the request URL of the server.
+     *
+     * @return request URL
+     */
+    String getUrl() {
+      return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/Thingworx/Things/Test";
+    }
+
+    /**
+     * Adds a scripted response.
+     *
+     * @param response raw response
+     * @param closeAfterResponse true to close the connection after the response
+     */
+    synchronized void addResponse(String response, boolean closeAfterResponse) {
+      responses.addElement(response);
+      closeAfterResponses.addElement(closeAfterResponse ? Boolean.TRUE : Boolean.FALSE);
+    }
+
+    /**
+     * Gets the head (request line and headers) of the specified received request.
+     *
+     * @param index index of the request
+     * @return request head
+     */
+    synchronized String getRequestHead(int index) {
+      return (String) requestHeads.elementAt(index);
+    }
+
+    /**
+     * Gets the body of the specified received request.
+     *
+     * @param index index of the request
+     * @return request body
+     */
+    synchronized String getRequestBody(int index) {
+      return (String) requestBodies.elementAt(index);
+    }
+
+    /**
+     * Gets the number of accepted connections.
+     *
+     * @return number of accepted connections
+     */
+    synchronized int getConnectionCount() {
+      return connectionCount;
+    }
+
+    /**
+     * Gets the number of reads from connections which returned data. As the server reads as soon as
+     * data arrives, this approximates the number of TCP segments received.
+     *
+     * @return number of reads which returned data
+     */
+    synchronized int getSocketReadCount() {
+      return socketReadCount;
+    }
+
+    /**
+     * Sets the delay before each response is sent.
+     *
+     * @param responseDelayMillis response delay (in milliseconds)
+     */
+    synchronized void setResponseDelayMillis(long responseDelayMillis) {
+      this.responseDelayMillis = responseDelayMillis;
+    }
+
+    public void run() {
+      try {
+        while (true) {
+          final Socket socket = serverSocket.accept();
+          synchronized (this) {
+            connectionCount++;
+          }
+          Thread connectionThread =
+              new Thread("stand-in HTTP server connection") {
+                public void run() {
+                  handleConnection(socket);
+                }
+              };
+          connectionThread.setDaemon(true);
+          connectionThread.start();
+        }
+      } catch (IOException e) {
+        // Server socket closed
+      }
+    }
+
+    /**
+     * Handles the requests on the specified connection until it is closed.
+     *
+     * @param socket connection
+     */
+    private void handleConnection(Socket socket) {
+      try {
+        InputStream inputStream =
+            new BufferedInputStream(
+                new FilterInputStream(socket.getInputStream()) {
+                  public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                      synchronized (StandInServer.this) {
+                        socketReadCount++;
+                      }
+                    }
+                    return read;
+                  }
+                });
+        OutputStream outputStream = socket.getOutputStream();
+        boolean open = true;
+        while (open) {
+          String requestHead = readHead(inputStream);
+          if (requestHead == null) {
+            open = false;
+          } else {
+            String requestBody = readBody(inputStream, requestHead);
+            String response = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
+            boolean closeAfterResponse = false;
+            long delayMillis;
+            synchronized (this) {
+              delayMillis = responseDelayMillis;
+              requestHeads.addElement(requestHead);
+              requestBodies.addElement(requestBody);
+              if (responses.size() > 0) {
+                response = (String) responses.elementAt(0);
+                closeAfterResponse = ((Boolean) closeAfterResponses.elementAt(0)).booleanValue();
+                responses.removeElementAt(0);
+                closeAfterResponses.removeElementAt(0);
+              }
+            }
+            if (delayMillis > 0) {
+              Thread.sleep(delayMillis);
+            }
+            outputStream.write(response.getBytes("ISO-8859-1"));
+            outputStream.flush();
+            open = !closeAfterResponse;
+          }
+        }
+      } catch (IOException e) {
+        // Connection closed by client
+      } catch (InterruptedException e) {
+        // Connection is closed
+      } finally {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // Connection is discarded regardless
+        }
+      }
+    }
+
+    /**
+     * Reads a request head, up to and including the blank line.
+     *
+     * @param inputStream connection input stream
+     * @return request head, or null if the connection was closed before a request
+     * @throws IOException if unable to read
+     */
+    private static String readHead(InputStream inputStream) throws IOException {
+      StringBuffer head = new StringBuffer();
+      int read = inputStream.read();
+      while (read != -1 && !(head.length() >= 3 && endsWithBlankLine(head, read))) {
+        head.append((char) read);
+        read = inputStream.read();
+      }
+      String result = null;
+      if (read != -1) {
+        head.append((char) read);
+        result = head.toString();
+      }
+      return result;
+    }
+
+    /**
+     * Returns a boolean indicating if appending the specified character to the specified head ends
+     * it with a blank line.
+     *
+     * @param head head read so far
+     * @param next next character
+     * @return true if the head ends with a blank line after the next character
+     */
+    private static boolean endsWithBlankLine(StringBuffer head, int next) {
+      int length = head.length();
+      return next == '\n'
+          && head.charAt(length - 1) == '\r'
+          && head.charAt(length - 2) == '\n'
+          && head.charAt(length - 3) == '\r';
+    }
+
+    /**
+     * Reads a request body, delimited by the Content-Length header or chunked transfer encoding.
+     *
+     * @param inputStream connection input stream
+     * @param requestHead request head
+     * @return request body
+     * @throws IOException if unable to read
+     */
+    private static String readBody(InputStream inputStream, String requestHead)
+        throws IOException {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      if (requestHead.indexOf("Transfer-Encoding: chunked\r\n") != -1) {
+        int chunkLength = Integer.parseInt(readLine(inputStream), 16);
+        while (chunkLength > 0) {
+          readBytes(inputStream, body, chunkLength);
+          readLine(inputStream);
+          chunkLength = Integer.parseInt(readLine(inputStream), 16);
+        }
+        readLine(inputStream);
+      } else {
+        String contentLengthHeader = "Content-Length: ";
+        int headerIndex = requestHead.indexOf(contentLengthHeader);
+        int valueIndex = headerIndex + contentLengthHeader.length();
+        int valueEndIndex = requestHead.indexOf('\r', valueIndex);
+        readBytes(
+            inputStream, body, Integer.parseInt(requestHead.substring(valueIndex, valueEndIndex)));
+      }
+      return body.toString("UTF-8");
+    }
+
+    /**
+     * Reads a CRLF terminated line.
+     *
+     * @param inputStream connection input stream
+     * @return line, without the terminator
+     * @throws IOException if unable to read
+     */
+    private static String readLine(InputStream inputStream) throws IOException {
+      StringBuffer line = new StringBuffer();
+      int read = inputStream.read();
+      while (read != '\n') {
+        if (read == -1) {
+          throw new IOException("Unexpected end of request.");
+        } else if (read != '\r') {
+          line.append((char) read);
+        }
+        read = inputStream.read();
+      }
+      return line.toString();
+    }
+
+    /**
+     * Reads the specified number of bytes.
+     *
+     * @param inputStream connection input stream
+     * @param outputStream stream to write the bytes to
+     * @param length number of bytes
+     * @throws IOException if unable to read
+     */
+    private static void readBytes(InputStream inputStream, OutputStream outputStream, int length)
+        throws IOException {
+      for (int i = 0; i < length; i++) {
+        int read = inputStream.read();
+        if (read == -1) {
+          throw new IOException("Unexpected end of request.");
+        }
+        outputStream.write(read);
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.ByteArrayOutputStream;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the compressed payload request body and URL of {@link TWHttpPayloadTransport}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWHttpPayloadTransportTest extends TestCase {
+
+  /** Tests that the TakeCompressedInfo service URL is derived from the TakeInfo service URL. */
+  public void testCompressedPayloadUrl() {
+    assertEquals(
+        "https://example.com:8443/Thingworx/Things/ConnectorHost/Services/TakeCompressedInfo",
+        TWHttpPayloadTransport.getCompressedPayloadUrl(
+            "https://example.com:8443/Thingworx/Things/ConnectorHost/Services/TakeInfo"));
+    assertEquals(
+        "http://10.0.0.2/Thingworx/Things/FLEXY-1234/Services/TakeCompressedInfo",
+        TWHttpPayloadTransport.getCompressedPayloadUrl(
+            "http://10.0.0.2/Thingworx/Things/FLEXY-1234/Services/TakeInfo"));
+  }
+
+  /** Tests that no TakeCompressedInfo service URL is derived from other URLs. */
+  public void testCompressedPayloadUrlRequiresTakeInfoService() {
+    assertNull(
+        TWHttpPayloadTransport.getCompressedPayloadUrl(
+            "https://example.com/Thingworx/Things/ConnectorHost/Services/Ingest"));
+    assertNull(
+        TWHttpPayloadTransport.getCompressedPayloadUrl(
+            "https://example.com/Thingworx/Things/ConnectorHost/Services/MyTakeInfo"));
+    assertNull(TWHttpPayloadTransport.getCompressedPayloadUrl(null));
+  }
+
+  /** Tests the base64 encoding of data of each length modulo 3, using the RFC 4648 vectors. */
+  public void testBase64Encoding() throws Exception {
+    assertEquals("", encodeBase64(""));
+    assertEquals("Zg==", encodeBase64("f"));
+    assertEquals("Zm8=", encodeBase64("fo"));
+    assertEquals("Zm9v", encodeBase64("foo"));
+    assertEquals("Zm9vYg==", encodeBase64("foob"));
+    assertEquals("Zm9vYmE=", encodeBase64("fooba"));
+    assertEquals("Zm9vYmFy", encodeBase64("foobar"));
+  }
+
+  /** Tests the base64 encoding of bytes with the high bit set and of the full alphabet. */
+  public void testBase64EncodingOfBinaryData() throws Exception {
+    byte[] data = new byte[48];
+    for (int i = 0; i < 16; i++) {
+      // Each group of 3 bytes encodes to 4 consecutive characters of the alphabet
+      int group = (i * 4) << 18 | (i * 4 + 1) << 12 | (i * 4 + 2) << 6 | (i * 4 + 3);
+      data[i * 3] = (byte) (group >> 16);
+      data[i * 3 + 1] = (byte) (group >> 8);
+      data[i * 3 + 2] = (byte) group;
+    }
+    ByteArrayOutputStream encodedStream = new ByteArrayOutputStream();
+    TWHttpPayloadTransport.writeBase64(encodedStream, data);
+    assertEquals(
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/",
+        encodedStream.toString("US-ASCII"));
+  }
+
+  /**
+   * Tests that data larger than the write buffer is encoded completely, as 4 characters for each
+   * group of 3 bytes.
+   */
+  public void testBase64EncodingOfLargeData() throws Exception {
+    byte[] data = new byte[3000];
+    ByteArrayOutputStream encodedStream = new ByteArrayOutputStream();
+    TWHttpPayloadTransport.writeBase64(encodedStream, data);
+    String encoded = encodedStream.toString("US-ASCII");
+    assertEquals(4000, encoded.length());
+    for (int i = 0; i < encoded.length(); i++) {
+      assertEquals('A', encoded.charAt(i));
+    }
+  }
+
+  /** Tests that the compressed payload is sent as the CompressedTags parameter. */
+  public void testCompressedRequestBody() throws Exception {
+    ByteArrayOutputStream bodyStream = new ByteArrayOutputStream();
+    TWHttpPayloadTransport.writeCompressedRequestBody(bodyStream, "foobar".getBytes("US-ASCII"));
+    assertEquals("{\"CompressedTags\":\"Zm9vYmFy\"}", bodyStream.toString("US-ASCII"));
+  }
+
+  /**
+   * Encodes the specified ASCII string using base64.
+   *
+   * @param string string to encode
+   * @return base64-encoded string
+   * @throws Exception if unable to encode the string
+   */
+  private static String encodeBase64(String string) throws Exception {
+    ByteArrayOutputStream encodedStream = new ByteArrayOutputStream();
+    TWHttpPayloadTransport.writeBase64(encodedStream, string.getBytes("US-ASCII"));
+    return encodedStream.toString("US-ASCII");
+  }
+}
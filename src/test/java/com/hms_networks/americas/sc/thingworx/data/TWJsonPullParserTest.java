@@ -0,0 +1,169 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.json.JSONException;
+import java.io.StringReader;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the tokens read by {@link TWJsonPullParser}, skipping of values, and rejection of
+ * documents which are not valid JSON.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWJsonPullParserTest extends TestCase {
+
+  /** Tests that each token of a document is read in order, with the text of each scalar. */
+  public void testReadsTokensInOrder() throws Exception {
+    TWJsonPullParser parser =
+        createParser(
+            " {\"a\": [1, -2.5e3, \"x\\\"y\\u0041\\n\", true, false, null],\n"
+                + "\"b\": {}, \"c\": []} ");
+    assertEquals(TWJsonPullParser.TOKEN_BEGIN_OBJECT, parser.next());
+    assertToken(parser, TWJsonPullParser.TOKEN_NAME, "a");
+    assertEquals(TWJsonPullParser.TOKEN_BEGIN_ARRAY, parser.next());
+    assertToken(parser, TWJsonPullParser.TOKEN_NUMBER, "1");
+    assertToken(parser, TWJsonPullParser.TOKEN_NUMBER, "-2.5e3");
+    assertToken(parser, TWJsonPullParser.TOKEN_STRING, "x\"yA\n");
+    assertToken(parser, TWJsonPullParser.TOKEN_TRUE, null);
+    assertToken(parser, TWJsonPullParser.TOKEN_FALSE, null);
+    assertToken(parser, TWJsonPullParser.TOKEN_NULL, null);
+    assertEquals(TWJsonPullParser.TOKEN_END_ARRAY, parser.next());
+    assertToken(parser, TWJsonPullParser.TOKEN_NAME, "b");
+    assertEquals(TWJsonPullParser.TOKEN_BEGIN_OBJECT, parser.next());
+    assertEquals(TWJsonPullParser.TOKEN_END_OBJECT, parser.next());
+    assertToken(parser, TWJsonPullParser.TOKEN_NAME, "c");
+    assertEquals(TWJsonPullParser.TOKEN_BEGIN_ARRAY, parser.next());
+    assertEquals(TWJsonPullParser.TOKEN_END_ARRAY, parser.next());
+    assertEquals(TWJsonPullParser.TOKEN_END_OBJECT, parser.next());
+    assertEquals(TWJsonPullParser.TOKEN_END_DOCUMENT, parser.next());
+    assertEquals(TWJsonPullParser.TOKEN_END_DOCUMENT, parser.next());
+  }
+
+  /** Tests that a top-level scalar is a valid document. */
+  public void testReadsTopLevelScalar() throws Exception {
+    TWJsonPullParser parser = createParser("42");
+    assertToken(parser, TWJsonPullParser.TOKEN_NUMBER, "42");
+    assertEquals(TWJsonPullParser.TOKEN_END_DOCUMENT, parser.next());
+  }
+
+  /**
+   * Tests that skipping a member value skips all of its nested content, and that reading continues
+   * with the next member.
+   */
+  public void testSkipValueSkipsNestedContent() throws Exception {
+    TWJsonPullParser parser =
+        createParser(
+            "{\"skip\": {\"a\": [1, {\"b\": [[]]}], \"c\": \"d\"}, \"next\": 2, \"s\": 3}");
+    assertEquals(TWJsonPullParser.TOKEN_BEGIN_OBJECT, parser.next());
+    assertToken(parser, TWJsonPullParser.TOKEN_NAME, "skip");
+    parser.skipValue();
+    assertNull(parser.getText());
+    assertToken(parser, TWJsonPullParser.TOKEN_NAME, "next");
+    assertToken(parser, TWJsonPullParser.TOKEN_NUMBER, "2");
+    assertToken(parser, TWJsonPullParser.TOKEN_NAME, "s");
+    parser.skipValue();
+    assertEquals(TWJsonPullParser.TOKEN_END_OBJECT, parser.next());
+  }
+
+  /** Tests that strings and numbers longer than the read buffer are read in full. */
+  public void testReadsTextAcrossReadBuffer() throws Exception {
+    StringBuffer longString = new StringBuffer();
+    for (int i = 0; i < 1000; i++) {
+      longString.append((char) ('a' + (i % 26)));
+    }
+    StringBuffer longNumber = new StringBuffer("1");
+    for (int i = 0; i < 300; i++) {
+      longNumber.append('0');
+    }
+    TWJsonPullParser parser =
+        createParser("[\"" + longString.toString() + "\", " + longNumber.toString() + "]");
+    assertEquals(TWJsonPullParser.TOKEN_BEGIN_ARRAY, parser.next());
+    assertToken(parser, TWJsonPullParser.TOKEN_STRING, longString.toString());
+    assertToken(parser, TWJsonPullParser.TOKEN_NUMBER, longNumber.toString());
+    assertEquals(TWJsonPullParser.TOKEN_END_ARRAY, parser.next());
+  }
+
+  /** Tests that documents which are not valid JSON are rejected. */
+  public void testRejectsInvalidDocuments() throws Exception {
+    String[] invalidDocuments = {
+      "",
+      "{\"a\" 1}",
+      "{\"a\": 1,}",
+      "{a: 1}",
+      "[1 2]",
+      "[1,]",
+      "{\"a\": tru}",
+      "[\"abc]",
+      "[\"a\nb\"]",
+      "[\"\\x\"]",
+      "[\"\\u12G4\"]",
+      "[1",
+      "{\"a\": }",
+      "[@]"
+    };
+    for (int i = 0; i < invalidDocuments.length; i++) {
+      try {
+        readAll(createParser(invalidDocuments[i]));
+        fail("Expected JSONException for document: " + invalidDocuments[i]);
+      } catch (JSONException e) {
+        // Expected, document is not valid JSON
+      }
+    }
+  }
+
+  /** Tests that documents nested deeper than the maximum depth are rejected. */
+  public void testRejectsDocumentsExceedingMaxDepth() throws Exception {
+    StringBuffer maxDepthDocument = new StringBuffer();
+    StringBuffer tooDeepDocument = new StringBuffer("[");
+    for (int i = 0; i < TWJsonPullParser.MAX_DEPTH; i++) {
+      maxDepthDocument.insert(0, '[').append(']');
+      tooDeepDocument.append('[');
+    }
+    readAll(createParser(maxDepthDocument.toString()));
+
+    try {
+      readAll(createParser(tooDeepDocument.toString()));
+      fail("Expected JSONException for document exceeding maximum depth.");
+    } catch (JSONException e) {
+      // Expected, maximum depth exceeded
+    }
+  }
+
+  /**
+   * Reads all tokens of the document of the specified parser.
+   *
+   * @param parser parser of the document
+   * @throws JSONException if the document is not valid JSON
+   */
+  private static void readAll(TWJsonPullParser parser) throws JSONException {
+    int token = parser.next();
+    while (token != TWJsonPullParser.TOKEN_END_DOCUMENT) {
+      token = parser.next();
+    }
+  }
+
+  /**
+   * Reads the next token of the specified parser, and checks its token and text.
+   *
+   * @param parser parser of the document
+   * @param expectedToken expected token
+   * @param expectedText expected text of the token, or null for tokens without text
+   * @throws JSONException if the document is not valid JSON
+   */
+  private static void assertToken(TWJsonPullParser parser, int expectedToken, String expectedText)
+      throws JSONException {
+    assertEquals(expectedToken, parser.next());
+    assertEquals(expectedText, parser.getText());
+  }
+
+  /**
+   * Creates a parser of the specified document.
+   *
+   * @param document JSON document
+   * @return parser of the document
+   */
+  private static TWJsonPullParser createParser(String document) {
+    return new TWJsonPullParser(new StringReader(document));
+  }
+}
@@ -0,0 +1,101 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataQuality;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the matching of data points read from the historical log against the live data points
+ * sent for a live mode tag by {@link TWLiveSentRecords}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWLiveSentRecordsTest extends TestCase {
+
+  /** Timestamp (in seconds since the epoch) of the first test live data point. */
+  private static final long TIMESTAMP_SECONDS = 1619703907L;
+
+  /** Maximum difference (in seconds) between the timestamps of matching data points. */
+  private static final long TOLERANCE_SECONDS =
+      TWConnectorConsts.LIVE_MODE_DUPLICATE_TOLERANCE_SECONDS;
+
+  /** Maximum number of records. */
+  private static final int MAX_RECORDS = TWConnectorConsts.LIVE_MODE_DUPLICATE_MAX_RECORDS_PER_TAG;
+
+  /** Raw data quality of good test data points. */
+  private static final int GOOD = DataQuality.GOOD.getRawDataQuality();
+
+  /** Raw data quality of bad test data points. */
+  private static final int BAD = DataQuality.BAD.getRawDataQuality();
+
+  /**
+   * Tests that a historical data point with the same value and quality, and a timestamp within the
+   * tolerance, matches a record once, and that a timestamp outside the tolerance does not match.
+   */
+  public void testMatchesWithinTolerance() {
+    TWLiveSentRecords records = createRecords();
+    records.add(TIMESTAMP_SECONDS, "42", GOOD);
+    records.add(TIMESTAMP_SECONDS, "42", GOOD);
+
+    assertFalse(records.remove(TIMESTAMP_SECONDS + TOLERANCE_SECONDS + 1, "42", GOOD));
+    assertFalse(records.remove(TIMESTAMP_SECONDS - TOLERANCE_SECONDS - 1, "42", GOOD));
+    assertTrue(records.remove(TIMESTAMP_SECONDS + TOLERANCE_SECONDS, "42", GOOD));
+    assertTrue(records.remove(TIMESTAMP_SECONDS - TOLERANCE_SECONDS, "42", GOOD));
+    assertFalse(records.remove(TIMESTAMP_SECONDS, "42", GOOD));
+    assertEquals(0, records.size());
+  }
+
+  /**
+   * Tests that historical data points with a different quality or value do not match, and are kept
+   * as they are not duplicates.
+   */
+  public void testKeepsMismatchedQualityAndValue() {
+    TWLiveSentRecords records = createRecords();
+    records.add(TIMESTAMP_SECONDS, "42", GOOD);
+
+    assertFalse(records.remove(TIMESTAMP_SECONDS, "42", BAD));
+    assertFalse(records.remove(TIMESTAMP_SECONDS, "42.0", GOOD));
+    assertEquals(1, records.size());
+    assertTrue(records.remove(TIMESTAMP_SECONDS, "42", GOOD));
+  }
+
+  /** Tests that records are forgotten once the historical log has been read past them. */
+  public void testForgetsRecordsReadPast() {
+    TWLiveSentRecords records = createRecords();
+    records.add(TIMESTAMP_SECONDS, "1", GOOD);
+    records.add(TIMESTAMP_SECONDS + 10, "2", GOOD);
+    records.add(TIMESTAMP_SECONDS + 20, "3", GOOD);
+
+    records.removeBefore(TIMESTAMP_SECONDS + 10);
+    assertEquals(2, records.size());
+    assertFalse(records.remove(TIMESTAMP_SECONDS, "1", GOOD));
+    assertTrue(records.remove(TIMESTAMP_SECONDS + 10, "2", GOOD));
+
+    records.removeBefore(TIMESTAMP_SECONDS + 21);
+    assertEquals(0, records.size());
+  }
+
+  /** Tests that the oldest record is forgotten when a record is added at the maximum. */
+  public void testEvictsOldestRecordAtMaximum() {
+    TWLiveSentRecords records = createRecords();
+    for (int i = 0; i <= MAX_RECORDS; i++) {
+      records.add(TIMESTAMP_SECONDS + i * 10L, String.valueOf(i), GOOD);
+    }
+
+    assertEquals(MAX_RECORDS, records.size());
+    assertFalse(records.remove(TIMESTAMP_SECONDS, "0", GOOD));
+    assertTrue(records.remove(TIMESTAMP_SECONDS + 10, "1", GOOD));
+    assertTrue(
+        records.remove(TIMESTAMP_SECONDS + MAX_RECORDS * 10L, String.valueOf(MAX_RECORDS), GOOD));
+  }
+
+  /**
+   * Creates empty records with the duplicate tolerance and maximum number of records of live mode.
+   *
+   * @return records of sent live data points
+   */
+  private static TWLiveSentRecords createRecords() {
+    return new TWLiveSentRecords(TOLERANCE_SECONDS, MAX_RECORDS);
+  }
+}
@@ -0,0 +1,586 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Vector;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWMqttClient}, using a stand-in MQTT broker on the loopback interface.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWMqttClientTest extends TestCase {
+
+  /** Client identifier used by the tests. */
+  private static final String CLIENT_ID = "FLEXY-test";
+
+  /** Topic used by the tests. */
+  private static final String TOPIC = "thingworx/telemetry";
+
+  /** Keep alive interval (in seconds) of the client. */
+  private static final int KEEP_ALIVE_SECONDS = 60;
+
+  /** Connect and acknowledgement timeout (in milliseconds) of the client. */
+  private static final int CLIENT_TIMEOUT_MILLIS = 5000;
+
+  /** Maximum time (in milliseconds) to wait for listeners to be notified. */
+  private static final long LISTENER_WAIT_MILLIS = 5000;
+
+  /** Stand-in MQTT broker used by the current test. */
+  private StandInBroker broker;
+
+  protected void setUp() throws Exception {
+    broker = new StandInBroker();
+    broker.start();
+  }
+
+  protected void tearDown() throws Exception {
+    broker.stop();
+  }
+
+  /** Tests that a published message is received by the broker and reported as delivered. */
+  public void testPublishDelivered() throws Exception {
+    TWMqttClient client = createClient(4);
+    CountingListener listener = new CountingListener();
+
+    client.publish(TOPIC, createBody("{\"payload\": 1}"), listener);
+    listener.awaitResults(1);
+    client.close();
+
+    assertEquals(1, listener.getDeliveredCount());
+    assertEquals(0, listener.getFailedCount());
+    assertEquals(TOPIC, broker.getPublishedTopic(0));
+    assertEquals("{\"payload\": 1}", broker.getPublishedBody(0));
+    assertTrue(broker.getConnectPacket().indexOf(CLIENT_ID) != -1);
+  }
+
+  /** Tests that no more than the maximum number of messages are in flight at once. */
+  public void testInFlightWindowLimited() throws Exception {
+    int maxInFlightMessages = 3;
+    broker.setAckDelayMillis(50);
+    TWMqttClient client = createClient(maxInFlightMessages);
+    CountingListener listener = new CountingListener();
+
+    for (int i = 0; i < 12; i++) {
+      client.publish(TOPIC, createBody("{\"payload\": " + i + "}"), listener);
+    }
+    listener.awaitResults(12);
+    client.close();
+
+    assertEquals(12, listener.getDeliveredCount());
+    assertTrue(broker.getMaxUnacknowledgedCount() <= maxInFlightMessages);
+    assertTrue(broker.getMaxUnacknowledgedCount() > 1);
+  }
+
+  /**
+   * Tests that unacknowledged messages are reported as failed when the broker drops the
+   * connection, and that the next publish opens a new connection.
+   */
+  public void testConnectionLostFailsInFlightMessages() throws Exception {
+    broker.setWithholdAcks(true);
+    TWMqttClient client = createClient(4);
+    CountingListener listener = new CountingListener();
+    client.publish(TOPIC, createBody("{\"payload\": 1}"), listener);
+    client.publish(TOPIC, createBody("{\"payload\": 2}"), listener);
+    broker.awaitPublishedCount(2);
+
+    broker.dropConnections();
+    listener.awaitResults(2);
+    assertEquals(2, listener.getFailedCount());
+
+    broker.setWithholdAcks(false);
+    client.publish(TOPIC, createBody("{\"payload\": 3}"), listener);
+    listener.awaitResults(3);
+    client.close();
+
+    assertEquals(1, listener.getDeliveredCount());
+    assertEquals(2, broker.getConnectionCount());
+  }
+
+  /**
+   * Tests that a message whose write fails because the broker closed the connection is reported
+   * exactly once, either by an exception from publish or to its listener, but not both.
+   */
+  public void testWriteFailureReportedOnce() throws Exception {
+    broker.setCloseOnPublish(true);
+    TWMqttClient client = createClient(4);
+    CountingListener listener = new CountingListener();
+    StringBuffer largeBody = new StringBuffer();
+    for (int i = 0; i < 200000; i++) {
+      largeBody.append("data point ").append(i).append(',');
+    }
+
+    boolean publishThrew = false;
+    try {
+      client.publish(TOPIC, createBody(largeBody.toString()), listener);
+    } catch (IOException e) {
+      publishThrew = true;
+    }
+    if (!publishThrew) {
+      listener.awaitResults(1);
+    }
+    Thread.sleep(200);
+
+    int listenerResultCount = listener.getDeliveredCount() + listener.getFailedCount();
+    assertEquals(publishThrew ? 0 : 1, listenerResultCount);
+    assertEquals(0, listener.getDeliveredCount());
+  }
+
+  /**
+   * Tests that with an in-flight window of 1 message, each message is acknowledged before the next
+   * is published, and messages are published in order.
+   */
+  public void testInFlightWindowOfOnePublishesInOrder() throws Exception {
+    int messageCount = 10;
+    broker.setAckDelayMillis(20);
+    TWMqttClient client = createClient(1);
+    CountingListener listener = new CountingListener();
+
+    for (int i = 0; i < messageCount; i++) {
+      client.publish(TOPIC, createBody("{\"payload\": " + i + "}"), listener);
+    }
+    listener.awaitResults(messageCount);
+    client.close();
+
+    assertEquals(messageCount, listener.getDeliveredCount());
+    assertEquals(1, broker.getMaxUnacknowledgedCount());
+    for (int i = 0; i < messageCount; i++) {
+      assertEquals("{\"payload\": " + i + "}", broker.getPublishedBody(i));
+    }
+  }
+
+  /**
+   * Creates a client for the stand-in broker with the specified in-flight window.
+   *
+   * @param maxInFlightMessages maximum number of messages in flight
+   * @return client
+   * @throws Exception if unable to create the client
+   */
+  private TWMqttClient createClient(int maxInFlightMessages) throws Exception {
+    return new TWMqttClient(
+        broker.getUrl(),
+        CLIENT_ID,
+        "",
+        "",
+        KEEP_ALIVE_SECONDS,
+        CLIENT_TIMEOUT_MILLIS,
+        maxInFlightMessages);
+  }
+
+  /**
+   * Creates a message body which writes the specified string.
+   *
+   * @param body message body string
+   * @return message body
+   */
+  private static TWMqttClient.MessageBody createBody(final String body) {
+    return new TWMqttClient.MessageBody() {
+      public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(body.getBytes("UTF-8"));
+      }
+    };
+  }
+
+  /** Delivery listener which counts the results of messages. */
+  private static class CountingListener implements TWMqttClient.DeliveryListener {
+
+    /** Number of messages reported as delivered. */
+    private int deliveredCount = 0;
+
+    /** Number of messages reported as failed. */
+    private int failedCount = 0;
+
+    public synchronized void messageDelivered() {
+      deliveredCount++;
+      notifyAll();
+    }
+
+    public synchronized void messageFailed() {
+      failedCount++;
+      notifyAll();
+    }
+
+    /**
+     * Waits until the specified number of results have been reported.
+     *
+     * @param resultCount number of results
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void awaitResults(int resultCount) throws InterruptedException {
+      long deadlineMillis = System.currentTimeMillis() + LISTENER_WAIT_MILLIS;
+      long waitMillis = LISTENER_WAIT_MILLIS;
+      while (deliveredCount + failedCount < resultCount && waitMillis > 0) {
+        wait(waitMillis);
+        waitMillis = deadlineMillis - System.currentTimeMillis();
+      }
+    }
+
+    /**
+     * Gets the number of messages reported as delivered.
+     *
+     * @return number of delivered messages
+     */
+    synchronized int getDeliveredCount() {
+      return deliveredCount;
+    }
+
+    /**
+     * Gets the number of messages reported as failed.
+     *
+     * @return number of failed messages
+     */
+    synchronized int getFailedCount() {
+      return failedCount;
+    }
+  }
+
+  /**
+   * Stand-in MQTT broker, which accepts connections, acknowledges CONNECT, PUBLISH (QoS 1) and
+   * PINGREQ packets, and records published messages. Acknowledgements may be delayed, without
+   * delaying the reading of further packets, or withheld.
+   */
+  private static class StandInBroker implements Runnable {
+
+    /** Server socket of the stand-in broker. */
+    private final ServerSocket serverSocket;
+
+    /** Open connections. */
+    private final Vector sockets = new Vector();
+
+    /** Received published topics, in order. */
+    private final Vector publishedTopics = new Vector();
+
+    /** Received published bodies, in order. */
+    private final Vector publishedBodies = new Vector();
+
+    /** Body of the last received CONNECT packet, decoded as ISO-8859-1. */
+    private String connectPacket = "";
+
+    /** Number of accepted connections. */
+    private int connectionCount = 0;
+
+    /** Delay (in milliseconds) before each PUBACK is sent. */
+    private long ackDelayMillis = 0;
+
+    /** Boolean indicating if PUBACKs are withheld. */
+    private boolean withholdAcks = false;
+
+    /** Boolean indicating if the connection is closed as soon as a PUBLISH packet starts. */
+    private boolean closeOnPublish = false;
+
+    /** Number of received messages which have not been acknowledged. */
+    private int unacknowledgedCount = 0;
+
+    /** Maximum number of received messages which were not acknowledged at once. */
+    private int maxUnacknowledgedCount = 0;
+
+    /**
+     * Creates a new stand-in broker on an ephemeral loopback port.
+     *
+     * @throws IOException if unable to open the server socket
+     */
+    StandInBroker() throws IOException {
+      serverSocket = new ServerSocket(0);
+    }
+
+    /** Starts accepting connections. */
+    void start() {
+      Thread thread = new Thread(this, "stand-in MQTT broker");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Stops accepting connections and closes all open connections.
+     *
+     * @throws IOException if unable to close the server socket
+     */
+    void stop() throws IOException {
+      serverSocket.close();
+      dropConnections();
+    }
+
+    /**
+     * Gets the broker URL.
+     *
+     * @return broker URL
+     */
+    String getUrl() {
+      return "tcp://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    /** Closes all open connections, without sending a DISCONNECT packet. */
+    synchronized void dropConnections() {
+      for (int i = 0; i < sockets.size(); i++) {
+        try {
+          ((Socket) sockets.elementAt(i)).close();
+        } catch (IOException e) {
+          // Connection is discarded regardless
+        }
+      }
+      sockets.removeAllElements();
+    }
+
+    /**
+     * Sets the delay before each PUBACK is sent.
+     *
+     * @param ackDelayMillis acknowledgement delay (in milliseconds)
+     */
+    synchronized void setAckDelayMillis(long ackDelayMillis) {
+      this.ackDelayMillis = ackDelayMillis;
+    }
+
+    /**
+     * Sets whether PUBACKs are withheld.
+     *
+     * @param withholdAcks true to withhold PUBACKs
+     */
+    synchronized void setWithholdAcks(boolean withholdAcks) {
+      this.withholdAcks = withholdAcks;
+    }
+
+    /**
+     * Sets whether the connection is closed as soon as a PUBLISH packet starts.
+     *
+     * @param closeOnPublish true to close the connection on PUBLISH
+     */
+    synchronized void setCloseOnPublish(boolean closeOnPublish) {
+      this.closeOnPublish = closeOnPublish;
+    }
+
+    /**
+     * Gets the topic of the specified received message.
+     *
+     * @param index index of the message
+     * @return topic
+     */
+    synchronized String getPublishedTopic(int index) {
+      return (String) publishedTopics.elementAt(index);
+    }
+
+    /**
+     * Gets the body of the specified received message.
+     *
+     * @param index index of the message
+     * @return body
+     */
+    synchronized String getPublishedBody(int index) {
+      return (String) publishedBodies.elementAt(index);
+    }
+
+    /**
+     * Gets the body of the last received CONNECT packet.
+     *
+     * @return CONNECT packet body, decoded as ISO-8859-1
+     */
+    synchronized String getConnectPacket() {
+      return connectPacket;
+    }
+
+    /**
+     * Gets the number of accepted connections.
+     *
+     * @return number of accepted connections
+     */
+    synchronized int getConnectionCount() {
+      return connectionCount;
+    }
+
+    /**
+     * Gets the maximum number of received messages which were not acknowledged at once.
+     *
+     * @return maximum number of unacknowledged messages
+     */
+    synchronized int getMaxUnacknowledgedCount() {
+      return maxUnacknowledgedCount;
+    }
+
+    /**
+     * Waits until the specified number of messages have been received.
+     *
+     * @param publishedCount number of messages
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void awaitPublishedCount(int publishedCount) throws InterruptedException {
+      long deadlineMillis = System.currentTimeMillis() + LISTENER_WAIT_MILLIS;
+      long waitMillis = LISTENER_WAIT_MILLIS;
+      while (publishedTopics.size() < publishedCount && waitMillis > 0) {
+        wait(waitMillis);
+        waitMillis = deadlineMillis - System.currentTimeMillis();
+      }
+    }
+
+    public void run() {
+      try {
+        while (true) {
+          final Socket socket = serverSocket.accept();
+          synchronized (this) {
+            connectionCount++;
+            sockets.addElement(socket);
+          }
+          Thread connectionThread =
+              new Thread("stand-in MQTT broker connection") {
+                public void run() {
+                  handleConnection(socket);
+                }
+              };
+          connectionThread.setDaemon(true);
+          connectionThread.start();
+        }
+      } catch (IOException e) {
+        // Server socket closed
+      }
+    }
+
+    /**
+     * Handles the packets on the specified connection until it is closed.
+     *
+     * @param socket connection
+     */
+    private void handleConnection(Socket socket) {
+      try {
+        InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+        OutputStream outputStream = socket.getOutputStream();
+        int packetType = inputStream.read();
+        while (packetType != -1) {
+          boolean close;
+          synchronized (this) {
+            close = closeOnPublish && (packetType & 0xF0) == 0x30;
+          }
+          if (close) {
+            socket.close();
+            packetType = -1;
+          } else {
+            byte[] packet = readBytes(inputStream, readRemainingLength(inputStream));
+            handlePacket(packetType, packet, outputStream);
+            packetType = inputStream.read();
+          }
+        }
+      } catch (IOException e) {
+        // Connection closed
+      } finally {
+        try {
+          socket.close();
+        } catch (IOException e) {
+          // Connection is discarded regardless
+        }
+      }
+    }
+
+    /**
+     * Handles the specified packet, sending its acknowledgement if any.
+     *
+     * @param packetType first byte of packet
+     * @param packet remainder of packet, after the remaining length
+     * @param outputStream connection output stream
+     * @throws IOException if unable to send the acknowledgement
+     */
+    private void handlePacket(int packetType, byte[] packet, final OutputStream outputStream)
+        throws IOException {
+      int type = packetType & 0xF0;
+      if (type == 0x10) {
+        synchronized (this) {
+          connectPacket = new String(packet, "ISO-8859-1");
+        }
+        writePacket(outputStream, new byte[] {0x20, 2, 0, 0});
+      } else if (type == 0x30) {
+        int topicLength = ((packet[0] & 0xFF) << 8) | (packet[1] & 0xFF);
+        final byte[] puback = {0x40, 2, packet[2 + topicLength], packet[3 + topicLength]};
+        final long delayMillis;
+        boolean sendAck;
+        synchronized (this) {
+          publishedTopics.addElement(new String(packet, 2, topicLength, "UTF-8"));
+          int bodyOffset = 4 + topicLength;
+          publishedBodies.addElement(
+              new String(packet, bodyOffset, packet.length - bodyOffset, "UTF-8"));
+          unacknowledgedCount++;
+          maxUnacknowledgedCount = Math.max(maxUnacknowledgedCount, unacknowledgedCount);
+          delayMillis = ackDelayMillis;
+          sendAck = !withholdAcks;
+          notifyAll();
+        }
+        if (sendAck) {
+          Thread ackThread =
+              new Thread("stand-in MQTT broker acknowledgement") {
+                public void run() {
+                  try {
+                    Thread.sleep(delayMillis);
+                    synchronized (StandInBroker.this) {
+                      unacknowledgedCount--;
+                    }
+                    writePacket(outputStream, puback);
+                  } catch (Exception e) {
+                    // Connection closed
+                  }
+                }
+              };
+          ackThread.setDaemon(true);
+          ackThread.start();
+        }
+      } else if (type == 0xC0) {
+        writePacket(outputStream, new byte[] {(byte) 0xD0, 0});
+      }
+    }
+
+    /**
+     * Writes the specified packet to the specified connection output stream.
+     *
+     * @param outputStream connection output stream
+     * @param packet packet
+     * @throws IOException if unable to write
+     */
+    private static void writePacket(OutputStream outputStream, byte[] packet)
+        throws IOException {
+      synchronized (outputStream) {
+        outputStream.write(packet);
+        outputStream.flush();
+      }
+    }
+
+    /**
+     * Reads an MQTT remaining length.
+     *
+     * @param inputStream connection input stream
+     * @return remaining length
+     * @throws IOException if unable to read
+     */
+    private static int readRemainingLength(InputStream inputStream) throws IOException {
+      int value = 0;
+      int multiplier = 1;
+      int encodedByte;
+      do {
+        encodedByte = readBytes(inputStream, 1)[0] & 0xFF;
+        value += (encodedByte & 0x7F) * multiplier;
+        multiplier *= 128;
+      } while ((encodedByte & 0x80) != 0);
+      return value;
+    }
+
+    /**
+     * Reads exactly the specified number of bytes.
+     *
+     * @param inputStream connection input stream
+     * @param length number of bytes
+     * @return bytes read
+     * @throws IOException if unable to read, or if the connection was closed
+     */
+    private static byte[] readBytes(InputStream inputStream, int length) throws IOException {
+      byte[] bytes = new byte[length];
+      int offset = 0;
+      while (offset < length) {
+        int read = inputStream.read(bytes, offset, length - offset);
+        if (read == -1) {
+          throw new IOException("Connection closed.");
+        }
+        offset += read;
+      }
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.File;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWPayloadOutbox}, including recovery of records and acknowledgements when the
+ * outbox is reopened, as after a restart or power loss.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWPayloadOutboxTest extends TestCase {
+
+  /** Maximum size (in bytes) of the outbox data file used by the tests. */
+  private static final long OUTBOX_MAX_SIZE_BYTES = 1000000;
+
+  /** Outbox data file of the current test. */
+  private File dataFile;
+
+  /** Outbox index file of the current test. */
+  private File indexFile;
+
+  protected void setUp() throws Exception {
+    dataFile = File.createTempFile("TWPayloadOutboxTest", ".dat");
+    indexFile = File.createTempFile("TWPayloadOutboxTest", ".idx");
+    dataFile.deleteOnExit();
+    indexFile.deleteOnExit();
+  }
+
+  /** Tests that flushed records are recovered in order when the outbox is reopened. */
+  public void testRecoversRecordsAfterReopen() throws Exception {
+    TWPayloadOutbox outbox = openOutbox(OUTBOX_MAX_SIZE_BYTES);
+    appendPayloads(outbox, 0, 3);
+    outbox.flush();
+
+    TWPayloadOutbox reopenedOutbox = openOutbox(OUTBOX_MAX_SIZE_BYTES);
+    assertEquals(3, reopenedOutbox.getRecordCount());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(getPayload(i), reopenedOutbox.peekNext().getPayloadString());
+      reopenedOutbox.acknowledgeNext();
+    }
+    assertNull(reopenedOutbox.peekNext());
+  }
+
+  /**
+   * Tests that acknowledgements are only written once per interval or flush, so that payloads
+   * acknowledged since the last write are recovered and sent again after a power loss.
+   */
+  public void testAcknowledgementsWrittenInBatches() throws Exception {
+    TWPayloadOutbox outbox = openOutbox(OUTBOX_MAX_SIZE_BYTES);
+    appendPayloads(outbox, 0, 100);
+    outbox.flush();
+
+    // Acknowledgements below the write interval are not written
+    acknowledgePayloads(outbox, 5);
+    assertEquals(100, openOutbox(OUTBOX_MAX_SIZE_BYTES).getRecordCount());
+
+    // Acknowledgements are written on flush
+    outbox.flush();
+    assertEquals(95, openOutbox(OUTBOX_MAX_SIZE_BYTES).getRecordCount());
+
+    // Acknowledgements are written once the write interval is reached
+    acknowledgePayloads(outbox, 16);
+    TWPayloadOutbox reopenedOutbox = openOutbox(OUTBOX_MAX_SIZE_BYTES);
+    assertEquals(79, reopenedOutbox.getRecordCount());
+    assertEquals(getPayload(21), reopenedOutbox.peekNext().getPayloadString());
+  }
+
+  /**
+   * Tests that the outbox rejects records once full, and accepts them again once half of the
+   * records have been acknowledged and can be compacted.
+   */
+  public void testCompactsAcknowledgedRecordsWhenFull() throws Exception {
+    int recordSizeBytes = getPayload(0).length() + 21;
+    TWPayloadOutbox outbox = openOutbox(recordSizeBytes * 10);
+    appendPayloads(outbox, 0, 10);
+    assertFalse(outbox.append(getPayload(10).getBytes("UTF-8"), false));
+
+    acknowledgePayloads(outbox, 5);
+    appendPayloads(outbox, 10, 5);
+    outbox.flush();
+    assertEquals(10, outbox.getRecordCount());
+    assertTrue(outbox.getSizeBytes() <= recordSizeBytes * 10);
+
+    TWPayloadOutbox reopenedOutbox = openOutbox(recordSizeBytes * 10);
+    for (int i = 5; i < 15; i++) {
+      assertEquals(getPayload(i), reopenedOutbox.peekNext().getPayloadString());
+      reopenedOutbox.acknowledgeNext();
+    }
+    assertEquals(0, reopenedOutbox.getRecordCount());
+  }
+
+  /**
+   * Opens an outbox using the data and index files of the current test.
+   *
+   * @param maxSizeBytes maximum size (in bytes) of the outbox data file
+   * @return opened outbox
+   * @throws Exception if unable to open the outbox
+   */
+  private TWPayloadOutbox openOutbox(long maxSizeBytes) throws Exception {
+    TWPayloadOutbox outbox =
+        new TWPayloadOutbox(dataFile.getPath(), indexFile.getPath(), maxSizeBytes);
+    outbox.open();
+    return outbox;
+  }
+
+  /**
+   * Appends the specified payloads to the specified outbox, uncompressed.
+   *
+   * @param outbox outbox
+   * @param firstPayloadNumber number of the first payload
+   * @param payloadCount number of payloads to append
+   * @throws Exception if unable to append a payload
+   */
+  private static void appendPayloads(
+      TWPayloadOutbox outbox, int firstPayloadNumber, int payloadCount) throws Exception {
+    for (int i = firstPayloadNumber; i < firstPayloadNumber + payloadCount; i++) {
+      assertTrue(outbox.append(getPayload(i).getBytes("UTF-8"), false));
+    }
+  }
+
+  /**
+   * Acknowledges the specified number of records in the specified outbox.
+   *
+   * @param outbox outbox
+   * @param recordCount number of records to acknowledge
+   * @throws Exception if unable to acknowledge a record
+   */
+  private static void acknowledgePayloads(TWPayloadOutbox outbox, int recordCount)
+      throws Exception {
+    for (int i = 0; i < recordCount; i++) {
+      assertNotNull(outbox.peekNext());
+      outbox.acknowledgeNext();
+    }
+  }
+
+  /**
+   * Gets the payload string with the specified number.
+   *
+   * @param payloadNumber payload number
+   * @return payload string
+   */
+  private static String getPayload(int payloadNumber) {
+    return "{\"payload\": " + (1000 + payloadNumber) + "}";
+  }
+}
@@ -0,0 +1,154 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWPayloadSizeController}, including a simulation of the maximum number of data
+ * points per payload converging on a link whose send latency grows with the payload size, and
+ * recovering after the bandwidth of the link drops.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWPayloadSizeControllerTest extends TestCase {
+
+  /** Minimum number of data points per payload. */
+  private static final int MIN_DATA_POINTS = 20;
+
+  /** Maximum number of data points per payload. */
+  private static final int MAX_DATA_POINTS = 2000;
+
+  /** Target send latency (in milliseconds). */
+  private static final long TARGET_LATENCY_MILLIS = 1000;
+
+  /** Step by which the maximum number of data points is increased. */
+  private static final int STEP = TWConnectorConsts.PAYLOAD_AUTO_TUNE_INCREASE_DATA_POINTS;
+
+  /** Simulated send latency (in milliseconds) of an empty payload. */
+  private static final long SIMULATED_BASE_LATENCY_MILLIS = 100;
+
+  /** Simulated send timeout (in milliseconds). */
+  private static final long SIMULATED_TIMEOUT_MILLIS = 3000;
+
+  /** Number of simulated payloads sent in each phase of the simulation. */
+  private static final int SIMULATED_PAYLOAD_COUNT = 400;
+
+  /** Tests that the initial maximum is limited to the configured bounds. */
+  public void testInitialMaxDataPointsLimitedToBounds() {
+    assertEquals(MIN_DATA_POINTS, createController(5).getMaxDataPoints());
+    assertEquals(MAX_DATA_POINTS, createController(5000).getMaxDataPoints());
+    assertEquals(100, createController(100).getMaxDataPoints());
+  }
+
+  /** Tests that only full payloads delivered below the target latency increase the maximum. */
+  public void testIncreasesAfterFullPayloadsBelowTarget() {
+    TWPayloadSizeController controller = createController(100);
+
+    controller.recordDelivery(50, TARGET_LATENCY_MILLIS / 2);
+    assertEquals(100, controller.getMaxDataPoints());
+
+    controller.recordDelivery(100, TARGET_LATENCY_MILLIS / 2);
+    assertEquals(100 + STEP, controller.getMaxDataPoints());
+
+    TWPayloadSizeController maximumController = createController(MAX_DATA_POINTS);
+    maximumController.recordDelivery(MAX_DATA_POINTS, TARGET_LATENCY_MILLIS / 2);
+    assertEquals(MAX_DATA_POINTS, maximumController.getMaxDataPoints());
+  }
+
+  /** Tests that the maximum is held while the smoothed latency is above the target. */
+  public void testHoldsAboveTargetLatency() {
+    TWPayloadSizeController controller = createController(100);
+    for (int i = 0; i < 10; i++) {
+      controller.recordDelivery(100, TARGET_LATENCY_MILLIS * 2);
+    }
+    assertEquals(100, controller.getMaxDataPoints());
+  }
+
+  /**
+   * Tests that a timeout halves the maximum down to the minimum, that other failures do not, and
+   * that timeouts of payloads sent before the last decrease are not counted again.
+   */
+  public void testTimeoutHalvesMaximumOnce() throws Exception {
+    TWPayloadSizeController controller = createController(400);
+
+    controller.recordFailure(System.currentTimeMillis(), false);
+    assertEquals(400, controller.getMaxDataPoints());
+
+    // Payloads in flight at the time of the decrease time out as well
+    long sendStartTimeMillis = System.currentTimeMillis();
+    Thread.sleep(5);
+    controller.recordFailure(System.currentTimeMillis(), true);
+    assertEquals(200, controller.getMaxDataPoints());
+    controller.recordFailure(sendStartTimeMillis, true);
+    assertEquals(200, controller.getMaxDataPoints());
+
+    for (int i = 0; i < 10; i++) {
+      controller.recordFailure(System.currentTimeMillis(), true);
+    }
+    assertEquals(MIN_DATA_POINTS, controller.getMaxDataPoints());
+  }
+
+  /**
+   * Simulates sending full payloads on a link whose send latency grows linearly with the number of
+   * data points, checks that the maximum converges near the size which meets the target latency,
+   * and that it is reduced below the send timeout once the bandwidth of the link drops.
+   */
+  public void testConvergesAndRecoversAfterBandwidthDrop() {
+    TWPayloadSizeController controller = createController(50);
+
+    // Converge on link with 2 ms per data point, target latency is met at 450 data points
+    int timeoutCount = simulate(controller, 2);
+    int convergedMaxDataPoints = controller.getMaxDataPoints();
+    long idealMaxDataPoints = (TARGET_LATENCY_MILLIS - SIMULATED_BASE_LATENCY_MILLIS) / 2;
+
+    // Bandwidth drops to 10 ms per data point, converged payloads now exceed the timeout
+    int droppedTimeoutCount = simulate(controller, 10);
+    int droppedMaxDataPoints = controller.getMaxDataPoints();
+    long droppedLatencyMillis = SIMULATED_BASE_LATENCY_MILLIS + droppedMaxDataPoints * 10L;
+
+    assertEquals(0, timeoutCount);
+    assertTrue(convergedMaxDataPoints >= idealMaxDataPoints - STEP * 2);
+    // Smoothed latency lags the measured latency by about 1 / smoothing weight payloads
+    int lagSteps = (int) (1 / TWConnectorConsts.PAYLOAD_AUTO_TUNE_SMOOTHING_WEIGHT);
+    assertTrue(convergedMaxDataPoints <= idealMaxDataPoints + STEP * lagSteps);
+    assertTrue(droppedTimeoutCount >= 1);
+    assertTrue(droppedLatencyMillis < SIMULATED_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Simulates sending {@link #SIMULATED_PAYLOAD_COUNT} full payloads one at a time on a link with
+   * the specified send latency per data point, recording each result in the specified controller.
+   *
+   * @param controller payload size controller
+   * @param latencyMillisPerDataPoint send latency (in milliseconds) per data point
+   * @return number of payloads which timed out
+   */
+  private static int simulate(TWPayloadSizeController controller, long latencyMillisPerDataPoint) {
+    int timeoutCount = 0;
+    for (int i = 0; i < SIMULATED_PAYLOAD_COUNT; i++) {
+      int dataPointCount = controller.getMaxDataPoints();
+      long latencyMillis =
+          SIMULATED_BASE_LATENCY_MILLIS + dataPointCount * latencyMillisPerDataPoint;
+      if (latencyMillis > SIMULATED_TIMEOUT_MILLIS) {
+        controller.recordFailure(System.currentTimeMillis(), true);
+        timeoutCount++;
+      } else {
+        controller.recordDelivery(dataPointCount, latencyMillis);
+      }
+    }
+    return timeoutCount;
+  }
+
+  /**
+   * Creates a controller with the test bounds and target latency, and the specified initial
+   * maximum.
+   *
+   * @param initialDataPoints initial maximum number of data points per payload
+   * @return payload size controller
+   */
+  private static TWPayloadSizeController createController(int initialDataPoints) {
+    return new TWPayloadSizeController(
+        MIN_DATA_POINTS, MAX_DATA_POINTS, initialDataPoints, TARGET_LATENCY_MILLIS);
+  }
+}
@@ -0,0 +1,84 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWPendingPayloadRing}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWPendingPayloadRingTest extends TestCase {
+
+  protected void setUp() throws Exception {
+    // Payloads read their linger deadline from the runtime configuration
+    TWTestRuntimeConfig.install(TWTestRuntimeConfig.getDefaultSettings());
+  }
+
+  /** Tests that an empty ring returns null from all accessors. */
+  public void testEmptyRing() {
+    TWPendingPayloadRing ring = new TWPendingPayloadRing(3);
+    assertEquals(0, ring.size());
+    assertEquals(3, ring.getCapacity());
+    assertNull(ring.peekHead());
+    assertNull(ring.peekTail());
+    assertNull(ring.get(0));
+    assertNull(ring.removeHead());
+  }
+
+  /** Tests that payloads are removed in the order they were added, and rejected once full. */
+  public void testAddAndRemoveInOrder() {
+    TWPendingPayloadRing ring = new TWPendingPayloadRing(3);
+    TWDataPayload[] payloads = createPayloads(4);
+    assertTrue(ring.addTail(payloads[0]));
+    assertTrue(ring.addTail(payloads[1]));
+    assertTrue(ring.addTail(payloads[2]));
+    assertFalse(ring.addTail(payloads[3]));
+
+    assertEquals(3, ring.size());
+    assertSame(payloads[0], ring.peekHead());
+    assertSame(payloads[2], ring.peekTail());
+    assertSame(payloads[1], ring.get(1));
+    assertNull(ring.get(3));
+    assertNull(ring.get(-1));
+
+    assertSame(payloads[0], ring.removeHead());
+    assertSame(payloads[1], ring.removeHead());
+    assertSame(payloads[2], ring.removeHead());
+    assertEquals(0, ring.size());
+    assertNull(ring.peekTail());
+  }
+
+  /** Tests that positions are relative to the head once the ring has wrapped around its array. */
+  public void testWrapAround() {
+    TWPendingPayloadRing ring = new TWPendingPayloadRing(3);
+    TWDataPayload[] payloads = createPayloads(7);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(ring.addTail(payloads[i]));
+    }
+
+    // Repeatedly remove the head and add a payload at the tail, wrapping around the array
+    for (int i = 3; i < 7; i++) {
+      assertSame(payloads[i - 3], ring.removeHead());
+      assertTrue(ring.addTail(payloads[i]));
+      assertEquals(3, ring.size());
+      assertSame(payloads[i - 2], ring.peekHead());
+      assertSame(payloads[i - 1], ring.get(1));
+      assertSame(payloads[i], ring.peekTail());
+    }
+  }
+
+  /**
+   * Creates the specified number of empty payloads.
+   *
+   * @param payloadCount number of payloads
+   * @return payloads
+   */
+  private static TWDataPayload[] createPayloads(int payloadCount) {
+    TWDataPayload[] payloads = new TWDataPayload[payloadCount];
+    for (int i = 0; i < payloadCount; i++) {
+      payloads[i] = new TWDataPayload();
+    }
+    return payloads;
+  }
+}
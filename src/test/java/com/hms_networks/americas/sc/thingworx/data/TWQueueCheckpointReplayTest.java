@@ -0,0 +1,154 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.datapoint.DataPoint;
+import com.hms_networks.americas.sc.extensions.taginfo.TagType;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Hashtable;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWQueueCheckpointReplay}, including parsing of historical table exports and
+ * the windows read between the queue checkpoint and the historical data queue time tracker.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWQueueCheckpointReplayTest extends TestCase {
+
+  /** Header line of a historical table export. */
+  private static final String EXPORT_HEADER =
+      "\"TagId\";\"TimeInt\";\"TimeStr\";\"IsInitValue\";\"Value\";\"IQuality\"\n";
+
+  /** Tests that the export block descriptor has the start and end times of the window in UTC. */
+  public void testExportBlockDescriptor() {
+    assertEquals(
+        "$dtHT$ftT$ut$st29042021_134507$et29042021_135507",
+        TWQueueCheckpointReplay.buildExportBlockDescriptor(1619703907000L, 1619704507999L));
+  }
+
+  /** Tests that data points are created with the name, type and value of the tag of each line. */
+  public void testParsesDataPointsOfIndexedTags() throws Exception {
+    String export =
+        EXPORT_HEADER
+            + "1;1619703907;\"29/04/2021 13:45:07\";0;42;65472\n"
+            + "2;1619703908;\"29/04/2021 13:45:08\";0;1.5;65472\n"
+            + "3;1619703909;\"29/04/2021 13:45:09\";0;\"a;b\";65472\n";
+    List dataPoints = parse(export, true, 1619703900L, 1619704000L);
+
+    assertEquals(3, dataPoints.size());
+    assertDataPoint((DataPoint) dataPoints.get(0), "IntegerTag", "1619703907", "42");
+    assertDataPoint((DataPoint) dataPoints.get(1), "FloatTag", "1619703908", "1.5");
+    assertDataPoint((DataPoint) dataPoints.get(2), "StringTag", "1619703909", "a;b");
+  }
+
+  /**
+   * Tests that only data points from the start time (inclusive) to the end time (exclusive) are
+   * returned, so that data points at the boundary of two windows are replayed once.
+   */
+  public void testOnlyDataPointsWithinWindow() throws Exception {
+    String export =
+        EXPORT_HEADER
+            + "1;1619703899;\"\";0;1;192\n"
+            + "1;1619703900;\"\";0;2;192\n"
+            + "1;1619703959;\"\";0;3;192\n"
+            + "1;1619703960;\"\";0;4;192\n";
+    List dataPoints = parse(export, true, 1619703900L, 1619703960L);
+
+    assertEquals(2, dataPoints.size());
+    assertEquals("2", ((DataPoint) dataPoints.get(0)).getValueString());
+    assertEquals("3", ((DataPoint) dataPoints.get(1)).getValueString());
+  }
+
+  /**
+   * Tests that data points of tags which are not indexed, of string tags while string history is
+   * disabled, and of lines which cannot be parsed are skipped.
+   */
+  public void testSkipsUnknownTagsStringTagsAndInvalidLines() throws Exception {
+    String export =
+        EXPORT_HEADER
+            + "9;1619703907;\"\";0;1;192\n"
+            + "3;1619703907;\"\";0;\"text\";192\n"
+            + "1;not-a-time;\"\";0;1;192\n"
+            + "1;1619703907;\"\";0;not-a-number;192\n"
+            + "1;1619703907\n"
+            + "1;1619703907;\"\";0;7;192\n";
+    List dataPoints = parse(export, false, 1619703900L, 1619704000L);
+
+    assertEquals(1, dataPoints.size());
+    assertDataPoint((DataPoint) dataPoints.get(0), "IntegerTag", "1619703907", "7");
+  }
+
+  /** Tests that an empty export has no data points, and an export without the columns fails. */
+  public void testEmptyAndUnexpectedExports() throws Exception {
+    assertEquals(0, parse("", true, 0, Long.MAX_VALUE).size());
+    assertEquals(0, parse(EXPORT_HEADER, true, 0, Long.MAX_VALUE).size());
+    try {
+      parse("\"TagName\";\"Value\"\nIntegerTag;1\n", true, 0, Long.MAX_VALUE);
+      fail("Export without the expected columns was parsed");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  /**
+   * Tests that the time span is read in windows of at most the window length, with the last window
+   * ending at the end of the time span.
+   */
+  public void testReadsTimeSpanInWindows() throws Exception {
+    TWQueueCheckpointReplay replay = new TWQueueCheckpointReplay(100000, 250000, 60000, true);
+    assertFalse(replay.isFinished());
+
+    replay.readNextWindow();
+    assertEquals(160000, replay.getNextStartTimeMillis());
+    replay.readNextWindow();
+    assertEquals(220000, replay.getNextStartTimeMillis());
+    assertFalse(replay.isFinished());
+    replay.readNextWindow();
+    assertEquals(250000, replay.getNextStartTimeMillis());
+    assertTrue(replay.isFinished());
+  }
+
+  /**
+   * Parses the specified historical table export with an integer, a float and a string tag with
+   * IDs 1, 2 and 3.
+   *
+   * @param export historical table export
+   * @param stringHistoryEnabled true to include data points of string tags
+   * @param startTimeSeconds start time (in seconds since the epoch), inclusive
+   * @param endTimeSeconds end time (in seconds since the epoch), exclusive
+   * @return parsed data points
+   * @throws IOException if unable to parse the export
+   */
+  private static List parse(
+      String export, boolean stringHistoryEnabled, long startTimeSeconds, long endTimeSeconds)
+      throws IOException {
+    Hashtable tagsById = new Hashtable();
+    tagsById.put(new Integer(1), new TWTagInfoIndex.IndexedTag("IntegerTag", 1, TagType.INTEGER));
+    tagsById.put(new Integer(2), new TWTagInfoIndex.IndexedTag("FloatTag", 2, TagType.FLOAT));
+    tagsById.put(new Integer(3), new TWTagInfoIndex.IndexedTag("StringTag", 3, TagType.STRING));
+    return TWQueueCheckpointReplay.parseExport(
+        new BufferedReader(new StringReader(export)),
+        tagsById,
+        stringHistoryEnabled,
+        startTimeSeconds,
+        endTimeSeconds);
+  }
+
+  /**
+   * Asserts that the specified data point has the specified tag name, timestamp and value.
+   *
+   * @param dataPoint data point
+   * @param tagName expected tag name
+   * @param timestamp expected timestamp (in seconds since the epoch)
+   * @param value expected value
+   */
+  private static void assertDataPoint(
+      DataPoint dataPoint, String tagName, String timestamp, String value) {
+    assertEquals(tagName, dataPoint.getTagName());
+    assertEquals(timestamp, dataPoint.getTimeStamp());
+    assertEquals(value, dataPoint.getValueString());
+  }
+}
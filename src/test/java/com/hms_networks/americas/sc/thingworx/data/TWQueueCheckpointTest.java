@@ -0,0 +1,125 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWQueueCheckpoint}, including recovery of the committed time when the checkpoint
+ * is reopened, as after a restart or power loss.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWQueueCheckpointTest extends TestCase {
+
+  /** Number of checkpoint writes in the reopen test. */
+  private static final int WRITE_COUNT = 20;
+
+  /** Checkpoint file of the current test. */
+  private File checkpointFile;
+
+  protected void setUp() throws Exception {
+    checkpointFile = File.createTempFile("TWQueueCheckpointTest", ".chk");
+    checkpointFile.deleteOnExit();
+  }
+
+  /** Tests that a new checkpoint file has an unknown committed time. */
+  public void testNewCheckpointUnknown() throws Exception {
+    assertEquals(-1, readCommittedTimeMillis());
+  }
+
+  /**
+   * Tests that the committed time is only advanced to the end of a time span once all payloads
+   * created for it have been removed, and that time spans are committed in order.
+   */
+  public void testCommitsSpanOnceItsPayloadsRemoved() throws Exception {
+    TWQueueCheckpoint checkpoint = openCheckpoint();
+    checkpoint.addSpan(1000, 2);
+    checkpoint.addSpan(2000, 2);
+    checkpoint.addSpan(3000, 5);
+
+    checkpoint.commit(1);
+    assertEquals(-1, checkpoint.getCommittedTimeMillis());
+    checkpoint.commit(2);
+    assertEquals(2000, checkpoint.getCommittedTimeMillis());
+    checkpoint.commit(4);
+    assertEquals(2000, checkpoint.getCommittedTimeMillis());
+    checkpoint.commit(5);
+    assertEquals(3000, checkpoint.getCommittedTimeMillis());
+    checkpoint.close();
+  }
+
+  /**
+   * Tests that the committed time is written on the first commit and on close, but not on commits
+   * within the write interval, and that the written committed time is recovered when reopened.
+   */
+  public void testCommittedTimeRecoveredAfterReopen() throws Exception {
+    TWQueueCheckpoint checkpoint = openCheckpoint();
+    checkpoint.addSpan(1000, 1);
+    checkpoint.addSpan(2000, 2);
+
+    // First commit is written
+    checkpoint.commit(1);
+    assertEquals(1000, readCommittedTimeMillis());
+
+    // Commit within the write interval is not written until closed
+    checkpoint.commit(2);
+    assertEquals(1000, readCommittedTimeMillis());
+    checkpoint.close();
+    assertEquals(2000, readCommittedTimeMillis());
+  }
+
+  /** Tests that a checkpoint file which fails its CRC check has an unknown committed time. */
+  public void testCorruptCheckpointIgnored() throws Exception {
+    TWQueueCheckpoint checkpoint = openCheckpoint();
+    checkpoint.addSpan(1000, 1);
+    checkpoint.commit(1);
+    checkpoint.close();
+
+    // Corrupt the committed time, as a partially written file would be
+    RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw");
+    file.seek(0);
+    file.writeLong(1001);
+    file.close();
+    assertEquals(-1, readCommittedTimeMillis());
+  }
+
+  /** Tests that the time committed by each new checkpoint is read after it is reopened. */
+  public void testEachCommitReadAfterReopen() throws Exception {
+    for (int i = 1; i <= WRITE_COUNT; i++) {
+      // Each new checkpoint writes on its first commit
+      TWQueueCheckpoint checkpoint = openCheckpoint();
+      checkpoint.addSpan(i * 1000L, 1);
+      checkpoint.commit(1);
+      checkpoint.close();
+      assertEquals(i * 1000L, readCommittedTimeMillis());
+    }
+  }
+
+  /**
+   * Reads the committed time from the checkpoint file of the current test, as it would be read
+   * after a restart.
+   *
+   * @return committed time (in milliseconds since the epoch), or -1 if unknown
+   * @throws Exception if unable to open or close the checkpoint
+   */
+  private long readCommittedTimeMillis() throws Exception {
+    TWQueueCheckpoint checkpoint = openCheckpoint();
+    long committedTimeMillis = checkpoint.getCommittedTimeMillis();
+    checkpoint.close();
+    return committedTimeMillis;
+  }
+
+  /**
+   * Opens a checkpoint using the checkpoint file of the current test.
+   *
+   * @return opened checkpoint
+   * @throws Exception if unable to open the checkpoint
+   */
+  private TWQueueCheckpoint openCheckpoint() throws Exception {
+    TWQueueCheckpoint checkpoint = new TWQueueCheckpoint(checkpointFile.getPath());
+    checkpoint.open();
+    return checkpoint;
+  }
+}
@@ -0,0 +1,238 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWQueuePollSizeController}, including a simulation of the data queue recovering
+ * from an outage, compared with polling at the configured poll size.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWQueuePollSizeControllerTest extends TestCase {
+
+  /** Configured poll size (in minutes). */
+  private static final long BASE_POLL_SIZE_MINS = 1;
+
+  /** Maximum poll size (in minutes) while catching up. */
+  private static final long MAX_POLL_SIZE_MINS = 60;
+
+  /** Interval (in milliseconds) at which the data queue is polled. */
+  private static final long POLL_INTERVAL_MILLIS = 10000;
+
+  /** Number of milliseconds per minute. */
+  private static final long MILLIS_PER_MINUTE = 60000;
+
+  /** Free memory (in bytes) which is not used by pending data points, ample by default. */
+  private static final long AMPLE_FREE_MEMORY_BYTES = 500000000;
+
+  /** Simulated number of data points logged per minute of historical data. */
+  private static final int SIMULATED_DATA_POINTS_PER_MIN = 6000;
+
+  /** Simulated send throughput (in data points per second). */
+  private static final int SIMULATED_SEND_DATA_POINTS_PER_SECOND = 2000;
+
+  /** Simulated size (in bytes) of each data point in a payload. */
+  private static final int SIMULATED_PAYLOAD_BYTES_PER_DATA_POINT = 100;
+
+  /** Simulated free memory (in bytes) while no data points are pending. */
+  private static final long SIMULATED_FREE_MEMORY_BYTES = 25000000;
+
+  /** Simulated time (in milliseconds) that the data queue is behind after the outage. */
+  private static final long SIMULATED_OUTAGE_MILLIS = 6 * 60 * MILLIS_PER_MINUTE;
+
+  /** Maximum number of simulated polls. */
+  private static final int SIMULATED_MAX_POLLS = 2000;
+
+  /** Tests that the configured poll size is used until the data queue is sufficiently behind. */
+  public void testBasePollSizeWhileNotBehind() {
+    TWQueuePollSizeController controller = createController();
+    long behindMillis = TWConnectorConsts.QUEUE_CATCH_UP_ENTER_BEHIND_MILLIS - 1;
+    assertEquals(BASE_POLL_SIZE_MINS, update(controller, behindMillis, 0, 1));
+    assertFalse(controller.isCatchingUp());
+  }
+
+  /**
+   * Tests that the poll size grows by at most the growth factor per poll while catching up, and
+   * that catching up stops only once the data queue is within the exit threshold.
+   */
+  public void testCatchUpGrowthAndHysteresis() {
+    TWQueuePollSizeController controller = createController();
+    long behindMillis = 12 * 60 * MILLIS_PER_MINUTE;
+    long previousPollSizeMins = BASE_POLL_SIZE_MINS;
+    for (int i = 0; i < 8; i++) {
+      long pollSizeMins = update(controller, behindMillis, 0, i + 1);
+      assertTrue(controller.isCatchingUp());
+      long maxGrowthPollSizeMins =
+          previousPollSizeMins * TWConnectorConsts.QUEUE_CATCH_UP_MAX_GROWTH_FACTOR;
+      assertTrue(pollSizeMins <= maxGrowthPollSizeMins);
+      assertTrue(pollSizeMins <= MAX_POLL_SIZE_MINS);
+      previousPollSizeMins = pollSizeMins;
+    }
+    assertEquals(MAX_POLL_SIZE_MINS, previousPollSizeMins);
+
+    // Below the enter threshold, but above the exit threshold
+    update(controller, TWConnectorConsts.QUEUE_CATCH_UP_EXIT_BEHIND_MILLIS + 1, 0, 9);
+    assertTrue(controller.isCatchingUp());
+    assertEquals(
+        BASE_POLL_SIZE_MINS,
+        update(controller, TWConnectorConsts.QUEUE_CATCH_UP_EXIT_BEHIND_MILLIS, 0, 10));
+    assertFalse(controller.isCatchingUp());
+  }
+
+  /** Tests that the poll size is limited so that the data points read fit in free memory. */
+  public void testPollSizeLimitedByFreeMemory() {
+    TWQueuePollSizeController controller = createController();
+    long behindMillis = 12 * 60 * MILLIS_PER_MINUTE;
+
+    // Half of the memory above the minimum fits two minutes of data points
+    long freeMemoryBytes =
+        TWConnectorConsts.QUEUE_DATA_POLL_MIN_MEMORY_BYTES
+            + 4L
+                * SIMULATED_DATA_POINTS_PER_MIN
+                * TWConnectorConsts.QUEUE_CATCH_UP_BYTES_PER_DATA_POINT;
+    long pollSizeMins = 0;
+    for (int i = 0; i < 10; i++) {
+      pollSizeMins =
+          controller.update(
+              behindMillis,
+              freeMemoryBytes,
+              0,
+              (int) (controller.getPollSizeMins() * SIMULATED_DATA_POINTS_PER_MIN),
+              0,
+              0,
+              i * POLL_INTERVAL_MILLIS);
+    }
+    assertEquals(2, pollSizeMins);
+  }
+
+  /**
+   * Simulates the data queue recovering from an outage, with the data points read limited by the
+   * simulated send throughput and free memory, and compares the number of polls taken to catch up
+   * with the controller and with the configured poll size.
+   */
+  public void testRecoveryFromOutage() {
+    SimulationResult controlled = simulateRecovery(createController());
+    SimulationResult fixed = simulateRecovery(null);
+
+    assertTrue(controlled.polls < SIMULATED_MAX_POLLS);
+    assertTrue(controlled.polls * 2 < fixed.polls);
+    assertTrue(controlled.minFreeMemoryBytes >= TWConnectorConsts.QUEUE_DATA_POLL_MIN_MEMORY_BYTES);
+
+    // Data points pending are bounded by the send headroom and one poll of data points
+    long sendableDataPoints =
+        TWConnectorConsts.QUEUE_CATCH_UP_SEND_HEADROOM_INTERVALS
+            * SIMULATED_SEND_DATA_POINTS_PER_SECOND
+            * POLL_INTERVAL_MILLIS
+            / 1000;
+    assertTrue(
+        controlled.maxPendingDataPoints
+            <= sendableDataPoints + controlled.maxPollSizeMins * SIMULATED_DATA_POINTS_PER_MIN);
+  }
+
+  /**
+   * Simulates the data queue recovering from {@link #SIMULATED_OUTAGE_MILLIS} behind, polling once
+   * per poll interval, until it is within the catch up exit threshold.
+   *
+   * @param controller poll size controller, or null to use the configured poll size
+   * @return simulation result
+   */
+  private static SimulationResult simulateRecovery(TWQueuePollSizeController controller) {
+    SimulationResult result = new SimulationResult();
+    long behindMillis = SIMULATED_OUTAGE_MILLIS;
+    long pendingDataPoints = 0;
+    long acknowledgedDataPoints = 0;
+    long pollSizeMins = BASE_POLL_SIZE_MINS;
+    long timeMillis = 0;
+    while (behindMillis > TWConnectorConsts.QUEUE_CATCH_UP_EXIT_BEHIND_MILLIS
+        && result.polls < SIMULATED_MAX_POLLS) {
+      // Send pending data points during poll interval
+      timeMillis += POLL_INTERVAL_MILLIS;
+      behindMillis += POLL_INTERVAL_MILLIS;
+      long sentDataPoints =
+          Math.min(
+              pendingDataPoints,
+              SIMULATED_SEND_DATA_POINTS_PER_SECOND * POLL_INTERVAL_MILLIS / 1000);
+      pendingDataPoints -= sentDataPoints;
+      acknowledgedDataPoints += sentDataPoints;
+      long pendingBytesBeforePoll = pendingDataPoints * SIMULATED_PAYLOAD_BYTES_PER_DATA_POINT;
+
+      // Poll data queue
+      int dataPointsRead = (int) (pollSizeMins * SIMULATED_DATA_POINTS_PER_MIN);
+      behindMillis -= pollSizeMins * MILLIS_PER_MINUTE;
+      pendingDataPoints += dataPointsRead;
+      long freeMemoryBytes =
+          SIMULATED_FREE_MEMORY_BYTES
+              - pendingDataPoints * TWConnectorConsts.QUEUE_CATCH_UP_BYTES_PER_DATA_POINT;
+      result.polls++;
+      result.maxPollSizeMins = Math.max(result.maxPollSizeMins, pollSizeMins);
+      result.maxPendingDataPoints = Math.max(result.maxPendingDataPoints, pendingDataPoints);
+      result.minFreeMemoryBytes = Math.min(result.minFreeMemoryBytes, freeMemoryBytes);
+
+      if (controller != null) {
+        pollSizeMins =
+            controller.update(
+                behindMillis,
+                freeMemoryBytes,
+                pendingBytesBeforePoll,
+                dataPointsRead,
+                acknowledgedDataPoints,
+                acknowledgedDataPoints * SIMULATED_PAYLOAD_BYTES_PER_DATA_POINT,
+                timeMillis);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Updates the specified controller after a poll of the current poll size at the simulated data
+   * rate, with ample free memory.
+   *
+   * @param controller poll size controller
+   * @param behindMillis time (in milliseconds) that the data queue is behind
+   * @param pendingPayloadsByteSize total size (in bytes) of pending payloads
+   * @param pollNumber number of the poll, used as the time of the update
+   * @return poll size (in minutes) for the next poll
+   */
+  private static long update(
+      TWQueuePollSizeController controller,
+      long behindMillis,
+      long pendingPayloadsByteSize,
+      int pollNumber) {
+    return controller.update(
+        behindMillis,
+        AMPLE_FREE_MEMORY_BYTES,
+        pendingPayloadsByteSize,
+        (int) (controller.getPollSizeMins() * SIMULATED_DATA_POINTS_PER_MIN),
+        0,
+        0,
+        pollNumber * POLL_INTERVAL_MILLIS);
+  }
+
+  /**
+   * Creates a controller with the test poll sizes and poll interval.
+   *
+   * @return poll size controller
+   */
+  private static TWQueuePollSizeController createController() {
+    return new TWQueuePollSizeController(
+        BASE_POLL_SIZE_MINS, MAX_POLL_SIZE_MINS, POLL_INTERVAL_MILLIS);
+  }
+
+  /** Result of a simulated recovery of the data queue. */
+  private static class SimulationResult {
+
+    /** Number of polls taken to catch up. */
+    private int polls = 0;
+
+    /** Largest poll size (in minutes). */
+    private long maxPollSizeMins = 0;
+
+    /** Largest number of pending data points after a poll. */
+    private long maxPendingDataPoints = 0;
+
+    /** Lowest free memory (in bytes) after a poll. */
+    private long minFreeMemoryBytes = Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,124 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.ewon.ewonitf.TagControl;
+import java.util.Hashtable;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the reuse, eviction and invalidation of the tag control objects of {@link
+ * TWTagControlCache}, using tag control objects whose tag ID and name are set by the test.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagControlCacheTest extends TestCase {
+
+  /** Capacity of the test caches. */
+  private static final int CACHE_CAPACITY = 2;
+
+  /** Tests that a cached tag control is reused until it is removed. */
+  public void testCachedTagControlReused() throws Exception {
+    TestTagControlCache cache = new TestTagControlCache();
+    TagControl tagControl = cache.getTagControl("TagA");
+    assertSame(tagControl, cache.getTagControl("TagA"));
+    assertEquals(1, cache.getCreatedCount("TagA"));
+
+    cache.remove("TagA");
+    assertNotSame(tagControl, cache.getTagControl("TagA"));
+    assertEquals(2, cache.getCreatedCount("TagA"));
+  }
+
+  /** Tests that the oldest cached tag is evicted when a new tag is added to a full cache. */
+  public void testOldestTagEvictedWhenFull() throws Exception {
+    TestTagControlCache cache = new TestTagControlCache();
+    TagControl tagControlA = cache.getTagControl("TagA");
+    TagControl tagControlB = cache.getTagControl("TagB");
+    cache.getTagControl("TagC");
+
+    assertSame(tagControlB, cache.getTagControl("TagB"));
+    assertEquals(1, cache.getCreatedCount("TagB"));
+    assertNotSame(tagControlA, cache.getTagControl("TagA"));
+    assertEquals(2, cache.getCreatedCount("TagA"));
+  }
+
+  /**
+   * Tests that the cache is cleared when a cached tag control no longer refers to a tag with its
+   * cached ID or name, as the tag configuration of the Ewon has changed.
+   */
+  public void testCacheClearedWhenTagChanged() throws Exception {
+    TestTagControlCache cache = new TestTagControlCache();
+    TestTagControl tagControlA = (TestTagControl) cache.getTagControl("TagA");
+    TagControl tagControlB = cache.getTagControl("TagB");
+
+    // Tag ID of cached tag changed
+    tagControlA.tagId = 100;
+    TagControl newTagControlA = cache.getTagControl("TagA");
+    assertNotSame(tagControlA, newTagControlA);
+    assertNotSame(tagControlB, cache.getTagControl("TagB"));
+    assertEquals(2, cache.getCreatedCount("TagA"));
+    assertEquals(2, cache.getCreatedCount("TagB"));
+
+    // Tag name of cached tag changed
+    ((TestTagControl) newTagControlA).tagName = "Renamed";
+    assertNotSame(newTagControlA, cache.getTagControl("TagA"));
+    assertEquals(3, cache.getCreatedCount("TagA"));
+  }
+
+  /** Tag control object whose tag ID and name are set by the test. */
+  private static class TestTagControl extends TagControl {
+
+    /** ID of the tag. */
+    private int tagId;
+
+    /** Name of the tag. */
+    private String tagName;
+
+    /**
+     * Creates a new test tag control.
+     *
+     * @param tagId ID of the tag
+     * @param tagName name of the tag
+     */
+    TestTagControl(int tagId, String tagName) {
+      this.tagId = tagId;
+      this.tagName = tagName;
+    }
+
+    public int getTagId() {
+      return tagId;
+    }
+
+    public String getTagName() {
+      return tagName;
+    }
+  }
+
+  /** Tag control cache which creates test tag control objects, and counts them by tag name. */
+  private static class TestTagControlCache extends TWTagControlCache {
+
+    /** Number of tag control objects created, by tag name, as {@link Integer} objects. */
+    private final Hashtable createdCounts = new Hashtable();
+
+    /** Creates a new test tag control cache with {@link #CACHE_CAPACITY}. */
+    TestTagControlCache() {
+      super(CACHE_CAPACITY);
+    }
+
+    TagControl createTagControl(String tagName) {
+      int createdCount = getCreatedCount(tagName) + 1;
+      createdCounts.put(tagName, new Integer(createdCount));
+      return new TestTagControl(tagName.hashCode(), tagName);
+    }
+
+    /**
+     * Gets the number of tag control objects created for the tag with the specified name.
+     *
+     * @param tagName name of the tag
+     * @return number of tag control objects created
+     */
+    int getCreatedCount(String tagName) {
+      Integer createdCount = (Integer) createdCounts.get(tagName);
+      return createdCount != null ? createdCount.intValue() : 0;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.taginfo.TagType;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the updating of {@link TWTagInfoIndex} with the current tags of the Ewon, including the
+ * adding of new tags, replacing of changed tags and removing of tags by name.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagInfoIndexTest extends TestCase {
+
+  protected void setUp() {
+    // Remove all tags from the index
+    TWTagInfoIndex.update(new TWTagInfoIndex.IndexedTag[0]);
+  }
+
+  /** Tests that new tags are added to the index, and that null elements are ignored. */
+  public void testUpdateAddsNewTags() {
+    TWTagInfoIndex.update(
+        new TWTagInfoIndex.IndexedTag[] {
+          tag("TagA", 1, TagType.INTEGER), null, tag("TagB", 2, TagType.FLOAT)
+        });
+    assertIndexedTag("TagA", 1, TagType.INTEGER);
+    assertIndexedTag("TagB", 2, TagType.FLOAT);
+    assertNull(TWTagInfoIndex.getIndexedTag("TagC"));
+
+    TWTagInfoIndex.update(
+        new TWTagInfoIndex.IndexedTag[] {
+          tag("TagA", 1, TagType.INTEGER),
+          tag("TagB", 2, TagType.FLOAT),
+          tag("TagC", 3, TagType.STRING)
+        });
+    assertIndexedTag("TagC", 3, TagType.STRING);
+  }
+
+  /**
+   * Tests that tags with a different ID or type are replaced in the index, and that unchanged tags
+   * are kept.
+   */
+  public void testUpdateReplacesChangedTags() {
+    TWTagInfoIndex.update(
+        new TWTagInfoIndex.IndexedTag[] {
+          tag("TagA", 1, TagType.INTEGER),
+          tag("TagB", 2, TagType.FLOAT),
+          tag("TagC", 3, TagType.STRING)
+        });
+    TWTagInfoIndex.IndexedTag unchangedTag = TWTagInfoIndex.getIndexedTag("TagC");
+
+    TWTagInfoIndex.update(
+        new TWTagInfoIndex.IndexedTag[] {
+          tag("TagA", 4, TagType.INTEGER),
+          tag("TagB", 2, TagType.BOOLEAN),
+          tag("TagC", 3, TagType.STRING)
+        });
+    assertIndexedTag("TagA", 4, TagType.INTEGER);
+    assertIndexedTag("TagB", 2, TagType.BOOLEAN);
+    assertSame(unchangedTag, TWTagInfoIndex.getIndexedTag("TagC"));
+  }
+
+  /**
+   * Tests that tags which are no longer on the Ewon are removed from the index by name, including
+   * when another tag has been added with the same number of tags, or the remaining tags have
+   * different IDs.
+   */
+  public void testUpdateRemovesTagsByName() {
+    TWTagInfoIndex.update(
+        new TWTagInfoIndex.IndexedTag[] {
+          tag("TagA", 1, TagType.INTEGER),
+          tag("TagB", 2, TagType.FLOAT),
+          tag("TagC", 3, TagType.STRING)
+        });
+
+    // Tag removed and another added, with the same number of tags
+    TWTagInfoIndex.update(
+        new TWTagInfoIndex.IndexedTag[] {
+          tag("TagA", 1, TagType.INTEGER),
+          tag("TagC", 3, TagType.STRING),
+          tag("TagD", 4, TagType.DWORD)
+        });
+    assertNull(TWTagInfoIndex.getIndexedTag("TagB"));
+    assertIndexedTag("TagD", 4, TagType.DWORD);
+
+    // Tag removed, with the remaining tags renumbered
+    TWTagInfoIndex.update(
+        new TWTagInfoIndex.IndexedTag[] {
+          tag("TagC", 1, TagType.STRING), tag("TagD", 2, TagType.DWORD)
+        });
+    assertNull(TWTagInfoIndex.getIndexedTag("TagA"));
+    assertIndexedTag("TagC", 1, TagType.STRING);
+    assertIndexedTag("TagD", 2, TagType.DWORD);
+  }
+
+  /**
+   * Checks that the tag with the specified name is indexed with the specified ID and type.
+   *
+   * @param name tag name
+   * @param expectedId expected tag ID
+   * @param expectedType expected tag type
+   */
+  private static void assertIndexedTag(String name, int expectedId, TagType expectedType) {
+    TWTagInfoIndex.IndexedTag indexedTag = TWTagInfoIndex.getIndexedTag(name);
+    assertNotNull(indexedTag);
+    assertEquals(name, indexedTag.getName());
+    assertEquals(expectedId, indexedTag.getId());
+    assertSame(expectedType, indexedTag.getType());
+  }
+
+  /**
+   * Creates a tag with the specified name, ID and type.
+   *
+   * @param name tag name
+   * @param id tag ID
+   * @param type tag type
+   * @return tag
+   */
+  private static TWTagInfoIndex.IndexedTag tag(String name, int id, TagType type) {
+    return new TWTagInfoIndex.IndexedTag(name, id, type);
+  }
+}
@@ -0,0 +1,211 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.json.JSONException;
+import com.hms_networks.americas.sc.thingworx.TWConnectorConsts;
+import java.io.StringReader;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the reading and staging of {@link TWTagUpdateResponse}, including validation of tag
+ * values against their declared types.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagUpdateResponseTest extends TestCase {
+
+  /** Number of tag entries in the large response. */
+  private static final int LARGE_RESPONSE_TAG_COUNT = 2000;
+
+  /** Tests that the members of a result and each tag entry are read and converted to its type. */
+  public void testReadsResultTags() throws Exception {
+    TWTagUpdateResponse response =
+        readResponse(
+            "{\"jsonrpc\": \"2.0\", \"id\": \"42\", \"extra\": {\"ignored\": [1, 2]},"
+                + " \"result\": {\"restorePreviousValsOnFault\": true, \"tags\": ["
+                + tag("IntTag", "integer", "12")
+                + ", "
+                + tag("FloatTag", "float", "\"2.5\"")
+                + ", "
+                + tag("StringTag", "string", "\"a \\\"b\\\"\"")
+                + ", "
+                + tag("BoolTag", "boolean", "true")
+                + ", "
+                + tag("DwordTag", "dword", "4294967295")
+                + ", "
+                + tag("OtherTag", "other", "1")
+                + "]}}");
+    assertEquals("42", response.getId());
+    assertEquals("2.0", response.getJsonRpcVersion());
+    assertTrue(response.hasResult());
+    assertTrue(response.hasTags());
+    assertFalse(response.hasError());
+    assertTrue(response.isRestorePreviousValsOnFault());
+    assertEquals(6, response.getTagCount());
+
+    assertTag(response, 0, "IntTag", TWTagUpdateResponse.TAG_TYPE_INTEGER, true);
+    assertEquals(12, response.getTagValueAsLong(0));
+    assertTag(response, 1, "FloatTag", TWTagUpdateResponse.TAG_TYPE_FLOAT, true);
+    assertEquals(2.5, response.getTagValueAsDouble(1), 0);
+    assertTag(response, 2, "StringTag", TWTagUpdateResponse.TAG_TYPE_STRING, true);
+    assertEquals("a \"b\"", response.getTagValueAsString(2));
+    assertTag(response, 3, "BoolTag", TWTagUpdateResponse.TAG_TYPE_BOOLEAN, true);
+    assertEquals(1, response.getTagValueAsLong(3));
+    assertTag(response, 4, "DwordTag", TWTagUpdateResponse.TAG_TYPE_DWORD, true);
+    assertEquals(4294967295L, response.getTagValueAsLong(4));
+    assertTag(response, 5, "OtherTag", TWTagUpdateResponse.TAG_TYPE_UNKNOWN, false);
+  }
+
+  /**
+   * Tests that tag values which cannot be converted to their declared types are staged as not
+   * valid, with their text kept for logging.
+   */
+  public void testMarksInvalidTagValues() throws Exception {
+    TWTagUpdateResponse response =
+        readResponse(
+            "{\"result\": {\"tags\": ["
+                + tag("IntTag", "integer", "\"abc\"")
+                + ", "
+                + tag("FloatTag", "float", "true")
+                + ", "
+                + tag("BoolTag", "boolean", "2")
+                + ", "
+                + tag("StringTag", "string", "{\"a\": [1]}")
+                + ", "
+                + tag("DwordTag", "dword", "null")
+                + ", "
+                + tag("BoolStringTag", "boolean", "\"FALSE\"")
+                + "]}}");
+    assertEquals(6, response.getTagCount());
+    for (int i = 0; i < 5; i++) {
+      assertFalse(response.isTagValueValid(i));
+    }
+    assertEquals("abc", response.getTagValueText(0));
+    assertTrue(response.isTagValueValid(5));
+    assertEquals(0, response.getTagValueAsLong(5));
+    assertFalse(response.isRestorePreviousValsOnFault());
+  }
+
+  /** Tests that tag entries missing their name, type or value are staged as incomplete. */
+  public void testStagesIncompleteTagEntries() throws Exception {
+    TWTagUpdateResponse response =
+        readResponse(
+            "{\"result\": {\"tags\": [{\"type\": \"integer\", \"value\": 1},"
+                + " {\"name\": \"Tag\", \"value\": 1},"
+                + " {\"name\": \"Tag\", \"type\": \"integer\"}]}}");
+    assertEquals(3, response.getTagCount());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(TWTagUpdateResponse.TAG_TYPE_INCOMPLETE, response.getTagType(i));
+    }
+  }
+
+  /** Tests that the code and message of an error response are read. */
+  public void testReadsError() throws Exception {
+    TWTagUpdateResponse response =
+        readResponse("{\"id\": 7, \"error\": {\"code\": 500, \"message\": \"Failed\"}}");
+    assertEquals("7", response.getId());
+    assertFalse(response.hasResult());
+    assertTrue(response.hasError());
+    assertTrue(response.hasErrorCode());
+    assertEquals(500, response.getErrorCode());
+    assertEquals("Failed", response.getErrorMessage());
+  }
+
+  /**
+   * Tests that responses which are not valid JSON, do not match the tag update message format, or
+   * contain too many tag entries are rejected.
+   */
+  public void testRejectsInvalidResponses() throws Exception {
+    StringBuffer tooManyTags = new StringBuffer("{\"result\": {\"tags\": [");
+    for (int i = 0; i <= TWConnectorConsts.TAG_UPDATE_MAX_RESPONSE_TAGS; i++) {
+      if (i > 0) {
+        tooManyTags.append(", ");
+      }
+      tooManyTags.append(tag("Tag" + i, "integer", String.valueOf(i)));
+    }
+    tooManyTags.append("]}}");
+
+    String[] invalidResponses = {
+      "[]",
+      "{\"result\": {\"tags\": [",
+      "{\"result\": []}",
+      "{\"result\": {\"tags\": {}}}",
+      "{\"result\": {\"tags\": [1]}}",
+      "{\"result\": {\"restorePreviousValsOnFault\": \"yes\"}}",
+      "{\"error\": {\"code\": \"abc\"}}",
+      "{\"id\": [1]}",
+      tooManyTags.toString()
+    };
+    for (int i = 0; i < invalidResponses.length; i++) {
+      try {
+        readResponse(invalidResponses[i]);
+        fail("Expected JSONException for response " + i + ".");
+      } catch (JSONException e) {
+        // Expected, response is not valid
+      }
+    }
+  }
+
+  /** Tests that a response with many tag entries is read completely. */
+  public void testReadsLargeResponse() throws Exception {
+    StringBuffer largeResponse =
+        new StringBuffer("{\"jsonrpc\": \"2.0\", \"id\": \"1\", \"result\": {\"tags\": [");
+    for (int i = 0; i < LARGE_RESPONSE_TAG_COUNT; i++) {
+      if (i > 0) {
+        largeResponse.append(", ");
+      }
+      largeResponse.append(tag("Tag" + i, "float", String.valueOf(i + 0.5)));
+    }
+    largeResponse.append("]}}");
+
+    TWTagUpdateResponse response = readResponse(largeResponse.toString());
+    assertEquals(LARGE_RESPONSE_TAG_COUNT, response.getTagCount());
+    assertEquals(
+        LARGE_RESPONSE_TAG_COUNT - 0.5,
+        response.getTagValueAsDouble(LARGE_RESPONSE_TAG_COUNT - 1),
+        0);
+  }
+
+  /**
+   * Checks the name, type and value validity of the specified tag entry.
+   *
+   * @param response tag update response
+   * @param index index of the tag entry
+   * @param expectedName expected tag name
+   * @param expectedType expected tag type
+   * @param expectedValid expected value validity
+   */
+  private static void assertTag(
+      TWTagUpdateResponse response,
+      int index,
+      String expectedName,
+      int expectedType,
+      boolean expectedValid) {
+    assertEquals(expectedName, response.getTagName(index));
+    assertEquals(expectedType, response.getTagType(index));
+    assertEquals(expectedValid, response.isTagValueValid(index));
+  }
+
+  /**
+   * Builds the JSON of a tag entry.
+   *
+   * @param name tag name
+   * @param type tag type string
+   * @param valueJson JSON of the tag value
+   * @return JSON of the tag entry
+   */
+  private static String tag(String name, String type, String valueJson) {
+    return "{\"name\": \"" + name + "\", \"type\": \"" + type + "\", \"value\": " + valueJson + "}";
+  }
+
+  /**
+   * Reads a tag update response from the specified response body.
+   *
+   * @param responseBody response body
+   * @return tag update response
+   * @throws JSONException if the response is not valid
+   */
+  private static TWTagUpdateResponse readResponse(String responseBody) throws JSONException {
+    return new TWTagUpdateResponse(new StringReader(responseBody));
+  }
+}
@@ -0,0 +1,127 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the coalescing and ordering of {@link TWTagUpdateTriggerQueue}, and the waking of a
+ * waiting tag update thread when a trigger is added.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTagUpdateTriggerQueueTest extends TestCase {
+
+  /** Coalescing time (in milliseconds) of the test queues. */
+  private static final long COALESCE_MILLIS = 100;
+
+  /** Maximum time (in milliseconds) to wait for a trigger which is expected to be taken. */
+  private static final long TAKE_TIMEOUT_MILLIS = 5000;
+
+  /** Number of triggers added for the waiting tag update thread. */
+  private static final int WAITING_TRIGGER_COUNT = 20;
+
+  /**
+   * Tests that a burst of triggers with the same value and information string is coalesced in to a
+   * single trigger, and that triggers with different values are taken in the order in which they
+   * were first added.
+   */
+  public void testRepeatedTriggersCoalescedInOrder() throws Exception {
+    TWTagUpdateTriggerQueue queue = new TWTagUpdateTriggerQueue(COALESCE_MILLIS);
+    assertTrue(queue.put(1, "info"));
+    assertTrue(queue.put(2, "info"));
+    for (int i = 0; i < 100; i++) {
+      assertFalse(queue.put(1, "info"));
+      assertFalse(queue.put(2, "info"));
+    }
+
+    assertTrigger(1, "info", queue.take(TAKE_TIMEOUT_MILLIS));
+    assertTrigger(2, "info", queue.take(TAKE_TIMEOUT_MILLIS));
+    assertNull(queue.take(COALESCE_MILLIS));
+
+    // Value can be added again once taken
+    assertTrue(queue.put(1, "info"));
+  }
+
+  /**
+   * Tests that triggers with the same value but different information strings are not coalesced,
+   * and that each is taken with the information string it was added with.
+   */
+  public void testTriggersWithDifferentInfoStringsNotCoalesced() throws Exception {
+    TWTagUpdateTriggerQueue queue = new TWTagUpdateTriggerQueue(COALESCE_MILLIS);
+    assertTrue(queue.put(1, "first"));
+    assertTrue(queue.put(1, "second"));
+    assertTrue(queue.put(1, ""));
+    assertFalse(queue.put(1, "first"));
+    assertFalse(queue.put(1, ""));
+
+    assertTrigger(1, "first", queue.take(TAKE_TIMEOUT_MILLIS));
+    assertTrigger(1, "second", queue.take(TAKE_TIMEOUT_MILLIS));
+    assertTrigger(1, "", queue.take(TAKE_TIMEOUT_MILLIS));
+    assertNull(queue.take(COALESCE_MILLIS));
+  }
+
+  /** Tests that a trigger is not taken until it has waited for the coalescing time. */
+  public void testTriggerTakenAfterCoalescingTime() throws Exception {
+    TWTagUpdateTriggerQueue queue = new TWTagUpdateTriggerQueue(COALESCE_MILLIS);
+    queue.put(1, "");
+    assertNull(queue.take(COALESCE_MILLIS / 2));
+
+    assertTrigger(1, "", queue.take(TAKE_TIMEOUT_MILLIS));
+  }
+
+  /** Tests that take returns null once the maximum wait time has elapsed without a trigger. */
+  public void testTakeTimesOutWithoutTrigger() throws Exception {
+    TWTagUpdateTriggerQueue queue = new TWTagUpdateTriggerQueue(COALESCE_MILLIS);
+    assertNull(queue.take(COALESCE_MILLIS));
+  }
+
+  /**
+   * Tests that a thread which is already waiting to take a trigger is woken for each trigger added,
+   * without coalescing, and takes the triggers in order.
+   */
+  public void testWaitingTakeWokenForEachTrigger() throws Exception {
+    final TWTagUpdateTriggerQueue queue = new TWTagUpdateTriggerQueue(0);
+    final int[] takenValues = new int[WAITING_TRIGGER_COUNT];
+    Thread takeThread =
+        new Thread() {
+          public void run() {
+            try {
+              for (int i = 0; i < WAITING_TRIGGER_COUNT; i++) {
+                TWTagUpdateTriggerQueue.Trigger trigger = queue.take(TAKE_TIMEOUT_MILLIS);
+                if (trigger != null) {
+                  takenValues[i] = trigger.getValue();
+                }
+              }
+            } catch (InterruptedException e) {
+              // Test fails on the missing taken values
+            }
+          }
+        };
+    takeThread.start();
+
+    // Add each trigger once the take thread is waiting
+    for (int i = 0; i < WAITING_TRIGGER_COUNT; i++) {
+      Thread.sleep(10);
+      assertTrue(queue.put(i + 1, ""));
+    }
+    takeThread.join(TAKE_TIMEOUT_MILLIS);
+
+    for (int i = 0; i < WAITING_TRIGGER_COUNT; i++) {
+      assertEquals(i + 1, takenValues[i]);
+    }
+  }
+
+  /**
+   * Checks that the specified trigger has the specified value and information string.
+   *
+   * @param expectedValue expected trigger value
+   * @param expectedInfoString expected trigger information string
+   * @param trigger trigger to check
+   */
+  private static void assertTrigger(
+      int expectedValue, String expectedInfoString, TWTagUpdateTriggerQueue.Trigger trigger) {
+    assertNotNull(trigger);
+    assertEquals(expectedValue, trigger.getValue());
+    assertEquals(expectedInfoString, trigger.getInfoString());
+  }
+}
@@ -0,0 +1,60 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import com.hms_networks.americas.sc.extensions.json.JSONException;
+import com.hms_networks.americas.sc.extensions.json.JSONObject;
+import com.hms_networks.americas.sc.thingworx.TWConnectorMain;
+import com.hms_networks.americas.sc.thingworx.config.TWConnectorConfig;
+import com.hms_networks.americas.sc.thingworx.config.TWConnectorRuntimeConfig;
+import java.lang.reflect.Field;
+
+/**
+ * Installs a connector runtime configuration for tests of classes which read it from {@link
+ * TWConnectorMain#getConnectorRuntimeConfig()}, without reading the configuration file.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+final class TWTestRuntimeConfig {
+
+  /** Private constructor, this class only has static methods. */
+  private TWTestRuntimeConfig() {}
+
+  /**
+   * Gets the default connector configuration settings, which may be changed and then installed
+   * using {@link #install(JSONObject)}.
+   *
+   * @return default connector configuration settings
+   * @throws JSONException if unable to build the default settings
+   */
+  static JSONObject getDefaultSettings() throws JSONException {
+    return new TestConnectorConfig(new JSONObject()).getDefaultConfigurationObject();
+  }
+
+  /**
+   * Installs a connector runtime configuration built from the specified settings. Settings which
+   * are not specified use their default values.
+   *
+   * @param settings connector configuration settings
+   * @throws Exception if unable to install the runtime configuration
+   */
+  static void install(JSONObject settings) throws Exception {
+    TWConnectorRuntimeConfig runtimeConfig =
+        new TWConnectorRuntimeConfig(new TestConnectorConfig(settings));
+    Field runtimeConfigField = TWConnectorMain.class.getDeclaredField("connectorRuntimeConfig");
+    runtimeConfigField.setAccessible(true);
+    runtimeConfigField.set(null, runtimeConfig);
+  }
+
+  /** Connector configuration with settings from a JSON object instead of the configuration file. */
+  private static class TestConnectorConfig extends TWConnectorConfig {
+
+    /**
+     * Creates a new connector configuration with the specified settings.
+     *
+     * @param settings connector configuration settings
+     */
+    TestConnectorConfig(JSONObject settings) {
+      configurationObject = settings;
+    }
+  }
+}
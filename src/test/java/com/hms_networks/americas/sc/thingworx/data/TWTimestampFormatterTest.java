@@ -0,0 +1,142 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link TWTimestampFormatter}, comparing its timestamps with those formatted by a {@link
+ * SimpleDateFormat}, as done for each data point before the formatter was added.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTimestampFormatterTest extends TestCase {
+
+  /** Number of consecutive timestamps, one per second for two days. */
+  private static final int CONSECUTIVE_TIMESTAMP_COUNT = 172800;
+
+  /** Start time (in seconds since the epoch) of the consecutive timestamps. */
+  private static final long CONSECUTIVE_START_SECONDS = 1619703907L;
+
+  /** Tests that timestamps in UTC are formatted with the Z zone designator. */
+  public void testFormatsUtcWithZoneDesignator() {
+    TWTimestampFormatter formatter = new TWTimestampFormatter(TimeZone.getTimeZone("UTC"));
+    assertEquals("2021-04-29T13:45:07Z", formatter.formatIso8601Timestamp(1619703907L));
+    assertEquals("1970-01-01T00:00:00Z", formatter.formatIso8601Timestamp(0));
+    assertEquals("1969-12-31T23:59:59Z", formatter.formatIso8601Timestamp(-1));
+  }
+
+  /** Tests that timestamps in a local time zone are formatted with the UTC offset. */
+  public void testFormatsLocalTimeWithOffset() {
+    TWTimestampFormatter formatter =
+        new TWTimestampFormatter(TimeZone.getTimeZone("America/New_York"));
+    assertEquals("2021-04-29T09:45:07-04:00", formatter.formatIso8601Timestamp(1619703907L));
+    assertEquals("2021-01-29T08:45:07-05:00", formatter.formatIso8601Timestamp(1611927907L));
+
+    formatter = new TWTimestampFormatter(TimeZone.getTimeZone("Asia/Kolkata"));
+    assertEquals("2021-04-29T19:15:07+05:30", formatter.formatIso8601Timestamp(1619703907L));
+  }
+
+  /**
+   * Tests that consecutive timestamps, which reuse the cached minute prefix and UTC offset, match
+   * {@link SimpleDateFormat}, including across a daylight saving time change.
+   */
+  public void testMatchesSimpleDateFormatAcrossOffsetChange() {
+    TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+    TWTimestampFormatter formatter = new TWTimestampFormatter(timeZone);
+    SimpleDateFormat dateFormat = createDateFormat(timeZone);
+
+    // Two hours either side of the change to summer time on 2021-03-28 at 01:00 UTC
+    long changeSeconds = 1616893200L;
+    StringBuffer stringBuffer = new StringBuffer();
+    for (long seconds = changeSeconds - 7200; seconds < changeSeconds + 7200; seconds += 7) {
+      stringBuffer.setLength(0);
+      formatter.appendIso8601Timestamp(stringBuffer, seconds);
+      assertEquals(formatWithDateFormat(dateFormat, timeZone, seconds), stringBuffer.toString());
+    }
+  }
+
+  /** Tests that timestamps which are not in order are formatted correctly. */
+  public void testMatchesSimpleDateFormatOutOfOrder() {
+    TimeZone timeZone = TimeZone.getTimeZone("America/Los_Angeles");
+    TWTimestampFormatter formatter = new TWTimestampFormatter(timeZone);
+    SimpleDateFormat dateFormat = createDateFormat(timeZone);
+
+    long seconds = 951782400L;
+    for (int i = 0; i < 10000; i++) {
+      seconds = (seconds * 1103515245L + 12345L) % 4102444800L;
+      assertEquals(
+          formatWithDateFormat(dateFormat, timeZone, seconds),
+          formatter.formatIso8601Timestamp(seconds));
+    }
+  }
+
+  /**
+   * Tests that one timestamp per second over two days, which reuses the cached minute prefix for
+   * most timestamps, matches {@link SimpleDateFormat}.
+   */
+  public void testMatchesSimpleDateFormatForConsecutiveSeconds() {
+    TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+    TWTimestampFormatter formatter = new TWTimestampFormatter(timeZone);
+    SimpleDateFormat dateFormat = createDateFormat(timeZone);
+
+    StringBuffer stringBuffer = new StringBuffer();
+    for (int i = 0; i < CONSECUTIVE_TIMESTAMP_COUNT; i++) {
+      stringBuffer.setLength(0);
+      formatter.appendIso8601Timestamp(stringBuffer, CONSECUTIVE_START_SECONDS + i);
+      assertEquals(
+          formatWithDateFormat(dateFormat, timeZone, CONSECUTIVE_START_SECONDS + i),
+          stringBuffer.toString());
+    }
+  }
+
+  /**
+   * Creates a date format for the date and time fields of a timestamp in the specified time zone.
+   *
+   * @param timeZone time zone
+   * @return date format
+   */
+  private static SimpleDateFormat createDateFormat(TimeZone timeZone) {
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+    dateFormat.setTimeZone(timeZone);
+    return dateFormat;
+  }
+
+  /**
+   * Formats the specified time with the specified date format, followed by the UTC offset.
+   *
+   * @param dateFormat date format
+   * @param timeZone time zone of the date format
+   * @param epochSeconds time in seconds since the epoch
+   * @return formatted timestamp
+   */
+  private static String formatWithDateFormat(
+      SimpleDateFormat dateFormat, TimeZone timeZone, long epochSeconds) {
+    long epochMillis = epochSeconds * 1000;
+    int offsetMinutes = timeZone.getOffset(epochMillis) / 60000;
+    String offset;
+    if (offsetMinutes == 0) {
+      offset = "Z";
+    } else {
+      int absoluteOffsetMinutes = Math.abs(offsetMinutes);
+      offset =
+          (offsetMinutes < 0 ? "-" : "+")
+              + formatTwoDigits(absoluteOffsetMinutes / 60)
+              + ":"
+              + formatTwoDigits(absoluteOffsetMinutes % 60);
+    }
+    return dateFormat.format(new Date(epochMillis)) + offset;
+  }
+
+  /**
+   * Formats the specified value as two decimal digits.
+   *
+   * @param value value (0-99)
+   * @return two decimal digits
+   */
+  private static String formatTwoDigits(int value) {
+    return (value < 10 ? "0" : "") + value;
+  }
+}
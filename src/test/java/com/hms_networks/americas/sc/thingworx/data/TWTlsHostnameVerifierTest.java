@@ -0,0 +1,67 @@
+package com.hms_networks.americas.sc.thingworx.data;
+
+import java.util.Vector;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the host name matching of {@link TWTlsHostnameVerifier}.
+ *
+ * @author HMS Networks, MU Americas Solution Center
+ * @since 3.4.0
+ */
+public class TWTlsHostnameVerifierTest extends TestCase {
+
+  /** Tests matching of exact and wildcard DNS names. */
+  public void testMatchesDnsName() {
+    assertTrue(TWTlsHostnameVerifier.matchesDnsName("twx.example.com", "twx.example.com"));
+    assertTrue(TWTlsHostnameVerifier.matchesDnsName("TWX.Example.com", "twx.example.COM"));
+    assertTrue(TWTlsHostnameVerifier.matchesDnsName("twx.example.com.", "twx.example.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesDnsName("twx.example.com", "other.example.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesDnsName("example.com", "twx.example.com"));
+
+    assertTrue(TWTlsHostnameVerifier.matchesDnsName("twx.example.com", "*.example.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesDnsName("a.twx.example.com", "*.example.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesDnsName("example.com", "*.example.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesDnsName("example.com", "*.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesDnsName("twx.example.com", "*.*.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesDnsName("twx.example.com", "t*.example.com"));
+  }
+
+  /** Tests that the common name is only used if there are no DNS name alternative names. */
+  public void testCommonNameOnlyUsedWithoutDnsNames() {
+    Vector noNames = new Vector();
+    Vector dnsNames = new Vector();
+    dnsNames.addElement("other.example.com");
+
+    assertTrue(
+        TWTlsHostnameVerifier.matchesHost("twx.example.com", noNames, noNames, "twx.example.com"));
+    assertFalse(
+        TWTlsHostnameVerifier.matchesHost("twx.example.com", dnsNames, noNames, "twx.example.com"));
+    assertFalse(TWTlsHostnameVerifier.matchesHost("twx.example.com", noNames, noNames, null));
+  }
+
+  /** Tests that IP addresses are only matched against IP address alternative names. */
+  public void testMatchesIpAddress() {
+    Vector noNames = new Vector();
+    Vector ipAddresses = new Vector();
+    ipAddresses.addElement("192.168.0.10");
+    Vector dnsNames = new Vector();
+    dnsNames.addElement("192.168.0.10");
+
+    assertTrue(TWTlsHostnameVerifier.matchesHost("192.168.0.10", noNames, ipAddresses, null));
+    assertFalse(TWTlsHostnameVerifier.matchesHost("192.168.0.11", noNames, ipAddresses, null));
+    assertFalse(
+        TWTlsHostnameVerifier.matchesHost("192.168.0.10", dnsNames, noNames, "192.168.0.10"));
+  }
+
+  /** Tests reading the most specific common name from a distinguished name. */
+  public void testGetCommonName() {
+    assertEquals(
+        "twx.example.com",
+        TWTlsHostnameVerifier.getCommonName("CN=twx.example.com,O=Example\\, Inc.,C=US"));
+    assertEquals(
+        "twx.example.com", TWTlsHostnameVerifier.getCommonName("cn=twx.example.com+OU=IoT"));
+    assertEquals("a,b", TWTlsHostnameVerifier.getCommonName("O=Example,CN=a\\,b,CN=c"));
+    assertNull(TWTlsHostnameVerifier.getCommonName("O=Example\\, CN=fake,C=US"));
+  }
+}